@@ -17,13 +17,25 @@
 
 package org.apache.ambari.servicemonitor;
 
+import org.apache.ambari.servicemonitor.probes.CompositeProbe;
+import org.apache.ambari.servicemonitor.probes.DfsCanaryProbe;
+import org.apache.ambari.servicemonitor.probes.DfsLatencyProbe;
 import org.apache.ambari.servicemonitor.probes.DfsListProbe;
 import org.apache.ambari.servicemonitor.probes.DfsSafeModeProbe;
+import org.apache.ambari.servicemonitor.probes.HadoopIpcProbe;
 import org.apache.ambari.servicemonitor.probes.HttpProbe;
 import org.apache.ambari.servicemonitor.probes.JTClusterStatusProbe;
+import org.apache.ambari.servicemonitor.probes.JTProxies;
+import org.apache.ambari.servicemonitor.probes.JmxProbe;
+import org.apache.ambari.servicemonitor.probes.JvmGcProbe;
 import org.apache.ambari.servicemonitor.probes.PidLiveProbe;
 import org.apache.ambari.servicemonitor.probes.PortProbe;
+import org.apache.ambari.servicemonitor.probes.PortSweepProbe;
 import org.apache.ambari.servicemonitor.probes.Probe;
+import org.apache.ambari.servicemonitor.probes.ProcResourceProbe;
+import org.apache.ambari.servicemonitor.reporting.AdaptiveInterval;
+import org.apache.ambari.servicemonitor.reporting.DependencyGraph;
+import org.apache.ambari.servicemonitor.reporting.ProbeWorker;
 import org.apache.ambari.servicemonitor.reporting.Reporter;
 import org.apache.ambari.servicemonitor.reporting.ReportingLoop;
 import org.apache.ambari.servicemonitor.utils.Exit;
@@ -32,6 +44,9 @@ import org.apache.ambari.servicemonitor.utils.InterruptData;
 import org.apache.ambari.servicemonitor.utils.Interrupted;
 import org.apache.ambari.servicemonitor.utils.IrqHandler;
 import org.apache.ambari.servicemonitor.utils.MonitorUtils;
+import org.apache.ambari.servicemonitor.utils.ConnectionWatcher;
+import org.apache.ambari.servicemonitor.utils.DfsClientManager;
+import org.apache.ambari.servicemonitor.utils.ResolverCache;
 import org.apache.ambari.servicemonitor.utils.ToolPlusImpl;
 import org.apache.ambari.servicemonitor.utils.ToolRunnerPlus;
 import org.apache.commons.logging.Log;
@@ -41,6 +56,7 @@ import org.apache.hadoop.fs.FileSystem;
 
 import java.io.IOException;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
@@ -108,94 +124,494 @@ public class Monitor extends ToolPlusImpl implements MonitorKeys, Interrupted {
    */
   public void execMonitor(Reporter reporter) throws IOException {
 
-    Configuration conf = getConf();
+    reportingLoop = createReportingLoop(name, getConf(), reporter);
+
+    if (!reportingLoop.startReporting()) {
+      throw new ExitMainException(
+        name + ": failed to start monitoring with reporter " + reporter);
+    }
+    //start reporting, either in a background thread
+    //or here, directly in the main thread
+    try {
+      reportingLoop.run();
+    } finally {
+      closeSharedClients();
+    }
+  }
+
+  /**
+   * Close the clients, the resolver cache and the connection watcher
+   * which the probes of the process share, once monitoring has stopped
+   */
+  public static void closeSharedClients() {
+    DfsClientManager.getInstance().closeAll();
+    JTProxies.closeAll();
+    ResolverCache.closeInstance();
+    ConnectionWatcher.closeInstance();
+  }
+
+  /**
+   * Create the reporting loop for a service, with the probes and
+   * timings of its configuration
+   * @param name service name
+   * @param conf configuration of the service
+   * @param reporter reporter
+   * @return a new reporting loop
+   * @throws IOException problems
+   * @throws ExitMainException if the configuration is invalid
+   */
+  public static ReportingLoop createReportingLoop(String name,
+                                                  Configuration conf,
+                                                  Reporter reporter) throws IOException {
     int probeInterval =
       conf.getInt(MONITOR_PROBE_INTERVAL, PROBE_INTERVAL_DEFAULT);
     int reportInterval =
       conf.getInt(MONITOR_REPORT_INTERVAL, REPORT_INTERVAL_DEFAULT);
     int probeTimeout = conf.getInt(MONITOR_PROBE_TIMEOUT, PROBE_TIMEOUT_DEFAULT);
     int bootstrapTimeout = conf.getInt(MONITOR_BOOTSTRAP_TIMEOUT, BOOTSTRAP_TIMEOUT_DEFAULT);
+    int probeThreads = conf.getInt(MONITOR_PROBE_THREADS, PROBE_THREADS_DEFAULT);
+    float probeJitter = conf.getFloat(MONITOR_PROBE_JITTER, PROBE_JITTER_DEFAULT);
+    int pingTimeout = conf.getInt(MONITOR_PING_TIMEOUT, PING_TIMEOUT_DEFAULT);
+    int quarantineThreads = conf.getInt(MONITOR_PROBE_QUARANTINE_THREADS,
+                                        PROBE_QUARANTINE_THREADS_DEFAULT);
+
+    ResolverCache.getInstance().setTtl(conf.getLong(MONITOR_RESOLVER_TTL,
+                                                    ResolverCache.TTL_DEFAULT));
+    List<Probe> probes = combineProbes(conf, createProbes(conf));
+    validateIntervals(probes, probeInterval, probeJitter, probeTimeout);
+    ProbeWorker worker = new ProbeWorker(probes,
+                                         createDependencies(conf),
+                                         probeInterval,
+                                         bootstrapTimeout,
+                                         probeThreads);
+    worker.setJitter(probeJitter);
+    worker.setDependencyRecheckInterval(conf.getInt(MONITOR_DEPENDENCY_RECHECK_INTERVAL,
+                                                    DEPENDENCY_RECHECK_INTERVAL_DEFAULT));
+    worker.setPingTimeout(pingTimeout, quarantineThreads);
+    worker.setHedgePercentile(conf.getFloat(MONITOR_HEDGE_PERCENTILE,
+                                            HEDGE_PERCENTILE_DEFAULT));
+    ReportingLoop loop = new ReportingLoop(name,
+                                           reporter,
+                                           worker,
+                                           reportInterval,
+                                           probeTimeout);
+    loop.enablePhiAccrual(conf.getFloat(MONITOR_PHI_THRESHOLD, PHI_THRESHOLD_DEFAULT),
+                          conf.getInt(MONITOR_PHI_WINDOW, PHI_WINDOW_DEFAULT),
+                          conf.getInt(MONITOR_PHI_MIN_STDDEV, PHI_MIN_STDDEV_DEFAULT));
+    return loop;
+  }
 
+  /**
+   * Create the probes of a service.
+   * Where a list of targets, URLs or paths is given, there is one probe
+   * for each entry.
+   * @param conf configuration
+   * @return the (possibly empty) list of probes
+   * @throws IOException problems
+   * @throws ExitMainException if the configuration is invalid
+   */
+  public static List<Probe> createProbes(Configuration conf) throws IOException {
     List<Probe> probes = new ArrayList<Probe>();
     if (conf.getBoolean(PORT_PROBE_ENABLED, false)) {
-
-      String probeHost = conf.get(PORT_PROBE_HOST, DEFAULT_PROBE_HOST);
-
-
-      int probePort = conf.getInt(PORT_PROBE_PORT,
-                                  DEFAULT_PROBE_PORT);
-
-      if (probePort == -1) {
-        URI fsURI = FileSystem.getDefaultUri(conf);
-        probePort = fsURI.getPort();
-        validateParam(probePort == -1, "No port value in " + fsURI);
+      String[] targets = conf.getStrings(PORT_PROBE_TARGETS);
+      if (targets != null) {
+        for (String target : targets) {
+          probes.add(createPortProbe(conf, target.trim()));
+        }
+      } else {
+        String probeHost = conf.get(PORT_PROBE_HOST, DEFAULT_PROBE_HOST);
+
+
+        int probePort = conf.getInt(PORT_PROBE_PORT,
+                                    DEFAULT_PROBE_PORT);
+
+        if (probePort == -1) {
+          URI fsURI = FileSystem.getDefaultUri(conf);
+          probePort = fsURI.getPort();
+          validateParam(probePort == -1, "No port value in " + fsURI);
+        }
+
+        PortProbe portProbe = PortProbe.createPortProbe(new Configuration(conf),
+                                                        probeHost,
+                                                        probePort);
+        configureInterval(conf, portProbe, PORT_PROBE_INTERVAL);
+        portProbe.setHedged(conf.getBoolean(PORT_PROBE_HEDGE, false));
+        probes.add(portProbe);
       }
-
-      PortProbe portProbe = PortProbe.createPortProbe(new Configuration(conf),
-                                                      probeHost,
-                                                      probePort);
-      probes.add(portProbe);
     } else {
       LOG.debug("port probe disabled");
     }
 
+    if (conf.getBoolean(PORT_SWEEP_ENABLED, false)) {
+      PortSweepProbe sweepProbe =
+        PortSweepProbe.createPortSweepProbe(new Configuration(conf), getSweepTargets(conf));
+      configureInterval(conf, sweepProbe, PORT_SWEEP_INTERVAL);
+      probes.add(sweepProbe);
+    } else {
+      LOG.debug("port sweep disabled");
+    }
+
     if (conf.getBoolean(PID_PROBE_ENABLED, false)) {
       Probe probe = PidLiveProbe.createProbe(new Configuration(conf));
+      configureInterval(conf, probe, PID_PROBE_INTERVAL);
       probes.add(probe);
       LOG.debug("Pid probe enabled: " + probe.toString());
     } else {
       LOG.debug("Pid probe disabled");
     }
 
+    if (conf.getBoolean(PROC_PROBE_ENABLED, false)) {
+      Probe probe = ProcResourceProbe.createProbe(new Configuration(conf));
+      configureInterval(conf, probe, PROC_PROBE_INTERVAL);
+      probes.add(probe);
+      LOG.debug("Process resource probe enabled: " + probe.toString());
+    } else {
+      LOG.debug("Process resource probe disabled");
+    }
+
+    if (conf.getBoolean(GC_PROBE_ENABLED, false)) {
+      Probe probe = JvmGcProbe.createProbe(new Configuration(conf));
+      configureInterval(conf, probe, GC_PROBE_INTERVAL);
+      probes.add(probe);
+      LOG.debug("GC probe enabled: " + probe.toString());
+    } else {
+      LOG.debug("GC probe disabled");
+    }
+
 
     if (conf.getBoolean(WEB_PROBE_ENABLED, false)) {
-      HttpProbe httpProbe = HttpProbe.createHttpProbe(new Configuration(conf));
-      probes.add(httpProbe);
+      String[] urls = conf.getStrings(WEB_PROBE_URLS);
+      if (urls == null) {
+        urls = new String[]{conf.get(WEB_PROBE_URL, WEB_PROBE_DEFAULT_URL)};
+      }
+      for (String url : urls) {
+        Configuration probeConf = new Configuration(conf);
+        probeConf.set(WEB_PROBE_URL, url.trim());
+        HttpProbe httpProbe = HttpProbe.createHttpProbe(probeConf);
+        configureInterval(conf, httpProbe, WEB_PROBE_INTERVAL);
+        httpProbe.setHedged(conf.getBoolean(WEB_PROBE_HEDGE, false));
+        probes.add(httpProbe);
+      }
     } else {
       LOG.debug("HTTP probe disabled");
     }
 
+    if (conf.getBoolean(JMX_PROBE_ENABLED, false)) {
+      JmxProbe jmxProbe = JmxProbe.createJmxProbe(new Configuration(conf));
+      configureInterval(conf, jmxProbe, JMX_PROBE_INTERVAL);
+      probes.add(jmxProbe);
+    } else {
+      LOG.debug("JMX probe disabled");
+    }
+
     if (conf.getBoolean(LS_PROBE_ENABLED, false)) {
-      String path = conf.get(LS_PROBE_PATH, LS_PROBE_DEFAULT);
-      DfsListProbe lsProbe = new DfsListProbe(new Configuration(conf), path);
-      probes.add(lsProbe);
+      String[] paths = conf.getStrings(LS_PROBE_PATHS);
+      if (paths == null) {
+        paths = new String[]{conf.get(LS_PROBE_PATH, LS_PROBE_DEFAULT)};
+      }
+      for (String path : paths) {
+        DfsListProbe lsProbe = new DfsListProbe(new Configuration(conf), path.trim());
+        configureInterval(conf, lsProbe, LS_PROBE_INTERVAL);
+        probes.add(lsProbe);
+      }
     } else {
       LOG.debug("ls probe disabled");
     }
 
+    if (conf.getBoolean(LATENCY_PROBE_ENABLED, false)) {
+      DfsLatencyProbe latencyProbe = DfsLatencyProbe.createProbe(new Configuration(conf));
+      configureInterval(conf, latencyProbe, LATENCY_PROBE_INTERVAL);
+      probes.add(latencyProbe);
+    } else {
+      LOG.debug("latency probe disabled");
+    }
+
+    if (conf.getBoolean(CANARY_PROBE_ENABLED, false)) {
+      Configuration canaryConf = new Configuration(conf);
+      if (canaryConf.get(CANARY_PROBE_INTERVAL) == null) {
+        //writing a file is costly: the canary has its own, longer, default interval
+        canaryConf.setInt(CANARY_PROBE_INTERVAL, CANARY_PROBE_INTERVAL_DEFAULT);
+      }
+      DfsCanaryProbe canaryProbe = DfsCanaryProbe.createProbe(canaryConf);
+      configureInterval(canaryConf, canaryProbe, CANARY_PROBE_INTERVAL);
+      probes.add(canaryProbe);
+    } else {
+      LOG.debug("canary probe disabled");
+    }
+
     if (conf.getBoolean(JT_PROBE_ENABLED, false)) {
       Probe jtProbe = new JTClusterStatusProbe(new Configuration(conf));
+      configureInterval(conf, jtProbe, JT_PROBE_INTERVAL);
+      jtProbe.setHedged(conf.getBoolean(JT_PROBE_HEDGE, false));
       probes.add(jtProbe);
     } else {
       LOG.debug("JT probe disabled");
     }
 
+    if (conf.getBoolean(IPC_PROBE_ENABLED, false)) {
+      for (HadoopIpcProbe ipcProbe : HadoopIpcProbe.createProbes(new Configuration(conf))) {
+        configureInterval(conf, ipcProbe, IPC_PROBE_INTERVAL);
+        probes.add(ipcProbe);
+      }
+    } else {
+      LOG.debug("IPC probe disabled");
+    }
+    return probes;
+  }
 
-    List<Probe> dependencyProbes = new ArrayList<Probe>(1);
+  /**
+   * Combine the probes into one composite probe, if the configuration asks for it
+   * @param conf configuration
+   * @param probes the probes
+   * @return a list holding the composite probe, or the probes themselves
+   * @throws ExitMainException if the composite configuration is invalid
+   */
+  public static List<Probe> combineProbes(Configuration conf, List<Probe> probes)
+    throws ExitMainException {
+    if (conf.get(COMPOSITE_MODE, "").trim().isEmpty() || probes.isEmpty()) {
+      return probes;
+    }
+    List<Probe> combined = new ArrayList<Probe>(1);
+    combined.add(CompositeProbe.createProbe(conf, probes));
+    return combined;
+  }
+
+  /**
+   * Create a port probe from a host:port target
+   * @param conf configuration
+   * @param target the target
+   * @return the probe
+   * @throws IOException problems
+   * @throws ExitMainException if the target is not of the form host:port
+   */
+  private static PortProbe createPortProbe(Configuration conf, String target) throws IOException {
+    InetSocketAddress address = parseTarget(PORT_PROBE_TARGETS, target);
+    PortProbe portProbe = PortProbe.createPortProbe(new Configuration(conf),
+                                                    address.getHostName(),
+                                                    address.getPort());
+    configureInterval(conf, portProbe, PORT_PROBE_INTERVAL);
+    portProbe.setHedged(conf.getBoolean(PORT_PROBE_HEDGE, false));
+    return portProbe;
+  }
 
-    if (conf.getBoolean(MONITOR_DEPENDENCY_DFSLIVE, false)) {
-      //there's a dependency on DFS
-      //add a monitor for it
-      LOG.info("Adding a dependency on HDFS being live");
-      dependencyProbes.add(new DfsSafeModeProbe(new Configuration(conf), true));
+  /**
+   * Parse a host:port target
+   * @param key the key the target came from, for error messages
+   * @param target the target
+   * @return an unresolved address
+   * @throws ExitMainException if the target is not of the form host:port
+   */
+  private static InetSocketAddress parseTarget(String key, String target) throws
+                                                                          ExitMainException {
+    int split = target.lastIndexOf(':');
+    validateParam(split <= 0 || split == target.length() - 1,
+                  "Not a host:port pair in " + key + ": \"" + target + "\"");
+    return InetSocketAddress.createUnresolved(target.substring(0, split),
+                                              parsePort(key, target.substring(split + 1)));
+  }
+
+  /**
+   * Parse a port
+   * @param key the key the port came from, for error messages
+   * @param port the port
+   * @return the port number
+   * @throws ExitMainException if the port is not a number
+   */
+  private static int parsePort(String key, String port) throws ExitMainException {
+    try {
+      return Integer.parseInt(port.trim());
+    } catch (NumberFormatException e) {
+      throw new ExitMainException(Exit.EXIT_ERROR,
+                                  "Bad port in " + key + ": \"" + port + "\"");
     }
+  }
 
-    reportingLoop = new ReportingLoop(name,
-                                      reporter,
-                                      probes,
-                                      dependencyProbes,
-                                      probeInterval,
-                                      reportInterval,
-                                      probeTimeout,
-                                      bootstrapTimeout);
+  /**
+   * Get the targets of the port sweep: those listed as targets, then each
+   * of the sweep ports on each of the sweep hosts
+   * @param conf configuration
+   * @return the targets, unresolved
+   * @throws ExitMainException if there are no targets, or one is invalid
+   */
+  private static List<InetSocketAddress> getSweepTargets(Configuration conf) throws
+                                                                             ExitMainException {
+    List<InetSocketAddress> targets = new ArrayList<InetSocketAddress>();
+    String[] listed = conf.getStrings(PORT_SWEEP_TARGETS);
+    if (listed != null) {
+      for (String target : listed) {
+        targets.add(parseTarget(PORT_SWEEP_TARGETS, target.trim()));
+      }
+    }
+    String[] hosts = conf.getStrings(PORT_SWEEP_HOSTS);
+    String[] ports = conf.getStrings(PORT_SWEEP_PORTS);
+    if (hosts != null && ports != null) {
+      for (String host : hosts) {
+        for (String port : ports) {
+          targets.add(InetSocketAddress.createUnresolved(host.trim(),
+                                                         parsePort(PORT_SWEEP_PORTS, port)));
+        }
+      }
+    }
+    validateParam(targets.isEmpty(),
+                  "No targets in " + PORT_SWEEP_TARGETS + " or "
+                  + PORT_SWEEP_HOSTS + " and " + PORT_SWEEP_PORTS);
+    return targets;
+  }
 
-    if (!reportingLoop.startReporting()) {
-      throw new ExitMainException(
-        name + ": failed to start monitoring with reporter " + reporter);
+  /**
+   * Configure the interval of a probe from its interval key, and the
+   * maximum and burst intervals from that key with the suffixes
+   * {@link #INTERVAL_MAX_SUFFIX} and {@link #INTERVAL_BURST_SUFFIX};
+   * where these are not set for the probe, those of the probe interval are used.
+   * If the maximum interval is longer than the interval, the probe
+   * is given an {@link AdaptiveInterval}.
+   * @param conf configuration
+   * @param probe probe to configure
+   * @param intervalKey key of the probe's interval
+   */
+  private static void configureInterval(Configuration conf, Probe probe, String intervalKey) {
+    int interval = conf.getInt(intervalKey, -1);
+    probe.setInterval(interval);
+    if (interval <= 0) {
+      interval = conf.getInt(MONITOR_PROBE_INTERVAL, PROBE_INTERVAL_DEFAULT);
     }
-    //start reporting, either in a background thread
-    //or here, directly in the main thread
-    reportingLoop.run();
+    int max = conf.getInt(intervalKey + INTERVAL_MAX_SUFFIX,
+                          conf.getInt(MONITOR_PROBE_INTERVAL + INTERVAL_MAX_SUFFIX, -1));
+    if (max > interval) {
+      int burst = conf.getInt(intervalKey + INTERVAL_BURST_SUFFIX,
+                              conf.getInt(MONITOR_PROBE_INTERVAL + INTERVAL_BURST_SUFFIX,
+                                          PROBE_INTERVAL_BURST_DEFAULT));
+      AdaptiveInterval policy = new AdaptiveInterval(interval, max, burst);
+      LOG.debug(probe.getName() + ": " + policy);
+      probe.setIntervalPolicy(policy);
+    }
+  }
+
+  /**
+   * Check that the live probes issue statuses often enough for the probe timeout.
+   * The reporting loop times out when no probe has issued a status for that
+   * long, so the probe which is pinged most often must be pinged within the
+   * timeout, even at the longest interval of an adaptive interval and with the
+   * largest jitter.
+   * @param probes the live probes
+   * @param probeInterval the interval of probes which do not have one of their own
+   * @param jitter the jitter, as a fraction of the interval
+   * @param probeTimeout the probe timeout
+   * @throws ExitMainException if the probes are pinged too rarely
+   */
+  public static void validateIntervals(List<Probe> probes,
+                                       int probeInterval,
+                                       float jitter,
+                                       int probeTimeout) throws ExitMainException {
+    if (probeTimeout <= 0 || probes.isEmpty()) {
+      return;
+    }
+    float spread = 1 + 2 * Math.max(0f, Math.min(jitter, 1f));
+    long shortest = Long.MAX_VALUE;
+    for (Probe probe : probes) {
+      AdaptiveInterval policy = probe.getIntervalPolicy();
+      int interval = policy != null ? policy.getMaxInterval()
+                     : probe.getInterval() > 0 ? probe.getInterval() : probeInterval;
+      shortest = Math.min(shortest, (long) (interval * spread));
+    }
+    validateParam(shortest >= probeTimeout,
+                  "The probes are pinged at most every "
+                  + MonitorUtils.millisToHumanTime(shortest)
+                  + " (including any maximum adaptive interval and the jitter)"
+                  + ", which is not less than " + MONITOR_PROBE_TIMEOUT + " of "
+                  + MonitorUtils.millisToHumanTime(probeTimeout));
+  }
+
+  /**
+   * Create the dependencies of a service: DFS being live, if enabled, and
+   * those listed in {@link #MONITOR_DEPENDENCIES}, each with the
+   * dependencies upstream of it.
+   * @param conf configuration
+   * @return the (possibly empty) graph of dependencies
+   * @throws IOException problems
+   * @throws ExitMainException if a dependency has no target, or the graph is invalid
+   */
+  public static DependencyGraph createDependencies(Configuration conf) throws IOException {
+    DependencyGraph dependencies = new DependencyGraph();
+    try {
+      if (conf.getBoolean(MONITOR_DEPENDENCY_DFSLIVE, false)) {
+        //there's a dependency on DFS
+        //add a monitor for it
+        LOG.info("Adding a dependency on HDFS being live");
+        dependencies.add(DEPENDENCY_DFS,
+                         new DfsSafeModeProbe(new Configuration(conf), true),
+                         getUpstreamDependencies(conf, DEPENDENCY_DFS));
+      }
+      String[] names = conf.getStrings(MONITOR_DEPENDENCIES);
+      if (names != null) {
+        for (String name : names) {
+          name = name.trim();
+          LOG.info("Adding a dependency on " + name);
+          dependencies.add(name, createDependencyProbe(conf, name),
+                           getUpstreamDependencies(conf, name));
+        }
+      }
+      dependencies.validate();
+    } catch (IllegalArgumentException e) {
+      throw new ExitMainException(e.getMessage());
+    }
+    if (!dependencies.isEmpty()) {
+      LOG.info("Dependencies: " + dependencies);
+    }
+    return dependencies;
+  }
+
+  /**
+   * Create the probe of a named dependency: a port probe of its target,
+   * or an HTTP probe of its URL
+   * @param conf configuration
+   * @param name name of the dependency
+   * @return the probe
+   * @throws IOException problems
+   * @throws ExitMainException if neither a target nor a URL is set
+   */
+  private static Probe createDependencyProbe(Configuration conf, String name)
+    throws IOException {
+    String targetKey = MONITOR_DEPENDENCY_PREFIX + name + DEPENDENCY_TARGET_SUFFIX;
+    String urlKey = MONITOR_DEPENDENCY_PREFIX + name + DEPENDENCY_URL_SUFFIX;
+    String target = conf.get(targetKey);
+    String url = conf.get(urlKey);
+    if (target != null) {
+      InetSocketAddress address = parseTarget(targetKey, target);
+      return PortProbe.createPortProbe(new Configuration(conf),
+                                       address.getHostName(),
+                                       address.getPort());
+    }
+    if (url != null) {
+      //only the timeouts and status codes of the service's web probe apply
+      Configuration probeConf = new Configuration(conf);
+      probeConf.set(WEB_PROBE_URL, url.trim());
+      probeConf.set(WEB_PROBE_METHOD, HttpProbe.METHOD_GET);
+      probeConf.set(WEB_PROBE_BODY_CONTAINS, "");
+      probeConf.set(WEB_PROBE_BODY_REGEX, "");
+      probeConf.set(WEB_PROBE_BODY_JSON_PATH, "");
+      return HttpProbe.createHttpProbe(probeConf);
+    }
+    throw new ExitMainException("Neither " + targetKey + " nor " + urlKey
+                                + " is set for the dependency " + name);
+  }
+
+  /**
+   * Get the names of the dependencies upstream of a dependency
+   * @param conf configuration
+   * @param name name of the dependency
+   * @return the (possibly empty) list of names
+   */
+  private static List<String> getUpstreamDependencies(Configuration conf, String name) {
+    String[] upstream = conf.getStrings(
+      MONITOR_DEPENDENCY_PREFIX + name + DEPENDENCY_UPSTREAM_SUFFIX);
+    List<String> names = new ArrayList<String>();
+    if (upstream != null) {
+      for (String up : upstream) {
+        names.add(up.trim());
+      }
+    }
+    return names;
   }
 
   /**
@@ -204,7 +620,7 @@ public class Monitor extends ToolPlusImpl implements MonitorKeys, Interrupted {
    * @param message message to use in errors
    * @throws ExitMainException if the condition was false
    */
-  private void validateParam(boolean test, String message) throws ExitMainException {
+  private static void validateParam(boolean test, String message) throws ExitMainException {
     if (test) {
       throw new ExitMainException(Exit.EXIT_ERROR, message);
     }
@@ -220,6 +636,7 @@ public class Monitor extends ToolPlusImpl implements MonitorKeys, Interrupted {
     //this is the signal handler
     LOG.fatal(interruptData.toString() + " received -shutting down.");
     reportingLoop.close();
+    closeSharedClients();
     Exit.exitProcess(Exit.EXIT_SUCCESS, name + " terminated");
   }
 
@@ -48,6 +48,69 @@ public interface MonitorKeys extends HadoopKeys {
   String MONITOR_PROBE_INTERVAL =
     MONITOR_KEY_PREFIX + "probe.interval";
 
+  /**
+   * Suffix of an interval key for the maximum interval. If this is longer
+   * than the interval, the interval adapts to the health of the probe,
+   * growing towards this maximum while the probe is healthy.
+   * Key: {@value}
+   */
+  String INTERVAL_MAX_SUFFIX = ".max";
+
+  /**
+   * Suffix of an interval key for the burst interval of an adaptive
+   * interval: the interval after a failure or latency spike. Key: {@value}
+   */
+  String INTERVAL_BURST_SUFFIX = ".burst";
+
+  /**
+   * Percentile of the recent latencies of a hedged probe after which a
+   * second attempt of a ping is started. Key: {@value}
+   */
+  String MONITOR_HEDGE_PERCENTILE =
+    MONITOR_KEY_PREFIX + "probe.hedge.percentile";
+
+  /**
+   * Number of the latencies of recent successful pings kept by
+   * each probe: {@value}
+   */
+  int LATENCY_WINDOW_SIZE = 100;
+
+  /**
+   * Time to live in milliseconds of the cached addresses of the hosts
+   * probed. Key: {@value}
+   */
+  String MONITOR_RESOLVER_TTL =
+    MONITOR_KEY_PREFIX + "resolver.ttl";
+
+  /**
+   * Random jitter of the time of each ping, as a fraction of the probe's interval.
+   * Key: {@value}
+   */
+  String MONITOR_PROBE_JITTER =
+    MONITOR_KEY_PREFIX + "probe.jitter";
+
+  /**
+   * Number of threads to ping the probes of a cycle with. If greater than
+   * one, the probes are pinged concurrently. Key: {@value}
+   */
+  String MONITOR_PROBE_THREADS =
+    MONITOR_KEY_PREFIX + "probe.threads";
+
+  /**
+   * Deadline in milliseconds of a single ping; a probe which does not respond
+   * within it is interrupted and fails. Zero or less means no deadline.
+   * Key: {@value}
+   */
+  String MONITOR_PING_TIMEOUT =
+    MONITOR_KEY_PREFIX + "probe.ping.timeout";
+
+  /**
+   * Number of extra threads in the probe pool for pings which have timed
+   * out but not returned. Key: {@value}
+   */
+  String MONITOR_PROBE_QUARANTINE_THREADS =
+    MONITOR_KEY_PREFIX + "probe.quarantine.threads";
+
   /**
    * How long in milliseconds does the probing loop have to be blocked before
    * that is considered a liveness failure Key: {@value}
@@ -55,6 +118,27 @@ public interface MonitorKeys extends HadoopKeys {
   String MONITOR_PROBE_TIMEOUT =
     MONITOR_KEY_PREFIX + "probe.timeout";
 
+  /**
+   * Phi accrual suspicion level at which a live service is taken to have
+   * failed; zero or less disables phi accrual detection. Key: {@value}
+   */
+  String MONITOR_PHI_THRESHOLD =
+    MONITOR_KEY_PREFIX + "phi.threshold";
+
+  /**
+   * Number of results of each probe the phi accrual detection
+   * learns from. Key: {@value}
+   */
+  String MONITOR_PHI_WINDOW =
+    MONITOR_KEY_PREFIX + "phi.window";
+
+  /**
+   * Lowest standard deviation in milliseconds of the lateness of probe
+   * results used in phi accrual detection. Key: {@value}
+   */
+  String MONITOR_PHI_MIN_STDDEV =
+    MONITOR_KEY_PREFIX + "phi.min.stddev";
+
   /**
    * How long in milliseconds does the probing loop have to be blocked before
    * that is considered a liveness failure Key: {@value}
@@ -63,12 +147,88 @@ public interface MonitorKeys extends HadoopKeys {
     MONITOR_KEY_PREFIX + "bootstrap.timeout";
 
 
+  /**
+   * Names of the services a multi-service monitor monitors. Key: {@value}
+   */
+  String MONITOR_SERVICES =
+    MONITOR_KEY_PREFIX + "services";
+
+  /**
+   * Prefix of the per-service keys of a multi-service monitor.
+   * The configuration file of a service NAME is set in
+   * <code>service.monitor.service.NAME.conf</code>. Key: {@value}
+   */
+  String MONITOR_SERVICE_PREFIX =
+    MONITOR_KEY_PREFIX + "service.";
+
+  /**
+   * Suffix of the per-service configuration file key. Key: {@value}
+   */
+  String MONITOR_SERVICE_CONF_SUFFIX = ".conf";
+
+  /**
+   * Number of threads in the scheduler which a multi-service monitor
+   * shares across the probe workers of all its services; the reports
+   * have a thread of their own. Key: {@value}
+   */
+  String MONITOR_SCHEDULER_THREADS =
+    MONITOR_KEY_PREFIX + "scheduler.threads";
+
   /**
    * does the monitor depend on DFS being live
    */
   String MONITOR_DEPENDENCY_DFSLIVE =
     MONITOR_KEY_PREFIX + "dependency.dfslive";
 
+  /**
+   * Name of the dependency on DFS being live, for use in the
+   * upstream lists of other dependencies: {@value}
+   */
+  String DEPENDENCY_DFS = "hdfs";
+
+  /**
+   * Names of the dependencies of the service, besides DFS. Key: {@value}
+   */
+  String MONITOR_DEPENDENCIES =
+    MONITOR_KEY_PREFIX + "dependencies";
+
+  /**
+   * Prefix of the per-dependency keys. The host:port of a dependency NAME
+   * is set in <code>service.monitor.dependency.NAME.target</code>. Key: {@value}
+   */
+  String MONITOR_DEPENDENCY_PREFIX =
+    MONITOR_KEY_PREFIX + "dependency.";
+
+  /**
+   * Suffix of the host:port key of a dependency, which is probed
+   * for an open port. Key: {@value}
+   */
+  String DEPENDENCY_TARGET_SUFFIX = ".target";
+
+  /**
+   * Suffix of the URL key of a dependency, which is probed
+   * with an HTTP GET. Key: {@value}
+   */
+  String DEPENDENCY_URL_SUFFIX = ".url";
+
+  /**
+   * Suffix of the key listing the dependencies upstream of a dependency. Key: {@value}
+   */
+  String DEPENDENCY_UPSTREAM_SUFFIX = ".upstream";
+
+  /**
+   * Interval in milliseconds between checks of the dependencies once the
+   * service is live; 0 or less to only check them when a live probe fails.
+   * Key: {@value}
+   */
+  String MONITOR_DEPENDENCY_RECHECK_INTERVAL =
+    MONITOR_KEY_PREFIX + "dependency.recheck.interval";
+
+  /**
+   * Default value if the key is not in the config file: {@value}
+   */
+  int DEPENDENCY_RECHECK_INTERVAL_DEFAULT = 60000;
+
 
   /**
    * default timeout for the entire bootstrap phase {@value}
@@ -89,6 +249,46 @@ public interface MonitorKeys extends HadoopKeys {
    * Default value if the key is not in the config file: {@value}
    */
   int PROBE_TIMEOUT_DEFAULT = 60000;
+  /**
+   * Default value if the key is not in the config file: {@value}
+   */
+  int PROBE_THREADS_DEFAULT = 1;
+  /**
+   * Default value if the key is not in the config file: {@value}
+   */
+  float PROBE_JITTER_DEFAULT = 0.1f;
+  /**
+   * Default value if the key is not in the config file: {@value}
+   */
+  int SCHEDULER_THREADS_DEFAULT = 4;
+  /**
+   * Default value if the key is not in the config file: {@value}
+   */
+  int PROBE_INTERVAL_BURST_DEFAULT = 1000;
+  /**
+   * Default value if the key is not in the config file: {@value}
+   */
+  float HEDGE_PERCENTILE_DEFAULT = 95f;
+  /**
+   * Default value if the key is not in the config file: {@value}
+   */
+  float PHI_THRESHOLD_DEFAULT = 0;
+  /**
+   * Default value if the key is not in the config file: {@value}
+   */
+  int PHI_WINDOW_DEFAULT = 100;
+  /**
+   * Default value if the key is not in the config file: {@value}
+   */
+  int PHI_MIN_STDDEV_DEFAULT = 200;
+  /**
+   * Default value if the key is not in the config file: {@value}
+   */
+  int PING_TIMEOUT_DEFAULT = 0;
+  /**
+   * Default value if the key is not in the config file: {@value}
+   */
+  int PROBE_QUARANTINE_THREADS_DEFAULT = 2;
 
   /**
    * Port probe enabled/disabled flag Key: {@value}
@@ -109,6 +309,41 @@ public interface MonitorKeys extends HadoopKeys {
   String PORT_PROBE_HOST =
     MONITOR_KEY_PREFIX + "portprobe.host";
 
+  /**
+   * Port probing key : list of host:port pairs, one probe per pair;
+   * overrides the host and port keys when set {@value}
+   */
+  String PORT_PROBE_TARGETS =
+    MONITOR_KEY_PREFIX + "portprobe.targets";
+
+
+  /**
+   * Port probing key : interval in milliseconds between live pings;
+   * the probe interval is used if unset {@value}
+   */
+  String PORT_PROBE_INTERVAL =
+    MONITOR_KEY_PREFIX + "portprobe.interval";
+
+  /**
+   * Port probing key : race a connection attempt which is slower than
+   * usual with a second one {@value}
+   */
+  String PORT_PROBE_HEDGE =
+    MONITOR_KEY_PREFIX + "portprobe.hedge";
+
+  /**
+   * Port probing key : delay in milliseconds before the next address of
+   * a host with many addresses is tried {@value}
+   */
+  String PORT_PROBE_STAGGER =
+    MONITOR_KEY_PREFIX + "portprobe.stagger";
+
+  /**
+   * Port probing key : hold a connection open between pings and ping
+   * at once when the far end closes it {@value}
+   */
+  String PORT_PROBE_PASSIVE =
+    MONITOR_KEY_PREFIX + "portprobe.passive";
 
   /**
    * Port probing key : timeout of the connection attempt {@value}
@@ -138,6 +373,64 @@ public interface MonitorKeys extends HadoopKeys {
   int PORT_PROBE_CONNECT_TIMEOUT_DEFAULT = 1000;
 
 
+  /**
+   * Port sweep enabled/disabled flag Key: {@value}
+   */
+  String PORT_SWEEP_ENABLED =
+    MONITOR_KEY_PREFIX + "portsweep.enabled";
+
+  /**
+   * Port sweep key : comma separated list of host:port targets {@value}
+   */
+  String PORT_SWEEP_TARGETS =
+    MONITOR_KEY_PREFIX + "portsweep.targets";
+
+  /**
+   * Port sweep key : comma separated list of hosts, every one of which
+   * is swept on each of the ports in {@link #PORT_SWEEP_PORTS} {@value}
+   */
+  String PORT_SWEEP_HOSTS =
+    MONITOR_KEY_PREFIX + "portsweep.hosts";
+
+  /**
+   * Port sweep key : comma separated list of the ports to sweep
+   * on every host in {@link #PORT_SWEEP_HOSTS} {@value}
+   */
+  String PORT_SWEEP_PORTS =
+    MONITOR_KEY_PREFIX + "portsweep.ports";
+
+  /**
+   * Port sweep key : timeout of the connection to each target; 0 means
+   * no timeout {@value}
+   */
+  String PORT_SWEEP_CONNECT_TIMEOUT =
+    MONITOR_KEY_PREFIX + "portsweep.connect.timeout";
+
+  /**
+   * Port sweep key : the most connections to have in progress at a time {@value}
+   */
+  String PORT_SWEEP_CONNECTIONS =
+    MONITOR_KEY_PREFIX + "portsweep.connections";
+
+  /**
+   * Port sweep key : number of closed ports which can be tolerated
+   * before the sweep fails {@value}
+   */
+  String PORT_SWEEP_MAX_FAILURES =
+    MONITOR_KEY_PREFIX + "portsweep.max.failures";
+
+  /**
+   * Interval in milliseconds between live port sweeps;
+   * the probe interval is used if unset {@value}
+   */
+  String PORT_SWEEP_INTERVAL =
+    MONITOR_KEY_PREFIX + "portsweep.interval";
+
+  /**
+   * Default value if the key is not in the config file: {@value}
+   */
+  int PORT_SWEEP_CONNECTIONS_DEFAULT = 256;
+
   /**
    * default port for probes {@value}
    */
@@ -162,11 +455,34 @@ public interface MonitorKeys extends HadoopKeys {
   String LS_PROBE_PATH =
     MONITOR_KEY_PREFIX + "lsprobe.path";
 
+  /**
+   * List of paths for LS operations, one probe per path;
+   * overrides the single path when set Key: {@value}
+   */
+  String LS_PROBE_PATHS =
+    MONITOR_KEY_PREFIX + "lsprobe.paths";
+
   /**
    * Default path for LS operation Key: {@value}
    */
   String LS_PROBE_DEFAULT = "/";
 
+  /**
+   * Interval in milliseconds between live LS operations;
+   * the probe interval is used if unset Key: {@value}
+   */
+  String LS_PROBE_INTERVAL =
+    MONITOR_KEY_PREFIX + "lsprobe.interval";
+
+  /**
+   * How much of each path to list: "full" for the whole directory,
+   * "page" for the first page of the listing only, "stat" for the status
+   * of the path only. The last two cost the same however large the
+   * directory is. Key: {@value}
+   */
+  String LS_PROBE_MODE =
+    MONITOR_KEY_PREFIX + "lsprobe.mode";
+
   /**
    * Port probing key : bootstrap timeout -how long in milliseconds should the
    * port probing take to connect before the failure to connect is considered a
@@ -196,11 +512,32 @@ public interface MonitorKeys extends HadoopKeys {
   String WEB_PROBE_URL =
     MONITOR_KEY_PREFIX + "webprobe.url";
 
+  /**
+   * List of probe URLs, one probe per URL;
+   * overrides the single URL when set Key: {@value}
+   */
+  String WEB_PROBE_URLS =
+    MONITOR_KEY_PREFIX + "webprobe.urls";
+
   /**
    * Default path for web probe Key: {@value}
    */
   String WEB_PROBE_DEFAULT_URL = "http://localhost:50070/";
 
+  /**
+   * Interval in milliseconds between live web probes;
+   * the probe interval is used if unset Key: {@value}
+   */
+  String WEB_PROBE_INTERVAL =
+    MONITOR_KEY_PREFIX + "webprobe.interval";
+
+  /**
+   * Race a web request which is slower than usual with a second one
+   * Key: {@value}
+   */
+  String WEB_PROBE_HEDGE =
+    MONITOR_KEY_PREFIX + "webprobe.hedge";
+
   /**
    * min error code Key: {@value}
    */
@@ -219,6 +556,69 @@ public interface MonitorKeys extends HadoopKeys {
   String WEB_PROBE_CONNECT_TIMEOUT =
     MONITOR_KEY_PREFIX + "webprobe.connect.timeout";
 
+  /**
+   * Web probe key: timeout in milliseconds of any wait for the server to
+   * send data {@value}
+   */
+  String WEB_PROBE_READ_TIMEOUT =
+    MONITOR_KEY_PREFIX + "webprobe.read.timeout";
+
+  /**
+   * Default value if the key is not in the config file: {@value}
+   */
+  int WEB_PROBE_READ_TIMEOUT_DEFAULT = 5000;
+
+  /**
+   * Web probe key: timeout in milliseconds of the whole request, after which
+   * the connection is closed; 0 for none {@value}
+   */
+  String WEB_PROBE_TOTAL_TIMEOUT =
+    MONITOR_KEY_PREFIX + "webprobe.total.timeout";
+
+  /**
+   * Default value if the key is not in the config file: {@value}
+   */
+  int WEB_PROBE_TOTAL_TIMEOUT_DEFAULT = 10000;
+
+  /**
+   * Web probe key: request method, one of GET, HEAD and CONDITIONAL {@value}
+   */
+  String WEB_PROBE_METHOD =
+    MONITOR_KEY_PREFIX + "webprobe.method";
+
+  /**
+   * Web probe key: text which the body of the page must contain {@value}
+   */
+  String WEB_PROBE_BODY_CONTAINS =
+    MONITOR_KEY_PREFIX + "webprobe.body.contains";
+
+  /**
+   * Web probe key: regular expression which must match some of the body
+   * of the page {@value}
+   */
+  String WEB_PROBE_BODY_REGEX =
+    MONITOR_KEY_PREFIX + "webprobe.body.regex";
+
+  /**
+   * Web probe key: path of a value which must be in the JSON body of the
+   * page, such as <code>beans/&#42;/Safemode</code> {@value}
+   */
+  String WEB_PROBE_BODY_JSON_PATH =
+    MONITOR_KEY_PREFIX + "webprobe.body.json.path";
+
+  /**
+   * Web probe key: regular expression which the value at the JSON path
+   * must match; if unset, any value will do {@value}
+   */
+  String WEB_PROBE_BODY_JSON_VALUE =
+    MONITOR_KEY_PREFIX + "webprobe.body.json.value";
+
+  /**
+   * Web probe key: number of bytes of the body to check {@value}
+   */
+  String WEB_PROBE_BODY_LIMIT =
+    MONITOR_KEY_PREFIX + "webprobe.body.limit";
+
   /**
    * Default HTTP response code expected from the far end for
    * the endpoint to be considered live.
@@ -247,6 +647,27 @@ public interface MonitorKeys extends HadoopKeys {
   String JT_PROBE_ENABLED =
     MONITOR_KEY_PREFIX + "jtprobe.enabled";
 
+  /**
+   * Interval in milliseconds between live JT probes;
+   * the probe interval is used if unset Key: {@value}
+   */
+  String JT_PROBE_INTERVAL =
+    MONITOR_KEY_PREFIX + "jtprobe.interval";
+
+  /**
+   * Race a JT status request which is slower than usual with a second one
+   * Key: {@value}
+   */
+  String JT_PROBE_HEDGE =
+    MONITOR_KEY_PREFIX + "jtprobe.hedge";
+
+  /**
+   * JT probe key: the longest delay in milliseconds before reconnecting
+   * to a JobTracker after failures to connect {@value}
+   */
+  String JT_PROBE_RECONNECT_BACKOFF =
+    MONITOR_KEY_PREFIX + "jtprobe.reconnect.backoff";
+
   /**
    * Port probing key : bootstrap timeout -how long in milliseconds should the
    * port probing take to connect before the failure to connect is considered a
@@ -276,4 +697,372 @@ public interface MonitorKeys extends HadoopKeys {
   String PID_PROBE_PIDFILE =
     MONITOR_KEY_PREFIX + "pidprobe.pidfile";
 
+  /**
+   * Interval in milliseconds between live PID probes;
+   * the probe interval is used if unset Key: {@value}
+   */
+  String PID_PROBE_INTERVAL =
+    MONITOR_KEY_PREFIX + "pidprobe.interval";
+
+  /**
+   * Interval in milliseconds between the checks for the death of the
+   * process between PID probes; 0 to disable Key: {@value}
+   */
+  String PID_PROBE_WATCH_INTERVAL =
+    MONITOR_KEY_PREFIX + "pidprobe.watch.interval";
+
+  /**
+   * Default value if the key is not in the config file: {@value}
+   */
+  int PID_PROBE_WATCH_INTERVAL_DEFAULT = 100;
+
+  /**
+   * Probe enabled/disabled flag for the probe of the resources of the
+   * process in the PID file Key: {@value}
+   */
+  String PROC_PROBE_ENABLED =
+    MONITOR_KEY_PREFIX + "procprobe.enabled";
+
+  /**
+   * Interval in milliseconds between process resource probes;
+   * the probe interval is used if unset Key: {@value}
+   */
+  String PROC_PROBE_INTERVAL =
+    MONITOR_KEY_PREFIX + "procprobe.interval";
+
+  /**
+   * Percentage of one CPU at or above which the process is spinning;
+   * 0 to disable Key: {@value}
+   */
+  String PROC_PROBE_CPU_LIMIT =
+    MONITOR_KEY_PREFIX + "procprobe.cpu.limit";
+
+  /**
+   * Default value if the key is not in the config file: {@value}
+   */
+  int PROC_PROBE_CPU_LIMIT_DEFAULT = 0;
+
+  /**
+   * Time in milliseconds that the process must spin for before the
+   * probe fails Key: {@value}
+   */
+  String PROC_PROBE_CPU_DURATION =
+    MONITOR_KEY_PREFIX + "procprobe.cpu.duration";
+
+  /**
+   * Default value if the key is not in the config file: {@value}
+   */
+  int PROC_PROBE_CPU_DURATION_DEFAULT = 60000;
+
+  /**
+   * Time in milliseconds that the process can stay in uninterruptible
+   * sleep before the probe fails; 0 to disable Key: {@value}
+   */
+  String PROC_PROBE_BLOCKED_DURATION =
+    MONITOR_KEY_PREFIX + "procprobe.blocked.duration";
+
+  /**
+   * Default value if the key is not in the config file: {@value}
+   */
+  int PROC_PROBE_BLOCKED_DURATION_DEFAULT = 30000;
+
+  /**
+   * Percentage of the limit on open files of the process above
+   * which the probe fails; 0 to disable Key: {@value}
+   */
+  String PROC_PROBE_FD_PERCENT =
+    MONITOR_KEY_PREFIX + "procprobe.fd.percent";
+
+  /**
+   * Default value if the key is not in the config file: {@value}
+   */
+  int PROC_PROBE_FD_PERCENT_DEFAULT = 90;
+
+  /**
+   * Number of threads above which the probe fails; 0 to disable Key: {@value}
+   */
+  String PROC_PROBE_THREADS_MAX =
+    MONITOR_KEY_PREFIX + "procprobe.threads.max";
+
+  /**
+   * Default value if the key is not in the config file: {@value}
+   */
+  int PROC_PROBE_THREADS_MAX_DEFAULT = 0;
+
+  /**
+   * Probe enabled/disabled flag for the probe of the garbage collection
+   * of the JVM in the PID file Key: {@value}
+   */
+  String GC_PROBE_ENABLED =
+    MONITOR_KEY_PREFIX + "gcprobe.enabled";
+
+  /**
+   * Interval in milliseconds between GC probes;
+   * the probe interval is used if unset Key: {@value}
+   */
+  String GC_PROBE_INTERVAL =
+    MONITOR_KEY_PREFIX + "gcprobe.interval";
+
+  /**
+   * Directory holding the hsperfdata directories of the JVMs Key: {@value}
+   */
+  String GC_PROBE_PERFDATA_DIR =
+    MONITOR_KEY_PREFIX + "gcprobe.perfdata.dir";
+
+  /**
+   * Default value if the key is not in the config file: {@value}
+   */
+  String GC_PROBE_PERFDATA_DIR_DEFAULT = "/tmp";
+
+  /**
+   * Percentage of the time between GC probes spent collecting at or above
+   * which the JVM is in a GC storm; 0 to only count collections in progress
+   * Key: {@value}
+   */
+  String GC_PROBE_PAUSE_LIMIT =
+    MONITOR_KEY_PREFIX + "gcprobe.pause.limit";
+
+  /**
+   * Default value if the key is not in the config file: {@value}
+   */
+  int GC_PROBE_PAUSE_LIMIT_DEFAULT = 50;
+
+  /**
+   * Time in milliseconds added to the probe timeout and the ping deadline
+   * during, and after, a GC storm Key: {@value}
+   */
+  String GC_PROBE_TIMEOUT_EXTENSION =
+    MONITOR_KEY_PREFIX + "gcprobe.timeout.extension";
+
+  /**
+   * Default value if the key is not in the config file: {@value}
+   */
+  int GC_PROBE_TIMEOUT_EXTENSION_DEFAULT = 60000;
+
+  /**
+   * Percentage occupancy of the old generation after an old collection
+   * at or above which the GC probe fails; 0 to disable Key: {@value}
+   */
+  String GC_PROBE_HEAP_LIMIT =
+    MONITOR_KEY_PREFIX + "gcprobe.heap.limit";
+
+  /**
+   * Default value if the key is not in the config file: {@value}
+   */
+  int GC_PROBE_HEAP_LIMIT_DEFAULT = 0;
+
+  /**
+   * Probe enabled/disabled flag for the probe of JMX metrics Key: {@value}
+   */
+  String JMX_PROBE_ENABLED =
+    MONITOR_KEY_PREFIX + "jmxprobe.enabled";
+
+  /**
+   * URL of the /jmx page to fetch, with any query Key: {@value}
+   */
+  String JMX_PROBE_URL =
+    MONITOR_KEY_PREFIX + "jmxprobe.url";
+
+  /**
+   * Default value if the key is not in the config file: {@value}
+   */
+  String JMX_PROBE_DEFAULT_URL = "http://localhost:50070/jmx";
+
+  /**
+   * Rules the metrics must meet, separated by semicolons Key: {@value}
+   */
+  String JMX_PROBE_RULES =
+    MONITOR_KEY_PREFIX + "jmxprobe.rules";
+
+  /**
+   * Interval in milliseconds between JMX probes;
+   * the probe interval is used if unset Key: {@value}
+   */
+  String JMX_PROBE_INTERVAL =
+    MONITOR_KEY_PREFIX + "jmxprobe.interval";
+
+  /**
+   * Probe enabled/disabled flag for the NameNode latency probe Key: {@value}
+   */
+  String LATENCY_PROBE_ENABLED =
+    MONITOR_KEY_PREFIX + "latencyprobe.enabled";
+
+  /**
+   * Interval in milliseconds between latency probes;
+   * the probe interval is used if unset Key: {@value}
+   */
+  String LATENCY_PROBE_INTERVAL =
+    MONITOR_KEY_PREFIX + "latencyprobe.interval";
+
+  /**
+   * List of paths to time operations on Key: {@value}
+   */
+  String LATENCY_PROBE_PATHS =
+    MONITOR_KEY_PREFIX + "latencyprobe.paths";
+
+  /**
+   * Default value if the key is not in the config file: {@value}
+   */
+  String LATENCY_PROBE_PATHS_DEFAULT = "/";
+
+  /**
+   * List of operations to time on each path: getFileInfo,
+   * getContentSummary, listStatus Key: {@value}
+   */
+  String LATENCY_PROBE_OPERATIONS =
+    MONITOR_KEY_PREFIX + "latencyprobe.operations";
+
+  /**
+   * Default value if the key is not in the config file: {@value}
+   */
+  String LATENCY_PROBE_OPERATIONS_DEFAULT = "getFileInfo";
+
+  /**
+   * Largest number of recent latencies to judge; only those within the
+   * sustain period are judged Key: {@value}
+   */
+  String LATENCY_PROBE_WINDOW =
+    MONITOR_KEY_PREFIX + "latencyprobe.window";
+
+  /**
+   * Default value if the key is not in the config file: {@value}
+   */
+  int LATENCY_PROBE_WINDOW_DEFAULT = 100;
+
+  /**
+   * Limit in milliseconds of the 99th percentile latency; 0 for none Key: {@value}
+   */
+  String LATENCY_PROBE_P99 =
+    MONITOR_KEY_PREFIX + "latencyprobe.p99";
+
+  /**
+   * Default value if the key is not in the config file: {@value}
+   */
+  long LATENCY_PROBE_P99_DEFAULT = 2000;
+
+  /**
+   * Limit in milliseconds of the maximum latency; 0 for none Key: {@value}
+   */
+  String LATENCY_PROBE_MAX =
+    MONITOR_KEY_PREFIX + "latencyprobe.max";
+
+  /**
+   * Default value if the key is not in the config file: {@value}
+   */
+  long LATENCY_PROBE_MAX_DEFAULT = 10000;
+
+  /**
+   * Time in milliseconds that a latency limit must be exceeded for
+   * before the probe fails; latencies older than this are not judged Key: {@value}
+   */
+  String LATENCY_PROBE_SUSTAIN =
+    MONITOR_KEY_PREFIX + "latencyprobe.sustain";
+
+  /**
+   * Default value if the key is not in the config file: {@value}
+   */
+  long LATENCY_PROBE_SUSTAIN_DEFAULT = 60000;
+
+  /**
+   * Probe enabled/disabled flag for the HDFS write/read canary Key: {@value}
+   */
+  String CANARY_PROBE_ENABLED =
+    MONITOR_KEY_PREFIX + "canaryprobe.enabled";
+
+  /**
+   * Interval in milliseconds between canary probes Key: {@value}
+   */
+  String CANARY_PROBE_INTERVAL =
+    MONITOR_KEY_PREFIX + "canaryprobe.interval";
+
+  /**
+   * Default value if the key is not in the config file: {@value}
+   */
+  int CANARY_PROBE_INTERVAL_DEFAULT = 60000;
+
+  /**
+   * Directory in HDFS to write the canary file to Key: {@value}
+   */
+  String CANARY_PROBE_PATH =
+    MONITOR_KEY_PREFIX + "canaryprobe.path";
+
+  /**
+   * Default value if the key is not in the config file: {@value}
+   */
+  String CANARY_PROBE_PATH_DEFAULT = "/tmp/hmonitor-canary";
+
+  /**
+   * Size in KB of the canary file Key: {@value}
+   */
+  String CANARY_PROBE_SIZE =
+    MONITOR_KEY_PREFIX + "canaryprobe.size";
+
+  /**
+   * Default value if the key is not in the config file: {@value}
+   */
+  int CANARY_PROBE_SIZE_DEFAULT = 64;
+
+  /**
+   * Replication of the canary file; 0 for the default of the
+   * filesystem Key: {@value}
+   */
+  String CANARY_PROBE_REPLICATION =
+    MONITOR_KEY_PREFIX + "canaryprobe.replication";
+
+  /**
+   * Probe enabled/disabled flag for the raw Hadoop IPC ping Key: {@value}
+   */
+  String IPC_PROBE_ENABLED =
+    MONITOR_KEY_PREFIX + "ipcprobe.enabled";
+
+  /**
+   * Interval in milliseconds between IPC pings;
+   * the probe interval is used if unset Key: {@value}
+   */
+  String IPC_PROBE_INTERVAL =
+    MONITOR_KEY_PREFIX + "ipcprobe.interval";
+
+  /**
+   * List of services to ping: "namenode", "jobtracker" or both Key: {@value}
+   */
+  String IPC_PROBE_TARGETS =
+    MONITOR_KEY_PREFIX + "ipcprobe.targets";
+
+  /**
+   * Default value if the key is not in the config file: {@value}
+   */
+  String IPC_PROBE_TARGETS_DEFAULT = "namenode";
+
+  /**
+   * Timeout in milliseconds of the connect and of each read
+   * of an IPC ping Key: {@value}
+   */
+  String IPC_PROBE_TIMEOUT =
+    MONITOR_KEY_PREFIX + "ipcprobe.timeout";
+
+  /**
+   * Default value if the key is not in the config file: {@value}
+   */
+  int IPC_PROBE_TIMEOUT_DEFAULT = 5000;
+
+  /**
+   * User to name in the connection header; the user running
+   * the monitor if unset Key: {@value}
+   */
+  String IPC_PROBE_USER =
+    MONITOR_KEY_PREFIX + "ipcprobe.user";
+
+  /**
+   * Combine all the probes into one: "all", "any", "quorum" or "sequence";
+   * unset for separate probes Key: {@value}
+   */
+  String COMPOSITE_MODE =
+    MONITOR_KEY_PREFIX + "composite.mode";
+
+  /**
+   * Number of probes which must succeed in "quorum" mode Key: {@value}
+   */
+  String COMPOSITE_QUORUM =
+    MONITOR_KEY_PREFIX + "composite.quorum";
+
 }
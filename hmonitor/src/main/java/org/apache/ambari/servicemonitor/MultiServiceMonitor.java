@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.servicemonitor;
+
+import org.apache.ambari.servicemonitor.reporting.Reporter;
+import org.apache.ambari.servicemonitor.reporting.ReportingLoop;
+import org.apache.ambari.servicemonitor.utils.DaemonThreadFactory;
+import org.apache.ambari.servicemonitor.utils.Exit;
+import org.apache.ambari.servicemonitor.utils.ExitMainException;
+import org.apache.ambari.servicemonitor.utils.InterruptData;
+import org.apache.ambari.servicemonitor.utils.Interrupted;
+import org.apache.ambari.servicemonitor.utils.IrqHandler;
+import org.apache.ambari.servicemonitor.utils.MonitorUtils;
+import org.apache.ambari.servicemonitor.utils.ToolPlusImpl;
+import org.apache.ambari.servicemonitor.utils.ToolRunnerPlus;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * A monitor of many services in one process.
+ *
+ * The services are listed in {@link MonitorKeys#MONITOR_SERVICES}; each one
+ * has its own configuration file, which is layered on top of the
+ * configuration of the monitor itself, and so can be the same file
+ * a single-service {@link Monitor} would be run with.
+ *
+ * Rather than two threads per service, the probe workers of all services
+ * share one small scheduler, and their reporting loops share a single thread
+ * of their own, so that hung probes cannot hold back the reports of the hang.
+ *
+ * Note that a reporter which exits the process on a probe failure
+ * stops the monitoring of every service, not just the failed one.
+ */
+public class MultiServiceMonitor extends ToolPlusImpl implements MonitorKeys, Interrupted {
+
+  private static final Log LOG = LogFactory.getLog(MultiServiceMonitor.class);
+
+  private IrqHandler sigint;
+  private IrqHandler sigterm;
+  private final List<ReportingLoop> reportingLoops = new ArrayList<ReportingLoop>();
+  private ScheduledExecutorService scheduler;
+  private ScheduledExecutorService reportScheduler;
+  private final CountDownLatch terminated = new CountDownLatch(1);
+
+  @Override
+  public String getToolName() {
+    return "MultiServiceMonitor";
+  }
+
+  @Override
+  public int run(String[] args) throws Exception {
+    sigint = new IrqHandler(IrqHandler.CONTROL_C, this);
+    sigterm = new IrqHandler("TERM", this);
+    //this method does not return until the monitor is interrupted
+    execMonitor();
+    return 0;
+  }
+
+  /**
+   * Create the reporting loops of all services, schedule them and then
+   * block until the monitor is shut down.
+   * @throws IOException problems
+   * @throws ExitMainException an explicit exit exception
+   */
+  public void execMonitor() throws IOException {
+    Configuration conf = getConf();
+    String[] services = conf.getStrings(MONITOR_SERVICES);
+    if (services == null || services.length == 0) {
+      throw new ExitMainException(Exit.EXIT_ERROR,
+                                  "No services listed in " + MONITOR_SERVICES);
+    }
+    int threads = conf.getInt(MONITOR_SCHEDULER_THREADS, SCHEDULER_THREADS_DEFAULT);
+    LOG.info("Monitoring " + services.length + " service"
+             + MonitorUtils.toPlural(services.length)
+             + " with " + threads + " scheduler thread" + MonitorUtils.toPlural(threads));
+
+    synchronized (this) {
+      for (String service : services) {
+        String name = service.trim();
+        Configuration serviceConf = createServiceConfiguration(conf, name);
+        Reporter reporter = MonitorUtils.createReporter(serviceConf);
+        ReportingLoop loop = Monitor.createReportingLoop(name, serviceConf, reporter);
+        if (!loop.startReporting()) {
+          throw new ExitMainException(
+            name + ": failed to start monitoring with reporter " + reporter);
+        }
+        reportingLoops.add(loop);
+      }
+      scheduler = Executors.newScheduledThreadPool(threads,
+                                                   new DaemonThreadFactory("monitor scheduler"));
+      reportScheduler = Executors.newSingleThreadScheduledExecutor(
+        new DaemonThreadFactory("monitor reports"));
+      for (ReportingLoop loop : reportingLoops) {
+        loop.schedule(scheduler, reportScheduler);
+      }
+    }
+    try {
+      terminated.await();
+    } catch (InterruptedException e) {
+      close();
+    }
+  }
+
+  /**
+   * Create the configuration of a service: the monitor's own configuration
+   * with that of the service layered on top.
+   * @param conf monitor configuration
+   * @param name service name
+   * @return a new configuration
+   * @throws ExitMainException if the service has no configuration file
+   */
+  public static Configuration createServiceConfiguration(Configuration conf,
+                                                         String name) throws
+                                                                      ExitMainException {
+    String key = MONITOR_SERVICE_PREFIX + name + MONITOR_SERVICE_CONF_SUFFIX;
+    String file = conf.get(key);
+    if (file == null) {
+      throw new ExitMainException(Exit.EXIT_ERROR,
+                                  "No configuration file for service " + name
+                                  + " in " + key);
+    }
+    Configuration serviceConf = new Configuration(conf);
+    serviceConf.addResource(new Path(file));
+    return serviceConf;
+  }
+
+  /**
+   * Stop all the reporting loops and the scheduler, and close the clients
+   * the probes share
+   */
+  public synchronized void close() {
+    for (ReportingLoop loop : reportingLoops) {
+      loop.close();
+    }
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+    if (reportScheduler != null) {
+      reportScheduler.shutdownNow();
+    }
+    Monitor.closeSharedClients();
+    terminated.countDown();
+  }
+
+  /**
+   * An interrupt triggers a clean shutdown
+   *
+   * @param interruptData the signal that was raised
+   */
+  @Override
+  public void interrupted(InterruptData interruptData) {
+    LOG.fatal(interruptData.toString() + " received -shutting down.");
+    close();
+    Exit.exitProcess(Exit.EXIT_SUCCESS, getToolName() + " terminated");
+  }
+
+  public static void main(String[] args) {
+    ToolRunnerPlus
+      .runAndExit(new Configuration(),
+                  new MultiServiceMonitor(),
+                  args);
+  }
+}
@@ -19,7 +19,7 @@ package org.apache.ambari.servicemonitor.clients;
 
 import org.apache.ambari.servicemonitor.utils.DFSUtils;
 import org.apache.ambari.servicemonitor.utils.Exit;
-import org.apache.ambari.servicemonitor.utils.OnDemandFS;
+import org.apache.ambari.servicemonitor.utils.DfsClientManager;
 import org.apache.ambari.servicemonitor.utils.OptionHelper;
 import org.apache.ambari.servicemonitor.utils.ToolRunnerPlus;
 import org.apache.commons.cli.CommandLine;
@@ -28,7 +28,6 @@ import org.apache.commons.cli.Options;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
-import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.hdfs.DistributedFileSystem;
 import org.apache.hadoop.hdfs.protocol.FSConstants;
 
@@ -39,7 +38,7 @@ public class DFSSafeMode extends JobTrackerAction {
   private static final Log LOG = LogFactory.getLog(DFSSafeMode.class);
   private boolean safeMode;
   private boolean toggle;
-  protected OnDemandFS cachedFS;
+  protected final DfsClientManager clients = DfsClientManager.getInstance();
 
   @Override
   protected Options createChildOptions(Options options) {
@@ -60,12 +59,11 @@ public class DFSSafeMode extends JobTrackerAction {
   protected void setup() throws IOException {
     super.setup();
     DFSUtils.makeDfsCallsNonBlocking(getConf());
-    cachedFS = new OnDemandFS(getConf());
   }
 
   @Override
   protected void teardown() throws IOException {
-    cachedFS.close();
+    clients.close(getConf());
     super.teardown();
   }
 
@@ -75,10 +73,9 @@ public class DFSSafeMode extends JobTrackerAction {
     Operation operation = new Operation("DFS safemode to " + safeMode);
 
     started(operation);
+    DistributedFileSystem hdfs = null;
     try {
-      FileSystem result;
-      result = cachedFS.getOrCreate();
-      DistributedFileSystem hdfs = (DistributedFileSystem) result;
+      hdfs = clients.get(getConf());
       if (toggle) {
         boolean currentSM = hdfs.setSafeMode(FSConstants.SafeModeAction.SAFEMODE_GET);
         safeMode = !currentSM;
@@ -92,6 +89,7 @@ public class DFSSafeMode extends JobTrackerAction {
       throw e;
     } catch (IOException e) {
       //all other outcomes are failures
+      clients.failed(hdfs, e);
       operation.failure(e);
     }
     return operation;
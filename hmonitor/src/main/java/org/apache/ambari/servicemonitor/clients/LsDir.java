@@ -18,7 +18,7 @@
 package org.apache.ambari.servicemonitor.clients;
 
 import org.apache.ambari.servicemonitor.utils.Exit;
-import org.apache.ambari.servicemonitor.utils.OnDemandFS;
+import org.apache.ambari.servicemonitor.utils.DfsClientManager;
 import org.apache.ambari.servicemonitor.utils.ToolRunnerPlus;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.Option;
@@ -29,6 +29,7 @@ import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
 
 import java.io.IOException;
 import java.util.Date;
@@ -39,7 +40,7 @@ public class LsDir extends BaseClient {
 
   public String dirName = "/";
   private Path dir;
-  protected OnDemandFS cachedFS;
+  protected final DfsClientManager clients = DfsClientManager.getInstance();
 
   @Override
   protected Options createChildOptions(Options options) {
@@ -61,12 +62,11 @@ public class LsDir extends BaseClient {
   protected void setup() throws IOException {
     super.setup();
     dir = new Path(dirName);
-    cachedFS = new OnDemandFS(getConf());
   }
 
   @Override
   protected void teardown() throws IOException {
-    cachedFS.close();
+    clients.close(getConf());
     super.teardown();
   }
 
@@ -76,10 +76,9 @@ public class LsDir extends BaseClient {
     Operation operation = new Operation("ls " + dir);
 
     started(operation);
+    DistributedFileSystem fs = null;
     try {
-      FileSystem result;
-      result = cachedFS.getOrCreate();
-      FileSystem fs = result;
+      fs = clients.get(getConf());
       FileStatus dirStatus = fs.getFileStatus(dir);
       StringBuilder builder = new StringBuilder();
       builder.append("File ").append(dirStatus.getPath());
@@ -94,6 +93,7 @@ public class LsDir extends BaseClient {
       throw e;
     } catch (IOException e) {
       //all other outcomes are failures
+      clients.failed(fs, e);
       operation.failure(e);
     }
     return operation;
@@ -19,15 +19,29 @@ package org.apache.ambari.servicemonitor.probes;
 
 import org.apache.ambari.servicemonitor.utils.DFSUtils;
 import org.apache.ambari.servicemonitor.utils.MonitorUtils;
+import org.apache.ambari.servicemonitor.utils.RpcProxyHolder;
 import org.apache.hadoop.conf.Configuration;
 
 import java.io.IOException;
 import java.net.URI;
 
+/**
+ * Base class of the JobTracker probes. Their RPC proxies are shared through
+ * {@link JTProxies} and kept from one ping to the next; the time to get a
+ * proxy -which is only more than nothing when it has to be created- and the
+ * time of the RPC call itself are measured separately. They are measured
+ * per ping and only published once it has finished, so two pings of a
+ * hedged probe do not mix their timings.
+ */
 public abstract class AbstractJTProbe extends Probe {
   protected String host;
   protected int port;
   protected URI jturi;
+  protected final long maxBackoff;
+  /**
+   * Connect and call times of the last ping to finish
+   */
+  private volatile long[] lastTimings = {-1, -1};
 
   public AbstractJTProbe(
     String name,
@@ -38,6 +52,37 @@ public abstract class AbstractJTProbe extends Probe {
     jturi = MonitorUtils.getJTURI(jtpath);
     host = jturi.getHost();
     port = jturi.getPort();
+    maxBackoff = conf.getLong(JT_PROBE_RECONNECT_BACKOFF,
+                              RpcProxyHolder.BACKOFF_MAX_DEFAULT);
+  }
+
+  /**
+   * Get the time taken to get a proxy in the last ping
+   * @return the time in milliseconds, or -1 if it did not get that far
+   */
+  public long getConnectTime() {
+    return lastTimings[0];
+  }
+
+  /**
+   * Get the time of the RPC call of the last ping
+   * @return the time in milliseconds, or -1 if it did not get that far
+   */
+  public long getCallTime() {
+    return lastTimings[1];
+  }
+
+  /**
+   * Publish the timings of a finished ping
+   * @param connectTime time to get a proxy, or -1
+   * @param callTime time of the RPC call, or -1
+   */
+  protected void setTimings(long connectTime, long callTime) {
+    lastTimings = new long[]{connectTime, callTime};
+  }
+
+  protected static String describeTimings(long connectTime, long callTime) {
+    return "connect=" + connectTime + "ms rpc=" + callTime + "ms";
   }
 
 }
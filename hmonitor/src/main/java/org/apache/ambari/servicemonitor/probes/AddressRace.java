@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.servicemonitor.probes;
+
+import org.apache.ambari.servicemonitor.utils.MonitorUtils;
+import org.apache.hadoop.io.IOUtils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+
+/**
+ * Connect to whichever of the addresses of a host answers first.
+ *
+ * This is done in the manner of "happy eyeballs": the addresses are
+ * tried in order, and the next one is started when the stagger delay has
+ * passed without an answer, or as soon as an earlier attempt fails. The
+ * attempts then race each other until one connects or the timeout passes.
+ * A host with one dead address among several is still found to be live,
+ * in about the stagger delay rather than the connect timeout.
+ */
+public final class AddressRace {
+
+  /**
+   * Default delay in milliseconds before the next address is tried: {@value}
+   */
+  public static final int STAGGER_DEFAULT = 250;
+
+  private AddressRace() {
+  }
+
+  /**
+   * Connect to the first address which answers, and close the connection
+   * @param addresses addresses of the host
+   * @param port port
+   * @param timeout timeout in milliseconds of the whole race; as with
+   * {@link java.net.Socket#connect(java.net.SocketAddress, int)}, 0 means
+   * no timeout
+   * @param stagger delay in milliseconds before the next address is tried
+   * @return the address which answered
+   * @throws IOException the failure of the last address to fail, or a
+   * SocketTimeoutException if none answered within the timeout
+   */
+  public static InetSocketAddress connect(InetAddress[] addresses,
+                                          int port,
+                                          int timeout,
+                                          int stagger) throws IOException {
+    if (addresses.length == 0) {
+      throw new IOException("No addresses to connect to");
+    }
+    long deadline = timeout > 0 ? now() + timeout : Long.MAX_VALUE;
+    IOException lastFailure = null;
+    Selector selector = Selector.open();
+    try {
+      int next = 0;
+      int pending = 0;
+      long nextStart = now();
+      while (true) {
+        long now = now();
+        if (next < addresses.length && (pending == 0 || now >= nextStart)) {
+          InetSocketAddress target = new InetSocketAddress(addresses[next++], port);
+          SocketChannel channel = null;
+          try {
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            if (channel.connect(target)) {
+              IOUtils.closeStream(channel);
+              return target;
+            }
+            channel.register(selector, SelectionKey.OP_CONNECT, target);
+            pending++;
+          } catch (IOException e) {
+            IOUtils.closeStream(channel);
+            lastFailure = e;
+          }
+          nextStart = now + stagger;
+          continue;
+        }
+        if (pending == 0) {
+          //every address has failed
+          throw lastFailure;
+        }
+        if (now >= deadline) {
+          throw new SocketTimeoutException("No answer from any of " + addresses.length
+                                           + " addresses after "
+                                           + MonitorUtils.millisToHumanTime(timeout));
+        }
+        long wake = deadline;
+        if (next < addresses.length) {
+          wake = Math.min(wake, nextStart);
+        }
+        if (wake == Long.MAX_VALUE) {
+          selector.select();
+        } else {
+          selector.select(Math.max(1, wake - now));
+        }
+        if (Thread.currentThread().isInterrupted()) {
+          throw new InterruptedIOException("Interrupted connecting to port " + port);
+        }
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+          SelectionKey key = keys.next();
+          keys.remove();
+          try {
+            InetSocketAddress connected = finishConnect(key);
+            if (connected != null) {
+              return connected;
+            }
+          } catch (IOException e) {
+            lastFailure = e;
+            pending--;
+            //try the next address at once
+            nextStart = now();
+          }
+        }
+      }
+    } finally {
+      for (SelectionKey key : selector.keys()) {
+        IOUtils.closeStream(key.channel());
+      }
+      try {
+        selector.close();
+      } catch (IOException ignored) {
+        //nothing to do
+      }
+    }
+  }
+
+  /**
+   * Finish the connect of a key which the selector has found ready.
+   * The key is cancelled and its channel closed once the connect has
+   * succeeded or failed; a connect still in progress stays registered.
+   * This is public for testing.
+   * @param key key of the channel, with the target address attached
+   * @return the address connected to, or null if the connect is still
+   * in progress
+   * @throws IOException if the connect failed
+   */
+  public static InetSocketAddress finishConnect(SelectionKey key) throws IOException {
+    SocketChannel channel = (SocketChannel) key.channel();
+    boolean connected = false;
+    try {
+      connected = channel.finishConnect();
+    } catch (IOException e) {
+      key.cancel();
+      IOUtils.closeStream(channel);
+      throw e;
+    }
+    if (!connected) {
+      return null;
+    }
+    key.cancel();
+    IOUtils.closeStream(channel);
+    return (InetSocketAddress) key.attachment();
+  }
+
+  private static long now() {
+    return System.currentTimeMillis();
+  }
+}
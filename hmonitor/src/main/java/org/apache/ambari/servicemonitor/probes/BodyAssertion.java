@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.servicemonitor.probes;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An assertion about the body of a web page, checked as the body is read.
+ *
+ * An assertion reads no more of the body than it needs to: it stops as soon
+ * as it has been decided, and it reads at most the limit of bytes -an
+ * assertion which has not held by then has failed. The body is never
+ * buffered whole, so a large status page costs the monitor no more heap
+ * than a small one.
+ */
+public abstract class BodyAssertion {
+
+  /**
+   * Default number of bytes of a body to check: {@value}
+   */
+  public static final int LIMIT_DEFAULT = 1024 * 1024;
+
+  private final int limit;
+
+  protected BodyAssertion(int limit) {
+    this.limit = limit;
+  }
+
+  public int getLimit() {
+    return limit;
+  }
+
+  /**
+   * Check the assertion against a body
+   * @param body the body; it is not closed
+   * @param charset the charset of the body, from the response
+   * @return true iff the assertion holds
+   * @throws IOException on a failure to read the body, or if it can not
+   * be parsed
+   */
+  public boolean check(InputStream body, String charset) throws IOException {
+    return test(new LimitedInputStream(body, limit), charset);
+  }
+
+  /**
+   * Test the assertion, reading no more than is needed to decide it
+   * @param body the body, which ends at the limit
+   * @param charset the charset of the body
+   * @return true iff the assertion holds
+   * @throws IOException on a failure to read the body, or if it can not
+   * be parsed
+   */
+  protected abstract boolean test(InputStream body, String charset) throws IOException;
+
+  /**
+   * Describe the assertion, for the status of a failed probe
+   * @return a description
+   */
+  public abstract String describe();
+
+  @Override
+  public String toString() {
+    return describe();
+  }
+
+  /**
+   * A stream which ends after a number of bytes
+   */
+  private static final class LimitedInputStream extends FilterInputStream {
+    private int remaining;
+
+    private LimitedInputStream(InputStream in, int limit) {
+      super(in);
+      remaining = limit;
+    }
+
+    @Override
+    public int read() throws IOException {
+      if (remaining <= 0) {
+        return -1;
+      }
+      int read = super.read();
+      if (read >= 0) {
+        remaining--;
+      }
+      return read;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (remaining <= 0) {
+        return -1;
+      }
+      int read = super.read(b, off, Math.min(len, remaining));
+      if (read > 0) {
+        remaining -= read;
+      }
+      return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      long skipped = super.skip(Math.min(n, remaining));
+      remaining -= skipped;
+      return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+      return Math.min(super.available(), remaining);
+    }
+
+    @Override
+    public boolean markSupported() {
+      return false;
+    }
+
+    @Override
+    public void close() {
+      //the caller owns the stream
+    }
+  }
+}
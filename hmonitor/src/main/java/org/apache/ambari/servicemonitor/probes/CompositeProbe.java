@@ -0,0 +1,322 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.ambari.servicemonitor.probes;
+
+import org.apache.ambari.servicemonitor.reporting.ProbeStatus;
+import org.apache.ambari.servicemonitor.utils.DaemonThreadFactory;
+import org.apache.ambari.servicemonitor.utils.ExitMainException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A probe made of other probes.
+ * <ul>
+ *   <li>{@link Mode#ALL}: every child must succeed.</li>
+ *   <li>{@link Mode#ANY}: one child must succeed.</li>
+ *   <li>{@link Mode#QUORUM}: k of the n children must succeed.</li>
+ *   <li>{@link Mode#SEQUENCE}: every child must succeed; they are pinged in
+ *   order, and the first failure ends the ping. Put the cheap probes first,
+ *   so that a closed port is not followed by the timeouts of the RPC probes
+ *   behind it.</li>
+ * </ul>
+ * In the first three modes the children are pinged concurrently, and the
+ * ping ends as soon as its outcome is decided; the pings still running are
+ * then interrupted. A child whose last ping has still not returned is not
+ * pinged again, but counted as failed.
+ * <p/>
+ * The children are scheduled as part of the composite: their own intervals
+ * are not used.
+ */
+public class CompositeProbe extends Probe {
+  private static final Log LOG = LogFactory.getLog(CompositeProbe.class);
+
+  /**
+   * How the outcomes of the children are combined
+   */
+  public enum Mode {
+    ALL,
+    ANY,
+    QUORUM,
+    SEQUENCE
+  }
+
+  private final Mode mode;
+  private final List<Probe> children;
+  private final int quorum;
+  /**
+   * The children whose pings are running; guarded by itself
+   */
+  private final Set<Probe> running = new HashSet<Probe>();
+  private ThreadPoolExecutor executor;
+
+  /**
+   * Create a composite probe
+   * @param mode mode
+   * @param quorum number of children which must succeed in {@link Mode#QUORUM}
+   * mode; ignored in the others
+   * @param children the child probes
+   * @param conf configuration
+   * @throws ExitMainException if there are no children or the quorum is out of range
+   */
+  public CompositeProbe(Mode mode, int quorum, List<Probe> children, Configuration conf)
+    throws ExitMainException {
+    super("Composite probe", conf);
+    int size = children.size();
+    if (size == 0) {
+      throw new ExitMainException("No probes to combine");
+    }
+    this.mode = mode;
+    this.children = new ArrayList<Probe>(children);
+    switch (mode) {
+      case ANY:
+        this.quorum = 1;
+        break;
+      case QUORUM:
+        if (quorum < 1 || quorum > size) {
+          throw new ExitMainException("Quorum " + quorum + " is not between 1 and "
+                                      + size);
+        }
+        this.quorum = quorum;
+        break;
+      default:
+        this.quorum = size;
+    }
+    StringBuilder builder = new StringBuilder();
+    builder.append(mode).append(" of ").append(size).append(" probes");
+    if (mode == Mode.QUORUM) {
+      builder.append(" (").append(this.quorum).append(" needed)");
+    }
+    setName("Composite probe: " + builder);
+  }
+
+  /**
+   * Combine probes as the configuration says
+   * @param conf configuration
+   * @param children the child probes
+   * @return the composite probe
+   * @throws ExitMainException if the mode is unknown or the quorum invalid
+   */
+  public static CompositeProbe createProbe(Configuration conf, List<Probe> children)
+    throws ExitMainException {
+    String modeName = conf.get(COMPOSITE_MODE, "").trim();
+    Mode mode;
+    try {
+      mode = Mode.valueOf(modeName.toUpperCase());
+    } catch (IllegalArgumentException e) {
+      throw new ExitMainException("Unknown " + COMPOSITE_MODE + ": \"" + modeName + "\"");
+    }
+    return new CompositeProbe(mode, conf.getInt(COMPOSITE_QUORUM, 1), children, conf);
+  }
+
+  public Mode getMode() {
+    return mode;
+  }
+
+  public int getQuorum() {
+    return quorum;
+  }
+
+  public List<Probe> getChildren() {
+    return children;
+  }
+
+  @Override
+  public void init() throws IOException {
+    for (Probe child : children) {
+      child.init();
+    }
+  }
+
+  /**
+   * Forward the ping requests of the children as requests for this probe
+   * @param pingRequestHandler handler or null
+   */
+  @Override
+  public void setPingRequestHandler(PingRequestHandler pingRequestHandler) {
+    super.setPingRequestHandler(pingRequestHandler);
+    PingRequestHandler forwarder = null;
+    if (pingRequestHandler != null) {
+      forwarder = new PingRequestHandler() {
+        @Override
+        public void pingRequested(Probe probe) {
+          requestPing();
+        }
+      };
+    }
+    for (Probe child : children) {
+      child.setPingRequestHandler(forwarder);
+    }
+  }
+
+  @Override
+  public ProbeStatus ping(boolean livePing) {
+    if (mode == Mode.SEQUENCE) {
+      return pingInSequence(livePing);
+    }
+    return pingConcurrently(livePing);
+  }
+
+  /**
+   * Ping the children in order, stopping at the first failure
+   * @param livePing is the ping live
+   * @return the status
+   */
+  private ProbeStatus pingInSequence(boolean livePing) {
+    ProbeStatus status = new ProbeStatus();
+    int pinged = 0;
+    for (Probe child : children) {
+      ProbeStatus childStatus = child.ping(livePing);
+      pinged++;
+      if (!childStatus.isSuccess()) {
+        status.fail(this, new IOException(getName() + ": " + describe(childStatus)
+                                          + "; skipped " + (children.size() - pinged)
+                                          + " probe(s)", childStatus.getThrown()));
+        return status;
+      }
+    }
+    status.succeed(this);
+    status.setMessage(getName() + ": all succeeded");
+    return status;
+  }
+
+  /**
+   * Ping the children concurrently, until the outcome is known
+   * @param livePing is the ping live
+   * @return the status
+   */
+  private ProbeStatus pingConcurrently(final boolean livePing) {
+    ProbeStatus status = new ProbeStatus();
+    int size = children.size();
+    CompletionService<ProbeStatus> pings =
+      new ExecutorCompletionService<ProbeStatus>(getExecutor());
+    List<Future<ProbeStatus>> submitted = new ArrayList<Future<ProbeStatus>>(size);
+    int successes = 0;
+    int failures = 0;
+    ProbeStatus firstFailure = null;
+    synchronized (running) {
+      for (final Probe child : children) {
+        if (running.contains(child)) {
+          LOG.debug("Last ping of " + child.getName() + " has not returned");
+          failures++;
+          if (firstFailure == null) {
+            firstFailure = new ProbeStatus();
+            firstFailure.fail(child, new IOException(
+              "Last ping of " + child.getName() + " has not returned"));
+          }
+          continue;
+        }
+        Future<ProbeStatus> ping = pings.submit(new Callable<ProbeStatus>() {
+          @Override
+          public ProbeStatus call() throws Exception {
+            synchronized (running) {
+              running.add(child);
+            }
+            try {
+              return child.ping(livePing);
+            } finally {
+              synchronized (running) {
+                running.remove(child);
+              }
+            }
+          }
+        });
+        submitted.add(ping);
+      }
+    }
+    try {
+      int outstanding = submitted.size();
+      while (successes < quorum && failures <= size - quorum && outstanding > 0) {
+        Future<ProbeStatus> done = pings.take();
+        outstanding--;
+        ProbeStatus childStatus;
+        try {
+          childStatus = done.get();
+        } catch (ExecutionException e) {
+          childStatus = new ProbeStatus();
+          childStatus.fail(this, e.getCause());
+        }
+        if (childStatus.isSuccess()) {
+          successes++;
+        } else {
+          failures++;
+          if (firstFailure == null) {
+            firstFailure = childStatus;
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      status.fail(this, new IOException(getName() + ": interrupted"));
+      return status;
+    } finally {
+      //the outcome is known: stop the pings which are still running
+      for (Future<ProbeStatus> ping : submitted) {
+        ping.cancel(true);
+      }
+    }
+    String counts = successes + " succeeded, " + failures + " failed";
+    if (successes >= quorum) {
+      status.succeed(this);
+      status.setMessage(getName() + ": " + counts);
+    } else {
+      String cause = firstFailure != null ? "; " + describe(firstFailure) : "";
+      status.fail(this, new IOException(getName() + ": " + counts + cause,
+                                        firstFailure != null
+                                        ? firstFailure.getThrown() : null));
+    }
+    return status;
+  }
+
+  /**
+   * Describe the failure of a child
+   * @param failure status of the child
+   * @return the text of the exception, or the message if there was none
+   */
+  private static String describe(ProbeStatus failure) {
+    Throwable thrown = failure.getThrown();
+    return thrown != null ? thrown.getMessage() : failure.getMessage();
+  }
+
+  private synchronized ThreadPoolExecutor getExecutor() {
+    if (executor == null) {
+      //one thread per child is enough, as a child is never pinged twice at once
+      int size = children.size();
+      executor = new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS,
+                                        new LinkedBlockingQueue<Runnable>(),
+                                        new DaemonThreadFactory("composite probe"));
+      executor.allowCoreThreadTimeOut(true);
+    }
+    return executor;
+  }
+}
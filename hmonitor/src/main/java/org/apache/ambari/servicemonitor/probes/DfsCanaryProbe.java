@@ -0,0 +1,221 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.servicemonitor.probes;
+
+import org.apache.ambari.servicemonitor.reporting.ProbeStatus;
+import org.apache.ambari.servicemonitor.utils.DFSUtils;
+import org.apache.ambari.servicemonitor.utils.DfsClientManager;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.Random;
+
+/**
+ * Writes a small file to HDFS and reads it back, which is the only probe to
+ * go through the DataNode pipeline: a NameNode can answer every metadata
+ * call while no block can be written.
+ * <p/>
+ * Each ping creates a file under a dedicated directory, writes one chunk
+ * and syncs it -which allocates a block and sets up the pipeline-, writes
+ * and syncs the rest, closes the file, reads it back and compares it with
+ * what was written, and deletes it. The DFS client verifies the checksums
+ * of the blocks as it reads them. Each step is timed, and the times are
+ * part of the status. The client is shared through the
+ * {@link DfsClientManager}.
+ * <p/>
+ * This is far more expensive than a metadata probe, so it is normally
+ * run less often.
+ */
+public class DfsCanaryProbe extends Probe {
+  private static final Log LOG = LogFactory.getLog(DfsCanaryProbe.class);
+
+  /**
+   * Size of the first chunk, which is synced to set up the pipeline: {@value}
+   */
+  public static final int FIRST_CHUNK = 512;
+
+  private final Path file;
+  private final short replication;
+  private final byte[] data;
+  private final DfsClientManager clients = DfsClientManager.getInstance();
+
+  /* the times of the steps of the last ping, or -1 if the step was not reached */
+  private volatile long createTime = -1;
+  private volatile long pipelineTime = -1;
+  private volatile long writeTime = -1;
+  private volatile long closeTime = -1;
+  private volatile long readTime = -1;
+  private volatile long deleteTime = -1;
+
+  /**
+   * Create a canary
+   * @param conf configuration
+   * @param dir directory to write the file to
+   * @param size number of bytes to write
+   * @param replication replication of the file; 0 for the default
+   * @throws IOException on a failure to configure the client
+   */
+  public DfsCanaryProbe(Configuration conf, Path dir, int size, short replication)
+      throws IOException {
+    super("DfsCanaryProbe " + FileSystem.getDefaultUri(conf) + dir, conf);
+    //make sure the probe doesn't block, regardless of
+    //any site configurations
+    DFSUtils.makeDfsCallsNonBlocking(conf);
+    //the name is unique to this host, so that monitors can share a directory
+    file = new Path(dir, "canary-" + InetAddress.getLocalHost().getHostName()
+                         + "-" + System.identityHashCode(this));
+    this.replication = replication;
+    data = new byte[Math.max(FIRST_CHUNK, size)];
+    new Random(size).nextBytes(data);
+  }
+
+  public Path getFile() {
+    return file;
+  }
+
+  @Override
+  public ProbeStatus ping(boolean livePing) {
+    ProbeStatus status = new ProbeStatus();
+    createTime = pipelineTime = writeTime = closeTime = readTime = deleteTime = -1;
+    DistributedFileSystem hdfs = null;
+    boolean created = false;
+    try {
+      hdfs = clients.get(conf);
+      long started = now();
+      FSDataOutputStream out =
+        hdfs.create(file, true, conf.getInt("io.file.buffer.size", 4096),
+                    replication > 0 ? replication : hdfs.getDefaultReplication(),
+                    hdfs.getDefaultBlockSize());
+      created = true;
+      long step = now();
+      createTime = step - started;
+      try {
+        out.write(data, 0, FIRST_CHUNK);
+        out.sync();
+        pipelineTime = now() - step;
+        step = now();
+        out.write(data, FIRST_CHUNK, data.length - FIRST_CHUNK);
+        out.sync();
+        writeTime = now() - step;
+      } finally {
+        step = now();
+        out.close();
+        closeTime = now() - step;
+      }
+      step = now();
+      verify(hdfs);
+      readTime = now() - step;
+      step = now();
+      created = !hdfs.delete(file, false);
+      deleteTime = now() - step;
+      status.succeed(this);
+      status.setMessage(getName() + ": wrote and read " + data.length + " bytes; "
+                        + describeTimings());
+    } catch (IOException e) {
+      clients.failed(hdfs, e);
+      status.fail(this, new IOException(getName() + " : " + e + "; " + describeTimings(), e));
+      LOG.debug("Failure to probe " + getName());
+    } finally {
+      if (created && hdfs != null) {
+        try {
+          hdfs.delete(file, false);
+        } catch (IOException e) {
+          LOG.debug("Failed to delete " + file + ": " + e);
+        }
+      }
+    }
+    return status;
+  }
+
+  /**
+   * Read the file back and compare it with what was written
+   * @param hdfs client
+   * @throws IOException on a read failure, a checksum failure or a mismatch
+   */
+  private void verify(DistributedFileSystem hdfs) throws IOException {
+    FSDataInputStream in = hdfs.open(file);
+    try {
+      byte[] buffer = new byte[4096];
+      int offset = 0;
+      int read;
+      while ((read = in.read(buffer)) >= 0) {
+        for (int i = 0; i < read; i++) {
+          if (offset + i >= data.length || buffer[i] != data[offset + i]) {
+            throw new IOException("Data read from " + file + " differs from that written at "
+                                  + (offset + i));
+          }
+        }
+        offset += read;
+      }
+      if (offset != data.length) {
+        throw new EOFException("Read " + offset + " bytes of " + data.length + " from " + file);
+      }
+    } finally {
+      in.close();
+    }
+  }
+
+  private String describeTimings() {
+    return "create=" + createTime + "ms"
+           + " pipeline=" + pipelineTime + "ms"
+           + " write=" + writeTime + "ms"
+           + " close=" + closeTime + "ms"
+           + " read=" + readTime + "ms"
+           + " delete=" + deleteTime + "ms";
+  }
+
+  public long getCreateTime() {
+    return createTime;
+  }
+
+  public long getPipelineTime() {
+    return pipelineTime;
+  }
+
+  public long getWriteTime() {
+    return writeTime;
+  }
+
+  public long getCloseTime() {
+    return closeTime;
+  }
+
+  public long getReadTime() {
+    return readTime;
+  }
+
+  public long getDeleteTime() {
+    return deleteTime;
+  }
+
+  public static DfsCanaryProbe createProbe(Configuration conf) throws IOException {
+    return new DfsCanaryProbe(conf,
+                              new Path(conf.get(CANARY_PROBE_PATH, CANARY_PROBE_PATH_DEFAULT)),
+                              conf.getInt(CANARY_PROBE_SIZE, CANARY_PROBE_SIZE_DEFAULT) * 1024,
+                              (short) conf.getInt(CANARY_PROBE_REPLICATION, 0));
+  }
+}
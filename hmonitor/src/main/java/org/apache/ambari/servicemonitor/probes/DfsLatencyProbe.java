@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.servicemonitor.probes;
+
+import org.apache.ambari.servicemonitor.reporting.ProbeStatus;
+import org.apache.ambari.servicemonitor.utils.DFSUtils;
+import org.apache.ambari.servicemonitor.utils.DfsClientManager;
+import org.apache.ambari.servicemonitor.utils.ExitMainException;
+import org.apache.ambari.servicemonitor.utils.LatencySla;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds the NameNode to a service level agreement on latency. Each ping
+ * issues a mix of cheap metadata operations on small paths, with the client
+ * of the filesystem shared through the {@link DfsClientManager}, and adds
+ * the latency of each to a {@link LatencySla}. The probe fails if any
+ * operation fails, or if the 99th percentile or the maximum of the latencies
+ * within the sustain period has been over its limit for all of it: a NameNode
+ * which is unusably slow has failed, even though it still answers.
+ */
+public class DfsLatencyProbe extends Probe {
+  private static final Log LOG = LogFactory.getLog(DfsLatencyProbe.class);
+
+  /**
+   * The operations which can be timed
+   */
+  public enum Operation {
+    FILE_INFO("getFileInfo"),
+    CONTENT_SUMMARY("getContentSummary"),
+    LIST_STATUS("listStatus");
+
+    private final String rpc;
+
+    Operation(String rpc) {
+      this.rpc = rpc;
+    }
+
+    /**
+     * Get the name of the operation in the configuration
+     * @return the name of the RPC call
+     */
+    public String getRpc() {
+      return rpc;
+    }
+  }
+
+  private final Path[] paths;
+  private final Operation[] operations;
+  private final LatencySla sla;
+  private final DfsClientManager clients = DfsClientManager.getInstance();
+
+  public DfsLatencyProbe(Configuration conf,
+                         Path[] paths,
+                         Operation[] operations,
+                         LatencySla sla) throws IOException {
+    super("DfsLatencyProbe " + FileSystem.getDefaultUri(conf), conf);
+    //make sure the probe doesn't block, regardless of
+    //any site configurations
+    DFSUtils.makeDfsCallsNonBlocking(conf);
+    this.paths = paths;
+    this.operations = operations;
+    this.sla = sla;
+  }
+
+  public LatencySla getSla() {
+    return sla;
+  }
+
+  @Override
+  public ProbeStatus ping(boolean livePing) {
+    ProbeStatus status = new ProbeStatus();
+    DistributedFileSystem hdfs = null;
+    try {
+      hdfs = clients.get(conf);
+      for (Path path : paths) {
+        for (Operation operation : operations) {
+          long started = now();
+          invoke(hdfs, operation, path);
+          long finished = now();
+          sla.add(finished - started, finished);
+        }
+      }
+      String breach = sla.check(now());
+      if (breach == null) {
+        status.succeed(this);
+        status.setMessage(getName() + ": " + sla
+                          + (sla.isBreached() ? " (over the SLA)" : ""));
+      } else {
+        status.fail(this, new IOException(getName() + ": " + breach + "; " + sla));
+      }
+    } catch (IOException e) {
+      clients.failed(hdfs, e);
+      status.fail(this, new IOException(getName() + " : " + e, e));
+      LOG.debug("Failure to probe " + getName());
+    }
+    return status;
+  }
+
+  /**
+   * Issue an operation
+   * @param hdfs client
+   * @param operation operation
+   * @param path path
+   * @throws IOException on a failure, including the absence of the path
+   */
+  private void invoke(DistributedFileSystem hdfs, Operation operation, Path path)
+      throws IOException {
+    switch (operation) {
+      case FILE_INFO:
+        hdfs.getFileStatus(path);
+        break;
+      case CONTENT_SUMMARY:
+        hdfs.getContentSummary(path);
+        break;
+      default:
+        if (hdfs.listStatus(path) == null) {
+          throw new IOException("Path " + path + " not found");
+        }
+    }
+  }
+
+  public static DfsLatencyProbe createProbe(Configuration conf) throws IOException {
+    List<Path> paths = new ArrayList<Path>();
+    for (String path : conf.getStrings(LATENCY_PROBE_PATHS, LATENCY_PROBE_PATHS_DEFAULT)) {
+      paths.add(new Path(path.trim()));
+    }
+    List<Operation> operations = new ArrayList<Operation>();
+    for (String name : conf.getStrings(LATENCY_PROBE_OPERATIONS,
+                                       LATENCY_PROBE_OPERATIONS_DEFAULT)) {
+      operations.add(parseOperation(name.trim()));
+    }
+    LatencySla sla = new LatencySla(conf.getInt(LATENCY_PROBE_WINDOW,
+                                                LATENCY_PROBE_WINDOW_DEFAULT),
+                                    conf.getLong(LATENCY_PROBE_P99,
+                                                 LATENCY_PROBE_P99_DEFAULT),
+                                    conf.getLong(LATENCY_PROBE_MAX,
+                                                 LATENCY_PROBE_MAX_DEFAULT),
+                                    conf.getLong(LATENCY_PROBE_SUSTAIN,
+                                                 LATENCY_PROBE_SUSTAIN_DEFAULT));
+    return new DfsLatencyProbe(conf,
+                               paths.toArray(new Path[paths.size()]),
+                               operations.toArray(new Operation[operations.size()]),
+                               sla);
+  }
+
+  private static Operation parseOperation(String name) throws ExitMainException {
+    for (Operation operation : Operation.values()) {
+      if (operation.getRpc().equalsIgnoreCase(name)) {
+        return operation;
+      }
+    }
+    throw new ExitMainException("Unknown operation in " + LATENCY_PROBE_OPERATIONS
+                                + ": " + name);
+  }
+}
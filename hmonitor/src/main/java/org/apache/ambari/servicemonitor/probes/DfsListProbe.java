@@ -19,6 +19,8 @@ package org.apache.ambari.servicemonitor.probes;
 
 import org.apache.ambari.servicemonitor.reporting.ProbeStatus;
 import org.apache.ambari.servicemonitor.utils.DFSUtils;
+import org.apache.ambari.servicemonitor.utils.DfsClientManager;
+import org.apache.ambari.servicemonitor.utils.ExitMainException;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
@@ -26,18 +28,49 @@ import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.protocol.DirectoryListing;
+import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
 
 import java.io.IOException;
 import java.net.URI;
 
 /**
- * Lists a directory
+ * Lists a directory, with the client of the filesystem shared through
+ * the {@link DfsClientManager}.
+ * <p/>
+ * How much is listed depends on the {@link org.apache.ambari.servicemonitor.MonitorKeys#LS_PROBE_MODE}:
+ * <ul>
+ *   <li>{@link #MODE_FULL}: the whole directory, however large.</li>
+ *   <li>{@link #MODE_PAGE}: only the first page of the listing, which the
+ *   NameNode bounds with its <code>dfs.ls.limit</code>; the count of
+ *   entries is then a lower bound.</li>
+ *   <li>{@link #MODE_STAT}: only the status of the directory itself.</li>
+ * </ul>
+ * In the last two modes the cost of a ping, to the NameNode and to the
+ * monitor, stays the same however large the directory grows.
  */
 public class DfsListProbe extends Probe {
   private static final Log LOG = LogFactory.getLog(DfsListProbe.class);
 
+  /**
+   * List the whole directory: {@value}
+   */
+  public static final String MODE_FULL = "full";
+
+  /**
+   * List the first page of the directory: {@value}
+   */
+  public static final String MODE_PAGE = "page";
+
+  /**
+   * Get the status of the directory only: {@value}
+   */
+  public static final String MODE_STAT = "stat";
+
   private final String path;
   protected final URI fsURI;
+  private final String mode;
+  private final DfsClientManager clients = DfsClientManager.getInstance();
 
   public DfsListProbe(Configuration conf, String path) throws IOException {
     super("DfsListProbe " + FileSystem.getDefaultUri(conf) + path, conf);
@@ -47,10 +80,14 @@ public class DfsListProbe extends Probe {
     fsURI = DFSUtils.getHDFSUri(conf);
     LOG.info(getName());
     this.path = path;
+    mode = conf.get(LS_PROBE_MODE, MODE_FULL).trim().toLowerCase();
+    if (!MODE_FULL.equals(mode) && !MODE_PAGE.equals(mode) && !MODE_STAT.equals(mode)) {
+      throw new ExitMainException("Unknown " + LS_PROBE_MODE + ": " + mode);
+    }
   }
 
-  private DistributedFileSystem createDfs() throws IOException {
-    return DFSUtils.createUncachedDFS(conf);
+  public String getMode() {
+    return mode;
   }
 
   @Override
@@ -59,30 +96,59 @@ public class DfsListProbe extends Probe {
     ProbeStatus status = new ProbeStatus();
     DistributedFileSystem hdfs = null;
     try {
-      hdfs = createDfs();
+      hdfs = clients.get(conf);
       Path dfsPath;
       dfsPath = new Path(path);
       if (LOG.isDebugEnabled()) {
         LOG.debug("Listing " + getName());
       }
-      FileStatus[] fileStatuses = hdfs.listStatus(dfsPath);
-      if (fileStatuses != null) {
+      String contents = list(hdfs, dfsPath);
+      if (contents != null) {
         //successful operation
         status.succeed(this);
         status.setMessage(
-          getName() + " contains " + fileStatuses.length + " entries");
+          getName() + " " + contents + "; "
+          + clients.describeCounts());
       } else {
         //no file
         status.finish(this, false, "Path " + path + " not found", null);
       }
     } catch (IOException e) {
+      clients.failed(hdfs, e);
       status.fail(this,
                   new IOException(getName() + " : " + e, e));
       LOG.debug("Failure to probe " + getName());
-    } finally {
-      DFSUtils.closeDFS(hdfs);
     }
     return status;
   }
 
+  /**
+   * List the path as the mode says
+   * @param hdfs client
+   * @param dfsPath path
+   * @return a description of what was found, or null if the path is missing
+   * @throws IOException on a failure
+   */
+  private String list(DistributedFileSystem hdfs, Path dfsPath) throws IOException {
+    if (MODE_STAT.equals(mode)) {
+      HdfsFileStatus fileStatus = hdfs.getClient().getFileInfo(path);
+      if (fileStatus == null) {
+        return null;
+      }
+      return fileStatus.isDir() ? "is a directory" : "is a file";
+    }
+    if (MODE_PAGE.equals(mode)) {
+      DirectoryListing listing = hdfs.getClient().listPaths(path, HdfsFileStatus.EMPTY_NAME);
+      if (listing == null) {
+        return null;
+      }
+      int read = listing.getPartialListing().length;
+      return listing.hasMore()
+             ? "contains at least " + read + " entries (the NameNode reports "
+               + listing.getRemainingEntries() + " more)"
+             : "contains " + read + " entries";
+    }
+    FileStatus[] fileStatuses = hdfs.listStatus(dfsPath);
+    return fileStatuses != null ? "contains " + fileStatuses.length + " entries" : null;
+  }
 }
@@ -19,6 +19,7 @@ package org.apache.ambari.servicemonitor.probes;
 
 import org.apache.ambari.servicemonitor.reporting.ProbeStatus;
 import org.apache.ambari.servicemonitor.utils.DFSUtils;
+import org.apache.ambari.servicemonitor.utils.DfsClientManager;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hdfs.DistributedFileSystem;
 import org.apache.hadoop.hdfs.protocol.FSConstants;
@@ -35,12 +36,15 @@ import java.net.URI;
  * If set to ignore the safe mode status entirely, then the result of the 
  * safemode call is ignored completely -though errors to talk to the
  * filesystem are considered errors. 
+ * <p/>
+ * The client of the filesystem is shared through the {@link DfsClientManager}.
  */
 public class DfsSafeModeProbe extends Probe implements SafeModeCheck {
 
   private final boolean ignoreSafeModeManuallyTriggered;
   private boolean safeModeExitedOnce;
   protected volatile boolean inSafeMode;
+  private final DfsClientManager clients = DfsClientManager.getInstance();
 
   public DfsSafeModeProbe(Configuration conf,
                           boolean ignoreSafeModeManuallyTriggered) throws IOException {
@@ -60,8 +64,9 @@ public class DfsSafeModeProbe extends Probe implements SafeModeCheck {
   @Override
   public ProbeStatus ping(boolean livePing) {
     ProbeStatus status = new ProbeStatus();
+    DistributedFileSystem hdfs = null;
     try {
-      DistributedFileSystem hdfs = DFSUtils.createUncachedDFS(conf);
+      hdfs = clients.get(conf);
       inSafeMode = hdfs.setSafeMode(FSConstants.SafeModeAction.SAFEMODE_GET);
       boolean live = !inSafeMode;
       if (inSafeMode) {
@@ -75,8 +80,10 @@ public class DfsSafeModeProbe extends Probe implements SafeModeCheck {
       }
       status.succeed(this);
       status.setSuccess(live);
-      status.setMessage(hdfs.getUri() + " up - safe mode state " + inSafeMode);
+      status.setMessage(hdfs.getUri() + " up - safe mode state " + inSafeMode
+                        + "; " + clients.describeCounts());
     } catch (IOException e) {
+      clients.failed(hdfs, e);
       status.fail(this, e);
     }
     return status;
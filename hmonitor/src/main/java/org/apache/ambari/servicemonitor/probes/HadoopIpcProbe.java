@@ -0,0 +1,323 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.ambari.servicemonitor.probes;
+
+import org.apache.ambari.servicemonitor.reporting.ProbeStatus;
+import org.apache.ambari.servicemonitor.utils.DFSUtils;
+import org.apache.ambari.servicemonitor.utils.ExitMainException;
+import org.apache.ambari.servicemonitor.utils.MonitorUtils;
+import org.apache.ambari.servicemonitor.utils.ResolverCache;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hdfs.server.namenode.NameNode;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.ObjectWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.ipc.Server;
+import org.apache.hadoop.security.SaslRpcServer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A minimal Hadoop 1.x IPC ping.
+ * <p/>
+ * It opens a raw socket to the RPC port, sends the connection header
+ * for simple authentication and makes a <code>getProtocolVersion</code>
+ * call, without creating a filesystem, a JobTracker client or an RPC
+ * proxy. The time to connect, to send the header and to get the response
+ * are measured separately: a fast connect with a slow or missing response
+ * means the listener is accepting connections while the handlers are
+ * saturated.
+ */
+public class HadoopIpcProbe extends Probe {
+  private static final Log LOG = LogFactory.getLog(HadoopIpcProbe.class);
+
+  /**
+   * Target name of the NameNode: {@value}
+   */
+  public static final String TARGET_NAMENODE = "namenode";
+
+  /**
+   * Target name of the JobTracker: {@value}
+   */
+  public static final String TARGET_JOBTRACKER = "jobtracker";
+
+  /**
+   * Protocol of the NameNode clients: {@value}
+   */
+  public static final String NAMENODE_PROTOCOL =
+    "org.apache.hadoop.hdfs.protocol.ClientProtocol";
+
+  /**
+   * Protocol of the JobTracker clients: {@value}
+   */
+  public static final String JOBTRACKER_PROTOCOL =
+    "org.apache.hadoop.mapred.JobSubmissionProtocol";
+
+  private static final int STATE_SUCCESS = 0;
+  private static final int STATE_ERROR = 1;
+  private static final int CALL_ID = 0;
+
+  private final String host;
+  private final int port;
+  private final String protocol;
+  private final String user;
+  private final int timeout;
+  private final ResolverCache resolver = ResolverCache.getInstance();
+  private volatile long connectTime = -1;
+  private volatile long headerTime = -1;
+  private volatile long responseTime = -1;
+  private volatile long serverVersion = -1;
+
+  public HadoopIpcProbe(String host,
+                        int port,
+                        String protocol,
+                        String user,
+                        int timeout,
+                        Configuration conf) {
+    super("IPC probe " + host + ":" + port, conf);
+    this.host = host;
+    this.port = port;
+    this.protocol = protocol;
+    this.user = user;
+    this.timeout = timeout;
+  }
+
+  /**
+   * Create the probes listed in {@link #IPC_PROBE_TARGETS}
+   * @param conf configuration
+   * @return a list of probes
+   * @throws IOException if a target is unknown or has no address
+   */
+  public static List<HadoopIpcProbe> createProbes(Configuration conf) throws IOException {
+    String[] targets = conf.getStrings(IPC_PROBE_TARGETS, IPC_PROBE_TARGETS_DEFAULT);
+    List<HadoopIpcProbe> probes = new ArrayList<HadoopIpcProbe>(targets.length);
+    for (String target : targets) {
+      probes.add(createProbe(conf, target.trim()));
+    }
+    return probes;
+  }
+
+  /**
+   * Create a probe of a single target
+   * @param conf configuration
+   * @param target {@link #TARGET_NAMENODE} or {@link #TARGET_JOBTRACKER}
+   * @return the probe
+   * @throws IOException if the target is unknown or has no address
+   */
+  public static HadoopIpcProbe createProbe(Configuration conf, String target)
+    throws IOException {
+    String host;
+    int port;
+    String protocol;
+    if (TARGET_NAMENODE.equals(target)) {
+      URI fsURI = DFSUtils.getHDFSUri(conf);
+      host = fsURI.getHost();
+      port = fsURI.getPort() == -1 ? NameNode.DEFAULT_PORT : fsURI.getPort();
+      protocol = NAMENODE_PROTOCOL;
+    } else if (TARGET_JOBTRACKER.equals(target)) {
+      URI jturi = MonitorUtils.getJTURI(MonitorUtils.extractJobTrackerParameter(conf));
+      host = jturi.getHost();
+      port = jturi.getPort();
+      protocol = JOBTRACKER_PROTOCOL;
+    } else {
+      throw new ExitMainException("Unknown " + IPC_PROBE_TARGETS + " entry: \""
+                                  + target + "\"");
+    }
+    if (host == null || port == -1) {
+      throw new ExitMainException("No host and port for the " + target);
+    }
+    String user = conf.get(IPC_PROBE_USER, System.getProperty("user.name"));
+    HadoopIpcProbe probe = new HadoopIpcProbe(host, port, protocol, user,
+                                              conf.getInt(IPC_PROBE_TIMEOUT,
+                                                          IPC_PROBE_TIMEOUT_DEFAULT),
+                                              conf);
+    probe.setName("IPC probe of " + target + " " + host + ":" + port);
+    return probe;
+  }
+
+  public String getHost() {
+    return host;
+  }
+
+  public int getPort() {
+    return port;
+  }
+
+  public String getProtocol() {
+    return protocol;
+  }
+
+  /**
+   * Get the time to connect in the last ping
+   * @return the time in milliseconds, or -1 if it did not get that far
+   */
+  public long getConnectTime() {
+    return connectTime;
+  }
+
+  /**
+   * Get the time to send the connection header and the call in the last ping
+   * @return the time in milliseconds, or -1 if it did not get that far
+   */
+  public long getHeaderTime() {
+    return headerTime;
+  }
+
+  /**
+   * Get the time from sending the call to reading its response in the last ping
+   * @return the time in milliseconds, or -1 if it did not get that far
+   */
+  public long getResponseTime() {
+    return responseTime;
+  }
+
+  /**
+   * Get the protocol version the server returned in the last successful ping
+   * @return the version or -1
+   */
+  public long getServerVersion() {
+    return serverVersion;
+  }
+
+  protected String describeTimings() {
+    return "connect=" + connectTime + "ms header=" + headerTime
+           + "ms response=" + responseTime + "ms";
+  }
+
+  @Override
+  public ProbeStatus ping(boolean livePing) {
+    ProbeStatus status = new ProbeStatus();
+    connectTime = -1;
+    headerTime = -1;
+    responseTime = -1;
+    Socket socket = new Socket();
+    try {
+      long started = now();
+      socket.setTcpNoDelay(true);
+      socket.setSoTimeout(timeout);
+      socket.connect(new InetSocketAddress(resolver.resolveFirst(host), port), timeout);
+      long connected = now();
+      connectTime = connected - started;
+
+      DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(socket.getOutputStream()));
+      writeHeader(out);
+      writeCall(out);
+      out.flush();
+      long sent = now();
+      headerTime = sent - connected;
+
+      DataInputStream in = new DataInputStream(
+        new BufferedInputStream(socket.getInputStream()));
+      serverVersion = readResponse(in);
+      responseTime = now() - sent;
+      status.succeed(this);
+      status.setMessage(getName() + " protocol version " + serverVersion
+                        + " " + describeTimings());
+    } catch (IOException e) {
+      String error = getName() + " failed: " + e + " " + describeTimings();
+      LOG.debug(error, e);
+      status.fail(this, new IOException(error, e));
+    } finally {
+      try {
+        socket.close();
+      } catch (IOException ignored) {
+        //ignored
+      }
+    }
+    return status;
+  }
+
+  /**
+   * Write the preamble and the connection header, as
+   * <code>org.apache.hadoop.ipc.Client</code> does for simple authentication
+   * @param out output stream
+   * @throws IOException on a write failure
+   */
+  private void writeHeader(DataOutputStream out) throws IOException {
+    out.write(Server.HEADER.array());
+    out.write(Server.CURRENT_VERSION);
+    SaslRpcServer.AuthMethod.SIMPLE.write(out);
+    DataOutputBuffer header = new DataOutputBuffer();
+    Text.writeString(header, protocol);
+    header.writeBoolean(true);
+    header.writeUTF(user);
+    //no real user
+    header.writeBoolean(false);
+    out.writeInt(header.getLength());
+    out.write(header.getData(), 0, header.getLength());
+  }
+
+  /**
+   * Write a <code>getProtocolVersion(protocol, 0)</code> call; the servers
+   * return their own version whatever the version of the client
+   * @param out output stream
+   * @throws IOException on a write failure
+   */
+  @SuppressWarnings("deprecation")
+  private void writeCall(DataOutputStream out) throws IOException {
+    DataOutputBuffer call = new DataOutputBuffer();
+    call.writeInt(CALL_ID);
+    org.apache.hadoop.io.UTF8.writeString(call, "getProtocolVersion");
+    call.writeInt(2);
+    ObjectWritable.writeObject(call, protocol, String.class, conf);
+    ObjectWritable.writeObject(call, 0L, Long.TYPE, conf);
+    out.writeInt(call.getLength());
+    out.write(call.getData(), 0, call.getLength());
+  }
+
+  /**
+   * Read the response to the call
+   * @param in input stream
+   * @return the version of the protocol on the server
+   * @throws IOException on a read failure or an error from the server
+   */
+  private long readResponse(DataInputStream in) throws IOException {
+    int id = in.readInt();
+    if (id != CALL_ID) {
+      throw new IOException("Response to unknown call " + id);
+    }
+    int state = in.readInt();
+    if (state == STATE_SUCCESS) {
+      Object value = ObjectWritable.readObject(in, conf);
+      if (!(value instanceof Long)) {
+        throw new IOException("Unexpected response " + value);
+      }
+      return (Long) value;
+    }
+    if (state == STATE_ERROR) {
+      String errorClass = WritableUtils.readString(in);
+      String message = WritableUtils.readString(in);
+      throw new IOException("Server error " + errorClass + ": " + message);
+    }
+    throw new IOException("Fatal response from the server, state " + state);
+  }
+}
@@ -18,26 +18,110 @@
 package org.apache.ambari.servicemonitor.probes;
 
 import org.apache.ambari.servicemonitor.reporting.ProbeStatus;
+import org.apache.ambari.servicemonitor.utils.DaemonThreadFactory;
+import org.apache.ambari.servicemonitor.utils.MonitorUtils;
+import org.apache.ambari.servicemonitor.utils.ResolverCache;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.IOUtils;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Probe for a web page returning a status code in a range.
+ *
+ * The HTTP client resolves the host itself; the host is looked up in the
+ * shared {@link ResolverCache} first, which keeps the JVM's address cache
+ * warm, so that the fetch does not wait for DNS, and fails a ping of an
+ * unknown host without a connection attempt.
+ *
+ * Connections are kept alive between pings: the body of every response is
+ * read to its end and the stream closed, so the JDK's keep-alive cache can
+ * hand the connection to the next request to the same host and port.
+ * Only a failed request, or a body longer than {@link #DRAIN_LIMIT},
+ * closes the connection.
+ *
+ * There are three deadlines: the connect timeout, the read timeout -the
+ * longest wait for the server to send anything- and the total timeout of
+ * the request, after which the connection is closed by a watchdog. A server
+ * which accepts the connection but never answers can not block the probe.
+ *
+ * The request may be a GET, a HEAD, or a conditional GET, which sends the
+ * validators of the last good response, so an unchanged page costs
+ * a "304 Not Modified" rather than the page.
+ *
+ * The time to connect, to the first byte of the response, and to read
+ * the body are measured, and added to the status message. They are kept
+ * per ping, so two pings of a hedged probe do not mix their timings.
+ *
+ * A {@link BodyAssertion} may be set to check the content of a page whose
+ * status code is in range, so that a service which answers with an error
+ * page is not taken to be live. It is checked as the body is read, and the
+ * body is read no further than is needed to decide it -the rest is only
+ * drained, up to {@link #DRAIN_LIMIT}, to keep the connection alive.
+ */
 public class HttpProbe extends Probe {
   private static final Log LOG = LogFactory.getLog(HttpProbe.class);
 
+  /**
+   * Request method: a GET {@value}
+   */
+  public static final String METHOD_GET = "GET";
+
+  /**
+   * Request method: a HEAD, for no body at all {@value}
+   */
+  public static final String METHOD_HEAD = "HEAD";
+
+  /**
+   * Request method: a GET made conditional on the page having changed
+   * since the last good response {@value}
+   */
+  public static final String METHOD_CONDITIONAL = "CONDITIONAL";
+
+  /**
+   * The most bytes of a body read to keep the connection alive;
+   * the connection is closed rather than a longer body read: {@value}
+   */
+  public static final int DRAIN_LIMIT = 64 * 1024;
+
+  private static ScheduledExecutorService watchdog;
+
   private final URL url;
   private final int timeout;
+  private int readTimeout;
+  private int totalTimeout;
+  private String method = METHOD_GET;
   private final int min, max;
+  private final ResolverCache resolver = ResolverCache.getInstance();
+  private BodyAssertion bodyAssertion;
+
+  /**
+   * Validators of the last good response, for conditional GETs; guarded by this
+   */
+  private String etag, lastModified;
+  private int lastGoodCode;
+
+  /**
+   * Timings of the last ping to finish
+   */
+  private volatile Timings lastTimings = new Timings();
 
 
   public HttpProbe(URL url, int timeout, int min, int max, Configuration conf) throws IOException {
     super("Http probe of " + url + " [" + min + "-" + max + "]", conf);
     this.url = url;
     this.timeout = timeout;
+    this.readTimeout = timeout;
     this.min = min;
     this.max = max;
   }
@@ -50,34 +134,213 @@ public class HttpProbe extends Probe {
       WEB_PROBE_MIN, WEB_PROBE_DEFAULT_CODE);
     int max = conf.getInt(
       WEB_PROBE_MAX, WEB_PROBE_DEFAULT_CODE);
-    return new HttpProbe(new URL(path),
-                         conf.getInt(
-                           PORT_PROBE_CONNECT_TIMEOUT,
-                           PORT_PROBE_CONNECT_TIMEOUT_DEFAULT),
-                         min,
-                         max,
-                         conf);
+    HttpProbe probe = new HttpProbe(new URL(path),
+                                    conf.getInt(
+                                      WEB_PROBE_CONNECT_TIMEOUT,
+                                      conf.getInt(
+                                        PORT_PROBE_CONNECT_TIMEOUT,
+                                        PORT_PROBE_CONNECT_TIMEOUT_DEFAULT)),
+                                    min,
+                                    max,
+                                    conf);
+    probe.setReadTimeout(conf.getInt(WEB_PROBE_READ_TIMEOUT,
+                                     WEB_PROBE_READ_TIMEOUT_DEFAULT));
+    probe.setTotalTimeout(conf.getInt(WEB_PROBE_TOTAL_TIMEOUT,
+                                      WEB_PROBE_TOTAL_TIMEOUT_DEFAULT));
+    probe.setMethod(conf.get(WEB_PROBE_METHOD, METHOD_GET));
+    probe.setBodyAssertion(createBodyAssertion(conf));
+    return probe;
+  }
+
+  /**
+   * Create the body assertion set in a configuration
+   * @param conf configuration
+   * @return the assertion, or null if there is none
+   * @throws IOException if more than one assertion is set
+   */
+  public static BodyAssertion createBodyAssertion(Configuration conf) throws IOException {
+    int limit = conf.getInt(WEB_PROBE_BODY_LIMIT, BodyAssertion.LIMIT_DEFAULT);
+    String contains = conf.get(WEB_PROBE_BODY_CONTAINS, "");
+    String regex = conf.get(WEB_PROBE_BODY_REGEX, "");
+    String jsonPath = conf.get(WEB_PROBE_BODY_JSON_PATH, "");
+    int set = (contains.length() > 0 ? 1 : 0)
+              + (regex.length() > 0 ? 1 : 0)
+              + (jsonPath.length() > 0 ? 1 : 0);
+    if (set > 1) {
+      throw new IOException("Only one of " + WEB_PROBE_BODY_CONTAINS
+                            + ", " + WEB_PROBE_BODY_REGEX
+                            + " and " + WEB_PROBE_BODY_JSON_PATH
+                            + " may be set");
+    }
+    if (contains.length() > 0) {
+      return TextAssertion.contains(contains, limit);
+    }
+    if (regex.length() > 0) {
+      return TextAssertion.matches(regex, limit);
+    }
+    if (jsonPath.length() > 0) {
+      return new JsonPathAssertion(jsonPath, conf.get(WEB_PROBE_BODY_JSON_VALUE), limit);
+    }
+    return null;
+  }
+
+  public URL getUrl() {
+    return url;
+  }
+
+  public int getReadTimeout() {
+    return readTimeout;
+  }
+
+  /**
+   * Set the longest wait for the server to send anything
+   * @param readTimeout timeout in milliseconds; 0 means no timeout
+   */
+  public void setReadTimeout(int readTimeout) {
+    this.readTimeout = readTimeout;
+  }
+
+  public int getTotalTimeout() {
+    return totalTimeout;
+  }
+
+  /**
+   * Set the deadline of the whole request
+   * @param totalTimeout timeout in milliseconds; 0 or less means no deadline
+   */
+  public void setTotalTimeout(int totalTimeout) {
+    this.totalTimeout = totalTimeout;
+  }
+
+  public String getMethod() {
+    return method;
+  }
+
+  /**
+   * Set the request method
+   * @param method one of {@link #METHOD_GET}, {@link #METHOD_HEAD}
+   * and {@link #METHOD_CONDITIONAL}
+   * @throws IllegalArgumentException for any other method
+   */
+  public void setMethod(String method) {
+    String m = method.trim().toUpperCase();
+    if (!METHOD_GET.equals(m) && !METHOD_HEAD.equals(m) && !METHOD_CONDITIONAL.equals(m)) {
+      throw new IllegalArgumentException("Unsupported web probe method: " + method);
+    }
+    this.method = m;
+  }
+
+  public BodyAssertion getBodyAssertion() {
+    return bodyAssertion;
+  }
+
+  /**
+   * Set an assertion about the body of pages whose status code is in range
+   * @param bodyAssertion the assertion; null for none
+   */
+  public void setBodyAssertion(BodyAssertion bodyAssertion) {
+    this.bodyAssertion = bodyAssertion;
+  }
+
+  @Override
+  public void init() throws IOException {
+    if (bodyAssertion != null && METHOD_HEAD.equals(method)) {
+      throw new IOException("A HEAD request has no body to check: " + bodyAssertion);
+    }
+  }
+
+  /**
+   * Get the time taken to connect by the last ping
+   * @return the time in milliseconds, or -1 if it did not get that far
+   */
+  public long getConnectTime() {
+    return lastTimings.connect;
+  }
+
+  /**
+   * Get the time from the connection to the first byte of the response
+   * in the last ping
+   * @return the time in milliseconds, or -1 if it did not get that far
+   */
+  public long getFirstByteTime() {
+    return lastTimings.firstByte;
+  }
+
+  /**
+   * Get the time taken to read the body in the last ping
+   * @return the time in milliseconds, or -1 if it did not get that far
+   */
+  public long getBodyTime() {
+    return lastTimings.body;
   }
 
   @Override
   public ProbeStatus ping(boolean livePing) {
     ProbeStatus status = new ProbeStatus();
     HttpURLConnection connection = null;
+    Deadline deadline = null;
+    boolean keepAlive = false;
+    Timings timings = new Timings();
     try {
       if (LOG.isDebugEnabled()) {
         LOG.debug("Fetching " + url + " with timeout " + timeout);
       }
+      resolver.resolve(url.getHost());
+      long started = now();
       connection = (HttpURLConnection) url.openConnection();
       connection.setInstanceFollowRedirects(true);
       connection.setConnectTimeout(timeout);
-      int rc = connection.getResponseCode();
-      if (rc < min || rc > max) {
-        String error = "Probe " + url + " error code: " + rc;
-        LOG.info(error);
-        status.fail(this,
-                    new IOException(error));
-      } else {
-        status.succeed(this);
+      connection.setReadTimeout(readTimeout);
+      connection.setUseCaches(false);
+      connection.setRequestMethod(METHOD_HEAD.equals(method) ? "HEAD" : "GET");
+      boolean conditional = METHOD_CONDITIONAL.equals(method) && addValidators(connection);
+      if (totalTimeout > 0) {
+        deadline = new Deadline(connection);
+      }
+      try {
+        connection.connect();
+        long connected = now();
+        timings.connect = connected - started;
+        int rc = connection.getResponseCode();
+        long firstByte = now();
+        timings.firstByte = firstByte - connected;
+        boolean notModified = conditional && rc == HttpURLConnection.HTTP_NOT_MODIFIED;
+        String mismatch = null;
+        if (bodyAssertion != null && !notModified && rc >= min && rc <= max) {
+          InputStream body = connection.getInputStream();
+          if (!bodyAssertion.check(body, getCharset(connection))) {
+            mismatch = "Probe " + url + " failed: not true that " + bodyAssertion;
+          }
+          keepAlive = drain(body);
+        } else {
+          keepAlive = drain(rc >= 400 ? connection.getErrorStream() : connection.getInputStream());
+        }
+        timings.body = now() - firstByte;
+        if (notModified) {
+          //unchanged since the last good response
+          rc = getLastGoodCode();
+        } else if (METHOD_CONDITIONAL.equals(method)) {
+          saveValidators(connection, rc, mismatch == null);
+        }
+        if (rc < min || rc > max) {
+          String error = "Probe " + url + " error code: " + rc;
+          LOG.info(error);
+          status.fail(this,
+                      new IOException(error));
+        } else if (mismatch != null) {
+          LOG.info(mismatch);
+          status.fail(this,
+                      new IOException(mismatch));
+        } else {
+          status.succeed(this);
+          status.setMessage(getName() + ": " + rc + " " + timings);
+        }
+      } catch (IOException e) {
+        if (deadline != null && deadline.fired) {
+          throw new IOException("No complete response after "
+                                + MonitorUtils.millisToHumanTime(totalTimeout), e);
+        }
+        throw e;
       }
     } catch (IOException e) {
       String error = "Probe " + url + " failed: " + e;
@@ -85,11 +348,140 @@ public class HttpProbe extends Probe {
       status.fail(this,
                   new IOException(error, e));
     } finally {
-      if (connection != null) {
+      if (deadline != null) {
+        deadline.cancel();
+      }
+      if (connection != null && !keepAlive) {
         connection.disconnect();
       }
+      lastTimings = timings;
     }
     return status;
   }
 
+  /**
+   * Read a body to its end and close it, so that the connection can be
+   * reused -unless it is longer than {@link #DRAIN_LIMIT}
+   * @param body the body; may be null
+   * @return true iff the body was read to its end
+   * @throws IOException on a read failure
+   */
+  private boolean drain(InputStream body) throws IOException {
+    if (body == null) {
+      return true;
+    }
+    try {
+      byte[] buffer = new byte[4096];
+      int total = 0;
+      int read;
+      while ((read = body.read(buffer)) >= 0) {
+        total += read;
+        if (total > DRAIN_LIMIT) {
+          return false;
+        }
+      }
+      return true;
+    } finally {
+      IOUtils.closeStream(body);
+    }
+  }
+
+  private synchronized boolean addValidators(HttpURLConnection connection) {
+    if (etag != null) {
+      connection.setRequestProperty("If-None-Match", etag);
+    }
+    if (lastModified != null) {
+      connection.setRequestProperty("If-Modified-Since", lastModified);
+    }
+    return etag != null || lastModified != null;
+  }
+
+  private synchronized void saveValidators(HttpURLConnection connection,
+                                           int rc,
+                                           boolean bodyGood) {
+    if (rc >= min && rc <= max && bodyGood) {
+      etag = connection.getHeaderField("ETag");
+      lastModified = connection.getHeaderField("Last-Modified");
+      lastGoodCode = rc;
+    } else {
+      etag = null;
+      lastModified = null;
+    }
+  }
+
+  private synchronized int getLastGoodCode() {
+    return lastGoodCode;
+  }
+
+  /**
+   * Get the charset of a response from its content type
+   * @param connection connection
+   * @return the charset, or UTF-8 if none is given
+   */
+  private static String getCharset(HttpURLConnection connection) {
+    String type = connection.getContentType();
+    if (type != null) {
+      for (String param : type.split(";")) {
+        String p = param.trim();
+        if (p.toLowerCase().startsWith("charset=")) {
+          String charset = p.substring("charset=".length()).replace("\"", "").trim();
+          if (charset.length() > 0 && Charset.isSupported(charset)) {
+            return charset;
+          }
+        }
+      }
+    }
+    return "UTF-8";
+  }
+
+
+  private static synchronized ScheduledExecutorService getWatchdog() {
+    if (watchdog == null) {
+      watchdog = Executors.newSingleThreadScheduledExecutor(
+        new DaemonThreadFactory("http probe deadlines"));
+    }
+    return watchdog;
+  }
+
+  /**
+   * The timings of one ping; -1 for a stage it did not get to
+   */
+  private static final class Timings {
+    private long connect = -1;
+    private long firstByte = -1;
+    private long body = -1;
+
+    @Override
+    public String toString() {
+      return "connect=" + connect + "ms"
+             + " first-byte=" + firstByte + "ms"
+             + " body=" + body + "ms";
+    }
+  }
+
+  /**
+   * The total deadline of a request: when it passes, the connection is closed,
+   * which fails any read in progress
+   */
+  private final class Deadline implements Runnable {
+    private final HttpURLConnection connection;
+    private final ScheduledFuture<?> future;
+    private volatile boolean fired;
+
+    private Deadline(HttpURLConnection connection) {
+      this.connection = connection;
+      future = getWatchdog().schedule(this, totalTimeout, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void run() {
+      fired = true;
+      LOG.debug("Deadline of " + url + " has passed");
+      connection.disconnect();
+    }
+
+    private void cancel() {
+      future.cancel(false);
+    }
+  }
 }
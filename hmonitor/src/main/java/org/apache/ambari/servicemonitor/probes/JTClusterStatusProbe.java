@@ -19,10 +19,10 @@ package org.apache.ambari.servicemonitor.probes;
 
 import org.apache.ambari.servicemonitor.reporting.ProbeStatus;
 import org.apache.ambari.servicemonitor.utils.MonitorUtils;
+import org.apache.ambari.servicemonitor.utils.RpcProxyHolder;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
-import org.apache.hadoop.io.IOUtils;
 import org.apache.hadoop.mapred.ClusterStatus;
 import org.apache.hadoop.mapred.JTClusterOps;
 
@@ -37,7 +37,7 @@ import java.net.InetSocketAddress;
 public class JTClusterStatusProbe extends AbstractJTProbe {
   protected static final Log LOG =
     LogFactory.getLog(JTClusterStatusProbe.class);
-  protected ClusterStatus clusterStatus;
+  protected volatile ClusterStatus clusterStatus;
 
   public JTClusterStatusProbe(Configuration conf) throws IOException {
     super("Job Tracker Probe ", conf);
@@ -65,27 +65,40 @@ public class JTClusterStatusProbe extends AbstractJTProbe {
   @Override
   public ProbeStatus ping(boolean livePing) {
     ProbeStatus status = new ProbeStatus();
-    JTClusterOps clusterOps = new JTClusterOps();
+    RpcProxyHolder<JTClusterOps> holder = null;
+    JTClusterOps clusterOps = null;
+    long connectTime = -1;
+    long callTime = -1;
     try {
       InetSocketAddress addr = MonitorUtils.getURIAddress(jturi);
-      clusterOps.connect(addr, conf);
-      clusterStatus = clusterOps.getClusterStatus(false);
+      holder = JTProxies.getClusterOps(addr, conf);
+      holder.setMaxBackoff(maxBackoff);
+      long started = now();
+      clusterOps = holder.get();
+      long connected = now();
+      connectTime = connected - started;
+      ClusterStatus current = clusterOps.getClusterStatus(false);
+      callTime = now() - connected;
+      clusterStatus = current;
       if (LOG.isDebugEnabled()) {
-        LOG.debug("JT state = " + clusterStatus.getJobTrackerState());
-        LOG.debug("Active trackers = " + clusterStatus.getTaskTrackers());
+        LOG.debug("JT state = " + current.getJobTrackerState());
+        LOG.debug("Active trackers = " + current.getTaskTrackers());
         LOG.debug(
-          "Blacklisted trackers = " + clusterStatus.getBlacklistedTrackers());
+          "Blacklisted trackers = " + current.getBlacklistedTrackers());
       }
       status.succeed(this);
       status.setMessage(
-        getName() + " is in state " + clusterStatus.getJobTrackerState());
+        getName() + " is in state " + current.getJobTrackerState()
+        + " " + describeTimings(connectTime, callTime));
     } catch (IOException e) {
+      if (holder != null) {
+        holder.failed(clusterOps, e);
+      }
       status.fail(this,
                   new IOException(getName() + " : " + e, e));
       LOG.debug("Failure to probe " + getName());
-    } finally {
-      IOUtils.cleanup(LOG, clusterOps);
     }
+    setTimings(connectTime, callTime);
     return status;
   }
 
@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.servicemonitor.probes;
+
+import org.apache.ambari.servicemonitor.utils.MonitorUtils;
+import org.apache.ambari.servicemonitor.utils.RpcProxyHolder;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.ipc.RPC;
+import org.apache.hadoop.mapred.AdminOperationsProtocol;
+import org.apache.hadoop.mapred.JTClusterOps;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The RPC proxies to JobTrackers, shared by all the JT probes of the
+ * process: there is one holder of each protocol for each JobTracker address.
+ * The configuration of the first probe to ask for a holder is the one
+ * its proxies are created with.
+ */
+public final class JTProxies {
+  private static final Log LOG = LogFactory.getLog(JTProxies.class);
+
+  /**
+   * Holders by protocol and address; guarded by itself
+   */
+  private static final Map<String, RpcProxyHolder<?>> holders =
+    new HashMap<String, RpcProxyHolder<?>>();
+
+  private JTProxies() {
+  }
+
+  /**
+   * Get the holder of the job submission proxy of a JobTracker
+   * @param addr address of the JobTracker
+   * @param conf configuration
+   * @return the shared holder
+   */
+  @SuppressWarnings("unchecked")
+  public static RpcProxyHolder<JTClusterOps> getClusterOps(final InetSocketAddress addr,
+                                                           final Configuration conf) {
+    String key = "JobSubmissionProtocol " + addr;
+    synchronized (holders) {
+      RpcProxyHolder<JTClusterOps> holder = (RpcProxyHolder<JTClusterOps>) holders.get(key);
+      if (holder == null) {
+        holder = new RpcProxyHolder<JTClusterOps>(key) {
+          @Override
+          protected JTClusterOps createProxy() throws IOException {
+            JTClusterOps clusterOps = new JTClusterOps();
+            clusterOps.connect(addr, conf);
+            return clusterOps;
+          }
+
+          @Override
+          protected void stopProxy(JTClusterOps stopping) {
+            IOUtils.cleanup(LOG, stopping);
+          }
+        };
+        holders.put(key, holder);
+      }
+      return holder;
+    }
+  }
+
+  /**
+   * Get the holder of the admin operations proxy of a JobTracker
+   * @param addr address of the JobTracker
+   * @param conf configuration
+   * @return the shared holder
+   */
+  @SuppressWarnings("unchecked")
+  public static RpcProxyHolder<AdminOperationsProtocol> getAdmin(final InetSocketAddress addr,
+                                                                 final Configuration conf) {
+    String key = "AdminOperationsProtocol " + addr;
+    synchronized (holders) {
+      RpcProxyHolder<AdminOperationsProtocol> holder =
+        (RpcProxyHolder<AdminOperationsProtocol>) holders.get(key);
+      if (holder == null) {
+        holder = new RpcProxyHolder<AdminOperationsProtocol>(key) {
+          @Override
+          protected AdminOperationsProtocol createProxy() throws IOException {
+            return MonitorUtils.createJTAdminProxy(addr, conf);
+          }
+
+          @Override
+          protected void stopProxy(AdminOperationsProtocol stopping) {
+            RPC.stopProxy(stopping);
+          }
+        };
+        holders.put(key, holder);
+      }
+      return holder;
+    }
+  }
+
+  /**
+   * Stop every proxy and forget the holders
+   */
+  public static void closeAll() {
+    synchronized (holders) {
+      for (RpcProxyHolder<?> holder : holders.values()) {
+        holder.close();
+      }
+      holders.clear();
+    }
+  }
+}
@@ -19,10 +19,10 @@ package org.apache.ambari.servicemonitor.probes;
 
 import org.apache.ambari.servicemonitor.reporting.ProbeStatus;
 import org.apache.ambari.servicemonitor.utils.MonitorUtils;
+import org.apache.ambari.servicemonitor.utils.RpcProxyHolder;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
-import org.apache.hadoop.ipc.RPC;
 import org.apache.hadoop.mapred.AdminOperationsProtocol;
 import org.apache.hadoop.mapred.JobTracker;
 
@@ -30,11 +30,11 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 
 /**
- * Lists a directory
+ * Probes the safe mode state of a JobTracker
  */
 public class JTSafeModeProbe extends AbstractJTProbe implements SafeModeCheck {
   protected static final Log LOG = LogFactory.getLog(JTSafeModeProbe.class);
-  protected boolean inSafeMode;
+  protected volatile boolean inSafeMode;
 
   public JTSafeModeProbe(Configuration conf) throws IOException {
     super("JTSafeModeProbe", conf);
@@ -55,20 +55,33 @@ public class JTSafeModeProbe extends AbstractJTProbe implements SafeModeCheck {
   @Override
   public ProbeStatus ping(boolean livePing) {
     ProbeStatus status = new ProbeStatus();
+    RpcProxyHolder<AdminOperationsProtocol> holder = null;
     AdminOperationsProtocol jtAdmin = null;
+    long connectTime = -1;
+    long callTime = -1;
     try {
       InetSocketAddress addr = MonitorUtils.getURIAddress(jturi);
-      jtAdmin = MonitorUtils.createJTAdminProxy(addr, conf);
-      inSafeMode = jtAdmin.setSafeMode(JobTracker.SafeModeAction.SAFEMODE_GET);
+      holder = JTProxies.getAdmin(addr, conf);
+      holder.setMaxBackoff(maxBackoff);
+      long started = now();
+      jtAdmin = holder.get();
+      long connected = now();
+      connectTime = connected - started;
+      boolean safeMode = jtAdmin.setSafeMode(JobTracker.SafeModeAction.SAFEMODE_GET);
+      callTime = now() - connected;
+      inSafeMode = safeMode;
       status.succeed(this);
-      status.setMessage(getName() + " is up -safe mode flag: " + inSafeMode);
+      status.setMessage(getName() + " is up -safe mode flag: " + safeMode
+                        + " " + describeTimings(connectTime, callTime));
     } catch (IOException e) {
+      if (holder != null) {
+        holder.failed(jtAdmin, e);
+      }
       status.fail(this,
                   new IOException(getName() + " : " + e, e));
       LOG.debug("Failure to probe " + getName());
-    } finally {
-      RPC.stopProxy(jtAdmin);
     }
+    setTimings(connectTime, callTime);
     return status;
   }
 
@@ -0,0 +1,353 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.servicemonitor.probes;
+
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Asserts that the metrics in the output of a Hadoop service's
+ * <code>/jmx</code> page are within limits.
+ *
+ * The rules are separated by {@link #RULE_SEPARATOR}. Each is an attribute,
+ * a comparison and a number, such as <code>CallQueueLength&lt;100</code>;
+ * the comparisons are <code>&lt; &lt;= &gt; &gt;= == !=</code>. The first
+ * numeric attribute of that name in any bean is used; to pick one bean of
+ * several, qualify the attribute with text from the name of the bean and
+ * {@link #BEAN_SEPARATOR}, as in <code>RpcActivityForPort8020#CallQueueLength</code>.
+ * A rule of the form <code>rate(NumFailedVolumes)&lt;1</code> applies to
+ * the change of the attribute per second since the last check; it holds
+ * until there are two values to compare, and after a counter is reset.
+ * Booleans are 1 for true and 0 for false.
+ *
+ * The body is parsed as a stream of tokens: only the values of the named
+ * attributes are read, everything else is skipped, and parsing stops once
+ * every rule has a value. The attributes of a bean are only matched with a
+ * qualified rule after the name of the bean, which Hadoop writes first.
+ * An attribute which is not found fails its rule.
+ */
+public class JmxMetricsAssertion extends BodyAssertion {
+
+  /**
+   * Separator of rules: {@value}
+   */
+  public static final String RULE_SEPARATOR = ";";
+
+  /**
+   * Separator of the name of a bean and an attribute: {@value}
+   */
+  public static final String BEAN_SEPARATOR = "#";
+
+  private static final String RATE_PREFIX = "rate(";
+
+  private static final JsonFactory FACTORY = new JsonFactory();
+
+  private final Rule[] rules;
+  private final boolean qualified;
+
+  /* the outcome of the last check; guarded by this */
+  private String violations;
+
+  /**
+   * Create an assertion
+   * @param rules the rules
+   * @param limit number of bytes of the body to parse
+   * @throws IllegalArgumentException if a rule can not be parsed
+   */
+  public JmxMetricsAssertion(String rules, int limit) {
+    super(limit);
+    List<Rule> parsed = new ArrayList<Rule>();
+    boolean anyQualified = false;
+    for (String text : rules.split(RULE_SEPARATOR)) {
+      if (text.trim().length() > 0) {
+        Rule rule = new Rule(text.trim());
+        anyQualified |= rule.bean != null;
+        parsed.add(rule);
+      }
+    }
+    if (parsed.isEmpty()) {
+      throw new IllegalArgumentException("No JMX rules in \"" + rules + "\"");
+    }
+    this.rules = parsed.toArray(new Rule[parsed.size()]);
+    qualified = anyQualified;
+  }
+
+  @Override
+  protected synchronized boolean test(InputStream body, String charset) throws IOException {
+    for (Rule rule : rules) {
+      rule.found = false;
+    }
+    read(body);
+    long now = now();
+    StringBuilder failed = new StringBuilder();
+    for (Rule rule : rules) {
+      if (!rule.evaluate(now)) {
+        if (failed.length() > 0) {
+          failed.append(RULE_SEPARATOR).append(' ');
+        }
+        failed.append(rule.text).append(rule.found ? " (was " + format(rule.current) + ")"
+                                                   : " (not found)");
+      }
+    }
+    violations = failed.length() > 0 ? failed.toString() : null;
+    return violations == null;
+  }
+
+  /**
+   * Read the values of the rules from a body
+   * @param body body
+   * @throws IOException on a read or parse failure
+   */
+  private void read(InputStream body) throws IOException {
+    JsonParser parser = FACTORY.createJsonParser(body);
+    try {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new IOException("Not a JMX JSON document");
+      }
+      int remaining = rules.length;
+      while (remaining > 0 && parser.nextToken() == JsonToken.FIELD_NAME) {
+        JsonToken token = parser.nextToken();
+        if (!"beans".equals(parser.getCurrentName()) || token != JsonToken.START_ARRAY) {
+          parser.skipChildren();
+          continue;
+        }
+        while (remaining > 0 && parser.nextToken() == JsonToken.START_OBJECT) {
+          remaining -= readBean(parser);
+        }
+        return;
+      }
+    } finally {
+      parser.close();
+    }
+  }
+
+  /**
+   * Read the values of the rules from a bean
+   * @param parser parser, at the start of the bean
+   * @return the number of rules which have found their values
+   * @throws IOException on a read or parse failure
+   */
+  private int readBean(JsonParser parser) throws IOException {
+    String beanName = null;
+    int matched = 0;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      //field names are canonicalized by the parser, so this allocates nothing
+      String name = parser.getCurrentName();
+      JsonToken token = parser.nextToken();
+      if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+        parser.skipChildren();
+      } else if (token == JsonToken.VALUE_STRING) {
+        if (qualified && beanName == null && "name".equals(name)) {
+          beanName = parser.getText();
+        }
+      } else if (token == JsonToken.VALUE_NUMBER_INT
+                 || token == JsonToken.VALUE_NUMBER_FLOAT
+                 || token == JsonToken.VALUE_TRUE
+                 || token == JsonToken.VALUE_FALSE) {
+        for (Rule rule : rules) {
+          if (!rule.found && rule.attribute.equals(name)
+              && (rule.bean == null || (beanName != null && beanName.contains(rule.bean)))) {
+            rule.found = true;
+            rule.value = token == JsonToken.VALUE_TRUE ? 1
+                         : token == JsonToken.VALUE_FALSE ? 0
+                         : parser.getDoubleValue();
+            matched++;
+          }
+        }
+      }
+    }
+    return matched;
+  }
+
+  /**
+   * Get the current time, for rates
+   * @return the time in milliseconds
+   */
+  protected long now() {
+    return System.currentTimeMillis();
+  }
+
+  /**
+   * Describe the values found by the last check
+   * @return the value of every rule which has one
+   */
+  public synchronized String describeValues() {
+    StringBuilder values = new StringBuilder();
+    for (Rule rule : rules) {
+      if (rule.found) {
+        if (values.length() > 0) {
+          values.append(' ');
+        }
+        values.append(rule.name).append('=').append(format(rule.current));
+        if (rule.rate) {
+          values.append("/s");
+        }
+      }
+    }
+    return values.toString();
+  }
+
+  /**
+   * Get the value of a rule at the last check
+   * @param index index of the rule
+   * @return its value or rate, or NaN if it is not known
+   */
+  public synchronized double getValue(int index) {
+    return rules[index].found ? rules[index].current : Double.NaN;
+  }
+
+  private static String format(double value) {
+    if (Double.isNaN(value)) {
+      return "?";
+    }
+    return value == Math.rint(value) && !Double.isInfinite(value)
+           ? Long.toString((long) value) : Double.toString(value);
+  }
+
+  /**
+   * The rules which failed at the last check, or all of the rules before
+   * the first one
+   * @return a description
+   */
+  @Override
+  public synchronized String describe() {
+    if (violations != null) {
+      return violations;
+    }
+    StringBuilder all = new StringBuilder();
+    for (Rule rule : rules) {
+      if (all.length() > 0) {
+        all.append(RULE_SEPARATOR).append(' ');
+      }
+      all.append(rule.text);
+    }
+    return all.toString();
+  }
+
+  /**
+   * Comparisons of rules; the two character ones come first, so that
+   * they are looked for first
+   */
+  private enum Comparison {
+    LE("<="), GE(">="), EQ("=="), NE("!="), LT("<"), GT(">");
+
+    private final String symbol;
+
+    Comparison(String symbol) {
+      this.symbol = symbol;
+    }
+
+    private boolean holds(double value, double limit) {
+      switch (this) {
+        case LE:
+          return value <= limit;
+        case GE:
+          return value >= limit;
+        case EQ:
+          return value == limit;
+        case NE:
+          return value != limit;
+        case LT:
+          return value < limit;
+        default:
+          return value > limit;
+      }
+    }
+  }
+
+  /**
+   * A rule, and the values it has seen
+   */
+  private static final class Rule {
+    private final String text;
+    private final String name;
+    private final String bean;
+    private final String attribute;
+    private final boolean rate;
+    private final Comparison comparison;
+    private final double limit;
+
+    private boolean found;
+    private double value;
+    private double current = Double.NaN;
+    private double lastValue;
+    private long lastTime = -1;
+
+    private Rule(String text) {
+      this.text = text;
+      Comparison match = null;
+      int at = -1;
+      for (Comparison c : Comparison.values()) {
+        at = text.indexOf(c.symbol);
+        if (at > 0) {
+          match = c;
+          break;
+        }
+      }
+      if (match == null) {
+        throw new IllegalArgumentException("No comparison in JMX rule \"" + text + "\"");
+      }
+      comparison = match;
+      try {
+        limit = Double.parseDouble(text.substring(at + match.symbol.length()).trim());
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("No number in JMX rule \"" + text + "\"");
+      }
+      String subject = text.substring(0, at).trim();
+      rate = subject.startsWith(RATE_PREFIX) && subject.endsWith(")");
+      if (rate) {
+        subject = subject.substring(RATE_PREFIX.length(), subject.length() - 1).trim();
+      }
+      name = rate ? RATE_PREFIX + subject + ")" : subject;
+      int split = subject.lastIndexOf(BEAN_SEPARATOR);
+      bean = split > 0 ? subject.substring(0, split) : null;
+      attribute = subject.substring(split + 1);
+      if (attribute.length() == 0) {
+        throw new IllegalArgumentException("No attribute in JMX rule \"" + text + "\"");
+      }
+    }
+
+    /**
+     * Evaluate the rule against the value just read
+     * @param now the current time
+     * @return true iff the rule holds
+     */
+    private boolean evaluate(long now) {
+      if (!found) {
+        current = Double.NaN;
+        lastTime = -1;
+        return false;
+      }
+      if (!rate) {
+        current = value;
+        return comparison.holds(current, limit);
+      }
+      boolean known = lastTime >= 0 && now > lastTime && value >= lastValue;
+      current = known ? (value - lastValue) * 1000 / (now - lastTime) : Double.NaN;
+      lastValue = value;
+      lastTime = now;
+      return !known || comparison.holds(current, limit);
+    }
+  }
+}
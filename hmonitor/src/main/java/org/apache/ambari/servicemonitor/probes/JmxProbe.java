@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.servicemonitor.probes;
+
+import org.apache.ambari.servicemonitor.reporting.ProbeStatus;
+import org.apache.ambari.servicemonitor.utils.ExitMainException;
+import org.apache.hadoop.conf.Configuration;
+
+import java.io.IOException;
+import java.net.URL;
+
+/**
+ * Probe of the metrics a Hadoop service publishes on its <code>/jmx</code>
+ * page, such as RPC queue times or the number of live DataNodes, which
+ * show trouble coming before the service stops answering. The page is
+ * fetched as by the {@link HttpProbe}, with the same timeouts and
+ * persistent connections, and its metrics are checked against the rules
+ * of a {@link JmxMetricsAssertion} as it is streamed.
+ * <p/>
+ * The URL should use a <code>qry</code> parameter to select the beans
+ * of interest, both to keep the page short and so that the service has
+ * less to gather on every ping.
+ */
+public class JmxProbe extends HttpProbe {
+
+  private final JmxMetricsAssertion metrics;
+
+  public JmxProbe(URL url, int timeout, JmxMetricsAssertion metrics, Configuration conf)
+      throws IOException {
+    super(url, timeout, 200, 200, conf);
+    this.metrics = metrics;
+    setName("JMX probe of " + url);
+    setBodyAssertion(metrics);
+  }
+
+  public JmxMetricsAssertion getMetrics() {
+    return metrics;
+  }
+
+  @Override
+  public ProbeStatus ping(boolean livePing) {
+    ProbeStatus status = super.ping(livePing);
+    if (status.isSuccess()) {
+      status.setMessage(status.getMessage() + " " + metrics.describeValues());
+    }
+    return status;
+  }
+
+  public static JmxProbe createJmxProbe(Configuration conf) throws IOException {
+    String rules = conf.get(JMX_PROBE_RULES, "");
+    if (rules.trim().isEmpty()) {
+      throw new ExitMainException("Required property not set: " + JMX_PROBE_RULES);
+    }
+    JmxMetricsAssertion metrics;
+    try {
+      metrics = new JmxMetricsAssertion(rules,
+                                        conf.getInt(WEB_PROBE_BODY_LIMIT,
+                                                    BodyAssertion.LIMIT_DEFAULT));
+    } catch (IllegalArgumentException e) {
+      throw new ExitMainException("Invalid " + JMX_PROBE_RULES + ": " + e.getMessage());
+    }
+    JmxProbe probe = new JmxProbe(new URL(conf.get(JMX_PROBE_URL, JMX_PROBE_DEFAULT_URL)),
+                                  conf.getInt(WEB_PROBE_CONNECT_TIMEOUT,
+                                              conf.getInt(PORT_PROBE_CONNECT_TIMEOUT,
+                                                          PORT_PROBE_CONNECT_TIMEOUT_DEFAULT)),
+                                  metrics,
+                                  conf);
+    probe.setReadTimeout(conf.getInt(WEB_PROBE_READ_TIMEOUT, WEB_PROBE_READ_TIMEOUT_DEFAULT));
+    probe.setTotalTimeout(conf.getInt(WEB_PROBE_TOTAL_TIMEOUT, WEB_PROBE_TOTAL_TIMEOUT_DEFAULT));
+    return probe;
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.servicemonitor.probes;
+
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonStreamContext;
+import org.codehaus.jackson.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Asserts that a JSON body has a value at a path, such as an attribute of
+ * a bean in the output of a Hadoop service's <code>/jmx</code> page.
+ *
+ * The path is a list of field names and array indices separated by
+ * {@link #SEPARATOR}; a <code>*</code> matches any field or element.
+ * <code>beans/*&#47;Safemode</code> is the <code>Safemode</code> attribute
+ * of whichever bean has one. If an expected value is given, it is a regular
+ * expression which the text of a value at the path must match in full;
+ * otherwise the presence of the path is enough.
+ *
+ * The body is parsed as a stream of tokens: objects and arrays off the path
+ * are skipped without being built, and parsing stops at the first value
+ * which matches.
+ */
+public final class JsonPathAssertion extends BodyAssertion {
+
+  /**
+   * Separator of the elements of a path: {@value}
+   */
+  public static final String SEPARATOR = "/";
+
+  /**
+   * Path element which matches any field or array element: {@value}
+   */
+  public static final String ANY = "*";
+
+  private static final JsonFactory FACTORY = new JsonFactory();
+
+  private final String path;
+  private final String[] elements;
+  private final Pattern expected;
+
+  /**
+   * Create an assertion
+   * @param path the path
+   * @param expected a regular expression for the value at the path;
+   * null for any value
+   * @param limit number of bytes of the body to parse
+   * @throws java.util.regex.PatternSyntaxException if the expression is invalid
+   */
+  public JsonPathAssertion(String path, String expected, int limit) {
+    super(limit);
+    this.path = path;
+    String trimmed = path.trim();
+    if (trimmed.startsWith(SEPARATOR)) {
+      trimmed = trimmed.substring(1);
+    }
+    if (trimmed.length() == 0) {
+      throw new IllegalArgumentException("Empty JSON path");
+    }
+    elements = trimmed.split(SEPARATOR);
+    this.expected = expected != null ? Pattern.compile(expected) : null;
+  }
+
+  @Override
+  protected boolean test(InputStream body, String charset) throws IOException {
+    //the encoding of JSON is detected from the bytes
+    JsonParser parser = FACTORY.createJsonParser(body);
+    try {
+      JsonToken token;
+      while ((token = parser.nextToken()) != null) {
+        if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+          //the context is the new container; its place is in the parent
+          List<String> at = getPath(parser.getParsingContext().getParent());
+          if (!isPrefix(at)) {
+            parser.skipChildren();
+          } else if (at.size() == elements.length) {
+            if (expected == null) {
+              return true;
+            }
+            parser.skipChildren();
+          }
+        } else if (token.isScalarValue()) {
+          List<String> at = getPath(parser.getParsingContext());
+          if (at.size() == elements.length && isPrefix(at)
+              && (expected == null || expected.matcher(parser.getText()).matches())) {
+            return true;
+          }
+        }
+      }
+      return false;
+    } finally {
+      parser.close();
+    }
+  }
+
+  /**
+   * Get the path to the current entry of a context
+   * @param context context
+   * @return the field names and indices from the root down
+   */
+  private static List<String> getPath(JsonStreamContext context) {
+    List<String> reversed = new ArrayList<String>();
+    for (JsonStreamContext c = context; c != null && !c.inRoot(); c = c.getParent()) {
+      reversed.add(c.inArray() ? Integer.toString(c.getCurrentIndex()) : c.getCurrentName());
+    }
+    List<String> at = new ArrayList<String>(reversed.size());
+    for (int i = reversed.size() - 1; i >= 0; i--) {
+      at.add(reversed.get(i));
+    }
+    return at;
+  }
+
+  /**
+   * Is a path on the way to the asserted path, or the path itself?
+   * @param at path
+   * @return true iff every element of the path matches
+   */
+  private boolean isPrefix(List<String> at) {
+    if (at.size() > elements.length) {
+      return false;
+    }
+    for (int i = 0; i < at.size(); i++) {
+      if (!ANY.equals(elements[i]) && !elements[i].equals(at.get(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public String describe() {
+    return "JSON " + path + (expected != null ? " matches /" + expected + "/" : " is present");
+  }
+}
@@ -0,0 +1,318 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.servicemonitor.probes;
+
+import org.apache.ambari.servicemonitor.reporting.ProbeStatus;
+import org.apache.ambari.servicemonitor.reporting.TimeoutExtension;
+import org.apache.ambari.servicemonitor.utils.ExitMainException;
+import org.apache.ambari.servicemonitor.utils.FindAndPingPid;
+import org.apache.ambari.servicemonitor.utils.PerfDataFile;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Probe of the garbage collection of a JVM, found through the same pid file
+ * as the {@link PidLiveProbe}. It maps the performance data file of the JVM
+ * (see {@link PerfDataFile}) and reads the GC and safepoint counters
+ * directly, so it works while the JVM is paused.
+ * <p/>
+ * Each ping reports the share of the time since the last ping spent in
+ * collections and at safepoints, the number of collections, and the
+ * occupancy of the old generation and its change. The JVM is in a GC storm
+ * if a collection is in progress, or if collections took
+ * {@link #GC_PROBE_PAUSE_LIMIT} percent of the time since the last ping or
+ * more. A storm does not fail the probe: instead, for
+ * {@link #GC_PROBE_TIMEOUT_EXTENSION} milliseconds after it was last seen,
+ * the probe extends the timeouts of the reporting loop, and the deadline of
+ * any ping in progress, so that a pause is not mistaken for a hang.
+ * <p/>
+ * Pings are serialized, but the extension and the last sample are read by
+ * other threads while a ping may be blocked; they are published through
+ * volatile fields, so that reading them never waits for a ping.
+ * <p/>
+ * The probe fails if the JVM or its performance data can not be found, and,
+ * if {@link #GC_PROBE_HEAP_LIMIT} is set, if the old generation is still
+ * that full after an old collection.
+ */
+public class JvmGcProbe extends Probe implements TimeoutExtension {
+  private static final Log LOG = LogFactory.getLog(JvmGcProbe.class);
+
+  /**
+   * The most collectors a JVM has counters for
+   */
+  private static final int MAX_COLLECTORS = 4;
+
+  /**
+   * The collector of the old generation
+   */
+  private static final int OLD_COLLECTOR = 1;
+
+  private static final String HRT_FREQUENCY = "sun.os.hrt.frequency";
+  private static final String HRT_TICKS = "sun.os.hrt.ticks";
+  private static final String SAFEPOINT_TIME = "sun.rt.safepointTime";
+  private static final String OLD_USED = "sun.gc.generation.1.space.0.used";
+  private static final String OLD_CAPACITY = "sun.gc.generation.1.maxCapacity";
+
+  private final String pidPath;
+  private final FindAndPingPid pidPinger;
+  private final File perfDataDir;
+  private final int pauseLimit;
+  private final int heapLimit;
+  private final long extension;
+
+  /* guarded by this */
+  private String sampledPid;
+  private long lastTicks = -1;
+  private long lastGcTicks;
+  private long lastSafepointTicks;
+  private long lastCollections;
+  private long lastOldCollections;
+  private int lastOldPercent = -1;
+  private long newCollections;
+  private int oldTrend;
+
+  /* written under this, read without it */
+  private volatile PerfDataFile perfData;
+  private volatile long stormSeen = -1;
+
+  /* the last sample; written under this, read without it */
+  private volatile int pausePercent = -1;
+  private volatile int safepointPercent = -1;
+  private volatile long collections = -1;
+  private volatile int oldPercent = -1;
+  private volatile boolean collecting;
+
+  public JvmGcProbe(File pidFile, Configuration conf) {
+    super("GC of JVM", conf);
+    pidPinger = new FindAndPingPid(pidFile);
+    pidPath = pidPinger.getPidPath();
+    perfDataDir = new File(conf.get(GC_PROBE_PERFDATA_DIR, GC_PROBE_PERFDATA_DIR_DEFAULT));
+    pauseLimit = conf.getInt(GC_PROBE_PAUSE_LIMIT, GC_PROBE_PAUSE_LIMIT_DEFAULT);
+    heapLimit = conf.getInt(GC_PROBE_HEAP_LIMIT, GC_PROBE_HEAP_LIMIT_DEFAULT);
+    extension = conf.getInt(GC_PROBE_TIMEOUT_EXTENSION, GC_PROBE_TIMEOUT_EXTENSION_DEFAULT);
+    setName("GC of JVM in \"" + pidPath + "\"");
+  }
+
+  @Override
+  public synchronized ProbeStatus ping(boolean livePing) {
+    ProbeStatus status = new ProbeStatus();
+    try {
+      if (!pidPinger.ping()) {
+        reset(null);
+        throw new IOException("Process " + pidPinger.getPid() + " in " + pidPath
+                              + " is not live");
+      }
+      String pid = pidPinger.getPid();
+      if (!pid.equals(sampledPid) || perfData == null) {
+        reset(pid);
+        perfData = open(pid);
+      }
+      String problem = sample(now());
+      if (problem == null) {
+        status.succeed(this);
+        status.setMessage(getName() + ": process " + pid + " " + describe());
+      } else {
+        status.fail(this, new IOException("Process " + pid + " " + problem
+                                          + " [" + describe() + "]"));
+      }
+    } catch (IOException e) {
+      String error = "Probe " + pidPath + " failed: " + e;
+      LOG.debug(error, e);
+      status.fail(this, new IOException(error, e));
+    }
+    return status;
+  }
+
+  private void reset(String pid) {
+    sampledPid = pid;
+    perfData = null;
+    lastTicks = -1;
+    lastOldPercent = -1;
+    pausePercent = -1;
+    safepointPercent = -1;
+    collecting = false;
+  }
+
+  private PerfDataFile open(String pid) throws IOException {
+    File file = PerfDataFile.find(perfDataDir, pid);
+    if (file == null) {
+      throw new IOException("No performance data for process " + pid + " under "
+                            + perfDataDir + "; is the JVM running with -XX:-UsePerfData?");
+    }
+    LOG.debug("Mapping " + file);
+    return new PerfDataFile(file);
+  }
+
+  /**
+   * Sample the counters
+   * @param time time of the sample
+   * @return null, or a description of the problem
+   * @throws IOException if the counters can not be read
+   */
+  private String sample(long time) throws IOException {
+    PerfDataFile perfData = this.perfData;
+    if (!perfData.isAccessible() || perfData.getLong(HRT_FREQUENCY) <= 0) {
+      throw new IOException("Performance data in " + perfData + " is not ready");
+    }
+    long ticks = perfData.getLong(HRT_TICKS);
+    long gcTicks = 0;
+    long collections = 0;
+    boolean collecting = false;
+    for (int i = 0; i < MAX_COLLECTORS; i++) {
+      String collector = "sun.gc.collector." + i + ".";
+      long invocations = perfData.getLong(collector + "invocations");
+      if (invocations < 0) {
+        break;
+      }
+      collections += invocations;
+      gcTicks += perfData.getLong(collector + "time");
+      collecting |= isCollecting(perfData, collector);
+    }
+    this.collections = collections;
+    this.collecting = collecting;
+    long safepointTicks = perfData.getLong(SAFEPOINT_TIME);
+    long oldCollections = perfData.getLong("sun.gc.collector." + OLD_COLLECTOR
+                                           + ".invocations");
+    long oldUsed = perfData.getLong(OLD_USED);
+    long oldCapacity = perfData.getLong(OLD_CAPACITY);
+    int previousOldPercent = lastOldPercent;
+    oldPercent = oldCapacity > 0 ? (int) (oldUsed * 100 / oldCapacity) : -1;
+
+    boolean sampled = lastTicks >= 0;
+    //the ticks are not updated while the JVM is at a safepoint
+    if (sampled && ticks > lastTicks) {
+      long elapsed = ticks - lastTicks;
+      pausePercent = (int) ((gcTicks - lastGcTicks) * 100 / elapsed);
+      safepointPercent = safepointTicks < 0 ? -1
+                         : (int) ((safepointTicks - lastSafepointTicks) * 100 / elapsed);
+    }
+    if (collecting || (sampled && pauseLimit > 0 && pausePercent >= pauseLimit)) {
+      stormSeen = time;
+    }
+    String problem = null;
+    if (sampled && heapLimit > 0 && oldCollections > lastOldCollections
+        && oldPercent >= heapLimit) {
+      problem = "has its old generation " + oldPercent + "% full after "
+                + (oldCollections - lastOldCollections) + " old collection(s)";
+    }
+    if (ticks > lastTicks) {
+      lastTicks = ticks;
+      lastGcTicks = gcTicks;
+      lastSafepointTicks = safepointTicks;
+    }
+    newCollections = sampled ? collections - lastCollections : 0;
+    oldTrend = previousOldPercent >= 0 && oldPercent >= 0 ? oldPercent - previousOldPercent : 0;
+    lastCollections = collections;
+    lastOldCollections = oldCollections;
+    lastOldPercent = oldPercent;
+    return problem;
+  }
+
+  private static boolean isCollecting(PerfDataFile perfData, String collector) {
+    return perfData.getLong(collector + "lastEntryTime")
+           > perfData.getLong(collector + "lastExitTime");
+  }
+
+  private String describe() {
+    return "gc=" + (pausePercent < 0 ? "?" : pausePercent + "%")
+           + " safepoints=" + (safepointPercent < 0 ? "?" : safepointPercent + "%")
+           + " collections=" + collections + " (+" + newCollections + ")"
+           + " old=" + (oldPercent < 0 ? "?" : oldPercent + "%")
+           + (oldTrend != 0 ? " (" + (oldTrend > 0 ? "+" : "") + oldTrend + ")" : "")
+           + (collecting ? " collecting" : "")
+           + (isStorm(now()) ? " GC storm" : "");
+  }
+
+  /**
+   * Extend the timeouts while a GC storm is known. Any collection in
+   * progress is looked for in the mapped counters, so a pause which begins
+   * between pings is seen at once. This does not wait for a ping in progress.
+   * @param now the current time
+   * @return the configured extension during a storm, else 0
+   */
+  @Override
+  public long getTimeoutExtension(long now) {
+    PerfDataFile perfData = this.perfData;
+    if (perfData != null) {
+      for (int i = 0; i < MAX_COLLECTORS; i++) {
+        String collector = "sun.gc.collector." + i + ".";
+        if (perfData.getLong(collector + "invocations") < 0) {
+          break;
+        }
+        if (isCollecting(perfData, collector)) {
+          stormSeen = now;
+          break;
+        }
+      }
+    }
+    return isStorm(now) ? extension : 0;
+  }
+
+  private boolean isStorm(long now) {
+    long seen = stormSeen;
+    return seen >= 0 && now - seen < extension;
+  }
+
+  /**
+   * Get the share of the time between the last two samples spent collecting
+   * @return a percentage, or -1 if there has not been two samples
+   */
+  public int getPausePercent() {
+    return pausePercent;
+  }
+
+  public int getSafepointPercent() {
+    return safepointPercent;
+  }
+
+  /**
+   * Get the total number of collections at the last sample
+   * @return the count, or -1 before the first sample
+   */
+  public long getCollections() {
+    return collections;
+  }
+
+  /**
+   * Get the occupancy of the old generation at the last sample
+   * @return a percentage, or -1 if it is not known
+   */
+  public int getOldPercent() {
+    return oldPercent;
+  }
+
+  /**
+   * Was a collection in progress at the last sample?
+   * @return true iff one was
+   */
+  public boolean isCollecting() {
+    return collecting;
+  }
+
+  public static JvmGcProbe createProbe(Configuration conf) throws ExitMainException {
+    String pidpath = conf.get(PID_PROBE_PIDFILE, "");
+    if (pidpath.isEmpty()) {
+      throw new ExitMainException("Required property not set: " + PID_PROBE_PIDFILE);
+    }
+    return new JvmGcProbe(new File(pidpath), new Configuration(conf));
+  }
+}
@@ -18,6 +18,7 @@
 package org.apache.ambari.servicemonitor.probes;
 
 import org.apache.ambari.servicemonitor.reporting.ProbeStatus;
+import org.apache.ambari.servicemonitor.utils.DaemonThreadFactory;
 import org.apache.ambari.servicemonitor.utils.ExitMainException;
 import org.apache.ambari.servicemonitor.utils.FindAndPingPid;
 import org.apache.commons.logging.Log;
@@ -27,39 +28,120 @@ import org.apache.hadoop.conf.Configuration;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Probe that looks for a live process
+ * Probe that looks for a live process.
+ * <p/>
+ * The pid is cached between pings, and only reloaded when the pid file
+ * changes; liveness is read from /proc without forking. While the probe
+ * is being run by a worker, a shared watcher thread checks every
+ * {@link #PID_PROBE_WATCH_INTERVAL} milliseconds for the death of the
+ * process or a change to the pid file, and requests an immediate ping
+ * when it sees one.
  */
 public class PidLiveProbe extends Probe {
   private static final Log LOG = LogFactory.getLog(PidLiveProbe.class);
 
+  private static ScheduledExecutorService watcher;
+
   private final String pidPath;
   private final FindAndPingPid pidPinger;
+  private final int watchInterval;
+  private ScheduledFuture<?> watch;
 
   public PidLiveProbe(File pidFile, Configuration conf) {
     super("Find pid ", conf);
     pidPinger = new FindAndPingPid(pidFile);
     pidPath = pidPinger.getPidPath();
+    watchInterval = conf.getInt(PID_PROBE_WATCH_INTERVAL,
+                                PID_PROBE_WATCH_INTERVAL_DEFAULT);
     setName("Find Pid file at \"" + pidPath + "\"");
   }
 
+  public FindAndPingPid getPidPinger() {
+    return pidPinger;
+  }
+
+  /**
+   * Start watching the process when a handler is set, stop when it is cleared
+   * @param pingRequestHandler handler or null
+   */
+  @Override
+  public void setPingRequestHandler(PingRequestHandler pingRequestHandler) {
+    super.setPingRequestHandler(pingRequestHandler);
+    if (pingRequestHandler != null) {
+      startWatching();
+    } else {
+      stopWatching();
+    }
+  }
+
+  /**
+   * Is the process being watched between pings?
+   * @return true iff there is a watch scheduled
+   */
+  public synchronized boolean isWatching() {
+    return watch != null;
+  }
+
+  /**
+   * Start watching for changes between pings. This is a no-op if
+   * watching is disabled, if there is no /proc to watch, or if
+   * the probe is already being watched.
+   */
+  public synchronized void startWatching() {
+    if (watch != null || watchInterval <= 0 || !FindAndPingPid.isProcAvailable()) {
+      return;
+    }
+    watch = getWatcher().scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        if (pidPinger.hasChanged()) {
+          LOG.debug("Change seen at " + pidPath);
+          requestPing();
+        }
+      }
+    }, watchInterval, watchInterval, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stop watching for changes; harmless if the probe is not being watched
+   */
+  public synchronized void stopWatching() {
+    if (watch != null) {
+      watch.cancel(false);
+      watch = null;
+    }
+  }
+
+  private static synchronized ScheduledExecutorService getWatcher() {
+    if (watcher == null) {
+      watcher = Executors.newSingleThreadScheduledExecutor(
+        new DaemonThreadFactory("pid watcher"));
+    }
+    return watcher;
+  }
+
   @Override
   public ProbeStatus ping(boolean livePing) {
     ProbeStatus status = new ProbeStatus();
     try {
-      if (LOG.isDebugEnabled()) {
-      }
       LOG.debug("Probing process at " + pidPath);
       boolean live = pidPinger.ping();
       if (live) {
         status.succeed(this);
+        status.setMessage(getName() + ": process " + pidPinger.getPid() + " is live");
       } else {
         //process is not live, no obvious reason why not
         if (LOG.isDebugEnabled()) {
           LOG.debug("Ping of " + pidPath + " returned false");
         }
-        status.fail(this, null);
+        status.fail(this, new IOException("Process " + pidPinger.getPid()
+                                          + " in " + pidPath + " is not live"));
       }
     } catch (FileNotFoundException e) {
       //pid file is not there yet
@@ -18,19 +18,32 @@
 package org.apache.ambari.servicemonitor.probes;
 
 import org.apache.ambari.servicemonitor.reporting.ProbeStatus;
+import org.apache.ambari.servicemonitor.utils.ConnectionWatcher;
 import org.apache.ambari.servicemonitor.utils.MonitorUtils;
+import org.apache.ambari.servicemonitor.utils.ResolverCache;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
-import org.apache.hadoop.io.IOUtils;
 
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
-import java.net.Socket;
 
 /**
- * Probe for a port being open
+ * Probe for a port being open.
+ *
+ * The addresses of the host are taken from the shared {@link ResolverCache},
+ * so a ping does not wait for DNS. If the host has more than one address,
+ * connects to them are raced by an {@link AddressRace}; the status of a
+ * successful ping names the address which answered.
+ * <p/>
+ * In passive mode the probe also holds a connection open between pings,
+ * watched by the shared {@link ConnectionWatcher}. When the far end closes
+ * or resets it -as the kernel does when the process dies- the probe asks
+ * for an immediate ping, so a crash is reported in milliseconds rather than
+ * at the next interval; the pings themselves then only confirm what the
+ * connection says, and can be spaced further apart. The connection is
+ * reopened after the next successful ping.
  */
 public class PortProbe extends Probe {
   private static final Log LOG = LogFactory.getLog(PortProbe.class);
@@ -38,6 +51,10 @@ public class PortProbe extends Probe {
   private String host;
   private int port;
   private int timeout;
+  private int stagger = AddressRace.STAGGER_DEFAULT;
+  private boolean passive;
+  private ConnectionWatcher.Watch watch;
+  private final ResolverCache resolver = ResolverCache.getInstance();
 
   public PortProbe(String host, int port, int timeout, String name, Configuration conf) throws IOException {
     super("Port probe " + name + " " + host + ":" + port + " for " + timeout + "ms",
@@ -57,7 +74,8 @@ public class PortProbe extends Probe {
                                           PORT_PROBE_CONNECT_TIMEOUT_DEFAULT),
                                         "",
                                         conf);
-
+    portProbe.setStagger(conf.getInt(PORT_PROBE_STAGGER, AddressRace.STAGGER_DEFAULT));
+    portProbe.setPassive(conf.getBoolean(PORT_PROBE_PASSIVE, false));
     return portProbe;
   }
 
@@ -69,7 +87,7 @@ public class PortProbe extends Probe {
     InetAddress target;
     if (host != null) {
       LOG.debug("looking up host " + host);
-      target = InetAddress.getByName(host);
+      target = resolver.resolveFirst(host);
     } else {
       LOG.debug("Host is null, retrieving localhost address");
       target = InetAddress.getLocalHost();
@@ -77,6 +95,85 @@ public class PortProbe extends Probe {
     LOG.info("Checking " + target + ":" + port);
   }
 
+  public int getStagger() {
+    return stagger;
+  }
+
+  /**
+   * Set the delay before the next address of a host with many addresses is tried
+   * @param stagger delay in milliseconds
+   */
+  public void setStagger(int stagger) {
+    this.stagger = stagger;
+  }
+
+  public boolean isPassive() {
+    return passive;
+  }
+
+  /**
+   * Enable or disable passive mode
+   * @param passive true to hold a watched connection open between pings
+   */
+  public void setPassive(boolean passive) {
+    this.passive = passive;
+  }
+
+  /**
+   * Is there a watched connection open?
+   * @return true iff a connection is being watched
+   */
+  public synchronized boolean isWatching() {
+    return watch != null && watch.isOpen();
+  }
+
+  /**
+   * Close the watched connection when the handler of ping requests is cleared,
+   * as that means the probe is no longer being run
+   * @param pingRequestHandler handler or null
+   */
+  @Override
+  public void setPingRequestHandler(PingRequestHandler pingRequestHandler) {
+    super.setPingRequestHandler(pingRequestHandler);
+    if (pingRequestHandler == null) {
+      stopWatching();
+    }
+  }
+
+  /**
+   * Open a watched connection to the address which answered the last ping,
+   * unless one is open already
+   * @param address address
+   */
+  private synchronized void startWatching(InetSocketAddress address) {
+    if (isWatching()) {
+      return;
+    }
+    try {
+      watch = ConnectionWatcher.getInstance().watch(address, timeout,
+        new ConnectionWatcher.Listener() {
+          @Override
+          public void connectionClosed(ConnectionWatcher.Watch closed, String reason) {
+            LOG.info(getName() + ": " + reason);
+            requestPing();
+          }
+        });
+    } catch (IOException e) {
+      //the next ping tries again
+      LOG.debug("Failed to watch " + address + ": " + e, e);
+    }
+  }
+
+  /**
+   * Close any watched connection
+   */
+  public synchronized void stopWatching() {
+    if (watch != null) {
+      watch.close();
+      watch = null;
+    }
+  }
+
   /**
    * Try to connect to the (host,port); a failure to connect within
    * the specified timeout is a failure
@@ -86,22 +183,26 @@ public class PortProbe extends Probe {
   @Override
   public ProbeStatus ping(boolean livePing) {
     ProbeStatus status = new ProbeStatus();
-    InetSocketAddress sockAddr = new InetSocketAddress(host, port);
-    Socket socket = new Socket();
+    String target = host + ":" + port;
     try {
+      InetAddress[] addresses = resolver.resolve(host);
       if (LOG.isDebugEnabled()) {
-        LOG.debug("Connecting to " + sockAddr.toString() + " connection-timeout=" +
+        LOG.debug("Connecting to " + target + " at " + addresses.length
+                  + " address(es), connection-timeout=" +
                   MonitorUtils.millisToHumanTime(timeout));
       }
-      socket.connect(sockAddr, timeout);
+      InetSocketAddress answered = AddressRace.connect(addresses, port, timeout, stagger);
       status.succeed(this);
+      status.setMessage(getName() + " answered by "
+                        + answered.getAddress().getHostAddress());
+      if (passive) {
+        startWatching(answered);
+      }
     } catch (IOException e) {
-      String error = "Probe " + sockAddr + " failed: " + e;
+      String error = "Probe " + target + " failed: " + e;
       LOG.debug(error, e);
       status.fail(this,
                   new IOException(error, e));
-    } finally {
-      IOUtils.closeSocket(socket);
     }
     return status;
 
@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.servicemonitor.probes;
+
+import org.apache.ambari.servicemonitor.reporting.ProbeStatus;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Probe for the ports of many targets being open -such as every DataNode
+ * and TaskTracker of a cluster. All the targets are checked in one sweep
+ * by a {@link PortSweeper}; the probe fails if more of them are closed
+ * than are allowed to be.
+ */
+public class PortSweepProbe extends Probe {
+  private static final Log LOG = LogFactory.getLog(PortSweepProbe.class);
+
+  /**
+   * Number of failed targets to list in the status of a failed sweep: {@value}
+   */
+  public static final int FAILURES_TO_LIST = 5;
+
+  private final List<InetSocketAddress> targets;
+  private final int maxFailures;
+  private final PortSweeper sweeper;
+  private volatile List<ProbeStatus> lastResults = Collections.emptyList();
+
+  /**
+   * Create a probe
+   * @param targets the targets; these are resolved at every sweep
+   * @param timeout timeout in milliseconds of the connect to each target
+   * @param maxConnections the most connects to have in progress at a time
+   * @param maxFailures the number of closed ports which can be tolerated
+   * @param conf configuration
+   */
+  public PortSweepProbe(List<InetSocketAddress> targets,
+                        int timeout,
+                        int maxConnections,
+                        int maxFailures,
+                        Configuration conf) {
+    super("Port sweep of " + targets.size() + " targets for " + timeout + "ms", conf);
+    this.targets = new ArrayList<InetSocketAddress>(targets);
+    this.maxFailures = maxFailures;
+    sweeper = new PortSweeper(this, timeout, maxConnections);
+  }
+
+  public static PortSweepProbe createPortSweepProbe(Configuration conf,
+                                                    List<InetSocketAddress> targets) {
+    return new PortSweepProbe(targets,
+                              conf.getInt(PORT_SWEEP_CONNECT_TIMEOUT,
+                                          PORT_PROBE_CONNECT_TIMEOUT_DEFAULT),
+                              conf.getInt(PORT_SWEEP_CONNECTIONS,
+                                          PORT_SWEEP_CONNECTIONS_DEFAULT),
+                              conf.getInt(PORT_SWEEP_MAX_FAILURES, 0),
+                              conf);
+  }
+
+  @Override
+  public void init() throws IOException {
+    if (targets.isEmpty()) {
+      throw new IOException("No targets to sweep");
+    }
+    for (InetSocketAddress target : targets) {
+      if (target.getPort() <= 0 || target.getPort() >= 65536) {
+        throw new IOException("Port is out of range: " + target);
+      }
+    }
+    LOG.info("Sweeping " + targets.size() + " targets with up to "
+             + sweeper.getMaxConnections() + " connections at a time");
+  }
+
+  public List<InetSocketAddress> getTargets() {
+    return Collections.unmodifiableList(targets);
+  }
+
+  /**
+   * Get the outcome of each target in the last sweep
+   * @return a status for each target, in the same order as the targets
+   */
+  public List<ProbeStatus> getLastResults() {
+    return lastResults;
+  }
+
+  /**
+   * Sweep the targets; the probe fails if more than the tolerated number
+   * of them can not be connected to within the timeout
+   * @param livePing is the ping live: true for live; false for boot time
+   * @return the outcome
+   */
+  @Override
+  public ProbeStatus ping(boolean livePing) {
+    ProbeStatus status = new ProbeStatus();
+    try {
+      List<ProbeStatus> results = sweeper.sweep(targets);
+      lastResults = results;
+      List<ProbeStatus> failures = PortSweeper.getFailures(results);
+      String summary = (results.size() - failures.size()) + " of "
+                       + results.size() + " ports open";
+      if (failures.size() > maxFailures) {
+        StringBuilder error = new StringBuilder(summary);
+        for (int i = 0; i < failures.size() && i < FAILURES_TO_LIST; i++) {
+          error.append("; ").append(failures.get(i).getMessage());
+        }
+        if (failures.size() > FAILURES_TO_LIST) {
+          error.append("; ...");
+        }
+        LOG.debug(error);
+        status.fail(this, new IOException(error.toString()));
+      } else {
+        status.succeed(this);
+        status.setMessage(getName() + ": " + summary);
+      }
+    } catch (IOException e) {
+      status.fail(this, new IOException(getName() + " : " + e, e));
+    }
+    return status;
+  }
+}
@@ -0,0 +1,309 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.servicemonitor.probes;
+
+import org.apache.ambari.servicemonitor.reporting.ProbeStatus;
+import org.apache.ambari.servicemonitor.utils.MonitorUtils;
+import org.apache.ambari.servicemonitor.utils.ResolverCache;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.io.IOUtils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Checks that many ports are open, with non-blocking connects multiplexed
+ * on one selector. The thread calling {@link #sweep(List)} drives the
+ * selector: it starts connects to up to the connection limit of targets
+ * at a time, each with its own deadline, and collects the outcomes as
+ * they complete. A sweep of hundreds of ports therefore takes about as
+ * long as the slowest connect, with one thread and no thread per target.
+ *
+ * An interrupt of the calling thread aborts the sweep; the targets not
+ * yet checked are then reported as failed.
+ */
+public final class PortSweeper {
+  private static final Log LOG = LogFactory.getLog(PortSweeper.class);
+
+  private final Probe originator;
+  private final int timeout;
+  private final int maxConnections;
+  private final ResolverCache resolver = ResolverCache.getInstance();
+
+  /**
+   * Create a sweeper
+   * @param originator the probe to name as the originator of the statuses
+   * @param timeout timeout in milliseconds of each connect; as with
+   * {@link java.net.Socket#connect(java.net.SocketAddress, int)}, 0 means
+   * no timeout
+   * @param maxConnections the most connects to have in progress at a time
+   * @throws IllegalArgumentException if the timeout is negative
+   */
+  public PortSweeper(Probe originator, int timeout, int maxConnections) {
+    if (timeout < 0) {
+      throw new IllegalArgumentException("connect timeout can't be negative: " + timeout);
+    }
+    this.originator = originator;
+    this.timeout = timeout;
+    this.maxConnections = Math.max(1, maxConnections);
+  }
+
+  public int getTimeout() {
+    return timeout;
+  }
+
+  public int getMaxConnections() {
+    return maxConnections;
+  }
+
+  /**
+   * Check the ports of a list of targets
+   * @param targets targets; unresolved addresses are resolved through
+   * the shared {@link ResolverCache} before they are connected to
+   * @return a status for each target, in the same order as the targets
+   * @throws IOException if a selector could not be opened
+   */
+  public List<ProbeStatus> sweep(List<InetSocketAddress> targets) throws IOException {
+    int size = targets.size();
+    ProbeStatus[] results = new ProbeStatus[size];
+    Selector selector = Selector.open();
+    try {
+      int next = 0;
+      int pending = 0;
+      while (next < size || pending > 0) {
+        while (next < size && pending < maxConnections) {
+          if (connect(selector, targets.get(next), next, results)) {
+            pending++;
+          }
+          next++;
+        }
+        if (pending == 0) {
+          continue;
+        }
+        long deadline = getEarliestDeadline(selector);
+        long wait = deadline - now();
+        if (deadline == Long.MAX_VALUE) {
+          selector.select();
+        } else if (wait > 0) {
+          selector.select(wait);
+        } else {
+          selector.selectNow();
+        }
+        if (Thread.currentThread().isInterrupted()) {
+          abort(targets, results);
+          break;
+        }
+        pending -= finishConnects(selector, results);
+        pending -= expireConnects(selector, results);
+      }
+    } finally {
+      for (SelectionKey key : selector.keys()) {
+        IOUtils.closeStream(key.channel());
+      }
+      try {
+        selector.close();
+      } catch (IOException e) {
+        LOG.debug("Failed to close selector: " + e, e);
+      }
+    }
+    return Arrays.asList(results);
+  }
+
+  /**
+   * Start a connect. A target which can not be connected to at once is
+   * either finished straight away, or registered with the selector.
+   * @param selector selector
+   * @param target target
+   * @param index index of the target
+   * @param results array of results
+   * @return true iff the connect is in progress
+   */
+  private boolean connect(Selector selector,
+                          InetSocketAddress target,
+                          int index,
+                          ProbeStatus[] results) {
+    Connect connect = new Connect(index, target);
+    SocketChannel channel = null;
+    try {
+      InetSocketAddress address = target;
+      if (address.isUnresolved()) {
+        address = new InetSocketAddress(resolver.resolveFirst(target.getHostName()),
+                                        target.getPort());
+      }
+      channel = SocketChannel.open();
+      channel.configureBlocking(false);
+      if (channel.connect(address)) {
+        results[index] = connect.succeeded();
+        IOUtils.closeStream(channel);
+        return false;
+      }
+      channel.register(selector, SelectionKey.OP_CONNECT, connect);
+      return true;
+    } catch (IOException e) {
+      IOUtils.closeStream(channel);
+      results[index] = connect.failed(e);
+      return false;
+    }
+  }
+
+  /**
+   * Finish the connects which the selector has found to be ready. A connect
+   * which is still in progress stays registered with the selector.
+   * @param selector selector
+   * @param results array of results
+   * @return the number of connects finished
+   */
+  private int finishConnects(Selector selector, ProbeStatus[] results) {
+    int finished = 0;
+    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+    while (keys.hasNext()) {
+      SelectionKey key = keys.next();
+      keys.remove();
+      Connect connect = (Connect) key.attachment();
+      SocketChannel channel = (SocketChannel) key.channel();
+      try {
+        if (!channel.finishConnect()) {
+          continue;
+        }
+        results[connect.index] = connect.succeeded();
+      } catch (IOException e) {
+        results[connect.index] = connect.failed(e);
+      }
+      key.cancel();
+      IOUtils.closeStream(channel);
+      finished++;
+    }
+    return finished;
+  }
+
+  /**
+   * Fail the connects whose deadline has passed
+   * @param selector selector
+   * @param results array of results
+   * @return the number of connects which have been failed
+   */
+  private int expireConnects(Selector selector, ProbeStatus[] results) {
+    int expired = 0;
+    long now = now();
+    for (SelectionKey key : selector.keys()) {
+      Connect connect = (Connect) key.attachment();
+      if (key.isValid() && connect.deadline <= now) {
+        results[connect.index] = connect.failed(
+          new SocketTimeoutException("connect timed out after "
+                                     + MonitorUtils.millisToHumanTime(timeout)));
+        key.cancel();
+        IOUtils.closeStream(key.channel());
+        expired++;
+      }
+    }
+    return expired;
+  }
+
+  private long getEarliestDeadline(Selector selector) {
+    long earliest = Long.MAX_VALUE;
+    for (SelectionKey key : selector.keys()) {
+      if (key.isValid()) {
+        earliest = Math.min(earliest, ((Connect) key.attachment()).deadline);
+      }
+    }
+    return earliest;
+  }
+
+  /**
+   * Fail every target without a result, after an interrupt
+   * @param targets targets
+   * @param results array of results
+   */
+  private void abort(List<InetSocketAddress> targets, ProbeStatus[] results) {
+    LOG.debug("Port sweep interrupted");
+    for (int i = 0; i < results.length; i++) {
+      if (results[i] == null) {
+        results[i] = new Connect(i, targets.get(i))
+          .failed(new InterruptedIOException("port sweep interrupted"));
+      }
+    }
+  }
+
+  private static long now() {
+    return System.currentTimeMillis();
+  }
+
+  /**
+   * Get the statuses of the targets whose ports are not open
+   * @param results results of a sweep
+   * @return the failures, in order
+   */
+  public static List<ProbeStatus> getFailures(List<ProbeStatus> results) {
+    List<ProbeStatus> failures = new ArrayList<ProbeStatus>();
+    for (ProbeStatus result : results) {
+      if (!result.isSuccess()) {
+        failures.add(result);
+      }
+    }
+    return failures;
+  }
+
+  /**
+   * A connect to one target
+   */
+  private final class Connect {
+    private final int index;
+    private final InetSocketAddress target;
+    private final long started;
+    private final long deadline;
+
+    private Connect(int index, InetSocketAddress target) {
+      this.index = index;
+      this.target = target;
+      started = now();
+      deadline = timeout > 0 ? started + timeout : Long.MAX_VALUE;
+    }
+
+    private ProbeStatus succeeded() {
+      ProbeStatus status = new ProbeStatus();
+      status.finish(originator, true, "Port " + describe() + " is open", null);
+      status.setDuration(now() - started);
+      return status;
+    }
+
+    private ProbeStatus failed(IOException e) {
+      String error = "Probe " + describe() + " failed: " + e;
+      if (LOG.isDebugEnabled()) {
+        LOG.debug(error, e);
+      }
+      ProbeStatus status = new ProbeStatus();
+      status.finish(originator, false, error, new IOException(error, e));
+      status.setDuration(now() - started);
+      return status;
+    }
+
+    private String describe() {
+      return target.getHostName() + ":" + target.getPort();
+    }
+  }
+}
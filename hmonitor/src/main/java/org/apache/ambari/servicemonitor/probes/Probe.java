@@ -18,7 +18,9 @@
 package org.apache.ambari.servicemonitor.probes;
 
 import org.apache.ambari.servicemonitor.MonitorKeys;
+import org.apache.ambari.servicemonitor.reporting.AdaptiveInterval;
 import org.apache.ambari.servicemonitor.reporting.ProbeStatus;
+import org.apache.ambari.servicemonitor.utils.LatencyWindow;
 import org.apache.hadoop.conf.Configuration;
 
 import java.io.IOException;
@@ -43,9 +45,31 @@ public abstract class Probe implements MonitorKeys {
   public long bootstrapStarted;
   public long bootstrapFinished;
   private boolean booted = false;
+  private final LatencyWindow latencies = new LatencyWindow(LATENCY_WINDOW_SIZE);
 
   // =======================================================
 
+  /**
+   * Interval in milliseconds between live pings of this probe;
+   * -1 means "use the interval of the probe worker"
+   */
+  private int interval = -1;
+
+  /**
+   * Optional policy to adapt the interval to the health of the probe
+   */
+  private AdaptiveInterval intervalPolicy;
+
+  /**
+   * Should a slow ping be hedged with a second attempt?
+   */
+  private boolean hedged;
+
+  /**
+   * Handler of early ping requests; set by the probe worker
+   */
+  private volatile PingRequestHandler pingRequestHandler;
+
   /**
    * Create a probe of a specific name
    *
@@ -105,6 +129,72 @@ public abstract class Probe implements MonitorKeys {
     bootstrapFinished = now();
   }
 
+  public int getInterval() {
+    return interval;
+  }
+
+  /**
+   * Set the interval between live pings of this probe.
+   * @param interval interval in milliseconds; zero or less means
+   * use that of the probe worker
+   */
+  public void setInterval(int interval) {
+    this.interval = interval;
+  }
+
+  /**
+   * Get the latencies of the recent successful pings of this probe
+   * @return the latency window
+   */
+  public LatencyWindow getLatencies() {
+    return latencies;
+  }
+
+  public boolean isHedged() {
+    return hedged;
+  }
+
+  /**
+   * Enable or disable hedged pings. A hedged probe must allow two of its
+   * pings to run at the same time: anything a ping measures or finds out
+   * is kept local to it, and only published to fields once it is done.
+   * @param hedged true if a ping which is slower than usual should be
+   * raced by a second attempt
+   */
+  public void setHedged(boolean hedged) {
+    this.hedged = hedged;
+  }
+
+  public AdaptiveInterval getIntervalPolicy() {
+    return intervalPolicy;
+  }
+
+  /**
+   * Set a policy to adapt the interval between live pings of this probe;
+   * when set, it takes the place of the fixed interval.
+   * @param intervalPolicy the policy, or null for a fixed interval
+   */
+  public void setIntervalPolicy(AdaptiveInterval intervalPolicy) {
+    this.intervalPolicy = intervalPolicy;
+  }
+
+  public void setPingRequestHandler(PingRequestHandler pingRequestHandler) {
+    this.pingRequestHandler = pingRequestHandler;
+  }
+
+  /**
+   * Ask to be pinged as soon as possible, rather than at the next due time.
+   * A probe which learns of a change in its target between pings calls this,
+   * so that the change is reported at once. Nothing happens if the probe is
+   * not being run by a worker.
+   */
+  protected void requestPing() {
+    PingRequestHandler handler = pingRequestHandler;
+    if (handler != null) {
+      handler.pingRequested(this);
+    }
+  }
+
   public boolean isBooted() {
     return booted;
   }
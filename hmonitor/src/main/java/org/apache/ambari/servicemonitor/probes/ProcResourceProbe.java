@@ -0,0 +1,293 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.servicemonitor.probes;
+
+import org.apache.ambari.servicemonitor.reporting.ProbeStatus;
+import org.apache.ambari.servicemonitor.utils.ExitMainException;
+import org.apache.ambari.servicemonitor.utils.FindAndPingPid;
+import org.apache.ambari.servicemonitor.utils.ProcFile;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Probe of the resources used by a process, found through the same pid file
+ * as the {@link PidLiveProbe}. A process can be live and still be of no use:
+ * stuck in uninterruptible I/O, spinning on a CPU, or out of file descriptors
+ * or threads. Each ping samples <code>/proc/&lt;pid&gt;/stat</code>,
+ * <code>/proc/&lt;pid&gt;/status</code> and the size of
+ * <code>/proc/&lt;pid&gt;/fd</code>, and fails if any limit is exceeded:
+ * <ol>
+ *   <li>The process is in state D (uninterruptible sleep) at every sample
+ *   for longer than {@link #PROC_PROBE_BLOCKED_DURATION}.</li>
+ *   <li>The CPU time used between samples is {@link #PROC_PROBE_CPU_LIMIT}
+ *   percent of one CPU or more, for longer than
+ *   {@link #PROC_PROBE_CPU_DURATION}.</li>
+ *   <li>More than {@link #PROC_PROBE_FD_PERCENT} percent of the limit on
+ *   open files of the process is used.</li>
+ *   <li>The process has more than {@link #PROC_PROBE_THREADS_MAX} threads.</li>
+ * </ol>
+ * Nothing is forked, and the files are read into a buffer which is reused
+ * between pings. The probe fails if there is no <code>/proc</code>.
+ */
+public class ProcResourceProbe extends Probe {
+  private static final Log LOG = LogFactory.getLog(ProcResourceProbe.class);
+
+  /**
+   * The unit of the CPU times of /proc/pid/stat: USER_HZ, which is 100
+   * on every Linux platform
+   */
+  public static final int CLOCK_TICKS = 100;
+
+  private static final File PROC = new File("/proc");
+
+  /* indexes of fields after the command of /proc/pid/stat */
+  private static final int STAT_STATE = 0;
+  private static final int STAT_UTIME = 11;
+  private static final int STAT_STIME = 12;
+
+  private final String pidPath;
+  private final FindAndPingPid pidPinger;
+  private final int cpuLimit;
+  private final int cpuDuration;
+  private final int blockedDuration;
+  private final int fdPercent;
+  private final int maxThreads;
+  private final ProcFile procFile = new ProcFile();
+
+  /* the state kept between samples; guarded by this */
+  private String sampledPid;
+  private long fdLimit = -1;
+  private long lastTicks = -1;
+  private long lastSampleTime;
+  private long cpuOverSince = -1;
+  private long blockedSince = -1;
+
+  /* the last sample; guarded by this */
+  private char state;
+  private int cpuPercent = -1;
+  private long threads = -1;
+  private long openFiles = -1;
+  private long rss = -1;
+
+  public ProcResourceProbe(File pidFile, Configuration conf) {
+    super("Resources of process", conf);
+    pidPinger = new FindAndPingPid(pidFile);
+    pidPath = pidPinger.getPidPath();
+    cpuLimit = conf.getInt(PROC_PROBE_CPU_LIMIT, PROC_PROBE_CPU_LIMIT_DEFAULT);
+    cpuDuration = conf.getInt(PROC_PROBE_CPU_DURATION, PROC_PROBE_CPU_DURATION_DEFAULT);
+    blockedDuration = conf.getInt(PROC_PROBE_BLOCKED_DURATION,
+                                  PROC_PROBE_BLOCKED_DURATION_DEFAULT);
+    fdPercent = conf.getInt(PROC_PROBE_FD_PERCENT, PROC_PROBE_FD_PERCENT_DEFAULT);
+    maxThreads = conf.getInt(PROC_PROBE_THREADS_MAX, PROC_PROBE_THREADS_MAX_DEFAULT);
+    setName("Resources of process in \"" + pidPath + "\"");
+  }
+
+  @Override
+  public synchronized ProbeStatus ping(boolean livePing) {
+    ProbeStatus status = new ProbeStatus();
+    try {
+      if (!FindAndPingPid.isProcAvailable()) {
+        throw new IOException("There is no " + PROC + " filesystem");
+      }
+      if (!pidPinger.ping()) {
+        reset(null);
+        throw new IOException("Process " + pidPinger.getPid() + " in " + pidPath
+                              + " is not live");
+      }
+      String pid = pidPinger.getPid();
+      if (!pid.equals(sampledPid)) {
+        reset(pid);
+      }
+      String problems = sample(pid, now());
+      if (problems == null) {
+        status.succeed(this);
+        status.setMessage(getName() + ": process " + pid + " " + describe());
+      } else {
+        status.fail(this, new IOException("Process " + pid + " " + problems
+                                          + " [" + describe() + "]"));
+      }
+    } catch (IOException e) {
+      String error = "Probe " + pidPath + " failed: " + e;
+      LOG.debug(error, e);
+      status.fail(this, new IOException(error, e));
+    }
+    return status;
+  }
+
+  /**
+   * Forget the samples of a process
+   * @param pid the process to be sampled next; may be null
+   * @throws IOException on a failure to read the limits of the new process
+   */
+  private void reset(String pid) throws IOException {
+    sampledPid = pid;
+    lastTicks = -1;
+    cpuOverSince = -1;
+    blockedSince = -1;
+    cpuPercent = -1;
+    fdLimit = pid == null ? -1 : readFdLimit(pid);
+  }
+
+  /**
+   * Sample the process and check the limits
+   * @param pid process
+   * @param time time of the sample
+   * @return null if all is well, else a description of the problems
+   * @throws IOException if the process has gone, or its files can not be parsed
+   */
+  private String sample(String pid, long time) throws IOException {
+    File dir = new File(PROC, pid);
+    File statFile = new File(dir, "stat");
+    load(statFile);
+    int end = procFile.lastIndexOf(')');
+    int stateOffset = procFile.findField(end + 1, STAT_STATE);
+    long utime = procFile.parseLong(procFile.findField(end + 1, STAT_UTIME));
+    long stime = procFile.parseLong(procFile.findField(end + 1, STAT_STIME));
+    if (end < 0 || stateOffset < 0 || utime < 0 || stime < 0) {
+      throw new IOException("Cannot parse " + statFile);
+    }
+    state = procFile.charAt(stateOffset);
+    long ticks = utime + stime;
+
+    load(new File(dir, "status"));
+    threads = procFile.parseLong(procFile.findLine("Threads:"));
+    rss = procFile.parseLong(procFile.findLine("VmRSS:"));
+
+    //the directory can not be listed without permission to the process
+    String[] fds = new File(dir, "fd").list();
+    openFiles = fds == null ? -1 : fds.length;
+
+    StringBuilder problems = new StringBuilder();
+    if (state == 'Z') {
+      problems.append("is a zombie; ");
+    }
+    if (state == 'D') {
+      if (blockedSince < 0) {
+        blockedSince = time;
+      }
+      if (blockedDuration > 0 && time - blockedSince >= blockedDuration) {
+        problems.append("has been in uninterruptible sleep for ")
+                .append(time - blockedSince).append("ms; ");
+      }
+    } else {
+      blockedSince = -1;
+    }
+    if (lastTicks >= 0 && time > lastSampleTime) {
+      cpuPercent = (int) ((ticks - lastTicks) * 1000L * 100L
+                          / (CLOCK_TICKS * (time - lastSampleTime)));
+      if (cpuLimit > 0 && cpuPercent >= cpuLimit) {
+        if (cpuOverSince < 0) {
+          cpuOverSince = lastSampleTime;
+        }
+        if (time - cpuOverSince >= cpuDuration) {
+          problems.append("has used ").append(cpuLimit)
+                  .append("% of a CPU or more for ").append(time - cpuOverSince)
+                  .append("ms; ");
+        }
+      } else {
+        cpuOverSince = -1;
+      }
+    }
+    lastTicks = ticks;
+    lastSampleTime = time;
+    if (fdPercent > 0 && fdLimit > 0 && openFiles * 100 > fdLimit * fdPercent) {
+      problems.append("has more than ").append(fdPercent)
+              .append("% of its limit of open files open; ");
+    }
+    if (maxThreads > 0 && threads > maxThreads) {
+      problems.append("has more than ").append(maxThreads).append(" threads; ");
+    }
+    if (problems.length() == 0) {
+      return null;
+    }
+    problems.setLength(problems.length() - 2);
+    return problems.toString();
+  }
+
+  private void load(File file) throws IOException {
+    if (!procFile.load(file)) {
+      throw new IOException("Process has exited: no " + file);
+    }
+  }
+
+  /**
+   * Read the soft limit on open files of a process
+   * @param pid process
+   * @return the limit, or -1 if it is unlimited or unknown
+   * @throws IOException on a failure to read the limits
+   */
+  private long readFdLimit(String pid) throws IOException {
+    if (!procFile.load(new File(new File(PROC, pid), "limits"))) {
+      return -1;
+    }
+    return procFile.parseLong(procFile.findLine("Max open files"));
+  }
+
+  private String describe() {
+    return "state=" + state
+           + " cpu=" + (cpuPercent < 0 ? "?" : cpuPercent + "%")
+           + " threads=" + threads
+           + " fds=" + (openFiles < 0 ? "?" : Long.toString(openFiles))
+           + (fdLimit > 0 ? "/" + fdLimit : "")
+           + " rss=" + rss + "kB";
+  }
+
+  /**
+   * Get the CPU used between the last two samples
+   * @return percent of one CPU, or -1 if there has not been two samples
+   */
+  public synchronized int getCpuPercent() {
+    return cpuPercent;
+  }
+
+  public synchronized long getThreads() {
+    return threads;
+  }
+
+  /**
+   * Get the number of open files at the last sample
+   * @return the count, or -1 if the files of the process can not be listed
+   */
+  public synchronized long getOpenFiles() {
+    return openFiles;
+  }
+
+  /**
+   * Get the soft limit on open files of the process
+   * @return the limit, or -1 if it is unlimited or unknown
+   */
+  public synchronized long getFdLimit() {
+    return fdLimit;
+  }
+
+  public synchronized char getState() {
+    return state;
+  }
+
+  public static ProcResourceProbe createProbe(Configuration conf) throws ExitMainException {
+    String pidpath = conf.get(PID_PROBE_PIDFILE, "");
+    if (pidpath.isEmpty()) {
+      throw new ExitMainException("Required property not set: " + PID_PROBE_PIDFILE);
+    }
+    return new ProcResourceProbe(new File(pidpath), new Configuration(conf));
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.servicemonitor.probes;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Asserts that the text of a body contains a string, or a match
+ * of a regular expression.
+ *
+ * The text is searched a block at a time; the end of each block is carried
+ * over to the next so that a match across the boundary is found. For a
+ * string that is its length; for a regular expression it is
+ * {@link #REGEX_WINDOW} characters, which is the longest match that can be
+ * relied on to be found.
+ *
+ * Anchors and boundaries are judged against the whole body, not the
+ * block: <code>^</code> only matches at the start of the body, and until
+ * the body has been read, a match which depends on what follows it
+ * -such as one ending in <code>$</code> or <code>\b</code>- is not
+ * accepted.
+ */
+public final class TextAssertion extends BodyAssertion {
+
+  /**
+   * Number of characters carried over between blocks when searching
+   * for a regular expression: {@value}
+   */
+  public static final int REGEX_WINDOW = 4096;
+
+  private static final int BLOCK = 4096;
+
+  private final Pattern pattern;
+  private final int overlap;
+  private final String description;
+
+  private TextAssertion(Pattern pattern, int overlap, String description, int limit) {
+    super(limit);
+    this.pattern = pattern;
+    this.overlap = overlap;
+    this.description = description;
+  }
+
+  /**
+   * Assert that the body contains a string
+   * @param text the string
+   * @param limit number of bytes of the body to search
+   * @return the assertion
+   */
+  public static TextAssertion contains(String text, int limit) {
+    if (text.length() == 0) {
+      throw new IllegalArgumentException("Empty text to search for");
+    }
+    return new TextAssertion(Pattern.compile(Pattern.quote(text)),
+                             text.length(),
+                             "body contains \"" + text + "\"",
+                             limit);
+  }
+
+  /**
+   * Assert that the body contains a match of a regular expression
+   * @param regex the expression
+   * @param limit number of bytes of the body to search
+   * @return the assertion
+   * @throws java.util.regex.PatternSyntaxException if the expression is invalid
+   */
+  public static TextAssertion matches(String regex, int limit) {
+    return new TextAssertion(Pattern.compile(regex),
+                             REGEX_WINDOW,
+                             "body matches /" + regex + "/",
+                             limit);
+  }
+
+  @Override
+  protected boolean test(InputStream body, String charset) throws IOException {
+    Reader reader = new InputStreamReader(body, charset);
+    char[] block = new char[BLOCK];
+    //once text has been dropped, the window keeps the character before
+    //the carried over text, so that a boundary at its start is judged
+    //correctly; the search starts after it
+    StringBuilder window = new StringBuilder(overlap + 1 + BLOCK);
+    int start = 0;
+    int read;
+    while ((read = reader.read(block)) >= 0) {
+      window.append(block, 0, read);
+      if (find(window, start, false)) {
+        return true;
+      }
+      if (window.length() > overlap + 1) {
+        window.delete(0, window.length() - overlap - 1);
+        start = 1;
+      }
+    }
+    return find(window, start, true);
+  }
+
+  /**
+   * Search the window
+   * @param window the text
+   * @param start where to start the search; any text before it is only
+   * looked at for boundaries
+   * @param ended has the whole body been read?
+   * @return true iff there is a match which more text could not change
+   */
+  private boolean find(CharSequence window, int start, boolean ended) {
+    Matcher matcher = pattern.matcher(window);
+    matcher.region(start, window.length());
+    matcher.useTransparentBounds(true);
+    matcher.useAnchoringBounds(false);
+    while (matcher.find()) {
+      if (ended || !(matcher.hitEnd() || matcher.requireEnd())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public String describe() {
+    return description;
+  }
+}
@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.servicemonitor.reporting;
+
+/**
+ * An adaptive interval between the live pings of a probe.
+ *
+ * While the probe keeps succeeding with a stable latency, the interval
+ * is stretched by the growth factor after every ping, up to the maximum.
+ * On a failure, or a ping whose latency is well above the smoothed
+ * latency of the earlier ones, it drops to the burst interval, so that
+ * the failure is quickly confirmed or cleared. After a burst, the first
+ * healthy ping puts the interval back to its minimum, from which it
+ * grows again.
+ *
+ * A failed live ping is reported as a failure at once, whatever the interval;
+ * the burst after a failure only matters if the reporter keeps the monitor
+ * running after it, rather than failing the service over.
+ *
+ * The latency is smoothed as TCP does its round trip time: an exponentially
+ * weighted moving average with a weight of 1/8 for each new sample.
+ */
+public final class AdaptiveInterval {
+
+  /**
+   * Number of samples before latency spikes are looked for: {@value}
+   */
+  public static final int WARMUP_SAMPLES = 4;
+
+  /**
+   * A latency more than this many times the average is a spike: {@value}
+   */
+  public static final float SPIKE_FACTOR = 3.0f;
+
+  /**
+   * A latency less than this many milliseconds above the average is never
+   * a spike, whatever the ratio; this stops jitter in sub-millisecond
+   * pings from being taken as spikes: {@value}
+   */
+  public static final int SPIKE_MINIMUM = 50;
+
+  /**
+   * Default growth factor: {@value}
+   */
+  public static final float GROWTH_DEFAULT = 1.5f;
+
+  private final int minInterval;
+  private final int maxInterval;
+  private final int burstInterval;
+  private final float growth;
+
+  private int interval;
+  private double averageLatency;
+  private int samples;
+  private boolean bursting;
+
+  /**
+   * Create an adaptive interval, which starts at its minimum
+   * @param minInterval the interval after a burst, and the starting interval
+   * @param maxInterval the longest interval
+   * @param burstInterval the interval after a failure or latency spike
+   */
+  public AdaptiveInterval(int minInterval, int maxInterval, int burstInterval) {
+    this(minInterval, maxInterval, burstInterval, GROWTH_DEFAULT);
+  }
+
+  /**
+   * Create an adaptive interval, which starts at its minimum
+   * @param minInterval the interval after a burst, and the starting interval
+   * @param maxInterval the longest interval
+   * @param burstInterval the interval after a failure or latency spike
+   * @param growth factor by which the interval grows after a healthy ping
+   */
+  public AdaptiveInterval(int minInterval, int maxInterval, int burstInterval, float growth) {
+    this.minInterval = minInterval;
+    this.maxInterval = Math.max(minInterval, maxInterval);
+    this.burstInterval = Math.min(burstInterval, minInterval);
+    this.growth = Math.max(1.0f, growth);
+    interval = minInterval;
+  }
+
+  public int getMinInterval() {
+    return minInterval;
+  }
+
+  public int getMaxInterval() {
+    return maxInterval;
+  }
+
+  public int getBurstInterval() {
+    return burstInterval;
+  }
+
+  /**
+   * Get the current interval
+   * @return the interval in milliseconds
+   */
+  public synchronized int getInterval() {
+    return interval;
+  }
+
+  /**
+   * Is the interval at its burst value?
+   * @return true iff the last ping failed or was a latency spike
+   */
+  public synchronized boolean isBursting() {
+    return bursting;
+  }
+
+  /**
+   * Get the smoothed latency of the healthy pings
+   * @return the average latency in milliseconds
+   */
+  public synchronized double getAverageLatency() {
+    return averageLatency;
+  }
+
+  /**
+   * Update the interval with the outcome of a ping
+   * @param success did the ping succeed?
+   * @param latency how long the ping took in milliseconds
+   * @return the new interval
+   */
+  public synchronized int update(boolean success, long latency) {
+    if (!success) {
+      burst();
+      return interval;
+    }
+    boolean spike = isSpike(latency);
+    if (samples == 0) {
+      averageLatency = latency;
+    } else {
+      averageLatency += (latency - averageLatency) / 8;
+    }
+    samples++;
+    if (spike) {
+      burst();
+    } else if (bursting) {
+      bursting = false;
+      interval = minInterval;
+    } else {
+      interval = (int) Math.min((long) maxInterval, (long) Math.ceil(interval * growth));
+    }
+    return interval;
+  }
+
+  /**
+   * Is a latency a spike compared to the earlier pings?
+   * @param latency latency of a ping
+   * @return true if there have been enough samples, and the latency is
+   * well above their average.
+   */
+  public synchronized boolean isSpike(long latency) {
+    return samples >= WARMUP_SAMPLES
+           && latency > averageLatency * SPIKE_FACTOR
+           && latency - averageLatency > SPIKE_MINIMUM;
+  }
+
+  private void burst() {
+    bursting = true;
+    interval = burstInterval;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "adaptive interval " + interval
+           + " [" + burstInterval + ", " + minInterval + "-" + maxInterval + "]";
+  }
+}
@@ -0,0 +1,241 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.ambari.servicemonitor.reporting;
+
+import org.apache.ambari.servicemonitor.probes.Probe;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The dependencies of a service, as a directed acyclic graph of probes:
+ * each dependency names the dependencies upstream of it. For example, a
+ * JobTracker depends on HDFS, which in turn depends on ZooKeeper.
+ * <p/>
+ * The graph is divided into levels: a dependency is in the level after the
+ * deepest of its upstream dependencies. The dependencies of a level do not
+ * depend on each other, so they can be checked concurrently, once those of
+ * the earlier levels have been.
+ */
+public class DependencyGraph {
+
+  private final Map<String, Node> nodes = new LinkedHashMap<String, Node>();
+  private List<List<Probe>> levels;
+
+  private static final class Node {
+    private final String name;
+    private final Probe probe;
+    private final List<String> upstream;
+    private final List<Node> upstreamNodes = new ArrayList<Node>();
+    private int level = -1;
+
+    private Node(String name, Probe probe, Collection<String> upstream) {
+      this.name = name;
+      this.probe = probe;
+      this.upstream = new ArrayList<String>(upstream);
+    }
+  }
+
+  /**
+   * Build a graph in which each probe of the list depends on the one before it;
+   * the probes are checked one after the other, and the first failure stops
+   * the check
+   * @param probes probes, in order
+   * @return the graph
+   */
+  public static DependencyGraph chain(List<Probe> probes) {
+    DependencyGraph graph = new DependencyGraph();
+    String last = null;
+    int count = 0;
+    for (Probe probe : probes) {
+      String name = "dependency " + (count++);
+      graph.add(name, probe,
+                last == null ? Collections.<String>emptyList() : Collections.singletonList(last));
+      last = name;
+    }
+    return graph;
+  }
+
+  /**
+   * Add a dependency
+   * @param name unique name of the dependency
+   * @param probe probe of the dependency
+   * @param upstream names of the dependencies it depends on; these may be added later
+   * @throws IllegalArgumentException if the name is already in use
+   */
+  public synchronized void add(String name, Probe probe, Collection<String> upstream) {
+    if (nodes.containsKey(name)) {
+      throw new IllegalArgumentException("Duplicate dependency " + name);
+    }
+    nodes.put(name, new Node(name, probe, upstream));
+    levels = null;
+  }
+
+  public synchronized boolean isEmpty() {
+    return nodes.isEmpty();
+  }
+
+  public synchronized int size() {
+    return nodes.size();
+  }
+
+  /**
+   * Get the probes of the graph, in the order they were added
+   * @return the probes
+   */
+  public synchronized List<Probe> getProbes() {
+    List<Probe> probes = new ArrayList<Probe>(nodes.size());
+    for (Node node : nodes.values()) {
+      probes.add(node.probe);
+    }
+    return probes;
+  }
+
+  /**
+   * Get the probes of the dependencies directly upstream of a probe
+   * @param probe a probe of the graph
+   * @return its upstream probes; empty if there are none or the probe is not in the graph
+   * @throws IllegalArgumentException if the graph is invalid
+   */
+  public synchronized List<Probe> getUpstream(Probe probe) {
+    resolve();
+    for (Node node : nodes.values()) {
+      if (node.probe == probe) {
+        List<Probe> upstream = new ArrayList<Probe>(node.upstreamNodes.size());
+        for (Node up : node.upstreamNodes) {
+          upstream.add(up.probe);
+        }
+        return upstream;
+      }
+    }
+    return Collections.emptyList();
+  }
+
+  /**
+   * Get the levels of the graph: the first holds the dependencies with nothing
+   * upstream, and each later one those whose deepest upstream dependency is
+   * in the level before it
+   * @return the levels, each in the order the probes were added
+   * @throws IllegalArgumentException if a dependency names an unknown one
+   * upstream, or there is a cycle
+   */
+  public synchronized List<List<Probe>> getLevels() {
+    resolve();
+    return levels;
+  }
+
+  /**
+   * Get the size of the largest level: the most probes which
+   * can be checked at the same time
+   * @return the width of the graph
+   * @throws IllegalArgumentException if the graph is invalid
+   */
+  public synchronized int getWidth() {
+    int width = 0;
+    for (List<Probe> level : getLevels()) {
+      width = Math.max(width, level.size());
+    }
+    return width;
+  }
+
+  /**
+   * Check the graph: every upstream dependency must exist, and there must
+   * be no cycles
+   * @throws IllegalArgumentException if the graph is invalid
+   */
+  public synchronized void validate() {
+    resolve();
+  }
+
+  private void resolve() {
+    if (levels != null) {
+      return;
+    }
+    for (Node node : nodes.values()) {
+      node.level = -1;
+      node.upstreamNodes.clear();
+      for (String name : node.upstream) {
+        Node up = nodes.get(name.trim());
+        if (up == null) {
+          throw new IllegalArgumentException("Dependency " + node.name
+                                             + " depends on unknown dependency "
+                                             + name);
+        }
+        node.upstreamNodes.add(up);
+      }
+    }
+    Set<Node> visiting = new HashSet<Node>();
+    int depth = 0;
+    for (Node node : nodes.values()) {
+      depth = Math.max(depth, levelOf(node, visiting) + 1);
+    }
+    List<List<Probe>> resolved = new ArrayList<List<Probe>>(depth);
+    for (int i = 0; i < depth; i++) {
+      resolved.add(new ArrayList<Probe>());
+    }
+    for (Node node : nodes.values()) {
+      resolved.get(node.level).add(node.probe);
+    }
+    levels = resolved;
+  }
+
+  /**
+   * Work out the level of a node, depth first
+   * @param node node
+   * @param visiting nodes on the current path, to detect cycles
+   * @return the level
+   */
+  private int levelOf(Node node, Set<Node> visiting) {
+    if (node.level >= 0) {
+      return node.level;
+    }
+    if (visiting.contains(node)) {
+      throw new IllegalArgumentException("Dependency cycle through " + node.name);
+    }
+    visiting.add(node);
+    int level = 0;
+    for (Node up : node.upstreamNodes) {
+      level = Math.max(level, levelOf(up, visiting) + 1);
+    }
+    visiting.remove(node);
+    node.level = level;
+    return level;
+  }
+
+  @Override
+  public synchronized String toString() {
+    StringBuilder builder = new StringBuilder();
+    for (Node node : nodes.values()) {
+      if (builder.length() > 0) {
+        builder.append("; ");
+      }
+      builder.append(node.name);
+      if (!node.upstream.isEmpty()) {
+        builder.append(" <- ").append(node.upstream);
+      }
+    }
+    return builder.toString();
+  }
+}
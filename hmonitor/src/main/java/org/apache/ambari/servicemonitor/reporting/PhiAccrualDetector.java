@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.servicemonitor.reporting;
+
+/**
+ * A phi accrual failure detector for the results of one probe.
+ *
+ * Rather than a yes/no answer from a fixed timeout, it gives a level of
+ * suspicion, phi, which grows the longer the next result is overdue,
+ * relative to how late results have been in the past:
+ * phi = -log10(probability that a result would be this late).
+ * A phi of 8 means the chance of the result still turning up is 1 in 10^8.
+ *
+ * Each sample is how late a result arrived: the time since the previous
+ * result, less the interval the probe was due to be pinged again after it.
+ * For a probe on a fixed interval this is the classic inter-arrival time
+ * shifted by a constant; for one whose interval adapts, it keeps the
+ * distribution steady across interval changes. The lateness is the sum of
+ * the ping latency, scheduling jitter and any pauses -so a service whose
+ * pings are always quick and regular is suspected within seconds, while
+ * one with long GC pauses is given the time its history says it needs.
+ *
+ * The samples are kept in a fixed size window; the distribution is taken
+ * to be normal, and its tail is computed with a logistic approximation.
+ */
+public final class PhiAccrualDetector {
+
+  /**
+   * Number of samples needed before phi is computed: {@value}
+   */
+  public static final int MIN_SAMPLES = 5;
+
+  /**
+   * Number of standard deviations either side of the mean within which
+   * the lateness at a threshold is searched for: {@value}. Phi is over
+   * 3000 at the top of the range.
+   */
+  private static final int THRESHOLD_SEARCH_RANGE = 50;
+
+  private final long[] window;
+  private final int minStdDeviation;
+  private int count;
+  private int next;
+  private double sum;
+  private double sumOfSquares;
+  private long lastArrival = -1;
+  private long expectedInterval;
+
+  /**
+   * Create a detector
+   * @param windowSize number of samples to keep
+   * @param minStdDeviation the lowest standard deviation to use, in milliseconds;
+   * this stops a run of identical samples from making the smallest delay
+   * look like a failure.
+   */
+  public PhiAccrualDetector(int windowSize, int minStdDeviation) {
+    window = new long[Math.max(MIN_SAMPLES, windowSize)];
+    this.minStdDeviation = Math.max(1, minStdDeviation);
+  }
+
+  /**
+   * Record the arrival of a result
+   * @param arrival time of arrival
+   * @param interval the interval until the probe is next due to be pinged,
+   * or zero or less if not known
+   */
+  public synchronized void arrived(long arrival, long interval) {
+    if (lastArrival >= 0) {
+      add(arrival - lastArrival - expectedInterval);
+    }
+    lastArrival = arrival;
+    expectedInterval = Math.max(0, interval);
+  }
+
+  private void add(long sample) {
+    if (count == window.length) {
+      long oldest = window[next];
+      sum -= oldest;
+      sumOfSquares -= (double) oldest * oldest;
+    } else {
+      count++;
+    }
+    window[next] = sample;
+    next = (next + 1) % window.length;
+    sum += sample;
+    sumOfSquares += (double) sample * sample;
+  }
+
+  /**
+   * Is there enough history for phi to be meaningful?
+   * @return true iff there are at least {@link #MIN_SAMPLES} samples
+   */
+  public synchronized boolean isWarmedUp() {
+    return count >= MIN_SAMPLES;
+  }
+
+  public synchronized int getSampleCount() {
+    return count;
+  }
+
+  public synchronized double getMean() {
+    return count == 0 ? 0 : sum / count;
+  }
+
+  public synchronized double getStdDeviation() {
+    if (count == 0) {
+      return minStdDeviation;
+    }
+    double mean = sum / count;
+    double variance = Math.max(0, sumOfSquares / count - mean * mean);
+    return Math.max(minStdDeviation, Math.sqrt(variance));
+  }
+
+  /**
+   * Get the current suspicion level
+   * @param now the current time
+   * @return phi; 0 if the detector has not warmed up
+   */
+  public synchronized double phi(long now) {
+    if (!isWarmedUp()) {
+      return 0;
+    }
+    long lateness = now - lastArrival - expectedInterval;
+    return phi(lateness, getMean(), getStdDeviation());
+  }
+
+  /**
+   * Get the time at which phi reaches a threshold, if no result arrives
+   * before then. Phi only grows between results, so until that time
+   * it need not be checked.
+   * @param threshold the threshold
+   * @return the first time in milliseconds at which phi is at or above
+   * the threshold; -1 if the detector has not warmed up
+   */
+  public synchronized long getThresholdTime(double threshold) {
+    if (!isWarmedUp()) {
+      return -1;
+    }
+    double mean = getMean();
+    double stdDeviation = getStdDeviation();
+    //phi grows with the lateness: search for the first lateness in
+    //milliseconds at the threshold
+    long low = (long) Math.floor(mean - THRESHOLD_SEARCH_RANGE * stdDeviation);
+    long high = (long) Math.ceil(mean + THRESHOLD_SEARCH_RANGE * stdDeviation);
+    while (high - low > 1) {
+      long middle = (low + high) / 2;
+      if (phi(middle, mean, stdDeviation) < threshold) {
+        low = middle;
+      } else {
+        high = middle;
+      }
+    }
+    return lastArrival + expectedInterval + high;
+  }
+
+  /**
+   * Work out phi for a lateness, given the distribution of lateness
+   * @param lateness the lateness of the next result
+   * @param mean the mean lateness
+   * @param stdDeviation standard deviation of the lateness
+   * @return -log10 of the probability of a result being at least this late
+   */
+  public static double phi(double lateness, double mean, double stdDeviation) {
+    double y = (lateness - mean) / stdDeviation;
+    double e = Math.exp(-y * (1.5976 + 0.070566 * y * y));
+    if (lateness > mean) {
+      return -Math.log10(e / (1.0 + e));
+    } else {
+      return -Math.log10(1.0 - 1.0 / (1.0 + e));
+    }
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "phi accrual detector: samples=" + count
+           + " mean=" + Math.round(getMean())
+           + " stddev=" + Math.round(getStdDeviation());
+  }
+}
@@ -0,0 +1,255 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.servicemonitor.reporting;
+
+import org.apache.ambari.servicemonitor.probes.Probe;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The schedule of the live probes.
+ *
+ * Every probe has its own interval -or the interval of the worker if it
+ * does not set one- and is pinged at a fixed rate: the next slot of a probe
+ * is measured from its previous slot, not from the end of its last ping, so
+ * the time a probe takes does not stretch its period. If a probe overruns
+ * one or more of its slots, they are skipped rather than run back to back.
+ *
+ * Each ping is offset from its slot by a random jitter, so that many monitors
+ * started at the same time do not all probe their services in lockstep.
+ *
+ * A probe with an {@link AdaptiveInterval} has its next slot worked out
+ * again once its ping has completed, from the outcome of that ping.
+ *
+ * The probe lists are short, so the due times are simply scanned.
+ */
+public class ProbeSchedule {
+
+  private final List<Entry> entries;
+  private final int defaultInterval;
+  private final Random random = new Random();
+  private float jitter;
+
+  /**
+   * Create a schedule
+   * @param probes the probes to schedule
+   * @param defaultInterval the interval for probes that do not have one of their own
+   */
+  public ProbeSchedule(List<Probe> probes, int defaultInterval) {
+    this.defaultInterval = defaultInterval;
+    entries = new ArrayList<Entry>(probes.size());
+    for (Probe probe : probes) {
+      entries.add(new Entry(probe));
+    }
+  }
+
+  /**
+   * Set the jitter
+   * @param jitter jitter as a fraction of the interval; a ping may take place
+   * up to this fraction of the interval either side of its slot.
+   */
+  public synchronized void setJitter(float jitter) {
+    this.jitter = Math.max(0f, Math.min(jitter, 1f));
+  }
+
+  public synchronized float getJitter() {
+    return jitter;
+  }
+
+  public int getDefaultInterval() {
+    return defaultInterval;
+  }
+
+  /**
+   * Get the interval of a probe
+   * @param probe probe
+   * @return the current interval of the probe's adaptive interval if it
+   * has one, else the interval of the probe if set, else the default interval
+   */
+  public int getInterval(Probe probe) {
+    AdaptiveInterval policy = probe.getIntervalPolicy();
+    if (policy != null) {
+      return policy.getInterval();
+    }
+    int interval = probe.getInterval();
+    return interval > 0 ? interval : defaultInterval;
+  }
+
+  /**
+   * Start the schedule: every probe is first due one default interval from now.
+   * @param now the current time
+   */
+  public synchronized void start(long now) {
+    for (Entry entry : entries) {
+      entry.slot = now + defaultInterval;
+      entry.due = entry.slot + jitterOffset(defaultInterval);
+    }
+  }
+
+  /**
+   * Take the list of probes that are due, and schedule their next pings.
+   * @param now the current time
+   * @return the probes whose ping time has been reached, in the order the
+   * probes were supplied
+   */
+  public synchronized List<Probe> takeDue(long now) {
+    List<Probe> due = new ArrayList<Probe>(entries.size());
+    for (Entry entry : entries) {
+      if (entry.due <= now) {
+        due.add(entry.probe);
+        entry.lastSlot = entry.slot;
+        entry.lastDue = entry.due;
+        int interval = getInterval(entry.probe);
+        entry.slot = nextSlot(entry.slot, interval, now);
+        entry.due = entry.slot + jitterOffset(interval);
+      }
+    }
+    return due;
+  }
+
+  /**
+   * Put back a probe which was taken as due but then not pinged: it is
+   * due again, at the time it was taken for, and keeps its slots.
+   * @param probe probe
+   */
+  public synchronized void putBack(Probe probe) {
+    Entry entry = getEntry(probe);
+    if (entry != null) {
+      entry.slot = entry.lastSlot;
+      entry.due = entry.lastDue;
+    }
+  }
+
+  /**
+   * Note the outcome of a ping. If the probe has an adaptive interval, it is
+   * updated, and the next ping is rescheduled to the new interval after the
+   * slot of the completed one.
+   * @param probe probe
+   * @param status outcome of the ping
+   * @param now the current time
+   * @return the interval until the next ping of the probe
+   */
+  public synchronized int pingCompleted(Probe probe, ProbeStatus status, long now) {
+    AdaptiveInterval policy = probe.getIntervalPolicy();
+    Entry entry = getEntry(probe);
+    if (policy == null || entry == null) {
+      return getInterval(probe);
+    }
+    int interval = policy.update(status.isSuccess(), Math.max(0, status.getDuration()));
+    entry.slot = nextSlot(entry.lastSlot, interval, now);
+    entry.due = entry.slot + jitterOffset(interval);
+    return interval;
+  }
+
+  /**
+   * Make a probe due now, ahead of its slot; the early ping takes the
+   * place of the ping of that slot, and the slots after it are unchanged.
+   * @param probe probe
+   * @param now the current time
+   * @return true iff the probe is in this schedule and was not already due
+   */
+  public synchronized boolean makeDue(Probe probe, long now) {
+    Entry entry = getEntry(probe);
+    if (entry == null || entry.due <= now) {
+      return false;
+    }
+    entry.due = now;
+    return true;
+  }
+
+  /**
+   * Get the time at which the next probe is due
+   * @param now the current time
+   * @return the earliest time any probe is due, or one default interval
+   * from now if there are no probes.
+   */
+  public synchronized long getNextDueTime(long now) {
+    long next = now + defaultInterval;
+    for (Entry entry : entries) {
+      next = Math.min(next, entry.due);
+    }
+    return next;
+  }
+
+  /**
+   * Get the time at which a probe is next due
+   * @param probe probe
+   * @return the time, or -1 if the probe is not in this schedule
+   */
+  public synchronized long getDueTime(Probe probe) {
+    Entry entry = getEntry(probe);
+    return entry != null ? entry.due : -1;
+  }
+
+  private Entry getEntry(Probe probe) {
+    for (Entry entry : entries) {
+      if (entry.probe == probe) {
+        return entry;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Get a random offset for a ping time
+   * @param interval the interval of the probe
+   * @return an offset within the +/- the jitter fraction of the interval
+   */
+  public synchronized long jitterOffset(int interval) {
+    if (jitter <= 0) {
+      return 0;
+    }
+    return (long) ((random.nextFloat() * 2 - 1) * jitter * interval);
+  }
+
+  /**
+   * Work out the next slot of a fixed rate schedule. Slots that have
+   * already passed are skipped.
+   * @param slot the previous slot
+   * @param interval the interval between slots; an interval of 0, which
+   * the configuration allows, is taken as 1 millisecond
+   * @param now the current time
+   * @return the first slot after the previous one which is later than now
+   */
+  public static long nextSlot(long slot, long interval, long now) {
+    interval = Math.max(1, interval);
+    long next = slot + interval;
+    if (next <= now) {
+      long missed = (now - next) / interval + 1;
+      next += missed * interval;
+    }
+    return next;
+  }
+
+  /**
+   * Schedule entry of a probe
+   */
+  private static class Entry {
+    private final Probe probe;
+    private long slot;
+    private long lastSlot;
+    private long due;
+    private long lastDue;
+
+    private Entry(Probe probe) {
+      this.probe = probe;
+    }
+  }
+}
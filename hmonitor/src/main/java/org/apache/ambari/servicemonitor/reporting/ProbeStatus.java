@@ -33,6 +33,10 @@ public final class ProbeStatus implements Serializable {
   private String timestampText;
   private boolean success;
   private boolean realOutcome;
+  private boolean timedOut;
+  private long duration = -1;
+  private long interval = -1;
+  private double phi = -1;
   private String message;
   private Throwable thrown;
   private transient Probe originator;
@@ -101,6 +105,43 @@ public final class ProbeStatus implements Serializable {
     this.thrown = thrown;
   }
 
+  /**
+   * Get how long the ping took
+   * @return the duration in milliseconds, or -1 if it is not known
+   */
+  public long getDuration() {
+    return duration;
+  }
+
+  public void setDuration(long duration) {
+    this.duration = duration;
+  }
+
+  /**
+   * Get the interval until the next ping of the probe
+   * @return the interval in milliseconds, or -1 if it is not known
+   */
+  public long getInterval() {
+    return interval;
+  }
+
+  public void setInterval(long interval) {
+    this.interval = interval;
+  }
+
+  /**
+   * Get the phi accrual suspicion level of the worker when this status was
+   * last reported on
+   * @return phi, or -1 if it is not known
+   */
+  public double getPhi() {
+    return phi;
+  }
+
+  public void setPhi(double phi) {
+    this.phi = phi;
+  }
+
   public ProbePhase getProbePhase() {
     return probePhase;
   }
@@ -137,6 +178,24 @@ public final class ProbeStatus implements Serializable {
     finish(probe, false, "Failure in " + probe, thrown);
   }
 
+  /**
+   * A probe has failed by not responding within its deadline.
+   * @param probe probe that timed out
+   * @param thrown an exception describing the timeout
+   */
+  public void timeout(Probe probe, Throwable thrown) {
+    finish(probe, false, "Timeout in " + probe, thrown);
+    timedOut = true;
+  }
+
+  /**
+   * Did the probe fail by timing out?
+   * @return true iff the probe did not respond within its deadline
+   */
+  public boolean isTimedOut() {
+    return timedOut;
+  }
+
   public void finish(Probe probe, boolean succeeded, String text, Throwable thrown) {
     setTimestamp(System.currentTimeMillis());
     setSuccess(succeeded);
@@ -152,10 +211,22 @@ public final class ProbeStatus implements Serializable {
            .elt("phase", probePhase)
            .elt("outcome", (success ? "success" : "failure"));
 
+    if (timedOut) {
+      builder.elt("timedout", true);
+    }
     if (success != realOutcome) {
       builder.elt("originaloutcome", (realOutcome ? "success" : "failure"));
     }
     builder.elt("message", message);
+    if (duration >= 0) {
+      builder.elt("duration", duration);
+    }
+    if (interval >= 0) {
+      builder.elt("interval", interval);
+    }
+    if (phi >= 0) {
+      builder.elt("phi", String.format("%.2f", phi));
+    }
     if (thrown != null) {
       builder.elt("exception", thrown);
     }
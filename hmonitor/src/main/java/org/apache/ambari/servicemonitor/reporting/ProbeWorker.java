@@ -17,21 +17,43 @@
 
 package org.apache.ambari.servicemonitor.reporting;
 
+import org.apache.ambari.servicemonitor.probes.PingRequestHandler;
 import org.apache.ambari.servicemonitor.probes.Probe;
+import org.apache.ambari.servicemonitor.utils.DaemonThreadFactory;
 import org.apache.ambari.servicemonitor.utils.MonitorUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This is the entry point to do work. A list of probes is taken in, in order of
  * booting. Once live they go to the live probes list.
  *
  * The dependency probes are a set of probes for dependent services, all of which
- * must be live before boot probes commence.
+ * must be live before boot probes commence. They form a {@link DependencyGraph}:
+ * a dependency is only checked once those upstream of it have succeeded, and the
+ * independent dependencies of a level of the graph are checked concurrently
+ * in the probe pool.
  *
  * The boot probes are executed and are allowed to fail; failure is interpreted as "not yet live"
  *
@@ -39,50 +61,300 @@ import java.util.List;
  *
  * There is no timeout on dependency probe bootstrap time, because of the notion that
  * restarting this service will have no effect on the dependencies. 
+ *
+ * Once live, the dependencies are checked again every dependency recheck
+ * interval, and whenever a live probe fails. If a dependency has failed, the
+ * failure is upstream of this service, and failing over would not fix it: rather
+ * than raising a probe failure, the worker goes back to checking dependencies,
+ * and the probes of the service get a new bootstrap once they have recovered.
+ * The failed statuses of the live probes are held back until the recheck has
+ * decided, so that the reporter never sees a failure which turns out to be
+ * upstream; the successes of the recheck are reported as heartbeats.
+ * This cannot tell a failed dependency from a failure of the network of this
+ * host: if the host is cut off, the dependencies fail as well, and the failure
+ * of the service is taken to be upstream of it. Only the failures found by the
+ * periodic rechecks are known to have come before those of the service.
+ *
+ * If the worker is given more than one probe thread, the boot and live probes
+ * of a cycle are pinged concurrently; the cycle then takes as long as the
+ * slowest probe rather than the sum of them all. All results of the cycle
+ * are reported before any failure is raised.
+ *
+ * Once live, each probe is pinged on its own cadence, as set by its
+ * {@link ProbeSchedule}; the worker sleeps until the next probe is due.
+ *
+ * If a ping timeout is set, every ping is run in the probe pool under that
+ * deadline. A probe which misses it is interrupted and reported as timed out,
+ * and the rest of the cycle carries on. Until its hung ping returns, the probe
+ * is quarantined: it is not pinged again, but reported as timed out. The pool
+ * is of a fixed size, so hung probes cannot use up an unbounded number of threads.
+ * While a {@link TimeoutExtension} says the service is slow for a known,
+ * transient reason, such as a GC storm, the deadline of a ping is extended
+ * by as much, rather than quarantine a probe which is only waiting it out.
+ *
+ * A probe may be hedged: once it has a history of successful pings, a ping
+ * which is still running at a high percentile of that history's latency is
+ * raced by a second attempt, and the first attempt to succeed wins. This cuts
+ * the tail latency caused by a lost packet or a slow handler thread, at the
+ * cost of at most one extra ping. If pings have a deadline, the second attempt
+ * is run in the probe pool, which has an extra thread for each hedged probe,
+ * under the same deadline as the first: an attempt still running at the
+ * deadline quarantines the probe, and an attempt which has lost the race but
+ * not yet returned counts against the pool as a hung thread. Without a deadline,
+ * hedged attempts are run in a pool of their own, two threads per hedged probe;
+ * if that pool is full the ping is not hedged.
+ *
+ * A live probe may ask to be pinged before it is due, when it learns of a
+ * change in its target between pings; the worker then wakes at once and
+ * pings it, rather than waiting out its interval.
  */
 
-public class ProbeWorker implements Runnable {
+public class ProbeWorker implements Runnable, PingRequestHandler {
   private static final Log LOG = LogFactory.getLog(ProbeWorker.class);
   public static final String FAILED_TO_BOOT = "Monitored service failed to bootstrap after ";
   public static final String FAILURE_OF_A_LIVE_PROBE_DURING_BOOTSTRAPPING = "Failure of a live probe during bootstrapping";
+  public static final String FAILURE_OF_PROBE_IN_LIVE_MONITOR = "Failure of probe in \"live\" monitor";
   private final List<Probe> monitorProbes;
-  private final List<Probe> dependencyProbes;
+  private final DependencyGraph dependencies;
+  private int dependencyRecheckInterval;
+  private long nextDependencyCheck;
   public final int interval;
   protected volatile ProbeStatus lastStatus;
   protected volatile ProbeStatus lastFailingBootstrapProbe;
   protected volatile Probe currentProbe;
   private volatile boolean mustExit;
+  private boolean ended;
   private final int bootstrapTimeout;
   private long bootstrapEndtime;
+  private final int probeThreads;
+  private ExecutorService probeExecutor;
+  private int probePoolSize;
+  private int pingTimeout;
+  /**
+   * Probes whose pings have timed out but not yet returned, with the number
+   * of such pings of each; guarded by itself
+   */
+  private final Map<Probe, Integer> hungProbes = new HashMap<Probe, Integer>();
+  /**
+   * Threads of the probe pool held by pings which have been abandoned -timed out,
+   * or beaten by a hedged attempt- but not yet returned; guarded by hungProbes
+   */
+  private int hungThreads;
+  private final ProbeSchedule schedule;
+  /**
+   * Number of successful pings a hedged probe needs before it is hedged: {@value}
+   */
+  public static final int HEDGE_MIN_SAMPLES = 20;
+  private ExecutorService hedgeExecutor;
+  private int hedgedProbes;
+  private float hedgePercentile = 95f;
+  private final AtomicInteger hedgedPings = new AtomicInteger();
 
   private ProbeReportHandler reportHandler;
   private volatile ProbePhase probePhase = ProbePhase.INIT;
 
+  /**
+   * Lock for the wait between cycles; guards wakeRequested
+   */
+  private final Object cycleLock = new Object();
+  private boolean wakeRequested;
+  private volatile Runnable cycleWaker;
+  private volatile TimeoutExtension timeoutExtension;
+
+  /**
+   * Failed statuses of the live probes, held back until the dependencies
+   * have been rechecked; only used by the thread running the cycle
+   */
+  private final List<ProbeStatus> heldBackFailures = new ArrayList<ProbeStatus>();
+
   /**
    * Creat a probe worker
    * @param monitorProbes list of probes that must boot and then go live -after which
    * they must stay live.
    * @param dependencyProbes the list of dependency probes that must all succeed before
-   * any attempt to probe the direct probe list is performed. Once the 
-   * dependency phase has completed, these probes are never checked again.
+   * any attempt to probe the direct probe list is performed. They are
+   * checked in order, and the first failure stops the check.
    * @param interval probe interval in milliseconds.
    * @param bootstrapTimeout timeout for bootstrap in milliseconds
    */
   public ProbeWorker(List<Probe> monitorProbes, List<Probe> dependencyProbes, int interval, int bootstrapTimeout) {
+    this(monitorProbes, dependencyProbes, interval, bootstrapTimeout, 1);
+  }
+
+  /**
+   * Create a probe worker that may ping its probes in parallel
+   * @param monitorProbes list of probes that must boot and then go live -after which
+   * they must stay live.
+   * @param dependencyProbes the list of dependency probes that must all succeed before
+   * any attempt to probe the direct probe list is performed.
+   * @param interval probe interval in milliseconds.
+   * @param bootstrapTimeout timeout for bootstrap in milliseconds
+   * @param probeThreads number of threads to ping the probes of a cycle with;
+   * a value of 1 or less means the probes are pinged one after another in the
+   * probe thread.
+   */
+  public ProbeWorker(List<Probe> monitorProbes,
+                     List<Probe> dependencyProbes,
+                     int interval,
+                     int bootstrapTimeout,
+                     int probeThreads) {
+    this(monitorProbes,
+         DependencyGraph.chain(dependencyProbes != null ? dependencyProbes : new ArrayList<Probe>(0)),
+         interval, bootstrapTimeout, probeThreads);
+  }
+
+  /**
+   * Create a probe worker with a graph of dependencies
+   * @param monitorProbes list of probes that must boot and then go live -after which
+   * they must stay live.
+   * @param dependencies the dependencies, all of which must succeed before
+   * any attempt to probe the direct probe list is performed.
+   * @param interval probe interval in milliseconds.
+   * @param bootstrapTimeout timeout for bootstrap in milliseconds
+   * @param probeThreads number of threads to ping the probes of a cycle with;
+   * a value of 1 or less means the probes are pinged one after another in the
+   * probe thread. The pool is made large enough to check the widest level of
+   * the dependencies at once.
+   */
+  public ProbeWorker(List<Probe> monitorProbes,
+                     DependencyGraph dependencies,
+                     int interval,
+                     int bootstrapTimeout,
+                     int probeThreads) {
     this.monitorProbes = monitorProbes;
-    this.dependencyProbes = dependencyProbes != null ? dependencyProbes : new ArrayList<Probe>(0);
+    this.dependencies = dependencies;
     this.interval = interval;
     lastStatus = new ProbeStatus(now(),
                                  "Initial status");
     lastStatus.setProbePhase(ProbePhase.INIT);
     this.bootstrapTimeout = bootstrapTimeout;
+    this.probeThreads = Math.max(1, probeThreads);
+    schedule = new ProbeSchedule(monitorProbes, interval);
+    if (getProbePoolThreads() > 1) {
+      createProbePool(getProbePoolThreads());
+    }
+    for (Probe probe : monitorProbes) {
+      if (probe.isHedged()) {
+        hedgedProbes++;
+      }
+    }
+    for (Probe probe : dependencies.getProbes()) {
+      if (probe.isHedged()) {
+        hedgedProbes++;
+      }
+    }
+    if (hedgedProbes > 0) {
+      hedgeExecutor = new ThreadPoolExecutor(0, 2 * hedgedProbes,
+                                             60, TimeUnit.SECONDS,
+                                             new SynchronousQueue<Runnable>(),
+                                             new DaemonThreadFactory("hedge pool"));
+    }
+  }
+
+  /**
+   * Set a deadline for every ping. This must be called before the worker is started.
+   * The second attempts of hedged pings are then run in the probe pool, which gets
+   * a thread for each hedged probe.
+   * @param pingTimeout timeout in milliseconds; zero or less means pings have no deadline
+   * @param quarantineThreads number of threads added to the probe pool for
+   * the pings which have timed out but not yet returned
+   */
+  public void setPingTimeout(int pingTimeout, int quarantineThreads) {
+    this.pingTimeout = pingTimeout;
+    if (pingTimeout > 0) {
+      if (probeExecutor != null) {
+        probeExecutor.shutdownNow();
+      }
+      createProbePool(getProbePoolThreads() + Math.max(0, quarantineThreads) + hedgedProbes);
+      if (hedgeExecutor != null) {
+        hedgeExecutor.shutdownNow();
+        hedgeExecutor = null;
+      }
+    }
+  }
+
+  public int getPingTimeout() {
+    return pingTimeout;
+  }
+
+  /**
+   * Set the percentile of a hedged probe's recent latencies after which
+   * a ping of it is raced by a second attempt
+   * @param hedgePercentile percentile, from 0 to 100
+   */
+  public void setHedgePercentile(float hedgePercentile) {
+    this.hedgePercentile = hedgePercentile;
+  }
+
+  public float getHedgePercentile() {
+    return hedgePercentile;
+  }
+
+  /**
+   * Get the number of pings which have been raced by a second attempt
+   * @return the count of hedged pings
+   */
+  public int getHedgedPingCount() {
+    return hedgedPings.get();
+  }
+
+  /**
+   * Get the number of threads the probe pool needs, before any for quarantine
+   * @return the larger of the probe threads and the width of the dependencies
+   */
+  private int getProbePoolThreads() {
+    return Math.max(probeThreads, dependencies.getWidth());
+  }
+
+  /**
+   * Set how often the dependencies are checked once live. This must be
+   * called before the worker is started.
+   * @param dependencyRecheckInterval interval in milliseconds; zero or less
+   * means they are only checked when a live probe fails
+   */
+  public void setDependencyRecheckInterval(int dependencyRecheckInterval) {
+    this.dependencyRecheckInterval = dependencyRecheckInterval;
+  }
+
+  public int getDependencyRecheckInterval() {
+    return dependencyRecheckInterval;
+  }
+
+  public DependencyGraph getDependencies() {
+    return dependencies;
+  }
+
+  private void createProbePool(int size) {
+    probePoolSize = size;
+    probeExecutor = Executors.newFixedThreadPool(size, new DaemonThreadFactory("probe pool"));
+  }
+
+  /**
+   * Get the number of pings which have timed out but not yet returned
+   * @return the number of quarantined probes
+   */
+  public int getHungProbeCount() {
+    synchronized (hungProbes) {
+      return hungProbes.size();
+    }
+  }
+
+  /**
+   * Get the number of threads of the probe pool held by pings which have
+   * been abandoned but not yet returned
+   * @return the number of hung threads
+   */
+  public int getHungThreadCount() {
+    synchronized (hungProbes) {
+      return hungThreads;
+    }
   }
 
   public void init() throws IOException {
     for (Probe probe : monitorProbes) {
       probe.init();
     }
-    for (Probe probe : dependencyProbes) {
+    for (Probe probe : dependencies.getProbes()) {
       probe.init();
     }
   }
@@ -95,11 +367,82 @@ public class ProbeWorker implements Runnable {
     this.mustExit = true;
   }
 
+  /**
+   * Set the action which wakes the worker when it is not run in a thread of
+   * its own, but driven through {@link #executeCycle()}
+   * @param cycleWaker an action which runs the next cycle as soon as possible
+   */
+  public void setCycleWaker(Runnable cycleWaker) {
+    this.cycleWaker = cycleWaker;
+  }
+
+  /**
+   * Set the source of extensions to the deadline of a ping
+   * @param timeoutExtension the extension; null for none
+   */
+  public void setTimeoutExtension(TimeoutExtension timeoutExtension) {
+    this.timeoutExtension = timeoutExtension;
+  }
+
+  /**
+   * A live probe asks to be pinged now: make it due, and wake the worker.
+   * Requests before the worker is live are ignored, as every probe is
+   * pinged in each cycle of the earlier phases anyway.
+   * @param probe the probe
+   */
+  @Override
+  public void pingRequested(Probe probe) {
+    if (probePhase != ProbePhase.LIVE || mustExit) {
+      return;
+    }
+    if (schedule.makeDue(probe, now())) {
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Early ping requested by " + probe.getName());
+      }
+      wake();
+    }
+  }
+
+  /**
+   * Wake the worker for a cycle now
+   */
+  private void wake() {
+    synchronized (cycleLock) {
+      wakeRequested = true;
+      cycleLock.notifyAll();
+    }
+    Runnable waker = cycleWaker;
+    if (waker != null) {
+      waker.run();
+    }
+  }
+
+  /**
+   * Wait until the next cycle is due, or an early ping is requested
+   * @param delay delay in milliseconds
+   * @throws InterruptedException if interrupted
+   */
+  private void awaitCycle(long delay) throws InterruptedException {
+    synchronized (cycleLock) {
+      long end = now() + delay;
+      long remaining = delay;
+      while (!wakeRequested && remaining > 0) {
+        cycleLock.wait(remaining);
+        remaining = end - now();
+      }
+      wakeRequested = false;
+    }
+  }
+
+  public List<Probe> getMonitorProbes() {
+    return monitorProbes;
+  }
+
   public ProbeStatus getLastStatus() {
     return lastStatus;
   }
 
-  public synchronized Probe getCurrentProbe() {
+  public Probe getCurrentProbe() {
     return currentProbe;
   }
 
@@ -107,6 +450,30 @@ public class ProbeWorker implements Runnable {
     return probePhase;
   }
 
+  public int getProbeThreads() {
+    return probeThreads;
+  }
+
+  public ProbeSchedule getSchedule() {
+    return schedule;
+  }
+
+  /**
+   * Set the random jitter of ping times
+   * @param jitter jitter as a fraction of the probe interval
+   */
+  public void setJitter(float jitter) {
+    schedule.setJitter(jitter);
+  }
+
+  /**
+   * Are the probes of a cycle pinged concurrently?
+   * @return true iff there is a probe executor to ping them with
+   */
+  public boolean isParallel() {
+    return probeThreads > 1;
+  }
+
   /**
    * Enter the new process state, and report it to the report handler.
    * This is synchronized just to make sure there isn't more than one
@@ -133,6 +500,163 @@ public class ProbeWorker implements Runnable {
     reportHandler.probeResult(phase, status);
   }
 
+  /**
+   * Report the status of a live ping, once the schedule has been updated
+   * with it; the status carries the interval until the probe's next ping.
+   * @param probe probe pinged
+   * @param status the status of the ping
+   */
+  private void reportLiveProbeStatus(Probe probe, ProbeStatus status) {
+    status.setInterval(schedule.pingCompleted(probe, status, now()));
+    reportProbeStatus(status);
+  }
+
+  /**
+   * Update the schedule with a failed live ping, but hold back its report
+   * until the dependencies have been rechecked, as the failure may be theirs.
+   * Without dependencies there is nothing to recheck, and it is reported at once.
+   * @param probe probe pinged
+   * @param status the failed status of the ping
+   */
+  private void holdBackLiveFailure(Probe probe, ProbeStatus status) {
+    if (dependencies.isEmpty()) {
+      reportLiveProbeStatus(probe, status);
+    } else {
+      status.setInterval(schedule.pingCompleted(probe, status, now()));
+      heldBackFailures.add(status);
+    }
+  }
+
+  /**
+   * Ping a probe in the current thread, recording how long it took
+   * if the probe did not do so itself. The latency of a successful ping
+   * is added to the probe's latency window.
+   * @param probe probe to ping
+   * @param live flag to indicate whether or not the operation is live or bootstrapping
+   * @return the status of the ping
+   */
+  private ProbeStatus timedPing(Probe probe, boolean live) {
+    long started = now();
+    ProbeStatus status = probe.ping(live);
+    if (status != null) {
+      if (status.getDuration() < 0) {
+        status.setDuration(now() - started);
+      }
+      if (status.isSuccess()) {
+        probe.getLatencies().add(status.getDuration());
+      }
+    }
+    return status;
+  }
+
+  /**
+   * Get the time after which a ping of a probe should be hedged
+   * @param probe probe
+   * @return the delay in milliseconds, or -1 if the ping is not to be hedged
+   */
+  private long getHedgeDelay(Probe probe) {
+    if (hedgedProbes == 0 || !probe.isHedged()
+        || probe.getLatencies().getCount() < HEDGE_MIN_SAMPLES) {
+      return -1;
+    }
+    long delay = Math.max(1, probe.getLatencies().getPercentile(hedgePercentile));
+    if (pingTimeout > 0 && delay >= pingTimeout) {
+      //the deadline would be missed before the second attempt could help
+      return -1;
+    }
+    return delay;
+  }
+
+  /**
+   * Make an attempt at a ping in the current thread: hedged if the
+   * probe is to be hedged, a single ping otherwise
+   * @param probe probe to ping
+   * @param live flag to indicate whether or not the operation is live or bootstrapping
+   * @return the status of the ping
+   * @throws InterruptedException if interrupted while waiting for a hedged ping
+   */
+  private ProbeStatus attempt(Probe probe, boolean live) throws InterruptedException {
+    long hedgeDelay = getHedgeDelay(probe);
+    if (hedgeDelay < 0) {
+      return timedPing(probe, live);
+    }
+    return hedgedPing(probe, live, hedgeDelay);
+  }
+
+  /**
+   * Ping a probe in the hedge pool; if the ping has not finished after the
+   * hedge delay, start a second attempt. The first success is returned, or
+   * the first failure if both attempts fail. The duration of the status
+   * is the time taken by the whole hedged ping, and the other attempt
+   * is interrupted.
+   * @param probe probe to ping
+   * @param live flag to indicate whether or not the operation is live or bootstrapping
+   * @param hedgeDelay delay in milliseconds before the second attempt
+   * @return the status of the ping
+   * @throws InterruptedException if interrupted while waiting for the attempts
+   */
+  private ProbeStatus hedgedPing(Probe probe, boolean live, long hedgeDelay) throws
+                                                                           InterruptedException {
+    long started = now();
+    CompletionService<ProbeStatus> attempts =
+      new ExecutorCompletionService<ProbeStatus>(hedgeExecutor);
+    List<Future<ProbeStatus>> futures = new ArrayList<Future<ProbeStatus>>(2);
+    try {
+      futures.add(attempts.submit(new Attempt(probe, live, false)));
+    } catch (RejectedExecutionException e) {
+      LOG.debug("Hedge pool is full; pinging " + probe + " directly");
+      return timedPing(probe, live);
+    }
+    try {
+      Future<ProbeStatus> done = attempts.poll(hedgeDelay, TimeUnit.MILLISECONDS);
+      if (done == null) {
+        try {
+          futures.add(attempts.submit(new Attempt(probe, live, false)));
+          hedgedPings.incrementAndGet();
+          if (LOG.isDebugEnabled()) {
+            LOG.debug("Hedging ping of " + probe + " after "
+                      + MonitorUtils.millisToHumanTime(hedgeDelay));
+          }
+        } catch (RejectedExecutionException e) {
+          LOG.debug("Hedge pool is full; not hedging " + probe);
+        }
+        done = attempts.take();
+      }
+      ProbeStatus status = outcome(probe, done);
+      if (!status.isSuccess() && futures.size() > 1) {
+        ProbeStatus second = outcome(probe, attempts.take());
+        if (second.isSuccess()) {
+          status = second;
+        }
+      }
+      status.setDuration(now() - started);
+      return status;
+    } finally {
+      for (Future<ProbeStatus> future : futures) {
+        future.cancel(true);
+      }
+    }
+  }
+
+  /**
+   * Get the outcome of a finished attempt; an exception raised by
+   * the probe is turned into a failure status
+   * @param probe probe pinged
+   * @param future the attempt
+   * @return the status
+   * @throws InterruptedException if interrupted
+   */
+  private ProbeStatus outcome(Probe probe, Future<ProbeStatus> future) throws
+                                                                     InterruptedException {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      ProbeStatus status = new ProbeStatus();
+      status.fail(probe, e.getCause());
+      return status;
+    }
+  }
+
   /**
    * Ping one probe. Logs the operation at debug level; sets the field <code>currentProbe</code>
    * to the probe for the duration of the operation -this is used when identifying the
@@ -149,10 +673,50 @@ public class ProbeWorker implements Runnable {
     checkForExitRequest();
     currentProbe = probe;
     try {
-      return probe.ping(live);
+      if (pingTimeout > 0) {
+        return new PendingPing(probe, live).submit().await();
+      }
+      return attempt(probe, live);
+    } catch (InterruptedException e) {
+      throw new ProbeInterruptedException();
+    } finally {
+      currentProbe = null;
+    }
+  }
+
+  /**
+   * Ping all probes in the list concurrently, then wait for all the results.
+   * While waiting for a probe, the field <code>currentProbe</code> is set to it,
+   * so a hung cycle is attributed to the first probe that has not yet finished.
+   * @param probes probes to ping
+   * @param live flag to indicate whether or not the operation is live or bootstrapping
+   * @return the statuses, in the same order as the probe list
+   * @throws ProbeInterruptedException if the probe has been told to exit, or
+   * the thread was interrupted while waiting for the results.
+   */
+  private List<ProbeStatus> pingInParallel(List<Probe> probes, boolean live) throws
+                                                                            ProbeInterruptedException {
+    checkForExitRequest();
+    int size = probes.size();
+    List<PendingPing> pings = new ArrayList<PendingPing>(size);
+    for (Probe probe : probes) {
+      pings.add(new PendingPing(probe, live).submit());
+    }
+    List<ProbeStatus> results = new ArrayList<ProbeStatus>(size);
+    try {
+      for (PendingPing ping : pings) {
+        currentProbe = ping.probe;
+        results.add(ping.await());
+      }
+    } catch (InterruptedException e) {
+      for (PendingPing ping : pings) {
+        ping.cancel();
+      }
+      throw new ProbeInterruptedException();
     } finally {
       currentProbe = null;
     }
+    return results;
   }
 
   /**
@@ -166,30 +730,106 @@ public class ProbeWorker implements Runnable {
   }
 
   /**
-   * Check the dependencies. 
-   * The moment a failing test is reached the call returns without
-   * any reporting.
+   * Check the dependencies, one level of the graph after another. A dependency
+   * is not pinged if one upstream of it has failed; the others of a level are
+   * pinged concurrently if there is a probe pool.
+   * Failures are not reported.
    *
-   * All successful probes are reported, so as to keep the heartbeats happy.
-   *
-   * @return the status of the last dependency check. If this is a success
-   * them every probe passed.
+   * @param reportSuccesses report the successful probes, so as to keep
+   * the heartbeats happy
+   * @return the status of the first failing dependency, or null if every
+   * probe passed.
+   * @throws ProbeInterruptedException if the process was interrupted.
    */
-  private ProbeStatus checkDependencyProbes() throws ProbeInterruptedException {
-    ProbeStatus status = null;
-    for (Probe dependency : dependencyProbes) {
+  private ProbeStatus checkDependencyProbes(boolean reportSuccesses) throws ProbeInterruptedException {
+    ProbeStatus firstFailure = null;
+    Set<Probe> failed = new HashSet<Probe>();
+    for (List<Probe> level : dependencies.getLevels()) {
+      List<Probe> ready = new ArrayList<Probe>(level.size());
+      for (Probe dependency : level) {
+        boolean blocked = false;
+        for (Probe upstream : dependencies.getUpstream(dependency)) {
+          blocked |= failed.contains(upstream);
+        }
+        if (blocked) {
+          //no point in pinging it while something upstream is failing
+          failed.add(dependency);
+        } else {
+          ready.add(dependency);
+        }
+      }
       //ping them, making clear they are not to run any bootstrap logic
-      status = ping(dependency, true);
-
-      if (!status.isSuccess()) {
-        //the first failure means the rest of the list can be skipped
-        break;
-      } else {
-        reportProbeStatus(status);
+      List<ProbeStatus> results = pingDependencies(ready);
+      for (int i = 0; i < results.size(); i++) {
+        ProbeStatus status = results.get(i);
+        if (status.isSuccess()) {
+          if (reportSuccesses) {
+            reportProbeStatus(status);
+          }
+        } else {
+          failed.add(ready.get(i));
+          if (firstFailure == null) {
+            firstFailure = status;
+          }
+        }
       }
     }
-    //return the last status
-    return status;
+    return firstFailure;
+  }
+
+  /**
+   * Ping the dependencies of a level: concurrently if there is more than
+   * one and a pool to ping them in
+   * @param probes probes to ping
+   * @return the statuses, in the same order as the probe list
+   * @throws ProbeInterruptedException if the process was interrupted.
+   */
+  private List<ProbeStatus> pingDependencies(List<Probe> probes) throws ProbeInterruptedException {
+    if (probes.size() > 1 && probeExecutor != null) {
+      return pingInParallel(probes, true);
+    }
+    List<ProbeStatus> results = new ArrayList<ProbeStatus>(probes.size());
+    for (Probe probe : probes) {
+      results.add(ping(probe, true));
+    }
+    return results;
+  }
+
+  /**
+   * Check the dependencies while live. If one of them has failed, this service
+   * is waiting on it: the worker goes back to checking dependencies, and the
+   * probes of the service are bootstrapped again once the dependencies are live.
+   * The successful dependencies are reported, so that a slow recheck does not
+   * time out the live phase.
+   * @return true iff every dependency succeeded
+   * @throws ProbeInterruptedException if the process was interrupted.
+   */
+  private boolean recheckDependencies() throws ProbeInterruptedException {
+    nextDependencyCheck = now() + dependencyRecheckInterval;
+    ProbeStatus failure = checkDependencyProbes(true);
+    if (failure == null) {
+      return true;
+    }
+    LOG.warn("Dependency failed while live; waiting for it: " + failure);
+    for (Probe probe : monitorProbes) {
+      probe.setBooted(false);
+    }
+    enterProbePhase(ProbePhase.DEPENDENCY_CHECKING);
+    //as when the worker started, a dependency failure is reported as a success
+    failure.markAsSuccessful();
+    reportProbeStatus(failure);
+    return false;
+  }
+
+  /**
+   * Is a check of the dependencies due in the live phase?
+   * @param now the current time
+   * @return true iff there are dependencies, periodic checks are enabled,
+   * and the time of the next check has been reached
+   */
+  private boolean isDependencyRecheckDue(long now) {
+    return dependencyRecheckInterval > 0 && !dependencies.isEmpty()
+           && now >= nextDependencyCheck;
   }
 
   /**
@@ -199,7 +839,7 @@ public class ProbeWorker implements Runnable {
    */
   public boolean checkAndReportDependencyProbes() throws ProbeInterruptedException {
     ProbeStatus status;
-    status = checkDependencyProbes();
+    status = checkDependencyProbes(true);
     if (status != null && !status.isSuccess()) {
       //during dependency checking, a failure is still reported as a success
       status.markAsSuccessful();
@@ -244,49 +884,80 @@ public class ProbeWorker implements Runnable {
 
     boolean probeFailed = false;
     //now run through all the bootstrap probes
-    for (Probe probe : monitorProbes) {
-      //ping them
-      ProbeStatus status = ping(probe, false);
-      if (!status.isSuccess()) {
-        probeFailed = true;
-        lastFailingBootstrapProbe = status;
-        probe.failureCount++;
-        if (LOG.isDebugEnabled()) {
-          LOG.debug("Booting probe failed: " + status);
+    if (isParallel()) {
+      List<ProbeStatus> results = pingInParallel(monitorProbes, false);
+      ProbeFailedException liveProbeFailure = null;
+      for (int i = 0; i < results.size(); i++) {
+        try {
+          probeFailed |= !processBootstrapStatus(monitorProbes.get(i), results.get(i));
+        } catch (ProbeFailedException e) {
+          //hold back the first failure until every result has been reported
+          probeFailed = true;
+          if (liveProbeFailure == null) {
+            liveProbeFailure = e;
+          }
         }
-        //at this point check to see if the timeout has occurred -and if so, force in the last probe status.
-
-        //this is a failure but not a timeout
-        //during boot, a failure of a probe that hasn't booted is still reported as a success
-        if (!probe.isBooted()) {
-          //so the success bit is flipped
-          status.markAsSuccessful();
-          reportProbeStatus(status);
-        } else {
-          //the probe had booted but then it switched to failing
+      }
+      if (liveProbeFailure != null) {
+        throw liveProbeFailure;
+      }
+    } else {
+      for (Probe probe : monitorProbes) {
+        //ping them
+        ProbeStatus status = ping(probe, false);
+        probeFailed |= !processBootstrapStatus(probe, status);
+      }
+    }
+    return !probeFailed;
+  }
 
-          //update the status unedited
-          reportProbeStatus(status);
-          //then fail
-          throw raiseProbeFailure(status, FAILURE_OF_A_LIVE_PROBE_DURING_BOOTSTRAPPING);
-        }
+  /**
+   * Process the outcome of pinging a bootstrapping probe.
+   * @param probe the probe
+   * @param status the status of its ping
+   * @return true iff the probe succeeded
+   * @throws ProbeFailedException if a probe that had booted has now failed
+   */
+  private boolean processBootstrapStatus(Probe probe, ProbeStatus status) throws ProbeFailedException {
+    if (!status.isSuccess()) {
+      lastFailingBootstrapProbe = status;
+      probe.failureCount++;
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Booting probe failed: " + status);
+      }
+      //at this point check to see if the timeout has occurred -and if so, force in the last probe status.
+
+      //this is a failure but not a timeout
+      //during boot, a failure of a probe that hasn't booted is still reported as a success
+      if (!probe.isBooted()) {
+        //so the success bit is flipped
+        status.markAsSuccessful();
+        reportProbeStatus(status);
       } else {
-        //this probe is working
-        if (!probe.isBooted()) {
-          //if it is new, mark it as live
-          if (LOG.isDebugEnabled()) {
-            LOG.debug("Booting probe is now live: " + probe);
-          }
-          probe.endBootstrap();
-          //tell the report handler that another probe has booted
-          reportHandler.probeBooted(status);
-        }
-        //push out its status
+        //the probe had booted but then it switched to failing
+
+        //update the status unedited
         reportProbeStatus(status);
-        probe.successCount++;
+        //then fail
+        throw raiseProbeFailure(status, FAILURE_OF_A_LIVE_PROBE_DURING_BOOTSTRAPPING);
+      }
+      return false;
+    } else {
+      //this probe is working
+      if (!probe.isBooted()) {
+        //if it is new, mark it as live
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("Booting probe is now live: " + probe);
+        }
+        probe.endBootstrap();
+        //tell the report handler that another probe has booted
+        reportHandler.probeBooted(status);
       }
+      //push out its status
+      reportProbeStatus(status);
+      probe.successCount++;
+      return true;
     }
-    return !probeFailed;
   }
 
 
@@ -345,29 +1016,86 @@ public class ProbeWorker implements Runnable {
 
 
   /**
-   * run through all the live probes, pinging and reporting them.
-   * A single probe failure is turned into an exception
+   * run through all the live probes that are due, pinging and reporting them.
+   * A single probe failure is turned into an exception.
+   * The reporter is only told of a completed cycle if a probe was due.
    * @throws ProbeFailedException a probe failed
    * @throws ProbeInterruptedException the probe process was explicitly interrupted
    */
   protected void checkAndReportLiveProbes() throws ProbeFailedException, ProbeInterruptedException {
     ProbeStatus status = null;
+    heldBackFailures.clear();
+    List<Probe> due = schedule.takeDue(now());
     //go through the live list
     if (LOG.isDebugEnabled()) {
-      LOG.debug("Checking live probes");
+      LOG.debug("Checking " + due.size() + " live probe" + MonitorUtils.toPlural(due.size()));
     }
-    for (Probe probe : monitorProbes) {
-      status = ping(probe, true);
-      reportProbeStatus(status);
-      if (!status.isSuccess()) {
-        throw raiseProbeFailure(status, "Failure of probe in \"live\" monitor");
+    if (due.isEmpty()) {
+      return;
+    }
+    if (isParallel()) {
+      checkAndReportLiveProbesInParallel(due);
+    } else {
+      for (int i = 0; i < due.size(); i++) {
+        Probe probe = due.get(i);
+        status = ping(probe, true);
+        if (!status.isSuccess()) {
+          //the probes after this one have not been pinged, so they are still due
+          for (Probe skipped : due.subList(i + 1, due.size())) {
+            schedule.putBack(skipped);
+          }
+          holdBackLiveFailure(probe, status);
+          throw raiseProbeFailure(status, FAILURE_OF_PROBE_IN_LIVE_MONITOR);
+        }
+        reportLiveProbeStatus(probe, status);
+        probe.successCount++;
       }
-      probe.successCount++;
     }
     //here all is well, so notify the reporter
     reportHandler.liveProbeCycleCompleted();
   }
 
+  /**
+   * Ping live probes concurrently and report every success; the failures
+   * are held back until the dependencies have been rechecked.
+   * If one or more of the probes failed, the first failure is raised
+   * -with the names of all failing probes in the exception text.
+   * @param probes the probes to ping
+   * @throws ProbeFailedException one or more probes failed
+   * @throws ProbeInterruptedException the probe process was explicitly interrupted
+   */
+  private void checkAndReportLiveProbesInParallel(List<Probe> probes) throws ProbeFailedException,
+                                                                             ProbeInterruptedException {
+    List<ProbeStatus> results = pingInParallel(probes, true);
+    ProbeStatus firstFailure = null;
+    int failures = 0;
+    StringBuilder failing = new StringBuilder();
+    for (int i = 0; i < results.size(); i++) {
+      Probe probe = probes.get(i);
+      ProbeStatus status = results.get(i);
+      if (status.isSuccess()) {
+        reportLiveProbeStatus(probe, status);
+        probe.successCount++;
+      } else {
+        holdBackLiveFailure(probe, status);
+        probe.failureCount++;
+        failures++;
+        if (firstFailure == null) {
+          firstFailure = status;
+        } else {
+          failing.append(", ");
+        }
+        failing.append(probe.getName());
+      }
+    }
+    if (firstFailure != null) {
+      String text = failures == 1
+                    ? FAILURE_OF_PROBE_IN_LIVE_MONITOR
+                    : ("Failure of " + failures + " probes in \"live\" monitor: " + failing);
+      throw raiseProbeFailure(firstFailure, text);
+    }
+  }
+
   /**
    * Run the set of probes relevant for this phase of the probe lifecycle.
    * @throws ProbeFailedException a probe failed
@@ -387,10 +1115,31 @@ public class ProbeWorker implements Runnable {
       case BOOTSTRAPPING:
         if (checkAndReportBootstrapProbes()) {
           enterProbePhase(ProbePhase.LIVE);
+          schedule.start(now());
+          nextDependencyCheck = now() + dependencyRecheckInterval;
         }
         break;
       case LIVE:
-        checkAndReportLiveProbes();
+        if (isDependencyRecheckDue(now()) && !recheckDependencies()) {
+          break;
+        }
+        try {
+          checkAndReportLiveProbes();
+        } catch (ProbeFailedException e) {
+          //a failure caused upstream is not a failure of this service, so the
+          //failed statuses are only reported once the dependencies have passed
+          boolean upstream = !dependencies.isEmpty() && !recheckDependencies();
+          List<ProbeStatus> failures = new ArrayList<ProbeStatus>(heldBackFailures);
+          heldBackFailures.clear();
+          if (upstream) {
+            LOG.info("Live probe failure attributed to a dependency: " + e);
+            break;
+          }
+          for (ProbeStatus failure : failures) {
+            reportProbeStatus(failure);
+          }
+          throw e;
+        }
         break;
 
       case TERMINATING:
@@ -414,30 +1163,93 @@ public class ProbeWorker implements Runnable {
     return new ProbeFailedException(text, status);
   }
 
+  /**
+   * Run the worker in the current thread until told to exit.
+   */
   @Override
   public void run() {
+    begin();
+    long delay = interval;
+    while (delay >= 0) {
+      try {
+        if (delay > 0) {
+          awaitCycle(delay);
+        }
+      } catch (InterruptedException interrupted) {
+        break;
+      }
+      delay = executeCycle();
+    }
+    end();
+  }
+
+  /**
+   * Start the worker: log the probes and enter the dependency checking phase.
+   * The first cycle is expected one interval later.
+   */
+  public void begin() {
     int size = monitorProbes.size();
     LOG.info("Probe Worker Starting; " + size + " probe" + MonitorUtils.toPlural(size) + ":");
     enterProbePhase(ProbePhase.DEPENDENCY_CHECKING);
     for (Probe probe : monitorProbes) {
-      LOG.info(probe.getName());
+      probe.setPingRequestHandler(this);
+      LOG.info(probe.getName()
+               + " interval=" + MonitorUtils.millisToHumanTime(schedule.getInterval(probe)));
     }
-    while (!mustExit) {
-      try {
-        Thread.sleep(interval);
-        executeProbePhases();
-      } catch (ProbeFailedException e) {
-        //relay to the inner loop handler
-        probeFailed(e);
-      } catch (InterruptedException interrupted) {
-        break;
-      } catch (ProbeInterruptedException e) {
-        //exit raised.
-        //this will be true, just making extra-sure
-        break;
+  }
+
+  /**
+   * Execute a single probe cycle. This is how the worker is driven
+   * when it is not run in a thread of its own.
+   * @return the delay in milliseconds before the next cycle, or -1 if the
+   * worker is to exit, in which case {@link #end()} must be called.
+   */
+  public long executeCycle() {
+    if (mustExit) {
+      return -1;
+    }
+    try {
+      executeProbePhases();
+    } catch (ProbeFailedException e) {
+      //relay to the inner loop handler
+      probeFailed(e);
+    } catch (ProbeInterruptedException e) {
+      //exit raised.
+      return -1;
+    }
+    if (mustExit) {
+      return -1;
+    }
+    //the probe cycles before going live are a full interval apart
+    if (probePhase == ProbePhase.LIVE) {
+      long next = schedule.getNextDueTime(now());
+      if (dependencyRecheckInterval > 0 && !dependencies.isEmpty()) {
+        next = Math.min(next, nextDependencyCheck);
       }
+      return Math.max(0, next - now());
     }
+    return interval;
+  }
+
+  /**
+   * Stop the worker: release the probe pool and enter the terminating phase.
+   * Only the first call has any effect.
+   */
+  public synchronized void end() {
+    if (ended) {
+      return;
+    }
+    ended = true;
     LOG.info("Probe Worker Exiting");
+    for (Probe probe : monitorProbes) {
+      probe.setPingRequestHandler(null);
+    }
+    if (probeExecutor != null) {
+      probeExecutor.shutdownNow();
+    }
+    if (hedgeExecutor != null) {
+      hedgeExecutor.shutdownNow();
+    }
     enterProbePhase(ProbePhase.TERMINATING);
   }
 
@@ -446,4 +1258,293 @@ public class ProbeWorker implements Runnable {
     reportHandler.probeFailure(e);
   }
 
+  /**
+   * A ping of a single probe in the probe pool, with its deadline.
+   * If pings have a deadline and the probe is hedged, a second attempt
+   * may be started in the pool; both attempts share the deadline.
+   */
+  private class PendingPing {
+    private final Probe probe;
+    private final boolean live;
+    private final List<Attempt> attempts = new ArrayList<Attempt>(2);
+    private CompletionService<ProbeStatus> completions;
+    private ProbeStatus refusal;
+    private long submitted;
+    private long deadline;
+
+    private PendingPing(Probe probe, boolean live) {
+      this.probe = probe;
+      this.live = live;
+    }
+
+    /**
+     * Submit the ping to the probe pool -unless the probe is quarantined
+     * or the pool is full of hung pings, in which case the ping is refused
+     * and reported as timed out.
+     * @return this
+     */
+    private PendingPing submit() {
+      synchronized (hungProbes) {
+        if (hungProbes.containsKey(probe)) {
+          refusal = timedOut("Previous ping of " + probe.getName()
+                             + " has still not returned");
+        } else if (hungThreads >= probePoolSize) {
+          refusal = timedOut("All " + probePoolSize + " probe threads are hung");
+        }
+      }
+      if (refusal == null) {
+        submitted = now();
+        deadline = submitted + pingTimeout;
+        completions = new ExecutorCompletionService<ProbeStatus>(probeExecutor);
+        try {
+          start();
+        } catch (RejectedExecutionException e) {
+          refusal = new ProbeStatus();
+          refusal.fail(probe, e);
+        }
+      }
+      return this;
+    }
+
+    /**
+     * Start an attempt in the probe pool. If pings have a deadline, this worker
+     * does any hedging, so the attempt pings once; otherwise it may be hedged
+     * in the hedge pool.
+     * @throws RejectedExecutionException if the pool is shut down
+     */
+    private void start() {
+      Attempt attempt = new Attempt(probe, live, pingTimeout <= 0);
+      attempt.future = completions.submit(attempt);
+      attempts.add(attempt);
+    }
+
+    /**
+     * Start a second attempt, if the pool is not full of hung pings
+     */
+    private void hedge() {
+      synchronized (hungProbes) {
+        if (hungThreads >= probePoolSize) {
+          LOG.debug("Probe pool is full of hung pings; not hedging " + probe);
+          return;
+        }
+      }
+      try {
+        start();
+        hedgedPings.incrementAndGet();
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("Hedging ping of " + probe + " after "
+                    + MonitorUtils.millisToHumanTime(now() - submitted));
+        }
+      } catch (RejectedExecutionException e) {
+        LOG.debug("Probe pool is shut down; not hedging " + probe);
+      }
+    }
+
+    /**
+     * Wait for the next attempt to finish
+     * @param until time to wait until; ignored if pings have no deadline
+     * @return the finished attempt, or null if none finished in time
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private Future<ProbeStatus> next(long until) throws InterruptedException {
+      if (pingTimeout > 0) {
+        return completions.poll(Math.max(0, until - now()), TimeUnit.MILLISECONDS);
+      }
+      return completions.take();
+    }
+
+    /**
+     * Wait for the next attempt to finish before the deadline, extending
+     * the deadline if a timeout extension is in force when it is reached
+     * @return the finished attempt, or null if none finished in time
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private Future<ProbeStatus> awaitNext() throws InterruptedException {
+      Future<ProbeStatus> done = next(deadline);
+      while (done == null && extendDeadline()) {
+        done = next(deadline);
+      }
+      return done;
+    }
+
+    /**
+     * Extend the deadline by the current timeout extension. The extension
+     * is counted from the submission of the ping, so however long a storm
+     * lasts, a ping waits no longer than the timeout and the largest extension.
+     * @return true iff the deadline was moved
+     */
+    private boolean extendDeadline() {
+      TimeoutExtension source = timeoutExtension;
+      if (source == null || pingTimeout <= 0) {
+        return false;
+      }
+      long extended = submitted + pingTimeout + source.getTimeoutExtension(now());
+      if (extended <= deadline) {
+        return false;
+      }
+      LOG.info("Extending the deadline of the ping of " + probe + " by "
+               + MonitorUtils.millisToHumanTime(extended - deadline));
+      deadline = extended;
+      return true;
+    }
+
+    /**
+     * Wait for the outcome of the ping, until its deadline if there is one.
+     * If the probe is hedged and the first attempt has not finished at the
+     * hedge delay, a second attempt is started; the first success is returned,
+     * or the first failure if both fail.
+     * An exception raised by the probe is turned into a failure status;
+     * a missed deadline interrupts the attempts and the probe is quarantined
+     * while any of them is still running.
+     * @return the status
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private ProbeStatus await() throws InterruptedException {
+      if (refusal != null) {
+        return refusal;
+      }
+      boolean timedOut = false;
+      try {
+        Future<ProbeStatus> done = null;
+        long hedgeDelay = pingTimeout > 0 ? getHedgeDelay(probe) : -1;
+        if (hedgeDelay >= 0) {
+          done = next(submitted + hedgeDelay);
+          if (done == null) {
+            hedge();
+          }
+        }
+        ProbeStatus failure = null;
+        for (int pending = attempts.size(); pending > 0; pending--) {
+          if (done == null) {
+            done = pingTimeout > 0 ? awaitNext() : next(deadline);
+          }
+          if (done == null) {
+            timedOut = true;
+            long waited = deadline - submitted;
+            LOG.warn("Ping of " + probe + " timed out after "
+                     + MonitorUtils.millisToHumanTime(waited));
+            ProbeStatus status = timedOut("No response from " + probe.getName() + " after "
+                                          + MonitorUtils.millisToHumanTime(waited));
+            status.setDuration(waited);
+            return status;
+          }
+          ProbeStatus status = outcome(probe, done);
+          done = null;
+          if (status.isSuccess()) {
+            return finish(status);
+          }
+          if (failure == null) {
+            failure = status;
+          }
+        }
+        return finish(failure);
+      } finally {
+        abandon(timedOut);
+      }
+    }
+
+    /**
+     * Finish the outcome of the ping: the duration of a hedged ping is
+     * the time taken by the whole ping
+     * @param status status of the winning attempt
+     * @return the status
+     */
+    private ProbeStatus finish(ProbeStatus status) {
+      if (attempts.size() > 1) {
+        status.setDuration(now() - submitted);
+      }
+      return status;
+    }
+
+    /**
+     * Interrupt any attempt still running, and count it as a hung thread
+     * until it returns
+     * @param quarantine quarantine the probe until the attempts return,
+     * as they have missed the deadline
+     */
+    private void abandon(boolean quarantine) {
+      for (Attempt attempt : attempts) {
+        attempt.future.cancel(true);
+        synchronized (hungProbes) {
+          if (attempt.started && !attempt.finished) {
+            attempt.abandoned = true;
+            hungThreads++;
+            if (quarantine) {
+              attempt.quarantined = true;
+              Integer count = hungProbes.get(probe);
+              hungProbes.put(probe, count == null ? 1 : count + 1);
+            }
+          }
+        }
+      }
+    }
+
+    private void cancel() {
+      for (Attempt attempt : attempts) {
+        attempt.future.cancel(true);
+      }
+    }
+
+    private ProbeStatus timedOut(String text) {
+      ProbeStatus status = new ProbeStatus();
+      status.timeout(probe, new TimeoutException(text));
+      return status;
+    }
+  }
+
+  /**
+   * One attempt at a ping, in the probe pool or the hedge pool
+   */
+  private class Attempt implements Callable<ProbeStatus> {
+    private final Probe probe;
+    private final boolean live;
+    private final boolean mayHedge;
+    private Future<ProbeStatus> future;
+    /**
+     * state of the attempt; guarded by hungProbes
+     */
+    private boolean started, finished, abandoned, quarantined;
+
+    /**
+     * Create an attempt
+     * @param probe probe to ping
+     * @param live flag to indicate whether or not the operation is live or bootstrapping
+     * @param mayHedge may the attempt be hedged in the hedge pool?
+     */
+    private Attempt(Probe probe, boolean live, boolean mayHedge) {
+      this.probe = probe;
+      this.live = live;
+      this.mayHedge = mayHedge;
+    }
+
+    @Override
+    public ProbeStatus call() throws Exception {
+      synchronized (hungProbes) {
+        started = true;
+      }
+      try {
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("Executing " + probe);
+        }
+        return mayHedge ? attempt(probe, live) : timedPing(probe, live);
+      } finally {
+        synchronized (hungProbes) {
+          finished = true;
+          if (abandoned) {
+            hungThreads--;
+          }
+          if (quarantined) {
+            int count = hungProbes.get(probe) - 1;
+            if (count > 0) {
+              hungProbes.put(probe, count);
+            } else {
+              hungProbes.remove(probe);
+              LOG.info("Hung ping of " + probe + " has returned");
+            }
+          }
+        }
+      }
+    }
+  }
+
 }
@@ -18,6 +18,7 @@
 package org.apache.ambari.servicemonitor.reporting;
 
 import org.apache.ambari.servicemonitor.MonitorKeys;
+import org.apache.ambari.servicemonitor.probes.CompositeProbe;
 import org.apache.ambari.servicemonitor.probes.Probe;
 import org.apache.ambari.servicemonitor.utils.MonitorUtils;
 import org.apache.commons.logging.Log;
@@ -25,13 +26,62 @@ import org.apache.commons.logging.LogFactory;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * This is the monitor service
+ * This is the monitor service.
+ *
+ * It can be run with a thread of its own for the worker, via {@link #run()},
+ * or it can be {@link #schedule(ScheduledExecutorService, ScheduledExecutorService)}d
+ * on schedulers shared with other reporting loops, so that many services can be
+ * monitored in one process without two threads per service.
+ *
+ * In the live phase, a hang is normally detected by the worker not issuing
+ * a status for longer than the probe timeout. If phi accrual detection
+ * is enabled, the results of each probe are also fed to a
+ * {@link PhiAccrualDetector}, and the worker is taken to have failed as soon
+ * as the suspicion level of any probe passes the threshold; the probe
+ * timeout remains as an upper bound. As phi only grows between results,
+ * the state is checked again when the first detector would reach the
+ * threshold.
+ *
+ * Any probe of the worker which is a {@link TimeoutExtension} can extend the
+ * live probe timeout while it knows the service to be slow for a transient
+ * reason; during an extension, phi accrual suspicion is not acted on, and
+ * the worker extends the deadline of its pings by as much.
+ *
+ * Reporting is driven by events from the worker as well as by time. A probe
+ * result whose outcome differs from the last report, or a change of phase,
+ * wakes the reporting side at once, so a failure or recovery reaches the
+ * reporter without waiting for the next report interval. Between events,
+ * the loop wakes when the report interval has passed since the last report,
+ * or when the worker would time out, whichever is sooner; a report is then
+ * only made if the verdict has changed or the report interval has passed.
+ *
+ * The worker calls into this loop while holding its own lock, so this loop
+ * never calls the worker or the reporter while holding its lock: the state
+ * of the last report is updated under the lock, and the report is sent
+ * once it has been released. Waking the worker for an early ping takes
+ * no lock at all, as it is requested from threads which must not block.
  */
-public final class ReportingLoop implements Runnable, ProbeReportHandler, MonitorKeys, Closeable {
+public final class ReportingLoop implements Runnable, ProbeReportHandler, MonitorKeys, Closeable,
+                                            TimeoutExtension {
   private static final Log LOG = LogFactory.getLog(ReportingLoop.class);
+
+  /**
+   * Interval in milliseconds at which phi is checked again while it is
+   * over the threshold but held back by a timeout extension, which may
+   * end at any time: {@value}
+   */
+  public static final int PHI_EXTENDED_RECHECK = 100;
   private final ProbeWorker worker;
   private final Thread workerThread;
   private final int reportInterval;
@@ -40,6 +90,36 @@ public final class ReportingLoop implements Runnable, ProbeReportHandler, Monito
   private ProbeReportHandler reporter;
   private final String name;
   private volatile boolean mustExit;
+  private volatile ScheduledExecutorService scheduler;
+  private volatile ScheduledExecutorService reportScheduler;
+  private volatile ScheduledFuture<?> workerTask;
+  /** the only worker cycle which may run */
+  private volatile WorkerCycle currentCycle;
+  /** is a worker cycle running on the scheduler? */
+  private final AtomicBoolean workerCycleRunning = new AtomicBoolean();
+  /** has a wake been requested since the last cycle started? */
+  private final AtomicBoolean workerWakePending = new AtomicBoolean();
+  private volatile ScheduledFuture<?> reportTask;
+  /**
+   * Lock for the events of the worker; the pending flag is guarded by it
+   */
+  private final Object events = new Object();
+  private boolean eventPending;
+  private long lastReportTime;
+  private volatile boolean lastReportedHeartbeat = true;
+  private volatile boolean lastReportedSuccess = true;
+  private volatile ProbePhase lastReportedPhase;
+  private volatile ProbePhase lastReportedStatusPhase;
+  private double phiThreshold;
+  private int phiWindowSize;
+  private int phiMinStdDeviation;
+  /**
+   * Detectors of each probe; guarded by itself
+   */
+  private final Map<Probe, PhiAccrualDetector> detectors =
+    new HashMap<Probe, PhiAccrualDetector>();
+  private final List<TimeoutExtension> timeoutExtensions =
+    new CopyOnWriteArrayList<TimeoutExtension>();
 
   public ReportingLoop(String name,
                        ProbeReportHandler reporter,
@@ -77,14 +157,92 @@ public final class ReportingLoop implements Runnable, ProbeReportHandler, Monito
     this.worker = worker;
     this.bootstrapTimeout = worker.getBootstrapTimeout();
     worker.setReportHandler(this);
+    addTimeoutExtensions(worker.getMonitorProbes());
+    worker.setTimeoutExtension(this);
     workerThread = new Thread(worker, "probe thread - " + name);
     worker.init();
   }
 
+  /**
+   * Add every probe which is a {@link TimeoutExtension} as a source
+   * of extensions, including the children of composite probes
+   * @param probes probes
+   */
+  private void addTimeoutExtensions(List<Probe> probes) {
+    for (Probe probe : probes) {
+      if (probe instanceof TimeoutExtension) {
+        timeoutExtensions.add((TimeoutExtension) probe);
+      }
+      if (probe instanceof CompositeProbe) {
+        addTimeoutExtensions(((CompositeProbe) probe).getChildren());
+      }
+    }
+  }
+
   public int getBootstrapTimeout() {
     return bootstrapTimeout;
   }
 
+  /**
+   * Enable phi accrual failure detection in the live phase
+   * @param threshold the phi at which the worker is taken to have failed;
+   * zero or less disables phi accrual detection
+   * @param windowSize number of results of each probe to learn from
+   * @param minStdDeviation lowest standard deviation of the lateness of results,
+   * in milliseconds
+   */
+  public void enablePhiAccrual(double threshold, int windowSize, int minStdDeviation) {
+    phiWindowSize = windowSize;
+    phiMinStdDeviation = minStdDeviation;
+    phiThreshold = threshold;
+  }
+
+  /**
+   * Add a source of extensions to the live probe timeout
+   * @param extension the extension
+   */
+  public void addTimeoutExtension(TimeoutExtension extension) {
+    timeoutExtensions.add(extension);
+  }
+
+  /**
+   * Get the current extension of the live probe timeout
+   * @param now the current time
+   * @return the largest extension of any source, in milliseconds
+   */
+  @Override
+  public long getTimeoutExtension(long now) {
+    long extension = 0;
+    for (TimeoutExtension source : timeoutExtensions) {
+      extension = Math.max(extension, source.getTimeoutExtension(now));
+    }
+    return extension;
+  }
+
+  public boolean isPhiAccrualEnabled() {
+    return phiThreshold > 0;
+  }
+
+  public double getPhiThreshold() {
+    return phiThreshold;
+  }
+
+  /**
+   * Get the phi accrual detector of a probe, creating it if need be
+   * @param probe probe
+   * @return the detector
+   */
+  public PhiAccrualDetector getDetector(Probe probe) {
+    synchronized (detectors) {
+      PhiAccrualDetector detector = detectors.get(probe);
+      if (detector == null) {
+        detector = new PhiAccrualDetector(phiWindowSize, phiMinStdDeviation);
+        detectors.put(probe, detector);
+      }
+      return detector;
+    }
+  }
+
   public void setReporter(Reporter reporter) {
     assert this.reporter == null : "attempting to reassign reporter ";
     assert reporter != null : "new reporter is null";
@@ -131,6 +289,19 @@ public final class ReportingLoop implements Runnable, ProbeReportHandler, Monito
       worker.setMustExit();
       workerThread.interrupt();
     }
+    synchronized (this) {
+      if (reportTask != null) {
+        reportTask.cancel(false);
+      }
+    }
+    signal();
+    if (workerTask != null) {
+      //interrupt any blocking probe; the worker is ended by the cancelled cycle
+      //or, if it was not running, here
+      if (workerTask.cancel(true)) {
+        worker.end();
+      }
+    }
     if (reporter != null) {
       reporter.unregister();
     }
@@ -139,11 +310,20 @@ public final class ReportingLoop implements Runnable, ProbeReportHandler, Monito
   @Override
   public void probeFailure(ProbeFailedException exception) {
     reporter.probeFailure(exception);
+    signal();
   }
 
   @Override
   public void probeProcessStateChange(ProbePhase probePhase) {
+    if (probePhase.getIndex() < ProbePhase.LIVE.getIndex()) {
+      //the worker may go back to an earlier phase; the arrival histories
+      //of the live pings are stale by the time it is live again
+      synchronized (detectors) {
+        detectors.clear();
+      }
+    }
     reporter.probeProcessStateChange(probePhase);
+    signal();
   }
 
   @Override
@@ -157,7 +337,38 @@ public final class ReportingLoop implements Runnable, ProbeReportHandler, Monito
 
   @Override
   public void probeResult(ProbePhase phase, ProbeStatus status) {
+    //the dependencies are rechecked while live, but on a cadence of their own
+    if (isPhiAccrualEnabled() && phase == ProbePhase.LIVE && status.getOriginator() != null
+        && worker.getMonitorProbes().contains(status.getOriginator())) {
+      getDetector(status.getOriginator()).arrived(status.getTimestamp(), status.getInterval());
+    }
     reporter.probeResult(phase, status);
+    if (status.isSuccess() != lastReportedSuccess || phase != lastReportedStatusPhase) {
+      signal();
+    }
+  }
+
+  /**
+   * Tell the reporting side that there is news from the worker.
+   * In a thread of its own, the reporting loop is woken; on a shared
+   * scheduler, a report is run straight away.
+   */
+  private void signal() {
+    ScheduledExecutorService sharedScheduler = reportScheduler;
+    if (sharedScheduler != null) {
+      if (!mustExit) {
+        try {
+          sharedScheduler.execute(new ReportCycle());
+        } catch (RejectedExecutionException e) {
+          //the scheduler is shutting down
+        }
+      }
+    } else {
+      synchronized (events) {
+        eventPending = true;
+        events.notifyAll();
+      }
+    }
   }
 
   @Override
@@ -196,56 +407,14 @@ public final class ReportingLoop implements Runnable, ProbeReportHandler, Monito
 
     while (!mustExit) {
       try {
-        ProbeStatus workerStatus = worker.getLastStatus();
-        long now = now();
-        long lastStatusIssued = workerStatus.getTimestamp();
-        long timeSinceLastStatusIssued = now - lastStatusIssued;
-        //two actions can occur here: a heartbeat is issued or a timeout reported. 
-        //this flag decides which
-        boolean heartbeat;
-
-        //based on phase, decide whether to heartbeat or timeout
-        ProbePhase probePhase = worker.getProbePhase();
-        switch (probePhase) {
-          case DEPENDENCY_CHECKING:
-            //no timeouts in dependency phase
-            heartbeat = true;
-            break;
-
-          case BOOTSTRAPPING:
-            //the timeout here is fairly straightforward: heartbeats are
-            //raised while the worker hasn't timed out
-            heartbeat = bootstrapTimeout < 0 || timeSinceLastStatusIssued < bootstrapTimeout;
-
-            break;
-
-          case LIVE:
-            //use the probe timeout interval between the current time
-            //and the time the last status event was received.
-            heartbeat = timeSinceLastStatusIssued < probeTimeout;
-            break;
-
-          case INIT:
-          case TERMINATING:
-          default:
-            //send a heartbeat, because this isn't the time to be failing
-            heartbeat = true;
+        long delay = reportOnChange();
+        //now wait for an event from the worker, or the next check
+        synchronized (events) {
+          if (!eventPending && !mustExit) {
+            events.wait(delay);
+          }
+          eventPending = false;
         }
-        if (heartbeat) {
-          //a heartbeat is sent to the reporter
-          reporter.heartbeat(workerStatus);
-        } else {
-          //no response from the worker -it is hung.
-          reporter.probeTimedOut(probePhase,
-                                 worker.getCurrentProbe(),
-                                 workerStatus,
-                                 now
-                                );
-        }
-
-        //now sleep
-        Thread.sleep(reportInterval);
-
       } catch (InterruptedException e) {
         //interrupted -always exit the loop.
         break;
@@ -254,6 +423,310 @@ public final class ReportingLoop implements Runnable, ProbeReportHandler, Monito
     //this point is reached if and only if a clean exit was requested or something failed.
   }
 
+  /**
+   * Report the state of the worker once: either a heartbeat or a timeout
+   */
+  public void reportOnce() {
+    report(true);
+  }
+
+  /**
+   * Report the state of the worker if the verdict, the outcome of the last
+   * probe or the phase has changed since the last report, or if the report
+   * interval has passed.
+   * @return the time in milliseconds until the state must be checked again
+   */
+  public long reportOnChange() {
+    return report(false);
+  }
+
+  /**
+   * Report the state of the worker: either a heartbeat or a timeout.
+   * Only the decision to report is made under the lock of this loop; the
+   * worker, the probes and the reporter are called without it.
+   * @param always report even if nothing has changed since the last report
+   * and the report interval has not yet passed
+   * @return the time in milliseconds until the state must be checked again
+   */
+  private long report(boolean always) {
+    ProbeStatus workerStatus = worker.getLastStatus();
+    long now = now();
+    long lastStatusIssued = workerStatus.getTimestamp();
+    long timeSinceLastStatusIssued = now - lastStatusIssued;
+    //two actions can occur here: a heartbeat is issued or a timeout reported. 
+    //this flag decides which
+    boolean heartbeat;
+    Probe suspect = null;
+
+    //time at which the worker times out, if it is yet to
+    long deadline = -1;
+
+    //based on phase, decide whether to heartbeat or timeout
+    ProbePhase probePhase = worker.getProbePhase();
+    switch (probePhase) {
+      case DEPENDENCY_CHECKING:
+        //no timeouts in dependency phase
+        heartbeat = true;
+        break;
+
+      case BOOTSTRAPPING:
+        //the timeout here is fairly straightforward: heartbeats are
+        //raised while the worker hasn't timed out
+        heartbeat = bootstrapTimeout < 0 || timeSinceLastStatusIssued < bootstrapTimeout;
+        if (heartbeat && bootstrapTimeout >= 0) {
+          deadline = lastStatusIssued + bootstrapTimeout;
+        }
+        break;
+
+      case LIVE:
+        //use the probe timeout interval between the current time
+        //and the time the last status event was received.
+        long extension = getTimeoutExtension(now);
+        if (extension > 0 && LOG.isDebugEnabled()) {
+          LOG.debug("Probe timeout extended by " + MonitorUtils.millisToHumanTime(extension));
+        }
+        heartbeat = timeSinceLastStatusIssued < probeTimeout + extension;
+        if (heartbeat) {
+          deadline = lastStatusIssued + probeTimeout + extension;
+        }
+        if (isPhiAccrualEnabled()) {
+          //the most suspect probe can only make the failure be detected sooner
+          double phi = 0;
+          long phiCheck = -1;
+          synchronized (detectors) {
+            for (Map.Entry<Probe, PhiAccrualDetector> entry : detectors.entrySet()) {
+              PhiAccrualDetector detector = entry.getValue();
+              double probePhi = detector.phi(now);
+              if (probePhi > phi) {
+                phi = probePhi;
+                suspect = entry.getKey();
+              }
+              long thresholdTime = detector.getThresholdTime(phiThreshold);
+              if (thresholdTime > now && (phiCheck < 0 || thresholdTime < phiCheck)) {
+                phiCheck = thresholdTime;
+              }
+            }
+          }
+          workerStatus.setPhi(phi);
+          if (extension == 0) {
+            heartbeat &= phi < phiThreshold;
+          }
+          if (heartbeat && phi >= phiThreshold) {
+            //held back by the extension
+            phiCheck = now + PHI_EXTENDED_RECHECK;
+          }
+          if (heartbeat && phiCheck > 0) {
+            //phi grows until the next result: check it again when the
+            //first detector would reach the threshold
+            deadline = deadline < 0 ? phiCheck : Math.min(deadline, phiCheck);
+          }
+        }
+        break;
+
+      case INIT:
+      case TERMINATING:
+      default:
+        //send a heartbeat, because this isn't the time to be failing
+        heartbeat = true;
+    }
+
+    long nextReport;
+    boolean send;
+    synchronized (this) {
+      nextReport = lastReportTime + reportInterval;
+      boolean changed = heartbeat != lastReportedHeartbeat
+                        || workerStatus.isSuccess() != lastReportedSuccess
+                        || probePhase != lastReportedPhase
+                        || workerStatus.getProbePhase() != lastReportedStatusPhase;
+      send = always || changed || now >= nextReport;
+      if (send) {
+        lastReportTime = now;
+        lastReportedHeartbeat = heartbeat;
+        lastReportedSuccess = workerStatus.isSuccess();
+        lastReportedPhase = probePhase;
+        lastReportedStatusPhase = workerStatus.getProbePhase();
+        nextReport = now + reportInterval;
+      }
+    }
+    if (send) {
+      sendReport(heartbeat, probePhase, workerStatus, suspect, now);
+    }
+    long next = deadline > now ? Math.min(deadline, nextReport) : nextReport;
+    return Math.max(1, next - now);
+  }
+
+  /**
+   * Send a report to the reporter
+   * @param heartbeat true for a heartbeat, false for a timeout
+   * @param probePhase current phase
+   * @param workerStatus last status of the worker
+   * @param suspect the most suspect probe, or null
+   * @param now the current time
+   */
+  private void sendReport(boolean heartbeat,
+                          ProbePhase probePhase,
+                          ProbeStatus workerStatus,
+                          Probe suspect,
+                          long now) {
+    if (heartbeat) {
+      //a heartbeat is sent to the reporter
+      reporter.heartbeat(workerStatus);
+    } else {
+      //no response from the worker -it is hung.
+      Probe currentProbe = worker.getCurrentProbe();
+      reporter.probeTimedOut(probePhase,
+                             currentProbe != null ? currentProbe : suspect,
+                             workerStatus,
+                             now
+                            );
+    }
+  }
+
+  /**
+   * Schedule the worker cycles and the reports on shared schedulers, rather
+   * than running them in threads of their own. This method returns immediately;
+   * {@link #close()} cancels the scheduled work.
+   * A worker cycle which blocks ties up one thread of the worker scheduler.
+   * The reports must be given a scheduler of their own, so that blocked
+   * or slow worker cycles cannot hold back the reports which detect them.
+   * @param workerScheduler the scheduler of the worker cycles
+   * @param sharedReportScheduler the scheduler of the reports
+   */
+  public void schedule(ScheduledExecutorService workerScheduler,
+                       ScheduledExecutorService sharedReportScheduler) {
+    assert workerScheduler != sharedReportScheduler : "reports need a scheduler of their own";
+    synchronized (this) {
+      assert scheduler == null : "already scheduled";
+      scheduler = workerScheduler;
+    }
+    LOG.info("Scheduling " + name + " on the shared schedulers");
+    worker.begin();
+    worker.setCycleWaker(new Runnable() {
+      @Override
+      public void run() {
+        wakeWorker();
+      }
+    });
+    scheduleWorkerCycle(worker.interval);
+    reportScheduler = sharedReportScheduler;
+    scheduleReport(0);
+  }
+
+  /**
+   * Schedule the next report cycle, unless one is already due sooner.
+   * @param delay delay in milliseconds
+   */
+  private synchronized void scheduleReport(long delay) {
+    if (mustExit) {
+      return;
+    }
+    if (reportTask != null) {
+      long pending = reportTask.getDelay(TimeUnit.MILLISECONDS);
+      if (pending > 0 && pending <= delay) {
+        return;
+      }
+      reportTask.cancel(false);
+    }
+    try {
+      reportTask = reportScheduler.schedule(new ReportCycle(), delay, TimeUnit.MILLISECONDS);
+    } catch (RejectedExecutionException e) {
+      //the scheduler is shutting down
+    }
+  }
+
+  /**
+   * Run the next worker cycle on the scheduler now. If a cycle is running,
+   * the next one is run as soon as it has finished.
+   * This is called from threads which must not block, so it takes no locks:
+   * the pending flag is set before the running flag is read, and a finishing
+   * cycle clears the running flag before it reads the pending one, so at
+   * least one of the two schedules the next cycle.
+   */
+  private void wakeWorker() {
+    if (scheduler == null || mustExit) {
+      return;
+    }
+    if (workerWakePending.getAndSet(true)) {
+      //an earlier wake has not yet been picked up by a cycle
+      return;
+    }
+    if (workerCycleRunning.get()) {
+      //the running cycle schedules the next one at once
+      return;
+    }
+    ScheduledFuture<?> task = workerTask;
+    if (task != null) {
+      task.cancel(false);
+    }
+    scheduleWorkerCycle(0);
+  }
+
+  /**
+   * Schedule the next worker cycle. It replaces any cycle scheduled before
+   * it: a replaced cycle which starts anyway does nothing.
+   * @param delay delay in milliseconds
+   */
+  private void scheduleWorkerCycle(long delay) {
+    WorkerCycle cycle = new WorkerCycle();
+    //replace the current cycle before it can start
+    currentCycle = cycle;
+    try {
+      workerTask = scheduler.schedule(cycle, delay, TimeUnit.MILLISECONDS);
+    } catch (RejectedExecutionException e) {
+      //the scheduler is shutting down
+      worker.end();
+    }
+  }
+
+  /**
+   * A report on the report scheduler, which schedules the next one
+   * for when the state must be checked again.
+   */
+  private class ReportCycle implements Runnable {
+
+    @Override
+    public void run() {
+      long delay = reportInterval;
+      try {
+        delay = reportOnChange();
+      } catch (RuntimeException e) {
+        //an exception must not stop all future reports
+        LOG.warn("Failure in the reporting of " + name + ": " + e, e);
+      }
+      scheduleReport(delay);
+    }
+  }
+
+  /**
+   * A single cycle of the worker, which schedules the next one
+   * after the delay the worker asks for.
+   */
+  private class WorkerCycle implements Runnable {
+
+    @Override
+    public void run() {
+      if (currentCycle != this || !workerCycleRunning.compareAndSet(false, true)) {
+        //replaced by a later cycle, or another cycle is still running
+        //and will schedule the next one itself
+        return;
+      }
+      workerWakePending.set(false);
+      long delay;
+      try {
+        delay = worker.executeCycle();
+      } catch (RuntimeException e) {
+        LOG.warn("Failure in the probe worker of " + name + ": " + e, e);
+        delay = worker.interval;
+      }
+      workerCycleRunning.set(false);
+      if (delay < 0 || mustExit) {
+        worker.end();
+        return;
+      }
+      scheduleWorkerCycle(workerWakePending.get() ? 0 : delay);
+    }
+  }
+
   /**
    * This can be run in a separate thread, or it can be run directly from the caller.
    * Test runs do the latter, HAM runs multiple reporting threads.
@@ -0,0 +1,36 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.servicemonitor.reporting;
+
+/**
+ * Implemented by a probe which can tell that the monitored service is slow
+ * for a known, transient reason, such as a storm of garbage collections.
+ * While it says so, the {@link ReportingLoop} extends the live probe timeout,
+ * and does not act on phi accrual suspicion, rather than fail over a service
+ * whose replacement would meet the same problem.
+ */
+public interface TimeoutExtension {
+
+  /**
+   * Get the time to add to the probe timeout. This is called by the
+   * reporting side on every check of the worker, and must not block.
+   * @param now the current time
+   * @return the extension in milliseconds; 0 for none
+   */
+  long getTimeoutExtension(long now);
+}
@@ -105,6 +105,11 @@ public class RestStatusServlet extends HttpServlet {
     map.put("timestamp", status.getTimestamp());
     map.put("phase", status.getProbePhase());
     map.put("message", status.getMessage());
+    map.put("duration", status.getDuration());
+    map.put("interval", status.getInterval());
+    if (status.getPhi() >= 0) {
+      map.put("phi", status.getPhi());
+    }
     Throwable thrown = status.getThrown();
     if (thrown != null) {
       HashMap<String, Object> tmap = new HashMap<String, Object>();
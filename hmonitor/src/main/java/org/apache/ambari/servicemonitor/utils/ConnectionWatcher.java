@@ -0,0 +1,294 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.ambari.servicemonitor.utils;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Holds long-lived connections to services, all watched by one selector
+ * thread, and tells a listener the moment a connection is closed or reset
+ * by the far end -which is how the kernel reports the death of the process
+ * behind it.
+ * <p/>
+ * Anything the far end sends is read and discarded. Keep-alive is turned on,
+ * so a host which vanishes without closing its connections is also noticed,
+ * after the keep-alive time of the operating system.
+ * <p/>
+ * {@link #close()} stops the thread, closing the selector and every
+ * connection still watched, without telling their listeners.
+ */
+public class ConnectionWatcher implements Runnable {
+  private static final Log LOG = LogFactory.getLog(ConnectionWatcher.class);
+
+  /**
+   * Pause in milliseconds after a failure of the selector, so that a
+   * failure which repeats does not spin the thread: {@value}
+   */
+  public static final int FAILURE_PAUSE = 1000;
+
+  private static ConnectionWatcher instance;
+
+  private final Selector selector;
+  private final Queue<Watch> registrations = new ConcurrentLinkedQueue<Watch>();
+  private final ByteBuffer discard = ByteBuffer.allocate(4096);
+  private volatile boolean closed;
+
+  /**
+   * Told of the close of a watched connection
+   */
+  public interface Listener {
+
+    /**
+     * A watched connection has been closed by the far end. This is called
+     * from the watcher thread, and must not block.
+     * @param watch the watch
+     * @param reason text describing the close
+     */
+    void connectionClosed(Watch watch, String reason);
+  }
+
+  /**
+   * A watched connection
+   */
+  public final class Watch {
+    private final InetSocketAddress address;
+    private final SocketChannel channel;
+    private final Listener listener;
+
+    private Watch(InetSocketAddress address, SocketChannel channel, Listener listener) {
+      this.address = address;
+      this.channel = channel;
+      this.listener = listener;
+    }
+
+    public InetSocketAddress getAddress() {
+      return address;
+    }
+
+    /**
+     * Is the connection still open?
+     * @return true until the connection is closed by either end
+     */
+    public boolean isOpen() {
+      return channel.isOpen();
+    }
+
+    /**
+     * Close the connection without telling the listener;
+     * harmless if it is already closed
+     */
+    public void close() {
+      closeQuietly(channel);
+      selector.wakeup();
+    }
+
+    @Override
+    public String toString() {
+      return "watch of " + address;
+    }
+  }
+
+  public ConnectionWatcher() throws IOException {
+    selector = Selector.open();
+  }
+
+  /**
+   * Get the shared watcher, starting its thread on the first call
+   * @return the watcher
+   * @throws IOException if no selector could be opened
+   */
+  public static synchronized ConnectionWatcher getInstance() throws IOException {
+    if (instance == null) {
+      instance = new ConnectionWatcher();
+      new DaemonThreadFactory("connection watcher").newThread(instance).start();
+    }
+    return instance;
+  }
+
+  /**
+   * Close the shared watcher, if there is one; the next call of
+   * {@link #getInstance()} starts a new one
+   */
+  public static synchronized void closeInstance() {
+    if (instance != null) {
+      instance.close();
+      instance = null;
+    }
+  }
+
+  /**
+   * Stop watching: the watcher thread closes the selector and every
+   * connection, and exits
+   */
+  public void close() {
+    closed = true;
+    selector.wakeup();
+  }
+
+  public boolean isClosed() {
+    return closed;
+  }
+
+  /**
+   * Open a connection and watch it. The connect blocks the caller.
+   * @param address address to connect to
+   * @param timeout connect timeout in milliseconds
+   * @param listener listener to tell of the close
+   * @return the watch
+   * @throws IOException if the connection could not be made, or the
+   * watcher has been closed
+   */
+  public Watch watch(InetSocketAddress address, int timeout, Listener listener)
+    throws IOException {
+    if (closed) {
+      throw new IOException("The connection watcher has been closed");
+    }
+    SocketChannel channel = SocketChannel.open();
+    try {
+      channel.socket().setKeepAlive(true);
+      channel.socket().connect(address, timeout);
+      channel.configureBlocking(false);
+    } catch (IOException e) {
+      closeQuietly(channel);
+      throw e;
+    }
+    Watch watch = new Watch(address, channel, listener);
+    //channels are registered by the selector thread, as a register
+    //call would block while it is selecting
+    registrations.add(watch);
+    selector.wakeup();
+    return watch;
+  }
+
+  @Override
+  public void run() {
+    try {
+      while (!closed && selector.isOpen()) {
+        try {
+          register();
+          selector.select();
+          Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+          while (keys.hasNext()) {
+            SelectionKey key = keys.next();
+            keys.remove();
+            if (key.isValid() && key.isReadable()) {
+              read(key);
+            }
+          }
+        } catch (IOException e) {
+          if (closed || !selector.isOpen()) {
+            break;
+          }
+          LOG.warn("Failure in the connection watcher: " + e, e);
+          Thread.sleep(FAILURE_PAUSE);
+        }
+      }
+    } catch (ClosedSelectorException e) {
+      LOG.debug("Connection watcher selector closed");
+    } catch (InterruptedException e) {
+      LOG.debug("Connection watcher interrupted");
+    } finally {
+      closed = true;
+      shutdown();
+    }
+  }
+
+  /**
+   * Close every connection and the selector; called by the watcher
+   * thread as it exits
+   */
+  private void shutdown() {
+    Watch watch;
+    while ((watch = registrations.poll()) != null) {
+      closeQuietly(watch.channel);
+    }
+    try {
+      for (SelectionKey key : selector.keys()) {
+        closeQuietly((SocketChannel) key.channel());
+      }
+    } catch (ClosedSelectorException ignored) {
+      //the channels were deregistered when it was closed
+    }
+    try {
+      selector.close();
+    } catch (IOException e) {
+      LOG.debug("Failed to close the selector: " + e, e);
+    }
+  }
+
+  private void register() {
+    Watch watch;
+    while ((watch = registrations.poll()) != null) {
+      try {
+        watch.channel.register(selector, SelectionKey.OP_READ, watch);
+      } catch (ClosedChannelException ignored) {
+        //closed by its owner before it could be registered
+      }
+    }
+  }
+
+  /**
+   * Read and discard whatever has arrived; tell the listener of an
+   * end of stream or a reset
+   * @param key the key of the connection
+   */
+  private void read(SelectionKey key) {
+    Watch watch = (Watch) key.attachment();
+    String reason = null;
+    try {
+      int read;
+      do {
+        discard.clear();
+        read = watch.channel.read(discard);
+      } while (read > 0);
+      if (read < 0) {
+        reason = "connection closed by " + watch.address;
+      }
+    } catch (IOException e) {
+      reason = "connection to " + watch.address + " failed: " + e;
+    }
+    if (reason != null) {
+      key.cancel();
+      closeQuietly(watch.channel);
+      LOG.debug(reason);
+      watch.listener.connectionClosed(watch, reason);
+    }
+  }
+
+  private static void closeQuietly(SocketChannel channel) {
+    try {
+      channel.close();
+    } catch (IOException ignored) {
+      //ignored
+    }
+  }
+}
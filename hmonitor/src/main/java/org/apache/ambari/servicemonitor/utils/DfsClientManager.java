@@ -0,0 +1,293 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.servicemonitor.utils;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps one long-lived DFS client for each filesystem, shared by the probes
+ * and clients of the process, rather than one being created -and perhaps
+ * never closed- for every operation.
+ *
+ * This takes on what {@link OnDemandFS} does for a single user: the client
+ * of a filesystem is created on first use, by the caller; other callers
+ * wait for it rather than creating their own. Clients are told apart by the
+ * filesystem URI and by the retry policy of the configuration, so a
+ * non-blocking probe never shares a client with a blocking one.
+ *
+ * A caller whose operation fails hands the failure to
+ * {@link #failed(DistributedFileSystem, IOException)}. If it is a failure of
+ * the connection -rather than an error reported by the NameNode- the
+ * client is closed and dropped, and the next caller creates a new one. That
+ * is what happens when the NameNode fails over: the client of the old
+ * process is recycled, and the next operation connects to the new one.
+ *
+ * The number of clients created and recycled is counted, for the status
+ * messages of the probes.
+ */
+public class DfsClientManager {
+  private static final Log LOG = LogFactory.getLog(DfsClientManager.class);
+
+  private static DfsClientManager instance;
+
+  /**
+   * Clients by key; guarded by itself
+   */
+  private final Map<String, Holder> clients = new HashMap<String, Holder>();
+  private final AtomicLong creations = new AtomicLong();
+  private final AtomicLong recycles = new AtomicLong();
+
+  /**
+   * Get the manager shared by the whole process
+   * @return the shared manager
+   */
+  public static synchronized DfsClientManager getInstance() {
+    if (instance == null) {
+      instance = new DfsClientManager();
+    }
+    return instance;
+  }
+
+  /**
+   * Get the client of the filesystem of a configuration, creating it if need be
+   * @param conf configuration
+   * @return the shared client
+   * @throws IOException if it could not be created
+   */
+  public DistributedFileSystem get(Configuration conf) throws IOException {
+    String key = getKey(conf);
+    Holder holder;
+    synchronized (clients) {
+      holder = clients.get(key);
+      if (holder == null) {
+        holder = new Holder(key);
+        clients.put(key, holder);
+      }
+    }
+    return holder.get(conf);
+  }
+
+  /**
+   * Report the failure of an operation on a client; the client is recycled
+   * if the failure is one of the connection
+   * @param client the client; may be null if it could not be created
+   * @param failure the failure
+   * @return true iff the client was recycled
+   */
+  public boolean failed(DistributedFileSystem client, IOException failure) {
+    if (client == null || !isConnectionFailure(failure)) {
+      return false;
+    }
+    return recycle(client, failure.toString());
+  }
+
+  /**
+   * Close and drop a client, so that the next caller creates a new one.
+   * Nothing happens if the client has already been recycled.
+   * @param client client
+   * @param reason reason, for the log
+   * @return true iff the client was recycled
+   */
+  public boolean recycle(DistributedFileSystem client, String reason) {
+    Holder holder = null;
+    synchronized (clients) {
+      for (Holder h : clients.values()) {
+        if (h.isHolding(client)) {
+          holder = h;
+          break;
+        }
+      }
+    }
+    if (holder == null || !holder.release(client)) {
+      return false;
+    }
+    long count = recycles.incrementAndGet();
+    LOG.info("Recycling the DFS client of " + holder.key + " after " + reason
+             + "; clients recycled: " + count);
+    closeClient(client);
+    return true;
+  }
+
+  /**
+   * Close the client of the filesystem of a configuration, if there is one
+   * @param conf configuration
+   */
+  public void close(Configuration conf) {
+    Holder holder;
+    synchronized (clients) {
+      holder = clients.remove(getKey(conf));
+    }
+    if (holder != null) {
+      holder.close();
+    }
+  }
+
+  /**
+   * Close every client
+   */
+  public void closeAll() {
+    List<Holder> holders;
+    synchronized (clients) {
+      holders = new ArrayList<Holder>(clients.values());
+      clients.clear();
+    }
+    for (Holder holder : holders) {
+      holder.close();
+    }
+  }
+
+  public int size() {
+    synchronized (clients) {
+      return clients.size();
+    }
+  }
+
+  /**
+   * Get the number of clients which have been created
+   * @return the count
+   */
+  public long getCreations() {
+    return creations.get();
+  }
+
+  /**
+   * Get the number of clients which have been recycled after failures
+   * @return the count
+   */
+  public long getRecycles() {
+    return recycles.get();
+  }
+
+  /**
+   * Describe the counters, for status messages
+   * @return the counts of creations and recycles
+   */
+  public String describeCounts() {
+    return "DFS clients created=" + creations.get() + " recycled=" + recycles.get();
+  }
+
+  /**
+   * Is a failure one of the connection to the NameNode? Missing files are
+   * not, nor is anything which {@link RpcProxyHolder#isConnectionFailure(IOException)}
+   * rules out: errors which the NameNode itself has raised, and interrupts.
+   * @param failure failure
+   * @return true iff a new client could do better
+   */
+  public static boolean isConnectionFailure(IOException failure) {
+    return RpcProxyHolder.isConnectionFailure(failure)
+           && !(failure instanceof FileNotFoundException);
+  }
+
+  /**
+   * Create a client; this is where the time goes
+   * @param conf configuration
+   * @return a new, uncached client
+   * @throws IOException on a failure
+   */
+  protected DistributedFileSystem createClient(Configuration conf) throws IOException {
+    return DFSUtils.createUncachedDFS(conf);
+  }
+
+  /**
+   * Close a client
+   * @param client client
+   */
+  protected void closeClient(DistributedFileSystem client) {
+    DFSUtils.closeDFS(client);
+  }
+
+  /**
+   * Get the key of the client of a configuration: the filesystem and
+   * the retry policy
+   * @param conf configuration
+   * @return the key
+   * @throws IllegalArgumentException if the filesystem URI is invalid
+   */
+  private static String getKey(Configuration conf) {
+    return FileSystem.getDefaultUri(conf)
+           + " retry=" + conf.get(DFSUtils.DFS_CLIENT_RETRY_POLICY_ENABLED)
+           + " connect-retries=" + conf.get(DFSUtils.IPC_CLIENT_CONNECT_MAX_RETRIES);
+  }
+
+  /**
+   * The client of one filesystem
+   */
+  private final class Holder {
+    private final String key;
+    /** volatile so that it can be looked at while a client is being created */
+    private volatile DistributedFileSystem client;
+    private boolean closed;
+
+    private Holder(String key) {
+      this.key = key;
+    }
+
+    private synchronized DistributedFileSystem get(Configuration conf) throws IOException {
+      if (closed) {
+        throw new IOException("DFS client of " + key + " has been closed");
+      }
+      if (client == null) {
+        client = createClient(conf);
+        long count = creations.incrementAndGet();
+        LOG.debug("Created DFS client of " + key + "; clients created: " + count);
+      }
+      return client;
+    }
+
+    private boolean isHolding(DistributedFileSystem fs) {
+      return client == fs;
+    }
+
+    /**
+     * Drop a client, if it is still the one held
+     * @param fs client
+     * @return true iff it was dropped
+     */
+    private synchronized boolean release(DistributedFileSystem fs) {
+      if (client != fs) {
+        return false;
+      }
+      client = null;
+      return true;
+    }
+
+    private void close() {
+      DistributedFileSystem fs;
+      synchronized (this) {
+        closed = true;
+        fs = client;
+        client = null;
+      }
+      if (fs != null) {
+        closeClient(fs);
+      }
+    }
+  }
+}
@@ -31,16 +31,49 @@ import java.io.InterruptedIOException;
  * Class to find and ping a process -designed for use outside a probe, which can
  * aid testing.
  *
- * The path/file is set up at create time but the file containing the pid must
- * be reloaded every ping(), so that after a service restart the new pid will 
- * be picked up.
+ * The path/file is set up at create time. The pid is cached, and the file is
+ * only reloaded when its modification time or length changes -or when the
+ * cached process is found to be dead, in case the file was rewritten within
+ * the granularity of the modification time- so that after a service restart
+ * the new pid will be picked up.
+ *
+ * Where there is a <code>/proc</code> filesystem, the process is checked in
+ * <code>/proc/&lt;pid&gt;/stat</code>, with no process forked. The start time
+ * of the process is remembered when the pid is loaded, and a process with
+ * the same pid but a different start time is taken to be a different process
+ * which has reused the pid. When the file has visibly changed, the start
+ * time is read again, as a restarted daemon may be given its old pid. When
+ * the file of a dead process is reread without a visible change, the start
+ * time is kept if the pid is the same, so that the reread does not adopt
+ * whichever process has since taken the pid. A zombie is dead. Elsewhere, the process is signalled with <code>kill -0</code>.
  */
 public class FindAndPingPid {
   private static final Log LOG = LogFactory.getLog(FindAndPingPid.class);
 
+  private static final File PROC = new File("/proc");
+  private static final boolean PROC_AVAILABLE = new File(PROC, "self/stat").exists();
+
+  /**
+   * Index of the state among the fields after the command of /proc/pid/stat
+   */
+  private static final int STAT_STATE = 0;
+
+  /**
+   * Index of the start time among the fields after the command of
+   * /proc/pid/stat; it is field 22 of the whole line
+   */
+  private static final int STAT_START_TIME = 19;
+
   private final String pidPath;
   private final File pidFile;
 
+  /* the cached state; guarded by this */
+  private String pid;
+  private String startTime;
+  private long fileModified = -1;
+  private long fileLength = -1;
+  private boolean lastAlive;
+
   public FindAndPingPid(File pidFile) {
     this.pidFile = pidFile;
     pidPath = pidFile.getAbsolutePath();
@@ -54,6 +87,22 @@ public class FindAndPingPid {
     return pidFile;
   }
 
+  /**
+   * Get the pid loaded by the last ping
+   * @return the pid, or null if none has been loaded
+   */
+  public synchronized String getPid() {
+    return pid;
+  }
+
+  /**
+   * Is there a /proc filesystem to check processes in?
+   * @return true iff processes can be checked without a fork
+   */
+  public static boolean isProcAvailable() {
+    return PROC_AVAILABLE;
+  }
+
   @Override
   public String toString() {
     return pidPath;
@@ -89,22 +138,156 @@ public class FindAndPingPid {
   /**
    * Ping the process
    * @return true iff the pid file could be loaded, it contains a pid and that
-   * pid responds to a signal request
+   * pid is a live process
    * @throws IOException on any execution problem.
    */
-  public boolean ping() throws IOException {
-    String pid = loadPid();
+  public synchronized boolean ping() throws IOException {
+    lastAlive = false;
+    if (!pidFileExists()) {
+      pid = null;
+      fileModified = 0;
+      fileLength = 0;
+      throw new FileNotFoundException(pidFile.toString());
+    }
+    boolean reloaded = false;
+    if (pid == null || isFileChanged()) {
+      reload(false);
+      reloaded = true;
+    }
+    boolean alive = isAlive();
+    if (!alive && !reloaded) {
+      //the file may have been rewritten without a visible change
+      reload(true);
+      alive = isAlive();
+    }
     if (LOG.isDebugEnabled()) {
-      LOG.debug("Loaded pid \"" + pid + "\"");
+      LOG.debug("Process " + pid + " live: " + alive);
     }
-    if (pid.isEmpty()) {
-      throw new IOException("No PID in the file");
+    lastAlive = alive;
+    return alive;
+  }
+
+  /**
+   * Check, cheaply, for a change since the last ping: a change to the pid
+   * file, or the death of a process which was live. This forks nothing and
+   * does not read the pid file, so it can be called far more often than
+   * the process is pinged.
+   * @return true iff the outcome of a ping may have changed
+   */
+  public synchronized boolean hasChanged() {
+    if (fileModified < 0) {
+      //never pinged
+      return false;
+    }
+    if (isFileChanged()) {
+      return true;
     }
-    int result = signalPid(pid, 0);
+    if (pid == null || !PROC_AVAILABLE) {
+      return false;
+    }
+    try {
+      String[] stat = readStat(pid);
+      boolean alive = stat != null && isSameLiveProcess(stat);
+      return alive != lastAlive;
+    } catch (IOException e) {
+      return true;
+    }
+  }
+
+  private boolean isFileChanged() {
+    return pidFile.lastModified() != fileModified || pidFile.length() != fileLength;
+  }
+
+  /**
+   * Reload the pid and the start time of its process
+   * @param keepStartTime should the start time be kept if the pid is the
+   * same as before?
+   * @throws IOException on a failure to read the file, or if there is no pid in it
+   */
+  private void reload(boolean keepStartTime) throws IOException {
+    //the file is examined before it is read: a change after this is seen
+    //at the next ping
+    fileModified = pidFile.lastModified();
+    fileLength = pidFile.length();
+    String previous = pid;
+    pid = null;
+    String loaded = loadPid();
     if (LOG.isDebugEnabled()) {
-      LOG.debug("return code \"" + result + "\"");
+      LOG.debug("Loaded pid \"" + loaded + "\"");
+    }
+    if (loaded.isEmpty()) {
+      startTime = null;
+      throw new IOException("No PID in the file");
+    }
+    if (!keepStartTime || !loaded.equals(previous)) {
+      //when kept, a process with another start time has reused the pid
+      //of the one which wrote the file
+      startTime = null;
+      if (PROC_AVAILABLE) {
+        String[] stat = readStat(loaded);
+        if (stat != null) {
+          startTime = stat[STAT_START_TIME];
+        }
+      }
+    }
+    pid = loaded;
+  }
+
+  private boolean isAlive() throws IOException {
+    if (!PROC_AVAILABLE) {
+      int result = signalPid(pid, 0);
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("return code \"" + result + "\"");
+      }
+      return result == 0;
+    }
+    String[] stat = readStat(pid);
+    if (stat == null) {
+      return false;
+    }
+    if (startTime == null) {
+      //the process was not there when the pid was loaded; it is now
+      startTime = stat[STAT_START_TIME];
+    }
+    return isSameLiveProcess(stat);
+  }
+
+  private boolean isSameLiveProcess(String[] stat) {
+    return !"Z".equals(stat[STAT_STATE])
+           && (startTime == null || startTime.equals(stat[STAT_START_TIME]));
+  }
+
+  /**
+   * Read the status of a process
+   * @param processId pid
+   * @return the fields after the command, or null if there is no such process
+   * @throws IOException if the pid is not a number, or the status can not be parsed
+   */
+  protected String[] readStat(String processId) throws IOException {
+    for (int i = 0; i < processId.length(); i++) {
+      if (!Character.isDigit(processId.charAt(i))) {
+        throw new IOException("Not a process ID: \"" + processId + "\"");
+      }
+    }
+    File stat = new File(new File(PROC, processId), "stat");
+    String text;
+    try {
+      FileInputStream inputStream = new FileInputStream(stat);
+      try {
+        text = IOUtils.toString(inputStream);
+      } finally {
+        inputStream.close();
+      }
+    } catch (FileNotFoundException e) {
+      return null;
+    }
+    //the command is in brackets, and may contain spaces and brackets itself
+    int end = text.lastIndexOf(')');
+    String[] fields = end < 0 ? new String[0] : text.substring(end + 1).trim().split(" ");
+    if (fields.length <= STAT_START_TIME) {
+      throw new IOException("Cannot parse " + stat + ": " + text);
     }
-    return result == 0;
+    return fields;
   }
 
   /**
@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.servicemonitor.utils;
+
+/**
+ * A service level agreement on latency: the 99th percentile and the
+ * maximum of a {@link LatencyWindow} of recent latencies must stay under
+ * their limits. A breach only counts once it has lasted for a sustained
+ * period, so that a single slow operation does not fail a service which
+ * is otherwise fast; a service which has been unusably slow for that long
+ * has failed even though it still answers.
+ *
+ * The window is bounded in time as well as in size: only the latencies
+ * recorded within the sustain period are judged. A slow operation thus
+ * leaves the window before it can have been in breach for that long, and
+ * a breach is only sustained if slow operations go on being recorded
+ * throughout the period.
+ */
+public final class LatencySla {
+
+  /**
+   * The percentile which is held to its limit: {@value}
+   */
+  public static final double PERCENTILE = 99;
+
+  private final LatencyWindow window;
+  private final long percentileLimit;
+  private final long maxLimit;
+  private final long sustain;
+
+  /* guarded by this */
+  private long breachedSince = -1;
+
+  /**
+   * Create an agreement
+   * @param windowSize largest number of latencies to judge
+   * @param percentileLimit limit of the 99th percentile in milliseconds; 0 for none
+   * @param maxLimit limit of the maximum in milliseconds; 0 for none
+   * @param sustain time in milliseconds that a breach must last to count,
+   * and the age beyond which latencies are no longer judged; 0 for no
+   * bound on their age
+   */
+  public LatencySla(int windowSize, long percentileLimit, long maxLimit, long sustain) {
+    window = new LatencyWindow(windowSize);
+    this.percentileLimit = percentileLimit;
+    this.maxLimit = maxLimit;
+    this.sustain = sustain;
+  }
+
+  public LatencyWindow getWindow() {
+    return window;
+  }
+
+  /**
+   * Add a latency
+   * @param latency latency in milliseconds
+   * @param now the current time
+   */
+  public void add(long latency, long now) {
+    window.add(latency, now);
+  }
+
+  /**
+   * Check the agreement
+   * @param now the current time
+   * @return null if it is kept, or has not been broken for long enough;
+   * else a description of the breach
+   */
+  public synchronized String check(long now) {
+    if (sustain > 0) {
+      window.expire(now - sustain);
+    }
+    long percentile = window.getPercentile(PERCENTILE);
+    long max = window.getMax();
+    String breach = null;
+    if (percentileLimit > 0 && percentile > percentileLimit) {
+      breach = "p99 latency " + percentile + "ms > " + percentileLimit + "ms";
+    } else if (maxLimit > 0 && max > maxLimit) {
+      breach = "max latency " + max + "ms > " + maxLimit + "ms";
+    }
+    if (breach == null) {
+      breachedSince = -1;
+      return null;
+    }
+    if (breachedSince < 0) {
+      breachedSince = now;
+    }
+    long duration = now - breachedSince;
+    return duration >= sustain
+           ? breach + " for " + MonitorUtils.millisToHumanTime(duration)
+           : null;
+  }
+
+  /**
+   * Is the agreement broken, though perhaps not yet for long enough to count?
+   * @return true iff the last check found a breach
+   */
+  public synchronized boolean isBreached() {
+    return breachedSince >= 0;
+  }
+
+  @Override
+  public String toString() {
+    return "p99=" + window.getPercentile(PERCENTILE) + "ms"
+           + " max=" + window.getMax() + "ms"
+           + " samples=" + window.getCount();
+  }
+}
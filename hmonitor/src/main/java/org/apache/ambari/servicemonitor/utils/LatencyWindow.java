@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.servicemonitor.utils;
+
+import java.util.Arrays;
+
+/**
+ * A sliding window of the most recent latencies of some operation,
+ * from which percentiles can be read. The window can also be bounded in
+ * time, by expiring the latencies recorded before some time.
+ *
+ * The windows are small -a few hundred samples at most- so a percentile
+ * is computed by sorting a copy of the window.
+ */
+public final class LatencyWindow {
+
+  private final long[] samples;
+  private final long[] times;
+  private int count;
+  private int next;
+  private long total;
+
+  /**
+   * Create a window
+   * @param size the number of latencies to hold
+   */
+  public LatencyWindow(int size) {
+    samples = new long[Math.max(1, size)];
+    times = new long[samples.length];
+  }
+
+  /**
+   * Add a latency, replacing the oldest one if the window is full
+   * @param latency latency in milliseconds
+   */
+  public void add(long latency) {
+    add(latency, 0);
+  }
+
+  /**
+   * Add a latency, replacing the oldest one if the window is full
+   * @param latency latency in milliseconds
+   * @param time the time at which it was recorded
+   */
+  public synchronized void add(long latency, long time) {
+    if (count == samples.length) {
+      total -= samples[next];
+    } else {
+      count++;
+    }
+    samples[next] = latency;
+    times[next] = time;
+    total += latency;
+    next = (next + 1) % samples.length;
+  }
+
+  /**
+   * Drop the latencies recorded at or before a time
+   * @param time the time of the newest latency to drop
+   */
+  public synchronized void expire(long time) {
+    while (count > 0) {
+      int oldest = (next - count + samples.length) % samples.length;
+      if (times[oldest] > time) {
+        break;
+      }
+      total -= samples[oldest];
+      count--;
+    }
+  }
+
+  public int getSize() {
+    return samples.length;
+  }
+
+  /**
+   * Get the number of latencies in the window
+   * @return the count, which is no more than the size
+   */
+  public synchronized int getCount() {
+    return count;
+  }
+
+  public synchronized boolean isFull() {
+    return count == samples.length;
+  }
+
+  /**
+   * Get a percentile of the latencies, by the nearest rank
+   * @param percentile percentile, from 0 to 100
+   * @return the latency, or -1 if the window is empty
+   */
+  public synchronized long getPercentile(double percentile) {
+    if (count == 0) {
+      return -1;
+    }
+    long[] sorted = copy();
+    Arrays.sort(sorted);
+    int rank = (int) Math.ceil(percentile / 100 * count) - 1;
+    return sorted[Math.max(0, Math.min(count - 1, rank))];
+  }
+
+  /**
+   * Get the longest latency
+   * @return the maximum, or -1 if the window is empty
+   */
+  public synchronized long getMax() {
+    long max = -1;
+    for (long sample : copy()) {
+      max = Math.max(max, sample);
+    }
+    return max;
+  }
+
+  /**
+   * Copy the latencies in the window, which after an expiry need not
+   * start at the beginning of the array
+   * @return the latencies, oldest first
+   */
+  private long[] copy() {
+    long[] copy = new long[count];
+    int oldest = (next - count + samples.length) % samples.length;
+    for (int i = 0; i < count; i++) {
+      copy[i] = samples[(oldest + i) % samples.length];
+    }
+    return copy;
+  }
+
+  /**
+   * Get the mean latency
+   * @return the mean, or 0 if the window is empty
+   */
+  public synchronized double getMean() {
+    return count == 0 ? 0 : ((double) total) / count;
+  }
+
+  public synchronized void clear() {
+    count = 0;
+    next = 0;
+    total = 0;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "latencies: count=" + count
+           + " mean=" + Math.round(getMean())
+           + " p95=" + getPercentile(95)
+           + " max=" + getMax();
+  }
+}
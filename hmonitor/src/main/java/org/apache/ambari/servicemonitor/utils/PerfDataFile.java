@@ -0,0 +1,210 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.servicemonitor.utils;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A read-only memory map of the performance data file of a HotSpot JVM,
+ * <code>hsperfdata_&lt;user&gt;/&lt;pid&gt;</code>, which is what jstat reads.
+ * The JVM updates its counters in place, so once a file is mapped, reading
+ * a counter is a read of memory: there is no attach, no RPC and no fork,
+ * and it works while the JVM is stopped at a safepoint.
+ * <p/>
+ * Only version 2 of the format, the one used by Java 6 onwards, is
+ * understood. The names of the entries are indexed when the file is
+ * opened, and again whenever the JVM adds entries.
+ * <p/>
+ * There is no way to unmap a file in Java 6: the mapping is released
+ * when this object is garbage collected.
+ */
+public class PerfDataFile {
+
+  /** The magic number at the start of every file */
+  public static final int MAGIC = 0xcafec0c0;
+
+  /** The prefix of the directories of the files: {@value} */
+  public static final String DIRECTORY_PREFIX = "hsperfdata_";
+
+  private static final int PROLOGUE_BYTE_ORDER = 4;
+  private static final int PROLOGUE_MAJOR_VERSION = 5;
+  private static final int PROLOGUE_ACCESSIBLE = 7;
+  private static final int PROLOGUE_USED = 8;
+  private static final int PROLOGUE_ENTRY_OFFSET = 24;
+  private static final int PROLOGUE_NUM_ENTRIES = 28;
+  private static final int PROLOGUE_SIZE = 32;
+
+  private static final int ENTRY_LENGTH = 0;
+  private static final int ENTRY_NAME_OFFSET = 4;
+  private static final int ENTRY_VECTOR_LENGTH = 8;
+  private static final int ENTRY_DATA_TYPE = 12;
+  private static final int ENTRY_DATA_OFFSET = 16;
+
+  private static final byte TYPE_LONG = 'J';
+
+  private final File file;
+  private final MappedByteBuffer buffer;
+
+  /* offsets of the values of the long counters, by name; guarded by this */
+  private final Map<String, Integer> counters = new HashMap<String, Integer>();
+  private int indexedEntries;
+  private int indexedOffset;
+
+  /**
+   * Map a file
+   * @param file the file
+   * @throws FileNotFoundException if it does not exist
+   * @throws IOException if it can not be mapped, or is not a performance data file
+   */
+  public PerfDataFile(File file) throws IOException {
+    this.file = file;
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      FileChannel channel = raf.getChannel();
+      //the mapping outlives the channel
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    } finally {
+      raf.close();
+    }
+    if (buffer.capacity() < PROLOGUE_SIZE) {
+      throw new IOException("Too short to be a performance data file: " + file);
+    }
+    //the magic number is written to be read as big endian on all platforms
+    buffer.order(ByteOrder.BIG_ENDIAN);
+    if (buffer.getInt(0) != MAGIC) {
+      throw new IOException("Not a performance data file: " + file);
+    }
+    buffer.order(buffer.get(PROLOGUE_BYTE_ORDER) == 0
+                 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+    int major = buffer.get(PROLOGUE_MAJOR_VERSION);
+    if (major != 2) {
+      throw new IOException("Unsupported version " + major
+                            + " of performance data file " + file);
+    }
+    indexedOffset = buffer.getInt(PROLOGUE_ENTRY_OFFSET);
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   * Has the JVM finished creating the file?
+   * @return true iff the counters can be read
+   */
+  public boolean isAccessible() {
+    return buffer.get(PROLOGUE_ACCESSIBLE) != 0;
+  }
+
+  /**
+   * Read a long counter
+   * @param name name of the counter, such as <code>sun.os.hrt.ticks</code>
+   * @return its value, or -1 if there is no such counter
+   */
+  public synchronized long getLong(String name) {
+    Integer offset = counters.get(name);
+    if (offset == null) {
+      if (!index()) {
+        return -1;
+      }
+      offset = counters.get(name);
+      if (offset == null) {
+        return -1;
+      }
+    }
+    return buffer.getLong(offset);
+  }
+
+  /**
+   * Index any entries added since the last call
+   * @return true iff there were new entries
+   */
+  private boolean index() {
+    int entries = buffer.getInt(PROLOGUE_NUM_ENTRIES);
+    int used = Math.min(buffer.getInt(PROLOGUE_USED), buffer.capacity());
+    if (entries <= indexedEntries) {
+      return false;
+    }
+    int offset = indexedOffset;
+    int indexed = indexedEntries;
+    while (indexed < entries && offset + ENTRY_DATA_OFFSET + 4 <= used) {
+      int length = buffer.getInt(offset + ENTRY_LENGTH);
+      if (length <= 0 || offset + length > used) {
+        break;
+      }
+      if (buffer.get(offset + ENTRY_DATA_TYPE) == TYPE_LONG
+          && buffer.getInt(offset + ENTRY_VECTOR_LENGTH) == 0) {
+        counters.put(readName(offset + buffer.getInt(offset + ENTRY_NAME_OFFSET),
+                              offset + length),
+                     offset + buffer.getInt(offset + ENTRY_DATA_OFFSET));
+      }
+      offset += length;
+      indexed++;
+    }
+    indexedEntries = indexed;
+    indexedOffset = offset;
+    return true;
+  }
+
+  private String readName(int start, int end) {
+    StringBuilder name = new StringBuilder();
+    for (int i = start; i < end; i++) {
+      byte b = buffer.get(i);
+      if (b == 0) {
+        break;
+      }
+      name.append((char) b);
+    }
+    return name.toString();
+  }
+
+  /**
+   * Find the performance data file of a process
+   * @param directory directory holding the <code>hsperfdata_&lt;user&gt;</code>
+   * directories; normally <code>/tmp</code>
+   * @param pid process
+   * @return the file, or null if there is none
+   */
+  public static File find(File directory, String pid) {
+    File[] dirs = directory.listFiles();
+    if (dirs != null) {
+      for (File dir : dirs) {
+        if (dir.getName().startsWith(DIRECTORY_PREFIX)) {
+          File file = new File(dir, pid);
+          if (file.isFile()) {
+            return file;
+          }
+        }
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public String toString() {
+    return file.toString();
+  }
+}
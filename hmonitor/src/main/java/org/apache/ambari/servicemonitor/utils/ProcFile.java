@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.servicemonitor.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+
+/**
+ * A reader of the small text files of <code>/proc</code>, which loads them
+ * into a buffer that is reused from one read to the next, and parses numbers
+ * straight out of that buffer. A file is read in full with one open, so it
+ * is a consistent snapshot; nothing is forked and, once the buffer has grown
+ * to fit the file, nothing is allocated.
+ * <p/>
+ * Instances are not thread safe.
+ */
+public class ProcFile {
+
+  private static final int BUFFER_SIZE = 4096;
+
+  private byte[] buffer = new byte[BUFFER_SIZE];
+  private int length;
+
+  /**
+   * Load a file into the buffer
+   * @param file file to read
+   * @return true iff the file was read; false if it does not exist
+   * @throws IOException on any other failure to read it
+   */
+  public boolean load(File file) throws IOException {
+    length = 0;
+    FileInputStream in;
+    try {
+      in = new FileInputStream(file);
+    } catch (FileNotFoundException e) {
+      return false;
+    }
+    try {
+      int read;
+      while ((read = in.read(buffer, length, buffer.length - length)) >= 0) {
+        length += read;
+        if (length == buffer.length) {
+          //the files of /proc do not report their size: grow and keep reading
+          byte[] larger = new byte[buffer.length * 2];
+          System.arraycopy(buffer, 0, larger, 0, length);
+          buffer = larger;
+        }
+      }
+    } catch (IOException e) {
+      //a process that exits while its files are read can fail the read
+      if (!file.exists()) {
+        return false;
+      }
+      throw e;
+    } finally {
+      in.close();
+    }
+    return true;
+  }
+
+  public int length() {
+    return length;
+  }
+
+  public char charAt(int offset) {
+    return (char) buffer[offset];
+  }
+
+  /**
+   * Find the last instance of a character
+   * @param c character
+   * @return its offset or -1
+   */
+  public int lastIndexOf(char c) {
+    for (int i = length - 1; i >= 0; i--) {
+      if (buffer[i] == c) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Find some text at the start of a line
+   * @param text text to look for
+   * @return the offset just after the text, or -1 if it is not found
+   */
+  public int findLine(String text) {
+    int last = length - text.length();
+    for (int start = 0; start <= last; start++) {
+      if (start == 0 || buffer[start - 1] == '\n') {
+        int i = 0;
+        while (i < text.length() && buffer[start + i] == text.charAt(i)) {
+          i++;
+        }
+        if (i == text.length()) {
+          return start + i;
+        }
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Find a field of a line of space separated fields
+   * @param offset an offset in the first field, or in the spaces before it
+   * @param index the number of the field, starting with the first one at 0
+   * @return the offset of the field, or -1 if the line has fewer fields
+   */
+  public int findField(int offset, int index) {
+    int i = skipSpaces(offset);
+    for (int field = 0; field < index; field++) {
+      while (i < length && !isSpace(buffer[i])) {
+        i++;
+      }
+      i = skipSpaces(i);
+    }
+    return i < length && buffer[i] != '\n' ? i : -1;
+  }
+
+  /**
+   * Parse an unsigned decimal number, skipping any spaces before it
+   * @param offset offset to start from
+   * @return the number, or -1 if there are no digits there
+   */
+  public long parseLong(int offset) {
+    if (offset < 0) {
+      return -1;
+    }
+    int i = skipSpaces(offset);
+    long value = -1;
+    while (i < length && buffer[i] >= '0' && buffer[i] <= '9') {
+      value = (value < 0 ? 0 : value * 10) + (buffer[i] - '0');
+      i++;
+    }
+    return value;
+  }
+
+  private int skipSpaces(int offset) {
+    int i = offset;
+    while (i < length && (buffer[i] == ' ' || buffer[i] == '\t')) {
+      i++;
+    }
+    return i;
+  }
+
+  private static boolean isSpace(byte b) {
+    return b == ' ' || b == '\t' || b == '\n';
+  }
+}
@@ -0,0 +1,331 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.servicemonitor.utils;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A cache of the addresses of hosts, so that probes do not wait for DNS
+ * in their pings.
+ *
+ * The first lookup of a host is made by the caller; other callers
+ * looking up the same host wait for it rather than making their own.
+ * After that, the addresses are served from the cache. Once they are older
+ * than the time to live they are stale: they are still served, but a
+ * lookup is made in the background to refresh them. Hosts which are in
+ * use are refreshed in the background every time to live, so they are
+ * rarely stale; hosts which have not been looked up for
+ * {@link #IDLE_TTLS} times the time to live are dropped.
+ *
+ * If a refresh fails, the last known addresses continue to be served.
+ * A host which could not be resolved at all is remembered as unknown
+ * until the time to live has passed.
+ *
+ * The lookups go through {@link InetAddress}, so the refreshes also keep
+ * the JVM's own address cache warm for code, such as the HTTP client,
+ * which resolves hosts itself.
+ *
+ * The refreshes run in a daemon thread of the cache, which is stopped by
+ * {@link #close()}; a closed cache still serves and looks up addresses,
+ * but no longer refreshes them in the background.
+ */
+public class ResolverCache {
+  private static final Log LOG = LogFactory.getLog(ResolverCache.class);
+
+  /**
+   * Default time to live of the addresses in milliseconds: {@value}
+   */
+  public static final long TTL_DEFAULT = 20000;
+
+  /**
+   * Number of times to live after which a host not looked up is dropped: {@value}
+   */
+  public static final int IDLE_TTLS = 10;
+
+  private static ResolverCache instance;
+
+  /**
+   * Entries by host name; guarded by itself
+   */
+  private final Map<String, Entry> entries = new HashMap<String, Entry>();
+  private volatile long ttl;
+  private final ScheduledExecutorService refresher;
+
+  /**
+   * Get the cache shared by all the probes of the process
+   * @return the shared cache
+   */
+  public static synchronized ResolverCache getInstance() {
+    if (instance == null) {
+      instance = new ResolverCache(TTL_DEFAULT, true);
+    }
+    return instance;
+  }
+
+  /**
+   * Close the shared cache, if there is one; the next call of
+   * {@link #getInstance()} creates a new one
+   */
+  public static synchronized void closeInstance() {
+    if (instance != null) {
+      instance.close();
+      instance = null;
+    }
+  }
+
+  /**
+   * Create a cache
+   * @param ttl time to live of the addresses in milliseconds
+   * @param backgroundRefresh should the hosts in use be refreshed in the
+   * background before they become stale?
+   */
+  public ResolverCache(long ttl, boolean backgroundRefresh) {
+    this.ttl = Math.max(1, ttl);
+    refresher = Executors.newSingleThreadScheduledExecutor(
+      new DaemonThreadFactory("resolver cache"));
+    if (backgroundRefresh) {
+      refresher.schedule(new RefreshCycle(), this.ttl, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  public long getTtl() {
+    return ttl;
+  }
+
+  public void setTtl(long ttl) {
+    this.ttl = Math.max(1, ttl);
+  }
+
+  /**
+   * Get the addresses of a host
+   * @param host host name or address
+   * @return the addresses, possibly stale
+   * @throws UnknownHostException if the host could not be resolved
+   */
+  public InetAddress[] resolve(String host) throws UnknownHostException {
+    Entry entry;
+    synchronized (entries) {
+      entry = entries.get(host);
+      if (entry == null) {
+        entry = new Entry(host);
+        entries.put(host, entry);
+      }
+    }
+    return entry.get();
+  }
+
+  /**
+   * Get the first address of a host
+   * @param host host name or address
+   * @return the address, possibly stale
+   * @throws UnknownHostException if the host could not be resolved
+   */
+  public InetAddress resolveFirst(String host) throws UnknownHostException {
+    return resolve(host)[0];
+  }
+
+  /**
+   * Forget a host, so that the next lookup of it is made by the caller
+   * @param host host name
+   */
+  public void invalidate(String host) {
+    synchronized (entries) {
+      entries.remove(host);
+    }
+  }
+
+  public int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  /**
+   * Stop the background refreshes and the thread which runs them
+   */
+  public void close() {
+    refresher.shutdownNow();
+  }
+
+  /**
+   * Refresh every host which has been in the cache for half its time to
+   * live or more, and drop the hosts which are no longer looked up.
+   * This is called in the background; it is public for testing.
+   */
+  public void refreshInUse() {
+    long now = now();
+    List<Entry> inCache;
+    synchronized (entries) {
+      inCache = new ArrayList<Entry>(entries.values());
+    }
+    //the entries are not examined under the lock of the map, as one
+    //may be locked for a lookup
+    for (Entry entry : inCache) {
+      if (entry.isIdle(now)) {
+        synchronized (entries) {
+          if (entries.get(entry.host) == entry) {
+            entries.remove(entry.host);
+          }
+        }
+      } else if (entry.getAge(now) >= ttl / 2) {
+        entry.refresh();
+      }
+    }
+  }
+
+  /**
+   * Look up the addresses of a host; this is where the time goes
+   * @param host host name
+   * @return the addresses
+   * @throws UnknownHostException if the host could not be resolved
+   */
+  protected InetAddress[] lookup(String host) throws UnknownHostException {
+    return InetAddress.getAllByName(host);
+  }
+
+  private static long now() {
+    return System.currentTimeMillis();
+  }
+
+  /**
+   * The addresses of one host
+   */
+  private final class Entry {
+    private final String host;
+    private InetAddress[] addresses;
+    private UnknownHostException failure;
+    private long resolved = -1;
+    private long lastUsed;
+    private boolean refreshing;
+
+    private Entry(String host) {
+      this.host = host;
+    }
+
+    /**
+     * Get the addresses, making the first lookup if need be,
+     * and starting a refresh if they are stale
+     * @return the addresses
+     * @throws UnknownHostException if the host is unknown
+     */
+    private synchronized InetAddress[] get() throws UnknownHostException {
+      long now = now();
+      lastUsed = now;
+      if (resolved < 0) {
+        lookupNow();
+      } else if (now - resolved >= ttl && !refreshing) {
+        refreshing = true;
+        try {
+          refresher.execute(new Runnable() {
+            @Override
+            public void run() {
+              refresh();
+            }
+          });
+        } catch (RejectedExecutionException e) {
+          refreshing = false;
+        }
+      }
+      if (addresses == null) {
+        UnknownHostException unknown = new UnknownHostException(host);
+        unknown.initCause(failure);
+        throw unknown;
+      }
+      return addresses.clone();
+    }
+
+    /**
+     * Look the host up again; the caller does not hold the lock
+     * while the lookup is made
+     */
+    private void refresh() {
+      InetAddress[] found = null;
+      UnknownHostException thrown = null;
+      try {
+        found = lookup(host);
+      } catch (UnknownHostException e) {
+        thrown = e;
+      }
+      synchronized (this) {
+        set(found, thrown);
+      }
+    }
+
+    private void lookupNow() {
+      try {
+        set(lookup(host), null);
+      } catch (UnknownHostException e) {
+        set(null, e);
+      }
+    }
+
+    private void set(InetAddress[] found, UnknownHostException thrown) {
+      refreshing = false;
+      resolved = now();
+      if (found != null && found.length > 0) {
+        addresses = found;
+        failure = null;
+      } else if (addresses != null) {
+        //keep serving the last known addresses
+        LOG.warn("Failed to refresh the addresses of " + host + ": " + thrown);
+      } else {
+        failure = thrown;
+      }
+    }
+
+    private synchronized long getAge(long now) {
+      return resolved < 0 ? 0 : now - resolved;
+    }
+
+    private synchronized boolean isIdle(long now) {
+      return now - lastUsed > ttl * IDLE_TTLS;
+    }
+  }
+
+  /**
+   * The background refresh, which reschedules itself after the time to live
+   */
+  private class RefreshCycle implements Runnable {
+
+    @Override
+    public void run() {
+      try {
+        refreshInUse();
+      } catch (RuntimeException e) {
+        LOG.warn("Failure refreshing the resolver cache: " + e, e);
+      }
+      try {
+        refresher.schedule(this, ttl, TimeUnit.MILLISECONDS);
+      } catch (RejectedExecutionException e) {
+        //shutting down
+      }
+    }
+  }
+}
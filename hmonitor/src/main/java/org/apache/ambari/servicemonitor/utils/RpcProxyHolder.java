@@ -0,0 +1,226 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.servicemonitor.utils;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.ipc.RemoteException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.ClosedByInterruptException;
+
+/**
+ * Holds an RPC proxy for reuse across pings, so that a probe measures the
+ * responsiveness of the service rather than the construction of a proxy.
+ *
+ * The proxy is created by the first caller which needs it; other callers
+ * wait for it. A caller whose call fails hands the failure to
+ * {@link #failed(Object, IOException)}: if it is a failure of the connection
+ * -rather than an error raised by the service, or an interrupt- the proxy
+ * is stopped, and the next caller creates a new one.
+ *
+ * After a failure to create a proxy, no new attempt is made until a backoff
+ * delay has passed; callers in that time fail at once. The delay starts at
+ * {@link #BACKOFF_MIN} and doubles with every failure, up to the maximum
+ * backoff; it is reset by a successful creation.
+ *
+ * @param <T> the type of the proxy
+ */
+public abstract class RpcProxyHolder<T> {
+  private static final Log LOG = LogFactory.getLog(RpcProxyHolder.class);
+
+  /**
+   * Backoff in milliseconds after the first failure to connect: {@value}
+   */
+  public static final long BACKOFF_MIN = 500;
+
+  /**
+   * Default maximum backoff in milliseconds: {@value}
+   */
+  public static final long BACKOFF_MAX_DEFAULT = 10000;
+
+  private final String name;
+  private volatile long maxBackoff = BACKOFF_MAX_DEFAULT;
+
+  /* guarded by this */
+  private T proxy;
+  private long backoff;
+  private long nextAttempt;
+  private IOException lastFailure;
+  private long connections;
+  private long connectTime = -1;
+
+  /**
+   * Create a holder
+   * @param name name of the proxy, such as the protocol and address
+   */
+  protected RpcProxyHolder(String name) {
+    this.name = name;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public long getMaxBackoff() {
+    return maxBackoff;
+  }
+
+  public void setMaxBackoff(long maxBackoff) {
+    this.maxBackoff = Math.max(BACKOFF_MIN, maxBackoff);
+  }
+
+  /**
+   * Get the proxy, creating it if need be
+   * @return the proxy
+   * @throws IOException if it could not be created, or if the backoff after
+   * the last failure to create it has not yet passed
+   */
+  public synchronized T get() throws IOException {
+    if (proxy != null) {
+      return proxy;
+    }
+    long now = now();
+    if (now < nextAttempt) {
+      throw new IOException("Not reconnecting to " + name + " for another "
+                            + MonitorUtils.millisToHumanTime(nextAttempt - now)
+                            + " after: " + lastFailure, lastFailure);
+    }
+    try {
+      proxy = createProxy();
+      connectTime = now() - now;
+      connections++;
+      backoff = 0;
+      nextAttempt = 0;
+      lastFailure = null;
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Connected to " + name + " in " + connectTime + "ms");
+      }
+      return proxy;
+    } catch (IOException e) {
+      backOff(e);
+      throw e;
+    }
+  }
+
+  /**
+   * Report the failure of a call through a proxy; the proxy is stopped if
+   * the failure is one of the connection
+   * @param failed the proxy; may be null if it could not be created
+   * @param failure the failure
+   * @return true iff the proxy was stopped
+   */
+  public boolean failed(T failed, IOException failure) {
+    if (failed == null || !isConnectionFailure(failure)) {
+      return false;
+    }
+    synchronized (this) {
+      if (proxy != failed) {
+        //already replaced
+        return false;
+      }
+      proxy = null;
+    }
+    LOG.debug("Dropping the proxy to " + name + " after " + failure);
+    stopProxy(failed);
+    return true;
+  }
+
+  /**
+   * Is a failure one of the connection? Errors which the service itself
+   * has raised are not; nor is an interrupt, which is how a ping is
+   * cancelled or quarantined, and which may come while another caller's
+   * call through the same connection is in progress.
+   * @param failure failure
+   * @return true iff a new connection could do better
+   */
+  public static boolean isConnectionFailure(IOException failure) {
+    return !(failure instanceof RemoteException)
+           && !(failure instanceof InterruptedIOException)
+           && !(failure instanceof ClosedByInterruptException);
+  }
+
+  /**
+   * Stop the proxy, if there is one
+   */
+  public void close() {
+    T stopping;
+    synchronized (this) {
+      stopping = proxy;
+      proxy = null;
+    }
+    if (stopping != null) {
+      stopProxy(stopping);
+    }
+  }
+
+  /**
+   * Get the number of proxies which have been created
+   * @return the count
+   */
+  public synchronized long getConnections() {
+    return connections;
+  }
+
+  /**
+   * Get the time taken to create the last proxy
+   * @return the time in milliseconds, or -1 if none has been created
+   */
+  public synchronized long getConnectTime() {
+    return connectTime;
+  }
+
+  /**
+   * Get the current backoff
+   * @return the delay in milliseconds after the last failure to connect;
+   * 0 if the last attempt succeeded
+   */
+  public synchronized long getBackoff() {
+    return backoff;
+  }
+
+  private void backOff(IOException e) {
+    backoff = backoff == 0 ? BACKOFF_MIN : Math.min(backoff * 2, maxBackoff);
+    nextAttempt = now() + backoff;
+    lastFailure = e;
+    LOG.debug("Failed to connect to " + name + "; backing off for " + backoff + "ms: " + e);
+  }
+
+  /**
+   * Create a proxy; this is where the time goes
+   * @return a new proxy
+   * @throws IOException on a failure to connect
+   */
+  protected abstract T createProxy() throws IOException;
+
+  /**
+   * Stop a proxy
+   * @param stopping proxy
+   */
+  protected abstract void stopProxy(T stopping);
+
+  private static long now() {
+    return System.currentTimeMillis();
+  }
+
+  @Override
+  public String toString() {
+    return "RpcProxyHolder " + name;
+  }
+}
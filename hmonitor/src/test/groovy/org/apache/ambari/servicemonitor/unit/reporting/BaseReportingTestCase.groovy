@@ -19,6 +19,7 @@ package org.apache.ambari.servicemonitor.unit.reporting
 
 import org.apache.ambari.servicemonitor.probes.MockProbe
 import org.apache.ambari.servicemonitor.remote.BaseRemoteHadoopTestCase
+import org.apache.ambari.servicemonitor.reporting.ProbeWorker
 import org.apache.ambari.servicemonitor.reporting.ReportingLoop
 import org.apache.chaos.remote.BaseRemoteTestCase
 
@@ -57,6 +58,26 @@ class BaseReportingTestCase extends BaseRemoteTestCase {
     reportingLoop
   }
 
+  /**
+   * Create a reporting loop whose worker pings the probes of a cycle concurrently
+   * @param monitorProbes list of monitor probes
+   * @param dependencies list of live probes
+   * @param probeThreads number of probe threads
+   * @return the reporting loop
+   */
+  def ReportingLoop createParallelReportingLoop(ArrayList monitorProbes, ArrayList dependencies,
+                                                int probeThreads) {
+    ProbeWorker worker = new ProbeWorker(monitorProbes,
+                                         dependencies,
+                                         100, //probe interval
+                                         1000, //boot timeout
+                                         probeThreads)
+    new ReportingLoop("test",
+                      null,
+                      worker,
+                      100, //report interval
+                      1000) //probe timeout
+  }
 
   def long exec(ReportingLoop reportingLoop, CallbackProbeReporter tpr) {
     long started = now()
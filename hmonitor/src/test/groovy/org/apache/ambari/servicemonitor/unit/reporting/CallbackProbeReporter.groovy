@@ -39,6 +39,7 @@ class CallbackProbeReporter extends Reporter {
   private Closure statusUpdateCallback = {};
   private Closure probePhaseCallback = {};
   private Closure liveProbeCycleCompletedCallback = {};
+  private Closure probeResultCallback = { phase, status -> };
   private Closure probeFailureCallback = this.&failureCallback
   private Closure pollingTimeoutCallback = this.&timeoutCallback
 
@@ -104,7 +105,7 @@ class CallbackProbeReporter extends Reporter {
   void probeResult(ProbePhase phase, ProbeStatus status) {
     org.apache.ambari.servicemonitor.unit.reporting.CallbackProbeReporter.log.info("probeResult: $status")
     lastStatusUpdate = status
-
+    probeResultCallback(phase, status)
     super.probeResult(phase, status)
   }
 
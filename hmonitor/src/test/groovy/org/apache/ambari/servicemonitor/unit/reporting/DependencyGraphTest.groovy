@@ -0,0 +1,229 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.ambari.servicemonitor.unit.reporting
+
+import org.apache.ambari.servicemonitor.Monitor
+import org.apache.ambari.servicemonitor.MonitorKeys
+import org.apache.ambari.servicemonitor.probes.HttpProbe
+import org.apache.ambari.servicemonitor.probes.MockProbe
+import org.apache.ambari.servicemonitor.probes.PortProbe
+import org.apache.ambari.servicemonitor.reporting.DependencyGraph
+import org.apache.ambari.servicemonitor.reporting.ProbePhase
+import org.apache.ambari.servicemonitor.reporting.ProbeStatus
+import org.apache.ambari.servicemonitor.reporting.ProbeWorker
+import org.apache.ambari.servicemonitor.reporting.ReportingLoop
+import org.apache.ambari.servicemonitor.utils.ExitMainException
+import org.apache.hadoop.conf.Configuration
+
+/**
+ * Test the dependency graph, and how the worker checks it
+ */
+class DependencyGraphTest extends BaseReportingTestCase {
+
+  MockProbe zk = successProbe("zookeeper")
+  MockProbe hdfs = successProbe("hdfs")
+  MockProbe jt = successProbe("jobtracker")
+  MockProbe other = successProbe("other")
+
+  DependencyGraph graph(Map<String, List<String>> upstream, Map<String, MockProbe> probes) {
+    DependencyGraph graph = new DependencyGraph()
+    probes.each { name, probe -> graph.add(name, probe, upstream[name] ?: []) }
+    graph
+  }
+
+  DependencyGraph hadoopGraph() {
+    graph([hdfs: ["zookeeper"], jobtracker: ["hdfs"]],
+          [zookeeper: zk, hdfs: hdfs, jobtracker: jt, other: other])
+  }
+
+  ReportingLoop createGraphReportingLoop(List monitorProbes, DependencyGraph dependencies,
+                                         int recheckInterval) {
+    ProbeWorker worker = new ProbeWorker(monitorProbes,
+                                         dependencies,
+                                         100, //probe interval
+                                         1000, //boot timeout
+                                         1)
+    worker.dependencyRecheckInterval = recheckInterval
+    new ReportingLoop("test",
+                      null,
+                      worker,
+                      100, //report interval
+                      1000) //probe timeout
+  }
+
+  public void testLevels() {
+    DependencyGraph graph = hadoopGraph()
+    assert graph.levels == [[zk, other], [hdfs], [jt]]
+    assert graph.width == 2
+    assert graph.getUpstream(jt) == [hdfs]
+    assert graph.getUpstream(zk) == []
+  }
+
+  public void testChain() {
+    DependencyGraph graph = DependencyGraph.chain([zk, hdfs, jt])
+    assert graph.levels == [[zk], [hdfs], [jt]]
+  }
+
+  void assertInvalid(DependencyGraph graph) {
+    try {
+      graph.validate()
+      fail("expected $graph to be invalid")
+    } catch (IllegalArgumentException expected) {
+      //expected
+    }
+  }
+
+  public void testInvalidGraphs() {
+    //unknown upstream dependency
+    assertInvalid(graph([hdfs: ["zookeeper"]], [hdfs: hdfs]))
+    //cycle
+    assertInvalid(graph([hdfs: ["jobtracker"], jobtracker: ["hdfs"]],
+                        [hdfs: hdfs, jobtracker: jt]))
+  }
+
+  public void testCreateDependencies() {
+    Configuration conf = new Configuration(false)
+    conf.set(MonitorKeys.MONITOR_DEPENDENCIES, "zookeeper, web")
+    conf.set(MonitorKeys.MONITOR_DEPENDENCY_PREFIX + "zookeeper.target", "localhost:2181")
+    conf.set(MonitorKeys.MONITOR_DEPENDENCY_PREFIX + "web.url", "http://localhost:50070/")
+    conf.set(MonitorKeys.MONITOR_DEPENDENCY_PREFIX + "web.upstream", "zookeeper")
+    DependencyGraph dependencies = Monitor.createDependencies(conf)
+    assert dependencies.size() == 2
+    List levels = dependencies.levels
+    assert levels.size() == 2
+    assert levels[0][0] instanceof PortProbe
+    assert levels[1][0] instanceof HttpProbe
+
+    conf.set(MonitorKeys.MONITOR_DEPENDENCY_PREFIX + "web.upstream", "namenode")
+    try {
+      Monitor.createDependencies(conf)
+      fail("expected an unknown upstream dependency to be rejected")
+    } catch (ExitMainException expected) {
+      //expected
+    }
+  }
+
+  public void testDownstreamOfAFailureIsNotPinged() {
+    zk.failAfterInterval = 0
+    ReportingLoop reportingLoop = createGraphReportingLoop([successProbe("live")],
+                                                           hadoopGraph(), 0)
+    reportingLoop.reporter = new CallbackProbeReporter()
+    assert !reportingLoop.worker.checkAndReportDependencyProbes()
+    assert zk.invoked
+    assert other.invoked
+    assert !hdfs.invoked
+    assert !jt.invoked
+  }
+
+  public void testIndependentDependenciesArePingedConcurrently() {
+    MockProbe slow1 = new MockProbe(name: "slow1", blockAfterInterval: 0,
+                                    blockForInterval: -1, blockDuration: 1000)
+    MockProbe slow2 = new MockProbe(name: "slow2", blockAfterInterval: 0,
+                                    blockForInterval: -1, blockDuration: 1000)
+    ReportingLoop reportingLoop = createGraphReportingLoop(
+        [successProbe("live")],
+        graph([:], [slow1: slow1, slow2: slow2]), 0)
+    reportingLoop.reporter = new CallbackProbeReporter()
+    def (time, passed) = time { reportingLoop.worker.checkAndReportDependencyProbes() }
+    assert passed
+    assert time >= 1000
+    assert time < 1900
+  }
+
+  /**
+   * Bring a worker with one live probe and one dependency live, then make
+   * the live probe fail, and the dependency too if asked
+   * @param dependencyFails should the dependency fail as well
+   * @return the failed statuses of the live probe which were reported
+   */
+  List<ProbeStatus> failWhileLive(boolean dependencyFails) {
+    MockProbe depends = successProbe("depends")
+    MockProbe live = successProbe("live")
+    DependencyGraph dependencies = new DependencyGraph()
+    dependencies.add("depends", depends, [])
+    ReportingLoop reportingLoop = createGraphReportingLoop([live], dependencies, 0)
+    List<ProbeStatus> liveFailures = []
+    CallbackProbeReporter tpr = new CallbackProbeReporter(
+        probeFailureCallback: {},
+        probeResultCallback: { phase, status ->
+          if (!status.success && status.originator == live) {
+            liveFailures << status
+          }
+        })
+    reportingLoop.reporter = tpr
+    ProbeWorker worker = reportingLoop.worker
+    worker.begin()
+    try {
+      //dependencies, then the boot ping which goes live
+      worker.executeCycle()
+      worker.executeCycle()
+      assert worker.probePhase == ProbePhase.LIVE
+      live.failAfterInterval = 0
+      if (dependencyFails) {
+        depends.failAfterInterval = 0
+      }
+      Thread.sleep(200)
+      worker.executeCycle()
+      if (dependencyFails) {
+        assert worker.probePhase == ProbePhase.DEPENDENCY_CHECKING
+        assert tpr.probeFailedException == null
+      } else {
+        assert tpr.probeFailedException != null
+      }
+    } finally {
+      worker.end()
+    }
+    liveFailures
+  }
+
+  public void testUpstreamFailureIsNotReported() {
+    assert failWhileLive(true).empty
+  }
+
+  public void testLocalFailureIsReportedAfterTheRecheck() {
+    assert failWhileLive(false).size() == 1
+  }
+
+  public void testDependencyFailureWhileLiveIsNotALocalFailure() {
+    //the dependency fails for a while once the service is live
+    MockProbe depends = new MockProbe(name: "depends", failAfterInterval: 1500,
+                                      failForInterval: 1000)
+    MockProbe live = successProbe("live")
+    //and so, while it does, does the service
+    live.fail2AfterInterval = 1500
+    live.fail2ForInterval = 500
+    DependencyGraph dependencies = new DependencyGraph()
+    dependencies.add("depends", depends, [])
+    ReportingLoop reportingLoop = createGraphReportingLoop([live], dependencies, 200)
+    int liveEntries = 0
+    CallbackProbeReporter tpr = new CallbackProbeReporter(
+        statusUpdateCallback: {},
+        pollingTimeoutCallback: {reportingLoop.close()},
+        probeFailureCallback: {reportingLoop.close()},
+        probePhaseCallback: {
+          if (it == ProbePhase.LIVE && ++liveEntries == 2) {
+            reportingLoop.close()
+          }
+        })
+    exec(reportingLoop, tpr)
+    assert tpr.probeFailedException == null
+    assert !tpr.timeoutReceived
+    assert liveEntries == 2
+  }
+}
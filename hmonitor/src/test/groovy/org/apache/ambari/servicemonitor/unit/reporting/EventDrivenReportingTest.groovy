@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.servicemonitor.unit.reporting
+
+import org.apache.ambari.servicemonitor.probes.MockProbe
+import org.apache.ambari.servicemonitor.reporting.ProbePhase
+import org.apache.ambari.servicemonitor.reporting.ReportingLoop
+
+/**
+ * Test that reports follow the events of the worker, rather than
+ * waiting for the report interval
+ */
+class EventDrivenReportingTest extends BaseReportingTestCase {
+
+  public static final int LONG_REPORT_INTERVAL = 20000
+
+  ReportingLoop createSlowReportingLoop(List probes, int probeTimeout) {
+    new ReportingLoop("test",
+                      null,
+                      probes,
+                      [],
+                      100, //probe interval
+                      LONG_REPORT_INTERVAL,
+                      probeTimeout,
+                      1000) //boot timeout
+  }
+
+  void testGoingLiveIsReportedAtOnce() {
+    ReportingLoop reportingLoop = createSlowReportingLoop([successProbe("live")], 1000)
+    CallbackProbeReporter tpr = new CallbackProbeReporter(
+        statusUpdateCallback: { if (it.inPhase(ProbePhase.LIVE)) reportingLoop.close() })
+    long time = exec(reportingLoop, tpr)
+    assert !tpr.testRunTimedOut
+    assert tpr.lastStatusUpdate.inPhase(ProbePhase.LIVE)
+    assert time < LONG_REPORT_INTERVAL / 2
+  }
+
+  void testTimeoutIsReportedAtTheDeadline() {
+    MockProbe blocking = new MockProbe(name: "blocking",
+                                       blockAfterInterval: 500,
+                                       blockForInterval: (1000 * 15),
+                                       blockDuration: (1000 * 15))
+    ReportingLoop reportingLoop = createSlowReportingLoop([blocking], 500)
+    CallbackProbeReporter tpr = new CallbackProbeReporter(
+        pollingTimeoutCallback: { reportingLoop.close() })
+    long time = exec(reportingLoop, tpr)
+    assert tpr.timeoutReceived
+    assert time < LONG_REPORT_INTERVAL / 2
+  }
+}
@@ -0,0 +1,203 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.servicemonitor.unit.reporting
+
+import org.apache.ambari.servicemonitor.probes.MockProbe
+import org.apache.ambari.servicemonitor.reporting.ProbeStatus
+import org.apache.ambari.servicemonitor.reporting.ProbeWorker
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Test hedged pings
+ */
+class HedgedPingTest extends BaseReportingTestCase {
+
+  void testSlowPingIsHedged() {
+    SlowFirstProbe probe = new SlowFirstProbe(hedged: true)
+    warmUp(probe)
+    ProbeWorker worker = createWorker(probe)
+    try {
+      //dependencies, then the first boot ping, which is slow
+      worker.executeCycle()
+      def (time, delay) = time { worker.executeCycle() }
+      assert worker.lastStatus.success
+      assert time < probe.slowness
+      assert worker.hedgedPingCount == 1
+      assert probe.pings.get() == 2
+    } finally {
+      worker.end()
+    }
+  }
+
+  void testUnhedgedProbeWaits() {
+    SlowFirstProbe probe = new SlowFirstProbe(slowness: 500)
+    warmUp(probe)
+    ProbeWorker worker = createWorker(probe)
+    try {
+      worker.executeCycle()
+      def (time, delay) = time { worker.executeCycle() }
+      assert worker.lastStatus.success
+      assert time >= probe.slowness
+      assert worker.hedgedPingCount == 0
+    } finally {
+      worker.end()
+    }
+  }
+
+  void testNoHedgingWithoutHistory() {
+    SlowFirstProbe probe = new SlowFirstProbe(hedged: true, slowness: 500)
+    ProbeWorker worker = createWorker(probe)
+    try {
+      worker.executeCycle()
+      worker.executeCycle()
+      assert worker.lastStatus.success
+      assert worker.hedgedPingCount == 0
+      assert probe.latencies.count == 1
+    } finally {
+      worker.end()
+    }
+  }
+
+  /**
+   * With a ping deadline, both attempts of a hedged ping which hang are
+   * quarantined and counted as hung threads of the probe pool
+   */
+  void testHungHedgedAttemptsAreQuarantined() {
+    PingTimeoutTest.HangingProbe probe = new PingTimeoutTest.HangingProbe(hedged: true)
+    warmUp(probe)
+    ProbeWorker worker = createWorker(probe)
+    worker.setPingTimeout(200, 1)
+    try {
+      worker.executeCycle()
+      worker.executeCycle()
+      assert worker.lastStatus.timedOut
+      assert worker.hedgedPingCount == 1
+      assert probe.pings.get() == 2
+      assert worker.hungProbeCount == 1
+      assert worker.hungThreadCount == 2
+
+      probe.release.countDown()
+      for (int i = 0; i < 50 && worker.hungThreadCount > 0; i++) {
+        Thread.sleep(100)
+      }
+      assert worker.hungThreadCount == 0
+      assert worker.hungProbeCount == 0
+    } finally {
+      probe.release.countDown()
+      worker.end()
+    }
+  }
+
+  /**
+   * An attempt which loses the race but has not returned holds a thread
+   * of the probe pool, but does not quarantine the probe
+   */
+  void testLosingAttemptHoldsAThread() {
+    HangingFirstProbe probe = new HangingFirstProbe(hedged: true)
+    warmUp(probe)
+    ProbeWorker worker = createWorker(probe)
+    worker.setPingTimeout(5000, 1)
+    try {
+      worker.executeCycle()
+      def (time, delay) = time { worker.executeCycle() }
+      assert worker.lastStatus.success
+      assert time < 5000
+      assert worker.hedgedPingCount == 1
+      assert worker.hungProbeCount == 0
+      assert worker.hungThreadCount == 1
+
+      //live now: the next ping is not refused
+      Thread.sleep(200)
+      worker.executeCycle()
+      assert worker.lastStatus.success
+      assert probe.pings.get() == 3
+
+      probe.release.countDown()
+      for (int i = 0; i < 50 && worker.hungThreadCount > 0; i++) {
+        Thread.sleep(100)
+      }
+      assert worker.hungThreadCount == 0
+    } finally {
+      probe.release.countDown()
+      worker.end()
+    }
+  }
+
+  private ProbeWorker createWorker(MockProbe probe) {
+    ProbeWorker worker = new ProbeWorker([probe], [], 100, 60000)
+    worker.reportHandler = new CallbackProbeReporter()
+    worker.begin()
+    return worker
+  }
+
+  private void warmUp(MockProbe probe) {
+    ProbeWorker.HEDGE_MIN_SAMPLES.times { probe.latencies.add(10) }
+  }
+
+  /**
+   * A probe whose first ping is slow, and every later one quick
+   */
+  static class SlowFirstProbe extends MockProbe {
+    AtomicInteger pings = new AtomicInteger()
+    int slowness = 5000
+
+    SlowFirstProbe() {
+      super("slow first")
+    }
+
+    @Override
+    ProbeStatus ping(boolean livePing) {
+      if (pings.incrementAndGet() == 1) {
+        try {
+          Thread.sleep(slowness)
+        } catch (InterruptedException ignored) {
+          //the other attempt has won
+        }
+      }
+      return super.ping(livePing)
+    }
+  }
+
+  /**
+   * A probe whose first ping ignores interrupts and hangs until released
+   */
+  static class HangingFirstProbe extends MockProbe {
+    CountDownLatch release = new CountDownLatch(1)
+    AtomicInteger pings = new AtomicInteger()
+
+    HangingFirstProbe() {
+      super("hanging first")
+    }
+
+    @Override
+    ProbeStatus ping(boolean livePing) {
+      if (pings.incrementAndGet() == 1) {
+        while (release.count > 0) {
+          try {
+            release.await()
+          } catch (InterruptedException ignored) {
+            //keep hanging
+          }
+        }
+      }
+      return super.ping(livePing)
+    }
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.servicemonitor.unit.reporting
+
+import org.apache.ambari.servicemonitor.probes.MockProbe
+import org.apache.ambari.servicemonitor.reporting.ProbePhase
+import org.apache.ambari.servicemonitor.reporting.ProbeStatus
+import org.apache.ambari.servicemonitor.reporting.ReportingLoop
+
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Test the concurrent pinging of probes
+ */
+class ParallelProbeTest extends BaseReportingTestCase {
+
+  ParallelProbeTest() {
+  }
+
+  void testParallelProbesOverlap() {
+    AtomicInteger active = new AtomicInteger()
+    AtomicInteger maxActive = new AtomicInteger()
+    ReportingLoop reportingLoop = createParallelReportingLoop(
+        [new OverlapProbe("p1", active, maxActive),
+            new OverlapProbe("p2", active, maxActive)],
+        [],
+        2)
+
+    CallbackProbeReporter tpr = new CallbackProbeReporter(
+        {if (it.inPhase(ProbePhase.LIVE)) reportingLoop.close()},
+        {},
+        {},
+        {})
+    exec(reportingLoop, tpr)
+    ProbeStatus update = tpr.lastStatusUpdate
+    assert update.success && update.inPhase(ProbePhase.LIVE)
+    assert maxActive.get() == 2
+  }
+
+  void testAllLiveFailuresReported() {
+    MockProbe probe1 = new MockProbe(name: "failing1", failAfterInterval: 1000)
+    MockProbe probe2 = new MockProbe(name: "failing2", failAfterInterval: 1000)
+    ReportingLoop reportingLoop = createParallelReportingLoop([probe1, probe2], [], 2)
+
+    CallbackProbeReporter tpr = new CallbackProbeReporter(
+        pollingTimeoutCallback: {reportingLoop.close()},
+        probeFailureCallback: {reportingLoop.close()})
+
+    exec(reportingLoop, tpr)
+    assert !tpr.timeoutReceived
+    assert tpr.probeFailedException != null
+    String text = tpr.probeFailedException.message
+    assert text.contains("Failure of 2 probes")
+    assert text.contains("failing1")
+    assert text.contains("failing2")
+    assert tpr.lastStatusUpdate.probePhase == ProbePhase.LIVE
+  }
+
+  /**
+   * A probe which tracks how many instances are being pinged at the same time
+   */
+  static class OverlapProbe extends MockProbe {
+    AtomicInteger active
+    AtomicInteger maxActive
+
+    OverlapProbe(String name, AtomicInteger active, AtomicInteger maxActive) {
+      super(name)
+      this.active = active
+      this.maxActive = maxActive
+    }
+
+    @Override
+    ProbeStatus ping(boolean livePing) {
+      int now = active.incrementAndGet()
+      synchronized (maxActive) {
+        if (now > maxActive.get()) {
+          maxActive.set(now)
+        }
+      }
+      try {
+        Thread.sleep(200)
+        return super.ping(livePing)
+      } finally {
+        active.decrementAndGet()
+      }
+    }
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.servicemonitor.unit.reporting
+
+import org.apache.ambari.servicemonitor.probes.MockProbe
+import org.apache.ambari.servicemonitor.reporting.ProbePhase
+import org.apache.ambari.servicemonitor.reporting.ProbeStatus
+import org.apache.ambari.servicemonitor.reporting.ReportingLoop
+import org.apache.ambari.servicemonitor.reporting.TimeoutExtension
+
+/**
+ * Test phi accrual detection in the reporting loop
+ */
+class PhiAccrualTest extends BaseReportingTestCase {
+
+  void testPhiDetectsHangBeforeProbeTimeout() {
+    MockProbe blocking = new MockProbe(name: "blocking",
+                                       blockAfterInterval: 2000,
+                                       blockForInterval: (1000 * 15),
+                                       blockDuration: (1000 * 15))
+    //a probe timeout far longer than the test run
+    ReportingLoop reportingLoop = createReportingLoop([blocking], [], 60000, 1000)
+    reportingLoop.enablePhiAccrual(8, 100, 20)
+
+    ProbeStatus timedOut = null
+    CallbackProbeReporter tpr = new CallbackProbeReporter(
+        pollingTimeoutCallback: {
+          timedOut = it
+          reportingLoop.close()
+        },
+        probeFailureCallback: {reportingLoop.close()})
+    long time = exec(reportingLoop, tpr)
+    assert tpr.timeoutReceived
+    assert timedOut.probePhase == ProbePhase.LIVE
+    assert timedOut.phi >= 8
+    assert time < 10000
+  }
+
+  void testNoSuspicionWhileHealthy() {
+    MockProbe probe = successProbe("live")
+    ReportingLoop reportingLoop = createReportingLoop([probe], [], 60000, 1000)
+    reportingLoop.enablePhiAccrual(8, 100, 20)
+    int heartbeats = 0
+    CallbackProbeReporter tpr = new CallbackProbeReporter(
+        statusUpdateCallback: {
+          if (it.inPhase(ProbePhase.LIVE) && ++heartbeats > 20) reportingLoop.close()
+        },
+        pollingTimeoutCallback: {reportingLoop.close()})
+    exec(reportingLoop, tpr)
+    assert !tpr.timeoutReceived
+    assert reportingLoop.getDetector(probe).warmedUp
+  }
+
+  void testTimeoutExtensionSuspendsSuspicion() {
+    MockProbe blocking = new MockProbe(name: "blocking",
+                                       blockAfterInterval: 2000,
+                                       blockForInterval: (1000 * 15),
+                                       blockDuration: (1000 * 15))
+    ReportingLoop reportingLoop = createReportingLoop([blocking], [], 60000, 1000)
+    reportingLoop.enablePhiAccrual(8, 100, 20)
+    reportingLoop.addTimeoutExtension({ long now -> 60000L } as TimeoutExtension)
+    long started = System.currentTimeMillis()
+    CallbackProbeReporter tpr = new CallbackProbeReporter(
+        statusUpdateCallback: {
+          if (System.currentTimeMillis() - started > 8000) reportingLoop.close()
+        },
+        pollingTimeoutCallback: {reportingLoop.close()},
+        probeFailureCallback: {reportingLoop.close()})
+    exec(reportingLoop, tpr)
+    assert !tpr.timeoutReceived
+    assert reportingLoop.getTimeoutExtension(started) == 60000L
+  }
+}
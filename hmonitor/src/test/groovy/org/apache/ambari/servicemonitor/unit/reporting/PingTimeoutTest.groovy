@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.servicemonitor.unit.reporting
+
+import org.apache.ambari.servicemonitor.probes.MockProbe
+import org.apache.ambari.servicemonitor.reporting.ProbePhase
+import org.apache.ambari.servicemonitor.reporting.ProbeStatus
+import org.apache.ambari.servicemonitor.reporting.ProbeWorker
+import org.apache.ambari.servicemonitor.reporting.ReportingLoop
+import org.apache.ambari.servicemonitor.reporting.TimeoutExtension
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Test the per-ping deadline
+ */
+class PingTimeoutTest extends BaseReportingTestCase {
+
+  void testBlockedLiveProbeTimesOut() {
+    MockProbe blocking = new MockProbe(name: "blocking",
+                                       blockAfterInterval: 500,
+                                       blockForInterval: (1000 * 15),
+                                       blockDuration: (1000 * 15))
+    ProbeWorker worker = new ProbeWorker([successProbe("live"), blocking], [], 100, 1000)
+    worker.setPingTimeout(200, 1)
+    ReportingLoop reportingLoop = new ReportingLoop("test", null, worker, 100, 10000)
+
+    CallbackProbeReporter tpr = new CallbackProbeReporter(
+        pollingTimeoutCallback: {reportingLoop.close()},
+        probeFailureCallback: {reportingLoop.close()})
+    long time = exec(reportingLoop, tpr)
+    assert !tpr.timeoutReceived
+    ProbeStatus status = tpr.probeFailedException.status
+    assert status.timedOut
+    assert status.originator == blocking
+    assert status.probePhase == ProbePhase.LIVE
+    assert time < blocking.blockDuration
+  }
+
+  void testHungProbeIsQuarantined() {
+    HangingProbe hanging = new HangingProbe()
+    ProbeWorker worker = new ProbeWorker([hanging], [], 100, 60000)
+    worker.setPingTimeout(100, 1)
+    worker.reportHandler = new CallbackProbeReporter()
+    worker.begin()
+    try {
+      //dependencies, then the first boot ping, which hangs
+      worker.executeCycle()
+      worker.executeCycle()
+      assert worker.hungProbeCount == 1
+      assert worker.lastStatus.timedOut
+
+      //the next ping is refused straight away
+      def (time, delay) = time { worker.executeCycle() }
+      assert time < 100
+      assert hanging.pings.get() == 1
+      assert worker.lastStatus.timedOut
+
+      //once the ping returns, the probe is out of quarantine
+      hanging.release.countDown()
+      for (int i = 0; i < 50 && worker.hungProbeCount > 0; i++) {
+        Thread.sleep(100)
+      }
+      assert worker.hungProbeCount == 0
+      worker.executeCycle()
+      assert hanging.pings.get() == 2
+    } finally {
+      hanging.release.countDown()
+      worker.end()
+    }
+  }
+
+  /**
+   * While a timeout extension is in force, a slow ping gets the extra time
+   * rather than time out and be quarantined
+   */
+  void testDeadlineIsExtended() {
+    HangingProbe hanging = new HangingProbe()
+    ProbeWorker worker = new ProbeWorker([hanging], [], 100, 60000)
+    worker.setPingTimeout(100, 1)
+    worker.timeoutExtension = { long now -> 5000L } as TimeoutExtension
+    worker.reportHandler = new CallbackProbeReporter()
+    worker.begin()
+    try {
+      //dependencies, then the first boot ping, released after its deadline
+      worker.executeCycle()
+      Thread.start {
+        Thread.sleep(300)
+        hanging.release.countDown()
+      }
+      worker.executeCycle()
+      assert worker.lastStatus.success
+      assert worker.hungProbeCount == 0
+    } finally {
+      hanging.release.countDown()
+      worker.end()
+    }
+  }
+
+  /**
+   * A probe which ignores interrupts and hangs until released
+   */
+  static class HangingProbe extends MockProbe {
+    CountDownLatch release = new CountDownLatch(1)
+    AtomicInteger pings = new AtomicInteger()
+
+    HangingProbe() {
+      super("hanging")
+    }
+
+    @Override
+    ProbeStatus ping(boolean livePing) {
+      pings.incrementAndGet()
+      while (release.count > 0) {
+        try {
+          release.await()
+        } catch (InterruptedException ignored) {
+          //keep hanging
+        }
+      }
+      return super.ping(livePing)
+    }
+  }
+}
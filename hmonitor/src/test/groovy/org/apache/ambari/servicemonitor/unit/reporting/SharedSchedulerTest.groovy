@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.servicemonitor.unit.reporting
+
+import org.apache.ambari.servicemonitor.reporting.ProbePhase
+import org.apache.ambari.servicemonitor.reporting.ReportingLoop
+import org.apache.ambari.servicemonitor.utils.DaemonThreadFactory
+
+import java.lang.management.ManagementFactory
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.TimeUnit
+
+/**
+ * Test many reporting loops sharing one scheduler
+ */
+class SharedSchedulerTest extends BaseReportingTestCase {
+
+  ScheduledExecutorService scheduler
+  ScheduledExecutorService reportScheduler
+
+  @Override
+  protected void setUp() {
+    super.setUp()
+    scheduler = Executors.newScheduledThreadPool(2, new DaemonThreadFactory("test scheduler"))
+    reportScheduler = Executors.newSingleThreadScheduledExecutor(
+        new DaemonThreadFactory("test reports"))
+  }
+
+  @Override
+  protected void tearDown() {
+    scheduler?.shutdownNow()
+    reportScheduler?.shutdownNow()
+    super.tearDown()
+  }
+
+  void testLoopsGoLiveOnSharedScheduler() {
+    int services = 4
+    CountDownLatch live = new CountDownLatch(services)
+    List<ReportingLoop> loops = []
+    services.times { i ->
+      ReportingLoop loop = createReportingLoop([successProbe("live-$i")], [successProbe("dep-$i")])
+      boolean seen = false
+      loop.reporter = new CallbackProbeReporter(
+          statusUpdateCallback: {
+            if (!seen && it.inPhase(ProbePhase.LIVE) && it.success) {
+              seen = true
+              live.countDown()
+            }
+          })
+      loops << loop
+    }
+    loops.each { it.schedule(scheduler, reportScheduler) }
+    try {
+      assert live.await(REPORTING_LOOP_TIMEOUT, TimeUnit.MILLISECONDS)
+    } finally {
+      loops.each { it.close() }
+    }
+  }
+
+  void testBlockedLoopTimesOutOnSharedScheduler() {
+    CountDownLatch timedOut = new CountDownLatch(1)
+    ReportingLoop loop = createReportingLoop([blockingProbe("blocking")], [])
+    CallbackProbeReporter tpr = new CallbackProbeReporter(
+        pollingTimeoutCallback: { timedOut.countDown() })
+    loop.reporter = tpr
+    loop.schedule(scheduler, reportScheduler)
+    try {
+      assert timedOut.await(REPORTING_LOOP_TIMEOUT, TimeUnit.MILLISECONDS)
+      assert tpr.timeoutReceived
+    } finally {
+      loop.close()
+    }
+  }
+
+  /**
+   * A hung worker which holds the only thread of the worker scheduler
+   * must not stop its hang from being reported
+   */
+  void testHangReportedWhenWorkerSchedulerIsFull() {
+    ScheduledExecutorService single =
+      Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("single worker"))
+    CountDownLatch timedOut = new CountDownLatch(1)
+    ReportingLoop loop = createReportingLoop([blockingProbe("blocking")], [])
+    loop.reporter = new CallbackProbeReporter(
+        pollingTimeoutCallback: { timedOut.countDown() })
+    loop.schedule(single, reportScheduler)
+    try {
+      assert timedOut.await(REPORTING_LOOP_TIMEOUT, TimeUnit.MILLISECONDS)
+    } finally {
+      loop.close()
+      single.shutdownNow()
+    }
+  }
+
+  /**
+   * Closing loops while their hangs are being reported must not
+   * deadlock the worker against the reports
+   */
+  void testCloseWhileReportingDoesNotDeadlock() {
+    5.times { i ->
+      CountDownLatch timedOut = new CountDownLatch(1)
+      ReportingLoop loop = createReportingLoop([blockingProbe("blocking-$i")], [])
+      loop.reporter = new CallbackProbeReporter(
+          pollingTimeoutCallback: { timedOut.countDown() })
+      loop.schedule(scheduler, reportScheduler)
+      assert timedOut.await(REPORTING_LOOP_TIMEOUT, TimeUnit.MILLISECONDS)
+      loop.close()
+    }
+    assert ManagementFactory.getThreadMXBean().findDeadlockedThreads() == null
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.servicemonitor.unit;
+
+import org.apache.ambari.servicemonitor.Monitor;
+import org.apache.ambari.servicemonitor.probes.MockProbe;
+import org.apache.ambari.servicemonitor.probes.Probe;
+import org.apache.ambari.servicemonitor.reporting.AdaptiveInterval;
+import org.apache.ambari.servicemonitor.reporting.ProbeSchedule;
+import org.apache.ambari.servicemonitor.reporting.ProbeStatus;
+import org.apache.ambari.servicemonitor.utils.ExitMainException;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class AdaptiveIntervalTest extends BaseLocalClusterTestCase {
+
+  @Test
+  public void testIntervalGrowsToMax() throws Throwable {
+    AdaptiveInterval interval = new AdaptiveInterval(1000, 4000, 200);
+    assertEquals(1500, interval.update(true, 10));
+    assertEquals(2250, interval.update(true, 10));
+    assertEquals(3375, interval.update(true, 10));
+    assertEquals(4000, interval.update(true, 10));
+    assertEquals(4000, interval.update(true, 10));
+  }
+
+  @Test
+  public void testFailureBurstsThenResets() throws Throwable {
+    AdaptiveInterval interval = new AdaptiveInterval(1000, 4000, 200);
+    interval.update(true, 10);
+    interval.update(true, 10);
+    assertEquals(200, interval.update(false, 10));
+    assertTrue(interval.isBursting());
+    assertEquals(200, interval.update(false, 10));
+    assertEquals(1000, interval.update(true, 10));
+    assertFalse(interval.isBursting());
+  }
+
+  @Test
+  public void testLatencySpikeBursts() throws Throwable {
+    AdaptiveInterval interval = new AdaptiveInterval(1000, 4000, 200);
+    for (int i = 0; i < AdaptiveInterval.WARMUP_SAMPLES; i++) {
+      interval.update(true, 20);
+    }
+    //small changes are not spikes
+    assertTrue(interval.update(true, 60) > 1000);
+    assertEquals(200, interval.update(true, 500));
+  }
+
+  @Test
+  public void testScheduleFollowsAdaptiveInterval() throws Throwable {
+    MockProbe probe = new MockProbe("adaptive");
+    probe.setIntervalPolicy(new AdaptiveInterval(1000, 4000, 200));
+    List<Probe> probes = new ArrayList<Probe>();
+    probes.add(probe);
+    ProbeSchedule schedule = new ProbeSchedule(probes, 1000);
+    schedule.start(0);
+    assertEquals(1, schedule.takeDue(1000).size());
+    ProbeStatus status = new ProbeStatus();
+    status.fail(probe, null);
+    status.setDuration(50);
+    assertEquals(200, schedule.pingCompleted(probe, status, 1050));
+    assertEquals(1200, schedule.getDueTime(probe));
+    assertEquals(1, schedule.takeDue(1200).size());
+    status = new ProbeStatus();
+    status.succeed(probe);
+    status.setDuration(50);
+    assertEquals(1000, schedule.pingCompleted(probe, status, 1250));
+    assertEquals(2200, schedule.getDueTime(probe));
+  }
+
+  /**
+   * The monitor refuses probes which would not issue a status within the
+   * probe timeout, at their longest interval
+   * @throws Throwable
+   */
+  @Test
+  public void testMaxIntervalMustBeWithinProbeTimeout() throws Throwable {
+    MockProbe probe = new MockProbe("adaptive");
+    probe.setIntervalPolicy(new AdaptiveInterval(1000, 40000, 200));
+    List<Probe> probes = new ArrayList<Probe>();
+    probes.add(probe);
+    Monitor.validateIntervals(probes, 1000, 0f, 60000);
+    try {
+      Monitor.validateIntervals(probes, 1000, 0.25f, 60000);
+      fail("expected a failure with the jitter");
+    } catch (ExitMainException expected) {
+      //expected
+    }
+    probe.setIntervalPolicy(null);
+    probe.setInterval(60000);
+    try {
+      Monitor.validateIntervals(probes, 1000, 0f, 60000);
+      fail("expected a failure with a probe interval");
+    } catch (ExitMainException expected) {
+      //expected
+    }
+    //a probe pinged more often keeps the statuses coming
+    MockProbe quick = new MockProbe("quick");
+    probes.add(quick);
+    Monitor.validateIntervals(probes, 1000, 0f, 60000);
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.servicemonitor.unit;
+
+import org.apache.ambari.servicemonitor.probes.AddressRace;
+import org.apache.ambari.servicemonitor.probes.PortProbe;
+import org.apache.ambari.servicemonitor.reporting.ProbeStatus;
+import org.apache.hadoop.conf.Configuration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+public class AddressRaceTest extends BaseLocalClusterTestCase {
+
+  private ServerSocket server;
+  private InetAddress open;
+  private InetAddress closed;
+
+  @Before
+  public void openPort() throws Throwable {
+    open = InetAddress.getByName("127.0.0.1");
+    closed = InetAddress.getByName("127.0.0.2");
+    server = new ServerSocket(0, 50, open);
+  }
+
+  @After
+  public void closePort() throws Throwable {
+    if (server != null) {
+      server.close();
+    }
+  }
+
+  @Test
+  public void testFirstAnswerWins() throws Throwable {
+    InetSocketAddress answered = AddressRace.connect(new InetAddress[]{closed, open},
+                                                     server.getLocalPort(),
+                                                     5000,
+                                                     AddressRace.STAGGER_DEFAULT);
+    assertEquals(open, answered.getAddress());
+  }
+
+  @Test
+  public void testAllAddressesFail() throws Throwable {
+    try {
+      AddressRace.connect(new InetAddress[]{closed}, server.getLocalPort(), 5000, 100);
+      fail("expected a failure to connect");
+    } catch (IOException expected) {
+      //expected
+    }
+  }
+
+  /**
+   * As with a blocking connect, a timeout of 0 means no timeout
+   * @throws Throwable
+   */
+  @Test
+  public void testZeroTimeoutMeansNoTimeout() throws Throwable {
+    InetSocketAddress answered = AddressRace.connect(new InetAddress[]{closed, open},
+                                                     server.getLocalPort(),
+                                                     0,
+                                                     100);
+    assertEquals(open, answered.getAddress());
+  }
+
+  /**
+   * A connect still in progress is not taken as an answer, and stays
+   * registered with the selector
+   * @throws Throwable
+   */
+  @Test
+  public void testPendingConnectIsNotAnAnswer() throws Throwable {
+    //a server which accepts nothing, with its backlog filled, leaves
+    //further connects in progress
+    ServerSocket full = new ServerSocket(0, 1, open);
+    InetSocketAddress target = new InetSocketAddress(open, full.getLocalPort());
+    List<SocketChannel> channels = new ArrayList<SocketChannel>();
+    Selector selector = Selector.open();
+    try {
+      SocketChannel pending = null;
+      for (int i = 0; i < 10 && pending == null; i++) {
+        SocketChannel channel = SocketChannel.open();
+        channels.add(channel);
+        channel.configureBlocking(false);
+        if (!channel.connect(target)) {
+          Thread.sleep(100);
+          if (!channel.finishConnect()) {
+            pending = channel;
+          }
+        }
+      }
+      assertNotNull("no connect was left in progress", pending);
+      SelectionKey key = pending.register(selector, SelectionKey.OP_CONNECT, target);
+      assertNull(AddressRace.finishConnect(key));
+      assertTrue(key.isValid());
+      assertTrue(pending.isOpen());
+    } finally {
+      for (SocketChannel channel : channels) {
+        channel.close();
+      }
+      selector.close();
+      full.close();
+    }
+  }
+
+  @Test
+  public void testPortProbeNamesAddress() throws Throwable {
+    PortProbe probe = new PortProbe("127.0.0.1", server.getLocalPort(), 1000, "",
+                                    new Configuration());
+    probe.init();
+    ProbeStatus status = probe.ping(true);
+    assertSuccess(status);
+    assertTrue(status.getMessage(), status.getMessage().endsWith("127.0.0.1"));
+  }
+}
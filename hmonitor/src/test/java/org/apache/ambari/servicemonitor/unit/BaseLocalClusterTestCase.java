@@ -78,7 +78,16 @@ public class BaseLocalClusterTestCase extends Assert {
    * @throws IOException if the clsuter could not be created
    */
   protected MiniDFSCluster createDFSCluster() throws IOException {
-    Configuration conf = new Configuration();
+    return createDFSCluster(new Configuration());
+  }
+
+  /**
+   * Create a DFS cluster with the given configuration
+   * @param conf configuration for the cluster
+   * @return the cluster
+   * @throws IOException if the cluster could not be created
+   */
+  protected MiniDFSCluster createDFSCluster(Configuration conf) throws IOException {
     assertNoDFSCluster();
     String testDataDirPath = "target/test/data" + System.currentTimeMillis();
     return dfsCluster = DFSUtils.createCluster(conf, testDataDirPath, 3);
@@ -0,0 +1,238 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.servicemonitor.unit;
+
+import org.apache.ambari.servicemonitor.probes.BodyAssertion;
+import org.apache.ambari.servicemonitor.probes.JmxMetricsAssertion;
+import org.apache.ambari.servicemonitor.probes.JsonPathAssertion;
+import org.apache.ambari.servicemonitor.probes.TextAssertion;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+public class BodyAssertionTest extends BaseLocalClusterTestCase {
+
+  private static final String JMX = "{\"beans\":["
+    + "{\"name\":\"java.lang:type=Memory\",\"HeapMemoryUsage\":{\"used\":1024}},"
+    + "{\"name\":\"Hadoop:service=NameNode,name=NameNodeInfo\","
+    + "\"Safemode\":\"\",\"LiveNodes\":[\"a\",\"b\"]},"
+    + "{\"name\":\"Hadoop:service=NameNode,name=FSNamesystemState\","
+    + "\"FSState\":\"Operational\",\"NumLiveDataNodes\":3}]}";
+
+  private static boolean check(BodyAssertion assertion, String body) throws IOException {
+    return assertion.check(new ByteArrayInputStream(body.getBytes("UTF-8")), "UTF-8");
+  }
+
+  @Test
+  public void testContains() throws Throwable {
+    BodyAssertion assertion = TextAssertion.contains("Active", BodyAssertion.LIMIT_DEFAULT);
+    assertTrue(check(assertion, "<html>NameNode is Active</html>"));
+    assertFalse(check(assertion, "<html>Error 500</html>"));
+  }
+
+  @Test
+  public void testMatchAcrossBlocks() throws Throwable {
+    StringBuilder body = new StringBuilder();
+    for (int i = 0; i < 4094; i++) {
+      body.append(' ');
+    }
+    body.append("Active");
+    assertTrue(check(TextAssertion.contains("Active", BodyAssertion.LIMIT_DEFAULT),
+                     body.toString()));
+    assertTrue(check(TextAssertion.matches("Ac?tive", BodyAssertion.LIMIT_DEFAULT),
+                     body.toString()));
+  }
+
+  /**
+   * Anchors and boundaries are judged at the ends of the body, not at
+   * the ends of the blocks it is read in
+   * @throws Throwable
+   */
+  @Test
+  public void testAnchorsAtBlockEdges() throws Throwable {
+    String firstBlock = pad(4094) + "OK";
+    BodyAssertion endsOk = TextAssertion.matches("OK$", BodyAssertion.LIMIT_DEFAULT);
+    assertFalse(check(endsOk, firstBlock + " and more"));
+    assertTrue(check(endsOk, firstBlock));
+    assertTrue(check(endsOk, firstBlock + pad(5000) + "OK"));
+    assertFalse(check(TextAssertion.matches("\\bOK\\b", BodyAssertion.LIMIT_DEFAULT),
+                      firstBlock + "AY"));
+    //the carried over text of the third block starts with "OK"
+    BodyAssertion startsOk = TextAssertion.matches("^OK", BodyAssertion.LIMIT_DEFAULT);
+    assertTrue(check(startsOk, "OK" + pad(5000)));
+    assertFalse(check(startsOk, pad(4096) + "OK" + pad(4094) + pad(100)));
+    assertFalse(check(TextAssertion.matches("\\bOK", BodyAssertion.LIMIT_DEFAULT),
+                      pad(4095) + "xOK" + pad(4094) + pad(100)));
+  }
+
+  @Test
+  public void testLimit() throws Throwable {
+    assertFalse(check(TextAssertion.contains("Active", 100), pad(200) + "Active"));
+  }
+
+  @Test
+  public void testStopsReadingWhenDecided() throws Throwable {
+    EndlessStream body = new EndlessStream("<html>Active</html>");
+    assertTrue(TextAssertion.contains("Active", Integer.MAX_VALUE).check(body, "UTF-8"));
+    assertTrue("read " + body.read, body.read < 64 * 1024);
+  }
+
+  @Test
+  public void testJsonValue() throws Throwable {
+    assertTrue(check(new JsonPathAssertion("beans/*/FSState", "Operational",
+                                           BodyAssertion.LIMIT_DEFAULT), JMX));
+    assertFalse(check(new JsonPathAssertion("beans/*/FSState", "Safemode",
+                                            BodyAssertion.LIMIT_DEFAULT), JMX));
+    assertTrue(check(new JsonPathAssertion("beans/*/NumLiveDataNodes", "[1-9][0-9]*",
+                                           BodyAssertion.LIMIT_DEFAULT), JMX));
+  }
+
+  @Test
+  public void testJsonPresence() throws Throwable {
+    assertTrue(check(new JsonPathAssertion("/beans/1/LiveNodes", null,
+                                           BodyAssertion.LIMIT_DEFAULT), JMX));
+    assertTrue(check(new JsonPathAssertion("beans/0/HeapMemoryUsage/used", null,
+                                           BodyAssertion.LIMIT_DEFAULT), JMX));
+    assertFalse(check(new JsonPathAssertion("beans/0/FSState", null,
+                                            BodyAssertion.LIMIT_DEFAULT), JMX));
+  }
+
+  @Test
+  public void testEmptyValueMatches() throws Throwable {
+    //an empty Safemode attribute means the NameNode is out of safe mode
+    assertTrue(check(new JsonPathAssertion("beans/*/Safemode", "",
+                                           BodyAssertion.LIMIT_DEFAULT), JMX));
+  }
+
+  @Test
+  public void testInvalidJson() throws Throwable {
+    try {
+      check(new JsonPathAssertion("beans/*/FSState", null, BodyAssertion.LIMIT_DEFAULT),
+            "<html>not json</html>");
+      fail("expected a parse failure");
+    } catch (IOException expected) {
+      //expected
+    }
+  }
+
+  @Test
+  public void testJmxRules() throws Throwable {
+    assertTrue(check(jmx("NumLiveDataNodes>=3"), JMX));
+    assertTrue(check(jmx("NumLiveDataNodes==3;NumLiveDataNodes!=4"), JMX));
+    JmxMetricsAssertion assertion = jmx("NumLiveDataNodes>3");
+    assertFalse(check(assertion, JMX));
+    assertEquals("NumLiveDataNodes>3 (was 3)", assertion.describe());
+    assertEquals(3.0, assertion.getValue(0), 0);
+  }
+
+  @Test
+  public void testJmxRuleQualifiedByBean() throws Throwable {
+    String body = "{\"beans\":["
+      + "{\"name\":\"Hadoop:service=NameNode,name=RpcActivityForPort8020\",\"CallQueueLength\":250},"
+      + "{\"name\":\"Hadoop:service=NameNode,name=RpcActivityForPort8021\",\"CallQueueLength\":2}]}";
+    assertFalse(check(jmx("CallQueueLength<100"), body));
+    assertTrue(check(jmx("RpcActivityForPort8021#CallQueueLength<100"), body));
+    assertFalse(check(jmx("RpcActivityForPort8020#CallQueueLength<100"), body));
+  }
+
+  @Test
+  public void testJmxNestedAndMissingAttributes() throws Throwable {
+    //"used" is inside HeapMemoryUsage, and is not an attribute of a bean
+    JmxMetricsAssertion assertion = jmx("used>0");
+    assertFalse(check(assertion, JMX));
+    assertEquals("used>0 (not found)", assertion.describe());
+    assertFalse(check(jmx("LiveNodes>0"), JMX));
+  }
+
+  @Test
+  public void testJmxBooleans() throws Throwable {
+    String body = "{\"beans\":[{\"name\":\"x\",\"Active\":true,\"Standby\":false}]}";
+    assertTrue(check(jmx("Active==1;Standby==0"), body));
+  }
+
+  @Test
+  public void testJmxRate() throws Throwable {
+    final long[] clock = {0};
+    JmxMetricsAssertion assertion = new JmxMetricsAssertion("rate(Errors)<10",
+                                                            BodyAssertion.LIMIT_DEFAULT) {
+      @Override
+      protected long now() {
+        return clock[0];
+      }
+    };
+    //no rate until there are two values
+    assertTrue(check(assertion, errors(1000)));
+    clock[0] = 2000;
+    assertTrue(check(assertion, errors(1010)));
+    assertEquals(5.0, assertion.getValue(0), 0);
+    clock[0] = 3000;
+    assertFalse(check(assertion, errors(1030)));
+    //a counter reset is not a rate
+    clock[0] = 4000;
+    assertTrue(check(assertion, errors(0)));
+  }
+
+  @Test
+  public void testJmxInvalidRules() throws Throwable {
+    for (String rule : new String[]{"", "NumLiveDataNodes", "NumLiveDataNodes>x", ">3"}) {
+      try {
+        jmx(rule);
+        fail("expected \"" + rule + "\" to be rejected");
+      } catch (IllegalArgumentException expected) {
+        //expected
+      }
+    }
+  }
+
+  private static JmxMetricsAssertion jmx(String rules) {
+    return new JmxMetricsAssertion(rules, BodyAssertion.LIMIT_DEFAULT);
+  }
+
+  private static String errors(long count) {
+    return "{\"beans\":[{\"name\":\"x\",\"Errors\":" + count + "}]}";
+  }
+
+  private static String pad(int length) {
+    StringBuilder builder = new StringBuilder(length);
+    for (int i = 0; i < length; i++) {
+      builder.append(' ');
+    }
+    return builder.toString();
+  }
+
+  /**
+   * A body which starts with some text and never ends
+   */
+  private static class EndlessStream extends InputStream {
+    private final byte[] start;
+    private long read;
+
+    private EndlessStream(String start) throws IOException {
+      this.start = start.getBytes("UTF-8");
+    }
+
+    @Override
+    public int read() {
+      int b = read < start.length ? start[(int) read] : ' ';
+      read++;
+      return b;
+    }
+  }
+}
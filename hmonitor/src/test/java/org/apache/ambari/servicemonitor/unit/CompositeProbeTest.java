@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.ambari.servicemonitor.unit;
+
+import org.apache.ambari.servicemonitor.Monitor;
+import org.apache.ambari.servicemonitor.MonitorKeys;
+import org.apache.ambari.servicemonitor.probes.CompositeProbe;
+import org.apache.ambari.servicemonitor.probes.MockProbe;
+import org.apache.ambari.servicemonitor.probes.Probe;
+import org.apache.ambari.servicemonitor.reporting.ProbeStatus;
+import org.apache.ambari.servicemonitor.utils.ExitMainException;
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class CompositeProbeTest extends BaseLocalClusterTestCase {
+
+  private static final long BLOCK = 20000;
+
+  private MockProbe failing() {
+    MockProbe probe = new MockProbe("failing");
+    probe.failAfterInterval = 0;
+    return probe;
+  }
+
+  private MockProbe blocking() {
+    MockProbe probe = new MockProbe("blocking");
+    probe.blockAfterInterval = 0;
+    probe.blockForInterval = -1;
+    probe.blockDuration = BLOCK;
+    return probe;
+  }
+
+  private List<Probe> list(Probe... probes) {
+    List<Probe> list = new ArrayList<Probe>();
+    for (Probe probe : probes) {
+      list.add(probe);
+    }
+    return list;
+  }
+
+  private ProbeStatus timedPing(Probe probe) {
+    long started = System.currentTimeMillis();
+    ProbeStatus status = probe.ping(true);
+    long duration = System.currentTimeMillis() - started;
+    assertTrue("ping took " + duration + "ms", duration < BLOCK / 2);
+    return status;
+  }
+
+  @Test
+  public void testAllFailsWithoutWaitingForSlowProbes() throws Throwable {
+    CompositeProbe probe = new CompositeProbe(CompositeProbe.Mode.ALL, 0,
+                                              list(blocking(), failing(),
+                                                   new MockProbe()),
+                                              new Configuration());
+    assertFailure(timedPing(probe));
+  }
+
+  @Test
+  public void testAnySucceedsWithoutWaitingForSlowProbes() throws Throwable {
+    CompositeProbe probe = new CompositeProbe(CompositeProbe.Mode.ANY, 0,
+                                              list(blocking(), new MockProbe()),
+                                              new Configuration());
+    assertSuccess(timedPing(probe));
+    CompositeProbe none = new CompositeProbe(CompositeProbe.Mode.ANY, 0,
+                                             list(failing(), failing()),
+                                             new Configuration());
+    assertFailure(none.ping(true));
+  }
+
+  @Test
+  public void testQuorum() throws Throwable {
+    CompositeProbe probe = new CompositeProbe(CompositeProbe.Mode.QUORUM, 2,
+                                              list(new MockProbe(), failing(),
+                                                   new MockProbe()),
+                                              new Configuration());
+    assertSuccess(probe.ping(true));
+    probe = new CompositeProbe(CompositeProbe.Mode.QUORUM, 2,
+                               list(failing(), failing(), new MockProbe()),
+                               new Configuration());
+    assertFailure(probe.ping(true));
+    try {
+      new CompositeProbe(CompositeProbe.Mode.QUORUM, 4,
+                         list(new MockProbe(), new MockProbe()),
+                         new Configuration());
+      fail("expected an exception");
+    } catch (ExitMainException expected) {
+      //expected
+    }
+  }
+
+  @Test
+  public void testSequenceStopsAtFirstFailure() throws Throwable {
+    MockProbe first = failing();
+    MockProbe second = blocking();
+    CompositeProbe probe = new CompositeProbe(CompositeProbe.Mode.SEQUENCE, 0,
+                                              list(first, second),
+                                              new Configuration());
+    assertFailure(timedPing(probe));
+    assertTrue(first.invoked);
+    assertFalse(second.invoked);
+
+    MockProbe live = new MockProbe();
+    probe = new CompositeProbe(CompositeProbe.Mode.SEQUENCE, 0,
+                               list(new MockProbe(), live),
+                               new Configuration());
+    assertSuccess(probe.ping(true));
+    assertTrue(live.invoked);
+  }
+
+  @Test
+  public void testCombineProbes() throws Throwable {
+    Configuration conf = new Configuration(false);
+    List<Probe> probes = list(new MockProbe(), new MockProbe());
+    assertEquals(2, Monitor.combineProbes(conf, probes).size());
+    conf.set(MonitorKeys.COMPOSITE_MODE, "sequence");
+    List<Probe> combined = Monitor.combineProbes(conf, probes);
+    assertEquals(1, combined.size());
+    CompositeProbe composite = (CompositeProbe) combined.get(0);
+    assertEquals(CompositeProbe.Mode.SEQUENCE, composite.getMode());
+    assertEquals(2, composite.getChildren().size());
+    conf.set(MonitorKeys.COMPOSITE_MODE, "most");
+    try {
+      Monitor.combineProbes(conf, probes);
+      fail("expected an exception");
+    } catch (ExitMainException expected) {
+      //expected
+    }
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.servicemonitor.unit;
+
+import org.apache.ambari.servicemonitor.utils.ConnectionWatcher;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ConnectionWatcherTest extends BaseLocalClusterTestCase {
+
+  private ServerSocket server;
+  private ConnectionWatcher watcher;
+  private Thread thread;
+  private final AtomicInteger closes = new AtomicInteger();
+
+  private final ConnectionWatcher.Listener listener = new ConnectionWatcher.Listener() {
+    @Override
+    public void connectionClosed(ConnectionWatcher.Watch watch, String reason) {
+      closes.incrementAndGet();
+    }
+  };
+
+  @Before
+  public void startWatcher() throws Throwable {
+    server = new ServerSocket(0);
+    watcher = new ConnectionWatcher();
+    thread = new Thread(watcher, "connection watcher test");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  @After
+  public void stopWatcher() throws Throwable {
+    watcher.close();
+    server.close();
+  }
+
+  private ConnectionWatcher.Watch watchServer() throws IOException {
+    return watcher.watch(new InetSocketAddress("127.0.0.1", server.getLocalPort()),
+                         1000, listener);
+  }
+
+  @Test
+  public void testCloseByFarEndIsSeen() throws Throwable {
+    ConnectionWatcher.Watch watch = watchServer();
+    Socket accepted = server.accept();
+    accepted.close();
+    for (int i = 0; i < 100 && closes.get() == 0; i++) {
+      Thread.sleep(20);
+    }
+    assertEquals(1, closes.get());
+    assertFalse(watch.isOpen());
+  }
+
+  /**
+   * Closing the watcher closes its connections, without telling the
+   * listeners, and stops its thread
+   * @throws Throwable
+   */
+  @Test
+  public void testCloseStopsWatching() throws Throwable {
+    ConnectionWatcher.Watch watch = watchServer();
+    Socket accepted = server.accept();
+    try {
+      watcher.close();
+      thread.join(5000);
+      assertFalse(thread.isAlive());
+      assertFalse(watch.isOpen());
+      assertEquals(0, closes.get());
+    } finally {
+      accepted.close();
+    }
+    try {
+      watchServer();
+      fail("expected the closed watcher to refuse a watch");
+    } catch (IOException expected) {
+      //expected
+    }
+  }
+}
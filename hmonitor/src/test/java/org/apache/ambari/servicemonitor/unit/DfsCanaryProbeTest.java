@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.servicemonitor.unit;
+
+import org.apache.ambari.servicemonitor.MonitorKeys;
+import org.apache.ambari.servicemonitor.probes.DfsCanaryProbe;
+import org.apache.ambari.servicemonitor.reporting.ProbeStatus;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.Test;
+
+public class DfsCanaryProbeTest extends BaseLocalClusterTestCase {
+
+  @Test
+  public void testCanary() throws Throwable {
+    createDFSCluster();
+    Configuration conf = createDFSBondedConfiguration();
+    conf.setInt(MonitorKeys.CANARY_PROBE_SIZE, 200);
+    DfsCanaryProbe probe = DfsCanaryProbe.createProbe(conf);
+    ProbeStatus status = probe.ping(true);
+    assertSuccess(status);
+    assertTrue(status.getMessage(), status.getMessage().contains("pipeline="));
+    assertTrue(probe.getCreateTime() >= 0);
+    assertTrue(probe.getPipelineTime() >= 0);
+    assertTrue(probe.getWriteTime() >= 0);
+    assertTrue(probe.getCloseTime() >= 0);
+    assertTrue(probe.getReadTime() >= 0);
+    assertTrue(probe.getDeleteTime() >= 0);
+    FileSystem fs = dfsCluster.getFileSystem();
+    assertFalse(fs.exists(probe.getFile()));
+    //and again, over the same file name
+    assertSuccess(probe.ping(true));
+  }
+
+  @Test
+  public void testCanaryUnderAFile() throws Throwable {
+    createDFSCluster();
+    Configuration conf = createDFSBondedConfiguration();
+    FileSystem fs = dfsCluster.getFileSystem();
+    fs.create(new Path("/blocker")).close();
+    conf.set(MonitorKeys.CANARY_PROBE_PATH, "/blocker");
+    DfsCanaryProbe probe = DfsCanaryProbe.createProbe(conf);
+    assertFailure(probe.ping(true));
+    assertEquals(-1, probe.getPipelineTime());
+  }
+}
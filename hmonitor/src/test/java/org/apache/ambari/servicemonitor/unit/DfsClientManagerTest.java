@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.servicemonitor.unit;
+
+import org.apache.ambari.servicemonitor.utils.DFSUtils;
+import org.apache.ambari.servicemonitor.utils.DfsClientManager;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.ipc.RemoteException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class DfsClientManagerTest extends BaseLocalClusterTestCase {
+
+  private StubManager manager;
+  private Configuration conf;
+
+  @Before
+  public void createManager() throws Throwable {
+    manager = new StubManager();
+    conf = createConfiguration("hdfs://namenode:8020");
+  }
+
+  private static Configuration createConfiguration(String uri) {
+    Configuration conf = new Configuration(false);
+    conf.set(FileSystem.FS_DEFAULT_NAME_KEY, uri);
+    DFSUtils.makeDfsCallsNonBlocking(conf);
+    return conf;
+  }
+
+  @Test
+  public void testClientIsShared() throws Throwable {
+    DistributedFileSystem client = manager.get(conf);
+    assertSame(client, manager.get(conf));
+    assertSame(client, manager.get(createConfiguration("hdfs://namenode:8020")));
+    assertEquals(1, manager.getCreations());
+  }
+
+  @Test
+  public void testClientsByFilesystemAndPolicy() throws Throwable {
+    DistributedFileSystem client = manager.get(conf);
+    assertTrue(client != manager.get(createConfiguration("hdfs://other:8020")));
+    Configuration blocking = createConfiguration("hdfs://namenode:8020");
+    DFSUtils.makeDfsCallsBlocking(blocking);
+    assertTrue(client != manager.get(blocking));
+    assertEquals(3, manager.size());
+  }
+
+  @Test
+  public void testRecycledOnConnectionFailure() throws Throwable {
+    DistributedFileSystem client = manager.get(conf);
+    assertTrue(manager.failed(client, new ConnectException("Connection refused")));
+    assertEquals(1, manager.getRecycles());
+    assertTrue(manager.closed.contains(client));
+    DistributedFileSystem replacement = manager.get(conf);
+    assertTrue(client != replacement);
+    assertEquals(2, manager.getCreations());
+    //a second failure of the old client does not recycle the new one
+    assertFalse(manager.failed(client, new ConnectException("Connection refused")));
+    assertSame(replacement, manager.get(conf));
+    assertEquals(1, manager.getRecycles());
+  }
+
+  @Test
+  public void testKeptOnNameNodeErrors() throws Throwable {
+    DistributedFileSystem client = manager.get(conf);
+    assertFalse(manager.failed(client, new FileNotFoundException("/missing")));
+    assertFalse(manager.failed(client,
+                               new RemoteException(IOException.class.getName(), "safe mode")));
+    assertFalse(manager.failed(client, new InterruptedIOException("ping cancelled")));
+    assertFalse(manager.failed(null, new ConnectException("Connection refused")));
+    assertSame(client, manager.get(conf));
+    assertEquals(0, manager.getRecycles());
+  }
+
+  @Test
+  public void testCloseAll() throws Throwable {
+    DistributedFileSystem client = manager.get(conf);
+    manager.closeAll();
+    assertTrue(manager.closed.contains(client));
+    assertEquals(0, manager.size());
+    assertTrue(client != manager.get(conf));
+  }
+
+  /**
+   * A manager whose clients are never connected
+   */
+  private static class StubManager extends DfsClientManager {
+    private final List<DistributedFileSystem> closed = new ArrayList<DistributedFileSystem>();
+
+    @Override
+    protected DistributedFileSystem createClient(Configuration conf) {
+      return new DistributedFileSystem();
+    }
+
+    @Override
+    protected void closeClient(DistributedFileSystem client) {
+      closed.add(client);
+    }
+  }
+}
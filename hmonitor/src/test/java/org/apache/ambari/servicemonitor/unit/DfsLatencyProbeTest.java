@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.servicemonitor.unit;
+
+import org.apache.ambari.servicemonitor.MonitorKeys;
+import org.apache.ambari.servicemonitor.probes.DfsLatencyProbe;
+import org.apache.ambari.servicemonitor.reporting.ProbeStatus;
+import org.apache.ambari.servicemonitor.utils.ExitMainException;
+import org.apache.ambari.servicemonitor.utils.LatencySla;
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Test;
+
+public class DfsLatencyProbeTest extends BaseLocalClusterTestCase {
+
+  @Test
+  public void testSlaKept() throws Throwable {
+    LatencySla sla = new LatencySla(100, 100, 1000, 0);
+    for (int i = 0; i < 100; i++) {
+      sla.add(10, 0);
+    }
+    assertNull(sla.check(0));
+    assertFalse(sla.isBreached());
+  }
+
+  @Test
+  public void testOneSlowOperationIsNotAPercentileBreach() throws Throwable {
+    LatencySla sla = new LatencySla(100, 100, 0, 0);
+    for (int i = 0; i < 99; i++) {
+      sla.add(10, 0);
+    }
+    sla.add(25000, 0);
+    assertNull(sla.check(0));
+    sla.add(25000, 0);
+    assertNotNull(sla.check(0));
+  }
+
+  /**
+   * A lone slow operation leaves the window before its breach can
+   * have lasted for the sustain period
+   * @throws Throwable
+   */
+  @Test
+  public void testLoneOutlierIsNotSustained() throws Throwable {
+    LatencySla sla = new LatencySla(100, 0, 1000, 5000);
+    sla.add(2000, 1000);
+    for (long now = 1000; now <= 8000; now += 500) {
+      sla.add(10, now);
+      assertNull("breach at " + now, sla.check(now));
+    }
+    assertFalse(sla.isBreached());
+  }
+
+  @Test
+  public void testBreachMustBeSustained() throws Throwable {
+    LatencySla sla = new LatencySla(100, 0, 1000, 5000);
+    for (long now = 1000; now < 6000; now += 1000) {
+      sla.add(2000, now);
+      assertNull(sla.check(now));
+      assertTrue(sla.isBreached());
+    }
+    sla.add(2000, 6000);
+    String breach = sla.check(6000);
+    assertNotNull(breach);
+    assertTrue(breach, breach.contains("max latency 2000ms"));
+    //once the slow operations leave the window, the breach is over
+    sla.add(10, 7000);
+    assertNotNull(sla.check(10999));
+    assertNull(sla.check(11000));
+    assertFalse(sla.isBreached());
+  }
+
+  @Test
+  public void testUnknownOperation() throws Throwable {
+    Configuration conf = new Configuration(false);
+    conf.set(MonitorKeys.LATENCY_PROBE_OPERATIONS, "getFileInfo,delete");
+    try {
+      DfsLatencyProbe.createProbe(conf);
+      fail("expected the operation to be rejected");
+    } catch (ExitMainException expected) {
+      //expected
+    }
+  }
+
+  @Test
+  public void testProbeCluster() throws Throwable {
+    createDFSCluster();
+    Configuration conf = createDFSBondedConfiguration();
+    conf.set(MonitorKeys.LATENCY_PROBE_OPERATIONS, "getFileInfo, getContentSummary, listStatus");
+    conf.setLong(MonitorKeys.LATENCY_PROBE_P99, 30000);
+    DfsLatencyProbe probe = DfsLatencyProbe.createProbe(conf);
+    ProbeStatus status = probe.ping(true);
+    assertSuccess(status);
+    assertEquals(3, probe.getSla().getWindow().getCount());
+
+    //a failed operation fails the probe, however fast
+    conf.set(MonitorKeys.LATENCY_PROBE_PATHS, "/no-such-path");
+    assertFailure(DfsLatencyProbe.createProbe(conf).ping(true));
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.ambari.servicemonitor.unit;
+
+import org.apache.ambari.servicemonitor.MonitorKeys;
+import org.apache.ambari.servicemonitor.probes.DfsListProbe;
+import org.apache.ambari.servicemonitor.reporting.ProbeStatus;
+import org.apache.ambari.servicemonitor.utils.ExitMainException;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.Test;
+
+public class DfsListProbeTest extends BaseLocalClusterTestCase {
+
+  private Configuration createPagingCluster(int entries) throws Throwable {
+    Configuration clusterConf = new Configuration();
+    clusterConf.setInt("dfs.ls.limit", 5);
+    createDFSCluster(clusterConf);
+    FileSystem fs = dfsCluster.getFileSystem();
+    for (int i = 0; i < entries; i++) {
+      fs.create(new Path("/big/file" + i)).close();
+    }
+    return createDFSBondedConfiguration();
+  }
+
+  @Test
+  public void testPageMode() throws Throwable {
+    Configuration conf = createPagingCluster(8);
+    conf.set(MonitorKeys.LS_PROBE_MODE, DfsListProbe.MODE_PAGE);
+    DfsListProbe probe = new DfsListProbe(conf, "/big");
+    ProbeStatus status = probe.ping(true);
+    assertSuccess(status);
+    assertTrue(status.getMessage(),
+               status.getMessage().contains("at least 5 entries"));
+    assertTrue(status.getMessage(),
+               status.getMessage().contains("3 more"));
+  }
+
+  @Test
+  public void testModes() throws Throwable {
+    Configuration conf = createPagingCluster(3);
+    //a page that holds the whole directory is an exact count
+    conf.set(MonitorKeys.LS_PROBE_MODE, DfsListProbe.MODE_PAGE);
+    ProbeStatus status = new DfsListProbe(conf, "/big").ping(true);
+    assertSuccess(status);
+    assertTrue(status.getMessage(),
+               status.getMessage().contains("contains 3 entries"));
+    assertFailure(new DfsListProbe(conf, "/missing").ping(true));
+
+    conf.set(MonitorKeys.LS_PROBE_MODE, DfsListProbe.MODE_STAT);
+    status = new DfsListProbe(conf, "/big").ping(true);
+    assertSuccess(status);
+    assertTrue(status.getMessage(),
+               status.getMessage().contains("is a directory"));
+    assertFailure(new DfsListProbe(conf, "/missing").ping(true));
+
+    conf.set(MonitorKeys.LS_PROBE_MODE, DfsListProbe.MODE_FULL);
+    status = new DfsListProbe(conf, "/big").ping(true);
+    assertSuccess(status);
+    assertTrue(status.getMessage(),
+               status.getMessage().contains("contains 3 entries"));
+  }
+
+  @Test
+  public void testUnknownMode() throws Throwable {
+    Configuration conf = new Configuration();
+    conf.set("fs.default.name", "hdfs://localhost:8020");
+    conf.set(MonitorKeys.LS_PROBE_MODE, "everything");
+    try {
+      new DfsListProbe(conf, "/");
+      fail("expected an exception");
+    } catch (ExitMainException expected) {
+      //expected
+    }
+  }
+}
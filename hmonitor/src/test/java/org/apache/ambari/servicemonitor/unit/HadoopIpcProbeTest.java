@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.ambari.servicemonitor.unit;
+
+import org.apache.ambari.servicemonitor.MonitorKeys;
+import org.apache.ambari.servicemonitor.probes.HadoopIpcProbe;
+import org.apache.ambari.servicemonitor.reporting.ProbeStatus;
+import org.apache.ambari.servicemonitor.utils.ExitMainException;
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Test;
+
+import java.net.ServerSocket;
+import java.util.List;
+
+public class HadoopIpcProbeTest extends BaseLocalClusterTestCase {
+
+  @Test
+  public void testPingNameNode() throws Throwable {
+    createDFSCluster();
+    Configuration conf = createDFSBondedConfiguration();
+    List<HadoopIpcProbe> probes = HadoopIpcProbe.createProbes(conf);
+    assertEquals(1, probes.size());
+    HadoopIpcProbe probe = probes.get(0);
+    assertEquals(HadoopIpcProbe.NAMENODE_PROTOCOL, probe.getProtocol());
+    ProbeStatus status = probe.ping(true);
+    assertSuccess(status);
+    assertEquals(61, probe.getServerVersion());
+    assertTrue(probe.getConnectTime() >= 0);
+    assertTrue(probe.getHeaderTime() >= 0);
+    assertTrue(probe.getResponseTime() >= 0);
+    //and again, on a new connection
+    assertSuccess(probe.ping(true));
+  }
+
+  @Test
+  public void testListenerWithoutHandlers() throws Throwable {
+    //a socket which accepts connections into its backlog and never answers
+    ServerSocket server = new ServerSocket(0);
+    try {
+      HadoopIpcProbe probe = new HadoopIpcProbe("localhost",
+                                                server.getLocalPort(),
+                                                HadoopIpcProbe.NAMENODE_PROTOCOL,
+                                                "monitor",
+                                                500,
+                                                new Configuration());
+      assertFailure(probe.ping(true));
+      assertTrue(probe.getConnectTime() >= 0);
+      assertTrue(probe.getHeaderTime() >= 0);
+      assertEquals(-1, probe.getResponseTime());
+    } finally {
+      server.close();
+    }
+  }
+
+  @Test
+  public void testNoListener() throws Throwable {
+    ServerSocket server = new ServerSocket(0);
+    int port = server.getLocalPort();
+    server.close();
+    HadoopIpcProbe probe = new HadoopIpcProbe("localhost", port,
+                                              HadoopIpcProbe.NAMENODE_PROTOCOL,
+                                              "monitor", 500,
+                                              new Configuration());
+    assertFailure(probe.ping(true));
+    assertEquals(-1, probe.getConnectTime());
+  }
+
+  @Test
+  public void testUnknownTarget() throws Throwable {
+    Configuration conf = new Configuration();
+    conf.set(MonitorKeys.IPC_PROBE_TARGETS, "datanode");
+    try {
+      HadoopIpcProbe.createProbes(conf);
+      fail("expected an exception");
+    } catch (ExitMainException expected) {
+      //expected
+    }
+  }
+}
@@ -0,0 +1,309 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.servicemonitor.unit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.ambari.servicemonitor.probes.BodyAssertion;
+import org.apache.ambari.servicemonitor.probes.HttpProbe;
+import org.apache.ambari.servicemonitor.probes.JmxProbe;
+import org.apache.ambari.servicemonitor.probes.TextAssertion;
+import org.apache.ambari.servicemonitor.reporting.ProbeStatus;
+import org.apache.ambari.servicemonitor.utils.ExitMainException;
+import org.apache.hadoop.conf.Configuration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class HttpProbeTest extends BaseLocalClusterTestCase {
+
+  private static final String ETAG = "\"v1\"";
+
+  private HttpServer server;
+  private ExecutorService executor;
+  private String base;
+  private final Set<Integer> clientPorts =
+    Collections.synchronizedSet(new HashSet<Integer>());
+  private final AtomicInteger notModified = new AtomicInteger();
+  private final AtomicInteger heads = new AtomicInteger();
+
+  @Before
+  public void startServer() throws Throwable {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 10);
+    executor = Executors.newCachedThreadPool();
+    server.setExecutor(executor);
+    server.createContext("/page", new PageHandler());
+    server.createContext("/trickle", new TrickleHandler());
+    server.createContext("/jmx", new JmxHandler());
+    server.start();
+    base = "http://127.0.0.1:" + server.getAddress().getPort();
+  }
+
+  @After
+  public void stopServer() throws Throwable {
+    if (server != null) {
+      server.stop(0);
+      executor.shutdownNow();
+    }
+  }
+
+  private HttpProbe createProbe(String path) throws IOException {
+    return new HttpProbe(new URL(base + path), 1000, 200, 200, new Configuration());
+  }
+
+  @Test
+  public void testGet() throws Throwable {
+    HttpProbe probe = createProbe("/page");
+    ProbeStatus status = probe.ping(true);
+    assertSuccess(status);
+    assertTrue(probe.getConnectTime() >= 0);
+    assertTrue(probe.getFirstByteTime() >= 0);
+    assertTrue(probe.getBodyTime() >= 0);
+    assertTrue(status.getMessage(), status.getMessage().contains("first-byte="));
+  }
+
+  @Test
+  public void testMissingPage() throws Throwable {
+    assertFailure(createProbe("/missing").ping(true));
+  }
+
+  @Test
+  public void testHead() throws Throwable {
+    HttpProbe probe = createProbe("/page");
+    probe.setMethod("head");
+    assertSuccess(probe.ping(true));
+    assertEquals(1, heads.get());
+  }
+
+  @Test
+  public void testConditionalGet() throws Throwable {
+    HttpProbe probe = createProbe("/page");
+    probe.setMethod(HttpProbe.METHOD_CONDITIONAL);
+    assertSuccess(probe.ping(true));
+    assertEquals(0, notModified.get());
+    assertSuccess(probe.ping(true));
+    assertSuccess(probe.ping(true));
+    assertEquals(2, notModified.get());
+  }
+
+  @Test
+  public void testConnectionKeptAlive() throws Throwable {
+    HttpProbe probe = createProbe("/page");
+    for (int i = 0; i < 5; i++) {
+      assertSuccess(probe.ping(true));
+    }
+    assertEquals("client ports " + clientPorts, 1, clientPorts.size());
+  }
+
+  @Test
+  public void testSilentServerFailsOnReadTimeout() throws Throwable {
+    //the connection is accepted by the kernel, but nothing is ever sent
+    ServerSocket silent = new ServerSocket(0, 50, null);
+    try {
+      HttpProbe probe = new HttpProbe(
+        new URL("http://127.0.0.1:" + silent.getLocalPort() + "/"),
+        1000, 200, 200, new Configuration());
+      probe.setReadTimeout(500);
+      probe.setTotalTimeout(0);
+      long started = System.currentTimeMillis();
+      assertFailure(probe.ping(true));
+      assertTrue(System.currentTimeMillis() - started < 5000);
+    } finally {
+      silent.close();
+    }
+  }
+
+  @Test
+  public void testTrickleFailsOnTotalTimeout() throws Throwable {
+    HttpProbe probe = createProbe("/trickle");
+    probe.setReadTimeout(2000);
+    probe.setTotalTimeout(1000);
+    long started = System.currentTimeMillis();
+    ProbeStatus status = probe.ping(true);
+    assertFailure(status);
+    assertTrue(System.currentTimeMillis() - started < 4000);
+    assertTrue(status.getThrown().toString(),
+               status.getThrown().getMessage().contains("No complete response"));
+  }
+
+  @Test
+  public void testBodyAssertion() throws Throwable {
+    HttpProbe probe = createProbe("/page");
+    probe.setBodyAssertion(TextAssertion.contains("live", BodyAssertion.LIMIT_DEFAULT));
+    assertSuccess(probe.ping(true));
+    probe.setBodyAssertion(TextAssertion.contains("error", BodyAssertion.LIMIT_DEFAULT));
+    assertFailure(probe.ping(true));
+  }
+
+  @Test
+  public void testJsonAssertionFromConfiguration() throws Throwable {
+    Configuration conf = new Configuration();
+    conf.set(HttpProbe.WEB_PROBE_URL, base + "/jmx");
+    conf.set(HttpProbe.WEB_PROBE_BODY_JSON_PATH, "beans/*/FSState");
+    conf.set(HttpProbe.WEB_PROBE_BODY_JSON_VALUE, "Operational");
+    HttpProbe probe = HttpProbe.createHttpProbe(conf);
+    probe.init();
+    assertSuccess(probe.ping(true));
+    conf.set(HttpProbe.WEB_PROBE_BODY_JSON_VALUE, "Safemode");
+    probe = HttpProbe.createHttpProbe(conf);
+    assertFailure(probe.ping(true));
+  }
+
+  @Test
+  public void testJmxProbe() throws Throwable {
+    Configuration conf = new Configuration();
+    conf.set(HttpProbe.JMX_PROBE_URL, base + "/jmx");
+    conf.set(HttpProbe.JMX_PROBE_RULES, "NumLiveDataNodes>=3; FSNamesystemState#NumLiveDataNodes<10");
+    JmxProbe probe = JmxProbe.createJmxProbe(conf);
+    probe.init();
+    ProbeStatus status = probe.ping(true);
+    assertSuccess(status);
+    assertTrue(status.getMessage(), status.getMessage().contains("NumLiveDataNodes=3"));
+    conf.set(HttpProbe.JMX_PROBE_RULES, "NumLiveDataNodes>=5");
+    status = JmxProbe.createJmxProbe(conf).ping(true);
+    assertFailure(status);
+    assertTrue(status.getThrown().getMessage(),
+               status.getThrown().getMessage().contains("NumLiveDataNodes>=5 (was 3)"));
+  }
+
+  @Test
+  public void testJmxProbeNeedsRules() throws Throwable {
+    Configuration conf = new Configuration();
+    conf.set(HttpProbe.JMX_PROBE_URL, base + "/jmx");
+    try {
+      JmxProbe.createJmxProbe(conf);
+      fail("expected the probe to be rejected");
+    } catch (ExitMainException expected) {
+      //expected
+    }
+  }
+
+  @Test
+  public void testFailedAssertionNotCached() throws Throwable {
+    //a conditional GET must not turn a bad page into a good one with a 304
+    HttpProbe probe = createProbe("/page");
+    probe.setMethod(HttpProbe.METHOD_CONDITIONAL);
+    probe.setBodyAssertion(TextAssertion.contains("error", BodyAssertion.LIMIT_DEFAULT));
+    assertFailure(probe.ping(true));
+    assertFailure(probe.ping(true));
+    assertEquals(0, notModified.get());
+  }
+
+  @Test
+  public void testHeadHasNoBodyToCheck() throws Throwable {
+    HttpProbe probe = createProbe("/page");
+    probe.setMethod(HttpProbe.METHOD_HEAD);
+    probe.setBodyAssertion(TextAssertion.contains("live", BodyAssertion.LIMIT_DEFAULT));
+    try {
+      probe.init();
+      fail("expected init to fail");
+    } catch (IOException expected) {
+      //expected
+    }
+  }
+
+  @Test
+  public void testUnknownMethod() throws Throwable {
+    try {
+      createProbe("/page").setMethod("POST");
+      fail("expected the method to be rejected");
+    } catch (IllegalArgumentException expected) {
+      //expected
+    }
+  }
+
+  /**
+   * A page with an ETag, which answers a matching If-None-Match with a 304
+   */
+  private class PageHandler implements HttpHandler {
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+      clientPorts.add(exchange.getRemoteAddress().getPort());
+      byte[] body = "<html>live</html>".getBytes("UTF-8");
+      exchange.getResponseHeaders().set("ETag", ETAG);
+      if ("HEAD".equals(exchange.getRequestMethod())) {
+        heads.incrementAndGet();
+        exchange.sendResponseHeaders(200, -1);
+      } else if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+        notModified.incrementAndGet();
+        exchange.sendResponseHeaders(304, -1);
+      } else {
+        exchange.sendResponseHeaders(200, body.length);
+        exchange.getResponseBody().write(body);
+      }
+      exchange.close();
+    }
+  }
+
+  /**
+   * A JSON page in the style of /jmx
+   */
+  private static class JmxHandler implements HttpHandler {
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+      byte[] body = ("{\"beans\":[{\"name\":\"Hadoop:service=NameNode,"
+                     + "name=FSNamesystemState\",\"FSState\":\"Operational\","
+                     + "\"NumLiveDataNodes\":3}]}")
+        .getBytes("UTF-8");
+      exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+      exchange.sendResponseHeaders(200, body.length);
+      exchange.getResponseBody().write(body);
+      exchange.close();
+    }
+  }
+
+  /**
+   * A page sent a byte at a time, slowly enough to never end in a test
+   */
+  private static class TrickleHandler implements HttpHandler {
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+      exchange.sendResponseHeaders(200, 0);
+      OutputStream out = exchange.getResponseBody();
+      try {
+        for (int i = 0; i < 100; i++) {
+          out.write('.');
+          out.flush();
+          Thread.sleep(200);
+        }
+      } catch (InterruptedException ignored) {
+        //server shutdown
+      } catch (IOException ignored) {
+        //client gone
+      } finally {
+        exchange.close();
+      }
+    }
+  }
+}
@@ -0,0 +1,291 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.servicemonitor.unit;
+
+import org.apache.ambari.servicemonitor.MonitorKeys;
+import org.apache.ambari.servicemonitor.probes.JvmGcProbe;
+import org.apache.ambari.servicemonitor.reporting.ProbeStatus;
+import org.apache.ambari.servicemonitor.utils.PerfDataFile;
+import org.apache.hadoop.conf.Configuration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Tests of the GC probe against synthetic performance data files, and
+ * the file of this JVM
+ */
+public class JvmGcProbeTest extends BaseLocalClusterTestCase {
+
+  private File dir;
+  private File pidFile;
+  private String pid;
+  private Configuration conf;
+  private FakePerfData perfData;
+
+  @Before
+  public void createFiles() throws Throwable {
+    dir = File.createTempFile("gcprobe", "");
+    dir.delete();
+    dir.mkdirs();
+    pid = new File("/proc/self").getCanonicalFile().getName();
+    pidFile = new File(dir, "pid");
+    FileWriter writer = new FileWriter(pidFile);
+    try {
+      writer.write(pid);
+    } finally {
+      writer.close();
+    }
+    File perfDir = new File(dir, PerfDataFile.DIRECTORY_PREFIX + "test");
+    perfDir.mkdirs();
+    perfData = new FakePerfData(new File(perfDir, pid));
+    conf = new Configuration(false);
+    conf.set(MonitorKeys.GC_PROBE_PERFDATA_DIR, dir.getAbsolutePath());
+  }
+
+  @After
+  public void deleteFiles() {
+    perfData.file.delete();
+    perfData.file.getParentFile().delete();
+    pidFile.delete();
+    dir.delete();
+  }
+
+  private boolean isProcAvailable() {
+    return new File("/proc/self/stat").exists();
+  }
+
+  @Test
+  public void testReadCounters() throws Throwable {
+    perfData.write();
+    PerfDataFile file = new PerfDataFile(perfData.file);
+    assertTrue(file.isAccessible());
+    assertEquals(1000000000L, file.getLong("sun.os.hrt.frequency"));
+    assertEquals(-1, file.getLong("sun.gc.collector.9.invocations"));
+    perfData.set("sun.gc.collector.0.invocations", 12);
+    assertEquals(12, file.getLong("sun.gc.collector.0.invocations"));
+  }
+
+  @Test
+  public void testNotPerfData() throws Throwable {
+    FileWriter writer = new FileWriter(perfData.file);
+    try {
+      writer.write("this is not a performance data file at all");
+    } finally {
+      writer.close();
+    }
+    try {
+      new PerfDataFile(perfData.file);
+      fail("Expected a failure");
+    } catch (IOException expected) {
+      //expected
+    }
+  }
+
+  @Test
+  public void testPauseRate() throws Throwable {
+    if (!isProcAvailable()) {
+      return;
+    }
+    perfData.write();
+    conf.setInt(MonitorKeys.GC_PROBE_PAUSE_LIMIT, 50);
+    JvmGcProbe probe = new JvmGcProbe(pidFile, conf);
+    assertSuccess(probe.ping(true));
+    assertEquals(-1, probe.getPausePercent());
+    assertEquals(40, probe.getOldPercent());
+    assertEquals(0, probe.getTimeoutExtension(System.currentTimeMillis()));
+
+    //a second passes, 100ms of it collecting
+    perfData.set("sun.os.hrt.ticks", 2000000000L);
+    perfData.set("sun.gc.collector.0.invocations", 3);
+    perfData.set("sun.gc.collector.0.time", 100000000L);
+    assertSuccess(probe.ping(true));
+    assertEquals(10, probe.getPausePercent());
+    assertEquals(3, probe.getCollections());
+    assertEquals(0, probe.getTimeoutExtension(System.currentTimeMillis()));
+
+    //a second passes, 700ms of it collecting: a storm
+    perfData.set("sun.os.hrt.ticks", 3000000000L);
+    perfData.set("sun.gc.collector.1.invocations", 1);
+    perfData.set("sun.gc.collector.1.time", 700000000L);
+    ProbeStatus status = probe.ping(true);
+    assertSuccess(status);
+    assertEquals(70, probe.getPausePercent());
+    assertTrue(status.getMessage(), status.getMessage().contains("GC storm"));
+    assertEquals(MonitorKeys.GC_PROBE_TIMEOUT_EXTENSION_DEFAULT,
+                 probe.getTimeoutExtension(System.currentTimeMillis()));
+  }
+
+  @Test
+  public void testCollectionInProgress() throws Throwable {
+    if (!isProcAvailable()) {
+      return;
+    }
+    perfData.write();
+    conf.setInt(MonitorKeys.GC_PROBE_TIMEOUT_EXTENSION, 5000);
+    JvmGcProbe probe = new JvmGcProbe(pidFile, conf);
+    assertSuccess(probe.ping(true));
+    long now = System.currentTimeMillis();
+    assertEquals(0, probe.getTimeoutExtension(now));
+    //a collection starts between pings, and is seen without one
+    perfData.set("sun.gc.collector.1.lastEntryTime", 1500000000L);
+    assertEquals(5000, probe.getTimeoutExtension(now));
+    perfData.set("sun.gc.collector.1.lastExitTime", 1600000000L);
+    assertEquals(5000, probe.getTimeoutExtension(now + 4000));
+    assertEquals(0, probe.getTimeoutExtension(now + 6000));
+  }
+
+  @Test
+  public void testHeapLimit() throws Throwable {
+    if (!isProcAvailable()) {
+      return;
+    }
+    perfData.write();
+    conf.setInt(MonitorKeys.GC_PROBE_HEAP_LIMIT, 90);
+    JvmGcProbe probe = new JvmGcProbe(pidFile, conf);
+    assertSuccess(probe.ping(true));
+    //full, but no old collection yet
+    perfData.set("sun.gc.generation.1.space.0.used", 950);
+    assertSuccess(probe.ping(true));
+    //still full after an old collection
+    perfData.set("sun.gc.collector.1.invocations", 1);
+    assertFailure(probe.ping(true));
+    assertEquals(95, probe.getOldPercent());
+  }
+
+  @Test
+  public void testMissingPerfData() throws Throwable {
+    if (!isProcAvailable()) {
+      return;
+    }
+    assertFailure(new JvmGcProbe(pidFile, conf).ping(true));
+  }
+
+  @Test
+  public void testOwnJvm() throws Throwable {
+    if (!isProcAvailable()) {
+      return;
+    }
+    File own = PerfDataFile.find(new File(MonitorKeys.GC_PROBE_PERFDATA_DIR_DEFAULT), pid);
+    if (own == null) {
+      //running with -XX:-UsePerfData, or elsewhere
+      return;
+    }
+    PerfDataFile file = new PerfDataFile(own);
+    assertTrue(file.getLong("sun.os.hrt.frequency") > 0);
+    long before = file.getLong("sun.gc.collector.0.invocations")
+                  + file.getLong("sun.gc.collector.1.invocations");
+    System.gc();
+    long after = file.getLong("sun.gc.collector.0.invocations")
+                 + file.getLong("sun.gc.collector.1.invocations");
+    assertTrue("before " + before + " after " + after, after > before);
+    conf.set(MonitorKeys.GC_PROBE_PERFDATA_DIR, MonitorKeys.GC_PROBE_PERFDATA_DIR_DEFAULT);
+    JvmGcProbe probe = new JvmGcProbe(pidFile, conf);
+    assertSuccess(probe.ping(true));
+    assertTrue(probe.getCollections() > 0);
+  }
+
+  /**
+   * Writer of a performance data file with a set of long counters,
+   * laid out as a little endian JVM does
+   */
+  private static class FakePerfData {
+    private static final int PROLOGUE_SIZE = 32;
+    private static final int ENTRY_HEADER_SIZE = 20;
+    private static final int NAME_SIZE = 48;
+    private final File file;
+    private final Map<String, Long> counters = new LinkedHashMap<String, Long>();
+    private final Map<String, Integer> offsets = new HashMap<String, Integer>();
+
+    private FakePerfData(File file) {
+      this.file = file;
+      counters.put("sun.os.hrt.frequency", 1000000000L);
+      counters.put("sun.os.hrt.ticks", 1000000000L);
+      counters.put("sun.rt.safepointTime", 0L);
+      for (int i = 0; i < 2; i++) {
+        counters.put("sun.gc.collector." + i + ".invocations", 0L);
+        counters.put("sun.gc.collector." + i + ".time", 0L);
+        counters.put("sun.gc.collector." + i + ".lastEntryTime", 0L);
+        counters.put("sun.gc.collector." + i + ".lastExitTime", 0L);
+      }
+      counters.put("sun.gc.generation.1.space.0.used", 400L);
+      counters.put("sun.gc.generation.1.maxCapacity", 1000L);
+    }
+
+    private void write() throws IOException {
+      int entryLength = ENTRY_HEADER_SIZE + NAME_SIZE + 8;
+      int used = PROLOGUE_SIZE + counters.size() * entryLength;
+      ByteBuffer buffer = ByteBuffer.allocate(used);
+      buffer.order(ByteOrder.BIG_ENDIAN);
+      buffer.putInt(0, PerfDataFile.MAGIC);
+      buffer.order(ByteOrder.LITTLE_ENDIAN);
+      buffer.put(4, (byte) 1);
+      buffer.put(5, (byte) 2);
+      buffer.put(6, (byte) 0);
+      buffer.put(7, (byte) 1);
+      buffer.putInt(8, used);
+      buffer.putInt(24, PROLOGUE_SIZE);
+      buffer.putInt(28, counters.size());
+      int offset = PROLOGUE_SIZE;
+      for (Map.Entry<String, Long> counter : counters.entrySet()) {
+        buffer.putInt(offset, entryLength);
+        buffer.putInt(offset + 4, ENTRY_HEADER_SIZE);
+        buffer.putInt(offset + 8, 0);
+        buffer.put(offset + 12, (byte) 'J');
+        buffer.putInt(offset + 16, ENTRY_HEADER_SIZE + NAME_SIZE);
+        byte[] name = counter.getKey().getBytes("US-ASCII");
+        for (int i = 0; i < name.length; i++) {
+          buffer.put(offset + ENTRY_HEADER_SIZE + i, name[i]);
+        }
+        int dataOffset = offset + ENTRY_HEADER_SIZE + NAME_SIZE;
+        buffer.putLong(dataOffset, counter.getValue());
+        offsets.put(counter.getKey(), dataOffset);
+        offset += entryLength;
+      }
+      RandomAccessFile raf = new RandomAccessFile(file, "rw");
+      try {
+        raf.setLength(0);
+        raf.write(buffer.array());
+      } finally {
+        raf.close();
+      }
+    }
+
+    private void set(String name, long value) throws IOException {
+      ByteBuffer buffer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+      buffer.putLong(0, value);
+      RandomAccessFile raf = new RandomAccessFile(file, "rw");
+      try {
+        raf.seek(offsets.get(name));
+        raf.write(buffer.array());
+      } finally {
+        raf.close();
+      }
+    }
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.servicemonitor.unit;
+
+import org.apache.ambari.servicemonitor.utils.LatencyWindow;
+import org.junit.Test;
+
+public class LatencyWindowTest extends BaseLocalClusterTestCase {
+
+  @Test
+  public void testEmptyWindow() throws Throwable {
+    LatencyWindow window = new LatencyWindow(10);
+    assertEquals(0, window.getCount());
+    assertEquals(-1, window.getPercentile(95));
+    assertEquals(-1, window.getMax());
+    assertEquals(0.0, window.getMean(), 0.0);
+  }
+
+  @Test
+  public void testPercentiles() throws Throwable {
+    LatencyWindow window = new LatencyWindow(100);
+    for (int i = 100; i >= 1; i--) {
+      window.add(i);
+    }
+    assertTrue(window.isFull());
+    assertEquals(50, window.getPercentile(50));
+    assertEquals(95, window.getPercentile(95));
+    assertEquals(100, window.getPercentile(100));
+    assertEquals(1, window.getPercentile(0));
+    assertEquals(100, window.getMax());
+    assertEquals(50.5, window.getMean(), 0.001);
+  }
+
+  @Test
+  public void testOldestSamplesAreDropped() throws Throwable {
+    LatencyWindow window = new LatencyWindow(4);
+    window.add(1000);
+    window.add(1000);
+    for (int i = 0; i < 4; i++) {
+      window.add(10);
+    }
+    assertEquals(4, window.getCount());
+    assertEquals(10, window.getMax());
+    assertEquals(10.0, window.getMean(), 0.0);
+    window.clear();
+    assertEquals(0, window.getCount());
+  }
+
+  @Test
+  public void testExpiry() throws Throwable {
+    LatencyWindow window = new LatencyWindow(4);
+    window.add(1000, 100);
+    window.add(500, 200);
+    window.add(10, 300);
+    window.add(20, 400);
+    window.add(30, 500);
+    window.expire(200);
+    assertEquals(3, window.getCount());
+    assertEquals(30, window.getMax());
+    assertEquals(20, window.getPercentile(50));
+    assertEquals(20.0, window.getMean(), 0.0);
+    window.expire(500);
+    assertEquals(0, window.getCount());
+    assertEquals(-1, window.getMax());
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.servicemonitor.unit;
+
+import org.apache.ambari.servicemonitor.reporting.PhiAccrualDetector;
+import org.junit.Test;
+
+public class PhiAccrualDetectorTest extends BaseLocalClusterTestCase {
+
+  /**
+   * Feed in results every interval, with a little latency varying between them
+   * @return the time of the last result
+   */
+  private long feed(PhiAccrualDetector detector, int results, long interval, long spread) {
+    long time = 0;
+    for (int i = 0; i < results; i++) {
+      time += interval + (i % 2 == 0 ? spread : -spread);
+      detector.arrived(time, interval);
+    }
+    return time;
+  }
+
+  @Test
+  public void testNoPhiUntilWarmedUp() throws Throwable {
+    PhiAccrualDetector detector = new PhiAccrualDetector(100, 10);
+    long last = feed(detector, PhiAccrualDetector.MIN_SAMPLES, 1000, 5);
+    assertFalse(detector.isWarmedUp());
+    assertEquals(0.0, detector.phi(last + 100000), 0);
+  }
+
+  @Test
+  public void testPhiGrowsWithDelay() throws Throwable {
+    PhiAccrualDetector detector = new PhiAccrualDetector(100, 10);
+    long last = feed(detector, 20, 1000, 5);
+    assertTrue(detector.isWarmedUp());
+    double onTime = detector.phi(last + 1000);
+    double late = detector.phi(last + 1050);
+    double later = detector.phi(last + 1200);
+    assertTrue("on time " + onTime, onTime < 1);
+    assertTrue(late > onTime);
+    assertTrue("later " + later, later > 8);
+  }
+
+  @Test
+  public void testIrregularHistoryIsTolerated() throws Throwable {
+    PhiAccrualDetector regular = new PhiAccrualDetector(100, 10);
+    PhiAccrualDetector irregular = new PhiAccrualDetector(100, 10);
+    long lastRegular = feed(regular, 20, 1000, 5);
+    long lastIrregular = feed(irregular, 20, 1000, 500);
+    assertTrue(irregular.phi(lastIrregular + 2000) < regular.phi(lastRegular + 2000));
+    assertTrue(irregular.phi(lastIrregular + 2000) < 8);
+  }
+
+  /**
+   * The threshold time is the first at which phi reaches the threshold,
+   * whatever the minimum standard deviation
+   * @throws Throwable
+   */
+  @Test
+  public void testThresholdTime() throws Throwable {
+    PhiAccrualDetector detector = new PhiAccrualDetector(100, 10);
+    assertEquals(-1, detector.getThresholdTime(8));
+    long last = feed(detector, 20, 1000, 5);
+    long time = detector.getThresholdTime(8);
+    assertTrue("threshold time " + time, time > last + 1000);
+    assertTrue(detector.phi(time - 1) < 8);
+    assertTrue(detector.phi(time) >= 8);
+    PhiAccrualDetector insensitive = new PhiAccrualDetector(100, 5000);
+    last = feed(insensitive, 20, 1000, 5);
+    time = insensitive.getThresholdTime(8);
+    assertTrue(insensitive.phi(time - 1) < 8);
+    assertTrue(insensitive.phi(time) >= 8);
+  }
+
+  @Test
+  public void testWindowForgetsOldSamples() throws Throwable {
+    PhiAccrualDetector detector = new PhiAccrualDetector(10, 10);
+    long last = feed(detector, 10, 1000, 500);
+    for (int i = 0; i < 10; i++) {
+      last += 1000;
+      detector.arrived(last, 1000);
+    }
+    assertEquals(10, detector.getSampleCount());
+    assertEquals(0.0, detector.getMean(), 0.001);
+    assertEquals(10.0, detector.getStdDeviation(), 0.001);
+  }
+}
@@ -0,0 +1,228 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.servicemonitor.unit;
+
+import org.apache.ambari.servicemonitor.MonitorKeys;
+import org.apache.ambari.servicemonitor.probes.PidLiveProbe;
+import org.apache.ambari.servicemonitor.probes.PingRequestHandler;
+import org.apache.ambari.servicemonitor.probes.Probe;
+import org.apache.ambari.servicemonitor.reporting.ProbeStatus;
+import org.apache.ambari.servicemonitor.utils.FindAndPingPid;
+import org.apache.hadoop.conf.Configuration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class PidLiveProbeTest extends BaseLocalClusterTestCase {
+
+  /**
+   * A pid above the largest pid_max of Linux, so never live
+   */
+  private static final String DEAD_PID = "999999999";
+
+  private File pidFile;
+  private PidLiveProbe probe;
+
+  @Before
+  public void createPidFile() throws Throwable {
+    pidFile = File.createTempFile("pidprobe", ".pid");
+  }
+
+  @After
+  public void cleanup() {
+    if (probe != null) {
+      probe.setPingRequestHandler(null);
+    }
+    pidFile.delete();
+  }
+
+  private static String selfPid() throws IOException {
+    return new File("/proc/self").getCanonicalFile().getName();
+  }
+
+  private void writePid(String pid) throws IOException {
+    FileWriter writer = new FileWriter(pidFile);
+    try {
+      writer.write(pid + "\n");
+    } finally {
+      writer.close();
+    }
+  }
+
+  private PidLiveProbe createProbe(int watchInterval) throws IOException {
+    Configuration conf = new Configuration(false);
+    conf.setInt(MonitorKeys.PID_PROBE_WATCH_INTERVAL, watchInterval);
+    probe = new PidLiveProbe(pidFile, conf);
+    probe.init();
+    return probe;
+  }
+
+  @Test
+  public void testOwnProcessIsLive() throws Throwable {
+    if (!FindAndPingPid.isProcAvailable()) {
+      return;
+    }
+    writePid(selfPid());
+    ProbeStatus status = createProbe(0).ping(true);
+    assertSuccess(status);
+    assertEquals(selfPid(), probe.getPidPinger().getPid());
+  }
+
+  @Test
+  public void testDeadProcessFails() throws Throwable {
+    writePid(DEAD_PID);
+    assertFailure(createProbe(0).ping(true));
+  }
+
+  @Test
+  public void testMissingFileFails() throws Throwable {
+    pidFile.delete();
+    assertFailure(createProbe(0).ping(true));
+  }
+
+  @Test
+  public void testRewrittenFileIsReloaded() throws Throwable {
+    if (!FindAndPingPid.isProcAvailable()) {
+      return;
+    }
+    writePid(selfPid());
+    createProbe(0);
+    assertSuccess(probe.ping(true));
+    writePid(DEAD_PID);
+    assertFailure(probe.ping(true));
+    writePid(selfPid());
+    assertSuccess(probe.ping(true));
+  }
+
+  /**
+   * A process with the pid of the one which wrote the file, but another
+   * start time, has reused the pid and is not live
+   * @throws Throwable
+   */
+  @Test
+  public void testReusedPidIsNotLive() throws Throwable {
+    if (!FindAndPingPid.isProcAvailable()) {
+      return;
+    }
+    writePid(selfPid());
+    final AtomicBoolean reused = new AtomicBoolean();
+    FindAndPingPid pinger = new FindAndPingPid(pidFile) {
+      @Override
+      protected String[] readStat(String processId) throws IOException {
+        String[] stat = super.readStat(processId);
+        if (stat != null && reused.get()) {
+          //field 22 of the status line: the start time
+          stat[19] = stat[19] + "0";
+        }
+        return stat;
+      }
+    };
+    assertTrue(pinger.ping());
+    reused.set(true);
+    assertFalse(pinger.ping());
+    assertFalse(pinger.ping());
+    assertEquals(selfPid(), pinger.getPid());
+  }
+
+  /**
+   * A restarted daemon may be given its old pid; once it has rewritten
+   * the pid file, its new start time is adopted
+   * @throws Throwable
+   */
+  @Test
+  public void testRewrittenFileWithSamePidIsLive() throws Throwable {
+    if (!FindAndPingPid.isProcAvailable()) {
+      return;
+    }
+    writePid(selfPid());
+    final AtomicBoolean restarted = new AtomicBoolean();
+    FindAndPingPid pinger = new FindAndPingPid(pidFile) {
+      @Override
+      protected String[] readStat(String processId) throws IOException {
+        String[] stat = super.readStat(processId);
+        if (stat != null && restarted.get()) {
+          //field 22 of the status line: the start time
+          stat[19] = stat[19] + "0";
+        }
+        return stat;
+      }
+    };
+    assertTrue(pinger.ping());
+    restarted.set(true);
+    assertFalse(pinger.ping());
+    long modified = pidFile.lastModified();
+    writePid(selfPid());
+    //make the rewrite visible whatever the granularity of the time
+    pidFile.setLastModified(modified + 2000);
+    assertTrue(pinger.ping());
+    assertTrue(pinger.ping());
+  }
+
+  @Test
+  public void testChangeSeenWithoutPing() throws Throwable {
+    if (!FindAndPingPid.isProcAvailable()) {
+      return;
+    }
+    writePid(selfPid());
+    FindAndPingPid pinger = createProbe(0).getPidPinger();
+    assertFalse(pinger.hasChanged());
+    assertSuccess(probe.ping(true));
+    assertFalse(pinger.hasChanged());
+    writePid(DEAD_PID);
+    assertTrue(pinger.hasChanged());
+  }
+
+  @Test
+  public void testWatcherRequestsPing() throws Throwable {
+    if (!FindAndPingPid.isProcAvailable()) {
+      return;
+    }
+    writePid(selfPid());
+    createProbe(10);
+    assertSuccess(probe.ping(true));
+    final CountDownLatch requested = new CountDownLatch(1);
+    probe.setPingRequestHandler(new PingRequestHandler() {
+      @Override
+      public void pingRequested(Probe p) {
+        requested.countDown();
+      }
+    });
+    assertTrue(probe.isWatching());
+    writePid(DEAD_PID);
+    assertTrue("No ping requested", requested.await(10, TimeUnit.SECONDS));
+    probe.setPingRequestHandler(null);
+    assertFalse(probe.isWatching());
+  }
+
+  @Test
+  public void testWatchingDisabled() throws Throwable {
+    createProbe(0).setPingRequestHandler(new PingRequestHandler() {
+      @Override
+      public void pingRequested(Probe p) {
+      }
+    });
+    assertFalse(probe.isWatching());
+  }
+}
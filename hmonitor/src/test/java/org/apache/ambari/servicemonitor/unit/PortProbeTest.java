@@ -17,11 +17,18 @@
 
 package org.apache.ambari.servicemonitor.unit;
 
+import org.apache.ambari.servicemonitor.probes.PingRequestHandler;
 import org.apache.ambari.servicemonitor.probes.PortProbe;
+import org.apache.ambari.servicemonitor.probes.Probe;
 import org.apache.ambari.servicemonitor.reporting.ProbeStatus;
 import org.apache.hadoop.conf.Configuration;
 import org.junit.Test;
 
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 public class PortProbeTest extends BaseLocalClusterTestCase {
 
 
@@ -37,5 +44,41 @@ public class PortProbeTest extends BaseLocalClusterTestCase {
     assertFailure(status);
   }
 
+  /**
+   * Assert that in passive mode the close of the watched connection
+   * leads to a request for a ping
+   * @throws Throwable
+   */
+  @Test
+  public void testPassiveProbeSeesClose() throws Throwable {
+    ServerSocket server = new ServerSocket(0);
+    PortProbe probe = new PortProbe("127.0.0.1", server.getLocalPort(), 1000, "",
+                                    new Configuration());
+    probe.setPassive(true);
+    final CountDownLatch requested = new CountDownLatch(1);
+    probe.setPingRequestHandler(new PingRequestHandler() {
+      @Override
+      public void pingRequested(Probe p) {
+        requested.countDown();
+      }
+    });
+    try {
+      probe.init();
+      assertSuccess(probe.ping(true));
+      assertTrue(probe.isWatching());
+      //the first connection is the ping, the second the watched one
+      server.accept().close();
+      Socket watched = server.accept();
+      assertEquals(1, requested.getCount());
+      watched.close();
+      assertTrue("No ping requested", requested.await(10, TimeUnit.SECONDS));
+      assertFalse(probe.isWatching());
+    } finally {
+      probe.setPingRequestHandler(null);
+      server.close();
+    }
+    assertFailure(probe.ping(true));
+  }
+
 
 }
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.servicemonitor.unit;
+
+import org.apache.ambari.servicemonitor.probes.PortSweepProbe;
+import org.apache.ambari.servicemonitor.probes.PortSweeper;
+import org.apache.ambari.servicemonitor.reporting.ProbeStatus;
+import org.apache.hadoop.conf.Configuration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+
+public class PortSweeperTest extends BaseLocalClusterTestCase {
+
+  private ServerSocket server;
+  private int openPort;
+  private int closedPort;
+
+  @Before
+  public void openPorts() throws Throwable {
+    server = new ServerSocket(0, 200);
+    openPort = server.getLocalPort();
+    ServerSocket closed = new ServerSocket(0);
+    closedPort = closed.getLocalPort();
+    closed.close();
+  }
+
+  @After
+  public void closePorts() throws Throwable {
+    if (server != null) {
+      server.close();
+    }
+  }
+
+  private InetSocketAddress local(int port) {
+    return InetSocketAddress.createUnresolved("127.0.0.1", port);
+  }
+
+  @Test
+  public void testSweepReportsEachTarget() throws Throwable {
+    List<InetSocketAddress> targets = new ArrayList<InetSocketAddress>();
+    targets.add(local(openPort));
+    targets.add(local(closedPort));
+    targets.add(InetSocketAddress.createUnresolved("no-such-host.invalid", openPort));
+    PortSweepProbe probe = new PortSweepProbe(targets, 1000, 10, 2, new Configuration());
+    PortSweeper sweeper = new PortSweeper(probe, 1000, 10);
+    List<ProbeStatus> results = sweeper.sweep(targets);
+    assertEquals(3, results.size());
+    assertSuccess(results.get(0));
+    assertFailure(results.get(1));
+    assertFailure(results.get(2));
+    assertEquals(2, PortSweeper.getFailures(results).size());
+    assertSame(probe, results.get(1).getOriginator());
+  }
+
+  /**
+   * As with a blocking connect, a timeout of 0 means no timeout
+   * @throws Throwable
+   */
+  @Test
+  public void testZeroTimeoutMeansNoTimeout() throws Throwable {
+    List<InetSocketAddress> targets = new ArrayList<InetSocketAddress>();
+    targets.add(local(openPort));
+    targets.add(local(closedPort));
+    PortSweepProbe probe = new PortSweepProbe(targets, 0, 10, 1, new Configuration());
+    PortSweeper sweeper = new PortSweeper(probe, 0, 10);
+    List<ProbeStatus> results = sweeper.sweep(targets);
+    assertSuccess(results.get(0));
+    assertFailure(results.get(1));
+  }
+
+  @Test
+  public void testNegativeTimeoutIsRejected() throws Throwable {
+    try {
+      new PortSweeper(null, -1, 10);
+      fail("expected the timeout to be rejected");
+    } catch (IllegalArgumentException expected) {
+      //expected
+    }
+  }
+
+  @Test
+  public void testSweepMoreTargetsThanConnections() throws Throwable {
+    List<InetSocketAddress> targets = new ArrayList<InetSocketAddress>();
+    for (int i = 0; i < 100; i++) {
+      targets.add(local(i % 10 == 0 ? closedPort : openPort));
+    }
+    PortSweepProbe probe = new PortSweepProbe(targets, 1000, 8, 10, new Configuration());
+    probe.init();
+    ProbeStatus status = probe.ping(true);
+    assertSuccess(status);
+    assertEquals(100, probe.getLastResults().size());
+    assertEquals(10, PortSweeper.getFailures(probe.getLastResults()).size());
+  }
+
+  @Test
+  public void testTooManyClosedPortsFails() throws Throwable {
+    List<InetSocketAddress> targets = new ArrayList<InetSocketAddress>();
+    targets.add(local(openPort));
+    targets.add(local(closedPort));
+    PortSweepProbe probe = new PortSweepProbe(targets, 1000, 10, 0, new Configuration());
+    probe.init();
+    ProbeStatus status = probe.ping(true);
+    assertFailure(status);
+    assertTrue(status.getThrown().getMessage(),
+               status.getThrown().getMessage().contains("1 of 2 ports open"));
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.servicemonitor.unit;
+
+import org.apache.ambari.servicemonitor.probes.MockProbe;
+import org.apache.ambari.servicemonitor.probes.Probe;
+import org.apache.ambari.servicemonitor.reporting.ProbeSchedule;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ProbeScheduleTest extends BaseLocalClusterTestCase {
+
+  @Test
+  public void testNextSlotIsFixedRate() throws Throwable {
+    assertEquals(1100, ProbeSchedule.nextSlot(1000, 100, 1050));
+  }
+
+  @Test
+  public void testNextSlotSkipsMissedSlots() throws Throwable {
+    assertEquals(1400, ProbeSchedule.nextSlot(1000, 100, 1350));
+    assertEquals(1400, ProbeSchedule.nextSlot(1000, 100, 1300));
+  }
+
+  @Test
+  public void testNextSlotWithZeroInterval() throws Throwable {
+    assertEquals(1351, ProbeSchedule.nextSlot(1000, 0, 1350));
+    assertEquals(1001, ProbeSchedule.nextSlot(1000, 0, 900));
+  }
+
+  /**
+   * A probe with its own interval is pinged on that cadence, the others
+   * on the default one
+   * @throws Throwable
+   */
+  @Test
+  public void testPerProbeIntervals() throws Throwable {
+    MockProbe fast = new MockProbe("fast");
+    fast.setInterval(100);
+    MockProbe slow = new MockProbe("slow");
+    List<Probe> probes = new ArrayList<Probe>();
+    probes.add(fast);
+    probes.add(slow);
+    ProbeSchedule schedule = new ProbeSchedule(probes, 300);
+    schedule.start(0);
+    assertEquals(300, schedule.getNextDueTime(0));
+    assertEquals(2, schedule.takeDue(300).size());
+    assertEquals(400, schedule.getDueTime(fast));
+    assertEquals(600, schedule.getDueTime(slow));
+    List<Probe> due = schedule.takeDue(400);
+    assertEquals(1, due.size());
+    assertSame(fast, due.get(0));
+    assertEquals(0, schedule.takeDue(450).size());
+    assertEquals(500, schedule.getNextDueTime(450));
+  }
+
+  /**
+   * A probe made due early is pinged at once, and keeps its slots
+   * @throws Throwable
+   */
+  @Test
+  public void testMakeDue() throws Throwable {
+    MockProbe probe = new MockProbe("early");
+    List<Probe> probes = new ArrayList<Probe>();
+    probes.add(probe);
+    ProbeSchedule schedule = new ProbeSchedule(probes, 300);
+    schedule.start(0);
+    assertEquals(1, schedule.takeDue(300).size());
+    assertTrue(schedule.makeDue(probe, 350));
+    assertFalse(schedule.makeDue(probe, 360));
+    assertEquals(350, schedule.getNextDueTime(360));
+    assertEquals(1, schedule.takeDue(360).size());
+    assertEquals(900, schedule.getDueTime(probe));
+    assertFalse(schedule.makeDue(new MockProbe("other"), 360));
+  }
+
+  /**
+   * A probe taken as due but not pinged is due again at the same time
+   * @throws Throwable
+   */
+  @Test
+  public void testPutBack() throws Throwable {
+    MockProbe probe = new MockProbe("skipped");
+    List<Probe> probes = new ArrayList<Probe>();
+    probes.add(probe);
+    ProbeSchedule schedule = new ProbeSchedule(probes, 300);
+    schedule.start(0);
+    assertEquals(1, schedule.takeDue(310).size());
+    assertEquals(600, schedule.getDueTime(probe));
+    schedule.putBack(probe);
+    assertEquals(300, schedule.getDueTime(probe));
+    assertEquals(1, schedule.takeDue(320).size());
+    assertEquals(600, schedule.getDueTime(probe));
+  }
+
+  @Test
+  public void testJitterIsBounded() throws Throwable {
+    ProbeSchedule schedule = new ProbeSchedule(new ArrayList<Probe>(), 1000);
+    schedule.setJitter(0.1f);
+    for (int i = 0; i < 100; i++) {
+      long offset = schedule.jitterOffset(1000);
+      assertTrue("offset " + offset, offset >= -100 && offset <= 100);
+    }
+  }
+}
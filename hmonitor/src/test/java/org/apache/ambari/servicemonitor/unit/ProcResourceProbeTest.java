@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.servicemonitor.unit;
+
+import org.apache.ambari.servicemonitor.MonitorKeys;
+import org.apache.ambari.servicemonitor.probes.ProcResourceProbe;
+import org.apache.ambari.servicemonitor.reporting.ProbeStatus;
+import org.apache.ambari.servicemonitor.utils.FindAndPingPid;
+import org.apache.ambari.servicemonitor.utils.ProcFile;
+import org.apache.hadoop.conf.Configuration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+/**
+ * Tests of the process resource probe against this JVM
+ */
+public class ProcResourceProbeTest extends BaseLocalClusterTestCase {
+
+  private File pidFile;
+  private Configuration conf;
+
+  @Before
+  public void createPidFile() throws Throwable {
+    pidFile = File.createTempFile("procprobe", ".pid");
+    FileWriter writer = new FileWriter(pidFile);
+    try {
+      writer.write(new File("/proc/self").getCanonicalFile().getName());
+    } finally {
+      writer.close();
+    }
+    conf = new Configuration(false);
+  }
+
+  @After
+  public void deletePidFile() {
+    pidFile.delete();
+  }
+
+  private void write(File file, String text) throws IOException {
+    FileWriter writer = new FileWriter(file);
+    try {
+      writer.write(text);
+    } finally {
+      writer.close();
+    }
+  }
+
+  @Test
+  public void testParseFields() throws Throwable {
+    File file = File.createTempFile("procfile", ".txt");
+    try {
+      write(file, "42 (a (b) c) S 1 2 3\nName:\tjava\nThreads:\t  17\n");
+      ProcFile procFile = new ProcFile();
+      assertTrue(procFile.load(file));
+      int end = procFile.lastIndexOf(')');
+      assertEquals('S', procFile.charAt(procFile.findField(end + 1, 0)));
+      assertEquals(3, procFile.parseLong(procFile.findField(end + 1, 3)));
+      assertEquals(-1, procFile.findField(end + 1, 4));
+      assertEquals(17, procFile.parseLong(procFile.findLine("Threads:")));
+      assertEquals(-1, procFile.findLine("VmRSS:"));
+      assertEquals(-1, procFile.parseLong(procFile.findLine("Name:")));
+    } finally {
+      file.delete();
+    }
+    assertFalse(new ProcFile().load(file));
+  }
+
+  @Test
+  public void testBufferGrows() throws Throwable {
+    File file = File.createTempFile("procfile", ".txt");
+    try {
+      StringBuilder text = new StringBuilder();
+      for (int i = 0; i < 1000; i++) {
+        text.append("Line").append(i).append(":\t").append(i).append('\n');
+      }
+      write(file, text.toString());
+      ProcFile procFile = new ProcFile();
+      assertTrue(procFile.load(file));
+      assertEquals(text.length(), procFile.length());
+      assertEquals(999, procFile.parseLong(procFile.findLine("Line999:")));
+    } finally {
+      file.delete();
+    }
+  }
+
+  @Test
+  public void testOwnProcess() throws Throwable {
+    if (!FindAndPingPid.isProcAvailable()) {
+      return;
+    }
+    ProcResourceProbe probe = new ProcResourceProbe(pidFile, conf);
+    assertSuccess(probe.ping(true));
+    assertTrue(probe.getThreads() > 1);
+    assertTrue(probe.getOpenFiles() > 0);
+    assertEquals(-1, probe.getCpuPercent());
+    assertSuccess(probe.ping(true));
+  }
+
+  @Test
+  public void testTooManyThreads() throws Throwable {
+    if (!FindAndPingPid.isProcAvailable()) {
+      return;
+    }
+    conf.setInt(MonitorKeys.PROC_PROBE_THREADS_MAX, 1);
+    ProbeStatus status = new ProcResourceProbe(pidFile, conf).ping(true);
+    assertFailure(status);
+    assertTrue(status.getThrown().getMessage().contains("threads"));
+  }
+
+  @Test
+  public void testCpuSpin() throws Throwable {
+    if (!FindAndPingPid.isProcAvailable()) {
+      return;
+    }
+    conf.setInt(MonitorKeys.PROC_PROBE_CPU_LIMIT, 20);
+    conf.setInt(MonitorKeys.PROC_PROBE_CPU_DURATION, 0);
+    ProcResourceProbe probe = new ProcResourceProbe(pidFile, conf);
+    assertSuccess(probe.ping(true));
+    //spin for half a second
+    long end = System.currentTimeMillis() + 500;
+    long count = 0;
+    while (System.currentTimeMillis() < end) {
+      count++;
+    }
+    ProbeStatus status = probe.ping(true);
+    assertFailure(status);
+    assertTrue("cpu=" + probe.getCpuPercent() + " after " + count,
+               probe.getCpuPercent() >= 20);
+  }
+
+  @Test
+  public void testDeadProcessFails() throws Throwable {
+    write(pidFile, "999999999");
+    assertFailure(new ProcResourceProbe(pidFile, conf).ping(true));
+  }
+}
@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.servicemonitor.unit;
+
+import org.apache.ambari.servicemonitor.utils.ResolverCache;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ResolverCacheTest extends BaseLocalClusterTestCase {
+
+  /**
+   * A resolver cache whose lookups are counted, and can be made to fail
+   */
+  private static class CountingCache extends ResolverCache {
+    private final AtomicInteger lookups = new AtomicInteger();
+    private volatile boolean failing;
+    private volatile InetAddress address = InetAddress.getByName("127.0.0.1");
+
+    private CountingCache(long ttl) throws UnknownHostException {
+      super(ttl, false);
+    }
+
+    @Override
+    protected InetAddress[] lookup(String host) throws UnknownHostException {
+      lookups.incrementAndGet();
+      if (failing) {
+        throw new UnknownHostException(host);
+      }
+      return new InetAddress[]{address};
+    }
+  }
+
+  private void waitForLookups(CountingCache cache, int lookups) throws InterruptedException {
+    for (int i = 0; i < 100 && cache.lookups.get() < lookups; i++) {
+      Thread.sleep(20);
+    }
+    //let the refresh finish updating the entry
+    Thread.sleep(50);
+  }
+
+  @Test
+  public void testLookupsAreCached() throws Throwable {
+    CountingCache cache = new CountingCache(60000);
+    try {
+      assertEquals("127.0.0.1", cache.resolveFirst("host").getHostAddress());
+      cache.resolve("host");
+      cache.resolve("host");
+      assertEquals(1, cache.lookups.get());
+      assertEquals(1, cache.size());
+    } finally {
+      cache.close();
+    }
+  }
+
+  @Test
+  public void testStaleAddressesServedWhileRefreshed() throws Throwable {
+    CountingCache cache = new CountingCache(100);
+    try {
+      cache.resolve("host");
+      cache.address = InetAddress.getByName("127.0.0.2");
+      Thread.sleep(150);
+      //the stale address comes back at once, and a refresh is started
+      assertEquals("127.0.0.1", cache.resolveFirst("host").getHostAddress());
+      waitForLookups(cache, 2);
+      assertEquals("127.0.0.2", cache.resolveFirst("host").getHostAddress());
+    } finally {
+      cache.close();
+    }
+  }
+
+  @Test
+  public void testFailedRefreshKeepsAddresses() throws Throwable {
+    CountingCache cache = new CountingCache(100);
+    try {
+      cache.resolve("host");
+      cache.failing = true;
+      Thread.sleep(150);
+      cache.resolve("host");
+      waitForLookups(cache, 2);
+      assertEquals("127.0.0.1", cache.resolveFirst("host").getHostAddress());
+    } finally {
+      cache.close();
+    }
+  }
+
+  @Test
+  public void testUnknownHostIsRemembered() throws Throwable {
+    CountingCache cache = new CountingCache(60000);
+    try {
+      cache.failing = true;
+      for (int i = 0; i < 2; i++) {
+        try {
+          cache.resolve("unknown");
+          fail("expected an UnknownHostException");
+        } catch (UnknownHostException expected) {
+          //expected
+        }
+      }
+      assertEquals(1, cache.lookups.get());
+    } finally {
+      cache.close();
+    }
+  }
+
+  /**
+   * A closed cache still serves addresses, but refreshes them no more
+   * @throws Throwable
+   */
+  @Test
+  public void testClosedCacheDoesNotRefresh() throws Throwable {
+    CountingCache cache = new CountingCache(100);
+    cache.resolve("host");
+    cache.close();
+    Thread.sleep(150);
+    assertEquals("127.0.0.1", cache.resolveFirst("host").getHostAddress());
+    Thread.sleep(100);
+    assertEquals(1, cache.lookups.get());
+    cache.resolve("other");
+    assertEquals(2, cache.lookups.get());
+  }
+
+  @Test
+  public void testCloseInstance() throws Throwable {
+    ResolverCache shared = ResolverCache.getInstance();
+    ResolverCache.closeInstance();
+    assertTrue(shared != ResolverCache.getInstance());
+  }
+
+  @Test
+  public void testRefreshInUse() throws Throwable {
+    CountingCache cache = new CountingCache(100);
+    try {
+      cache.resolve("host");
+      Thread.sleep(60);
+      cache.refreshInUse();
+      assertEquals(2, cache.lookups.get());
+    } finally {
+      cache.close();
+    }
+  }
+}
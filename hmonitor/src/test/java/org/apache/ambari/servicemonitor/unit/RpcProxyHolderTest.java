@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.servicemonitor.unit;
+
+import org.apache.ambari.servicemonitor.utils.RpcProxyHolder;
+import org.apache.hadoop.ipc.RemoteException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.nio.channels.ClosedByInterruptException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class RpcProxyHolderTest extends BaseLocalClusterTestCase {
+
+  private StubHolder holder;
+
+  @Before
+  public void createHolder() throws Throwable {
+    holder = new StubHolder();
+  }
+
+  @Test
+  public void testProxyIsKept() throws Throwable {
+    Object proxy = holder.get();
+    assertSame(proxy, holder.get());
+    assertEquals(1, holder.getConnections());
+    assertTrue(holder.getConnectTime() >= 0);
+  }
+
+  @Test
+  public void testReconnectAfterConnectionFailure() throws Throwable {
+    Object proxy = holder.get();
+    assertTrue(holder.failed(proxy, new ConnectException("Connection refused")));
+    assertTrue(holder.stopped.contains(proxy));
+    Object replacement = holder.get();
+    assertTrue(proxy != replacement);
+    assertEquals(2, holder.getConnections());
+    //a late failure of the old proxy does not drop the new one
+    assertFalse(holder.failed(proxy, new ConnectException("Connection refused")));
+    assertSame(replacement, holder.get());
+  }
+
+  @Test
+  public void testKeptOnRemoteErrors() throws Throwable {
+    Object proxy = holder.get();
+    assertFalse(holder.failed(proxy,
+                              new RemoteException(IOException.class.getName(), "denied")));
+    assertSame(proxy, holder.get());
+  }
+
+  /**
+   * An interrupt, from a cancelled ping, is no failure of the connection
+   * @throws Throwable
+   */
+  @Test
+  public void testKeptOnInterrupts() throws Throwable {
+    Object proxy = holder.get();
+    assertFalse(holder.failed(proxy, new InterruptedIOException("ping cancelled")));
+    assertFalse(holder.failed(proxy, new ClosedByInterruptException()));
+    assertSame(proxy, holder.get());
+    assertTrue(holder.stopped.isEmpty());
+  }
+
+  @Test
+  public void testBackoff() throws Throwable {
+    holder.refuse = true;
+    assertConnectFails();
+    assertEquals(RpcProxyHolder.BACKOFF_MIN, holder.getBackoff());
+    //no new attempt is made until the backoff has passed
+    assertConnectFails();
+    assertEquals(1, holder.attempts);
+    Thread.sleep(RpcProxyHolder.BACKOFF_MIN + 100);
+    assertConnectFails();
+    assertEquals(2, holder.attempts);
+    assertEquals(2 * RpcProxyHolder.BACKOFF_MIN, holder.getBackoff());
+    holder.refuse = false;
+    Thread.sleep(2 * RpcProxyHolder.BACKOFF_MIN + 100);
+    holder.get();
+    assertEquals(0, holder.getBackoff());
+  }
+
+  @Test
+  public void testBackoffIsCapped() throws Throwable {
+    holder.setMaxBackoff(RpcProxyHolder.BACKOFF_MIN);
+    holder.refuse = true;
+    assertConnectFails();
+    Thread.sleep(RpcProxyHolder.BACKOFF_MIN + 100);
+    assertConnectFails();
+    assertEquals(RpcProxyHolder.BACKOFF_MIN, holder.getBackoff());
+  }
+
+  private void assertConnectFails() {
+    try {
+      holder.get();
+      fail("expected a failure to connect");
+    } catch (IOException expected) {
+      //expected
+    }
+  }
+
+  /**
+   * A holder of plain objects, which can be told to refuse connections
+   */
+  private static class StubHolder extends RpcProxyHolder<Object> {
+    private final List<Object> stopped = new ArrayList<Object>();
+    private volatile boolean refuse;
+    private int attempts;
+
+    private StubHolder() {
+      super("stub");
+    }
+
+    @Override
+    protected Object createProxy() throws IOException {
+      attempts++;
+      if (refuse) {
+        throw new ConnectException("Connection refused");
+      }
+      return new Object();
+    }
+
+    @Override
+    protected void stopProxy(Object stopping) {
+      stopped.add(stopping);
+    }
+  }
+}